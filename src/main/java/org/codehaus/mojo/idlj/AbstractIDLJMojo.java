@@ -25,17 +25,35 @@ import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectHelper;
 import org.codehaus.plexus.compiler.util.scan.InclusionScanException;
 import org.codehaus.plexus.compiler.util.scan.SourceInclusionScanner;
-import org.codehaus.plexus.compiler.util.scan.StaleSourceScanner;
 import org.codehaus.plexus.compiler.util.scan.mapping.SuffixMapping;
 import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.SelectorUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This is abstract class used to decrease the code needed to the creation of the compiler MOJO.
@@ -80,6 +98,23 @@ public abstract class AbstractIDLJMojo extends AbstractMojo
      */
     private int staleMillis;
 
+    /**
+     * The number of threads with which to scan the source directory for stale files.
+     *
+     * @parameter property="idlj.scanThreads" default-value="1"
+     */
+    private int scanThreads = 1;
+
+    /**
+     * How to decide whether an IDL file must be recompiled. With "timestamp", a file is recompiled if its size or
+     * modification time differs from the ones recorded in the build index. With "content", a file is recompiled if a
+     * hash of its contents differs from the one recorded when it was last compiled; the file is only read if its size
+     * or modification time has changed. The files an IDL file includes are compared the same way.
+     *
+     * @parameter property="idlj.staleCheck" default-value="timestamp"
+     */
+    private String staleCheck = STALE_CHECK_TIMESTAMP;
+
     /**
      * The maven project helper class for adding resources.
      *
@@ -88,7 +123,9 @@ public abstract class AbstractIDLJMojo extends AbstractMojo
     private MavenProjectHelper projectHelper;
 
     /**
-     * The directory to store the processed grammars. Used so that grammars are not constantly regenerated.
+     * Names the files which record the build state, so that grammars are not constantly regenerated; they are kept
+     * next to this path. Earlier versions stored copies of the processed grammars in this directory, which is migrated
+     * to the build index and deleted on the first run.
      *
      * @parameter default-value="${project.build.directory}/idlj-timestamp"
      */
@@ -103,192 +140,2476 @@ public abstract class AbstractIDLJMojo extends AbstractMojo
      */
     private String compiler;
 
-    /**
-     * The interface between this class and the rest of the world - unit tests replace the default implementation.
-     */
-    private DependenciesFacade dependencies;
+    /**
+     * The number of IDL files to compile concurrently. Either a plain count, or a multiple of the number of available
+     * processors followed by "C", as in "1.5C".
+     *
+     * @parameter property="idlj.threads" default-value="1"
+     */
+    private String threads;
+
+    /**
+     * The maximum number of IDL files to pass to a single compiler invocation, for compilers which accept several
+     * files at once (currently JacORB). Stale files are split into batches of similar estimated compile time.
+     *
+     * @parameter property="idlj.batchSize" default-value="1"
+     */
+    private int batchSize = 1;
+
+    /**
+     * The number of long-lived compiler worker JVMs to compile in, for compilers which can be forked. The workers
+     * are started on demand and reused for every file compiled in the Maven session, which avoids starting a JVM per
+     * file.
+     * The default of 0 runs the compiler in the usual way for the selected compiler.
+     *
+     * @parameter property="idlj.compilerWorkers" default-value="0"
+     */
+    private int compilerWorkers;
+
+    /**
+     * The number of compiles after which a compiler worker JVM is replaced by a fresh one, limiting the effect of
+     * any state the compiler accumulates. The default of 0 keeps each worker for the whole execution.
+     *
+     * @parameter property="idlj.compilerWorkerRecycleAfter" default-value="0"
+     */
+    private int compilerWorkerRecycleAfter;
+
+    /**
+     * The time in milliseconds a compiler worker JVM may take to compile a file or batch. A worker which takes longer
+     * is destroyed and the compile reported as failed, so that a hung worker cannot stall the build. 0 waits for as
+     * long as the compile takes.
+     *
+     * @parameter property="idlj.compilerWorkerTimeout" default-value="600000"
+     */
+    private long compilerWorkerTimeout = 600000;
+
+    /**
+     * The number of independent copies of the compiler with which to compile in-process. The compilers keep their
+     * state in static fields, so a single copy can only compile one file at a time; each additional copy is loaded by
+     * a class loader of its own and lets one more file compile in parallel, without forking. The default of 1 shares
+     * the compiler loaded by the plugin.
+     *
+     * @parameter property="idlj.compilerInstances" default-value="1"
+     */
+    private int compilerInstances = 1;
+
+    /**
+     * The number of compiles after which a class loader the plugin created for the compiler - for an isolated
+     * compiler instance, or to find the built-in compiler in <code>tools.jar</code> - is discarded, so that static
+     * state leaked by the compiler cannot keep growing over a long session. A discarded class loader is closed once
+     * no compile uses it. Compilers loaded by the plugin's own class loader, such as the Glassfish compiler, are not
+     * affected. The default of 0 keeps the class loaders until the end of the session.
+     *
+     * @parameter property="idlj.compilerRecycleAfter" default-value="0"
+     */
+    private int compilerRecycleAfter;
+
+    /**
+     * Whether to report, for every IDL file selected by the sources, why it is stale or fresh, and the estimated cost
+     * of compiling it. The report is logged before compiling, and always covers every file, even when the build digest
+     * shows that nothing has changed.
+     *
+     * @parameter property="idlj.explain" default-value="false"
+     */
+    private boolean explain;
+
+    /**
+     * Whether to publish, when an IDL file changes, only the generated files of the declarations which changed and of
+     * the declarations which refer to them. The other generated files are left untouched, so that downstream tools do
+     * not process them again, even though the compiler regenerated them. The whole file is still published when its
+     * includes, preprocessor directives or options change, or when it was not compiled this way before.
+     *
+     * @parameter property="idlj.incrementalDeclarations" default-value="false"
+     */
+    private boolean incrementalDeclarations;
+
+    /**
+     * Whether to keep the generated files in a cache shared by all builds on the machine, and to restore them from it
+     * instead of compiling when an IDL file is compiled again with the same contents, includes, options and compiler.
+     *
+     * @parameter property="idlj.useCache" default-value="false"
+     */
+    private boolean useCache;
+
+    /**
+     * The directory of the cache of generated files.
+     *
+     * @parameter property="idlj.cacheDirectory" default-value="${user.home}/.m2/idlj-cache"
+     */
+    private File cacheDirectory;
+
+    /**
+     * The size in megabytes above which the least recently used entries are deleted from the cache of generated
+     * files.
+     *
+     * @parameter property="idlj.cacheMaxSize" default-value="1024"
+     */
+    private long cacheMaxSize = 1024;
+
+    /**
+     * The URL of an HTTP server shared by several machines, which the cache of generated files fetches entries from
+     * with GET and uploads them to with PUT. Setting it enables the cache.
+     *
+     * @parameter property="idlj.remoteCacheUrl"
+     */
+    private String remoteCacheUrl;
+
+    /**
+     * Whether to only fetch entries from the remote cache, without uploading to it; for example in builds of
+     * untrusted changes.
+     *
+     * @parameter property="idlj.remoteCacheReadOnly" default-value="false"
+     */
+    private boolean remoteCacheReadOnly;
+
+    /**
+     * The connect and read timeout in milliseconds of the requests to the remote cache.
+     *
+     * @parameter property="idlj.remoteCacheTimeout" default-value="2000"
+     */
+    private int remoteCacheTimeout = 2000;
+
+    /**
+     * The start time of the Maven session, which identifies it: compiler class loaders are shared by the executions of
+     * a session and closed when a different one begins, or once no execution has run for a while.
+     *
+     * @parameter default-value="${session.startTime}"
+     * @readonly
+     */
+    private Date sessionStartTime;
+
+    /**
+     * The maximum number of IDL compiles to run at the same time across all executions of the plugin in the Maven
+     * session, such as those of different modules in a parallel build. Either a plain count, or a multiple of the number
+     * of available processors followed by "C". All executions should use the same value; the latest one applies.
+     *
+     * @parameter property="idlj.maxConcurrentCompiles" default-value="1C"
+     */
+    private String maxConcurrentCompiles;
+
+    /**
+     * The compilation resources shared by all executions in the session
+     */
+    private CompilationService compilationService;
+
+    /**
+     * The compiler, once some file has had to be compiled
+     */
+    private CompilerTranslator translator;
+
+    /**
+     * The compilers shared with the other modules of the reactor, keyed by the compiler setting, if this mojo
+     * compiles one module of the reactor
+     */
+    private Map<String, CompilerTranslator> sharedTranslators;
+
+    /**
+     * The mojo whose parameters hold the settings which are shared by all modules of the reactor: this mojo itself,
+     * or the mojo which aggregates the modules, if this mojo compiles one module of the reactor. The settings are
+     * read through this reference, so that a module cannot miss one when another is added. The settings which
+     * decide where the build state is kept and how it is compared, <code>timestampDirectory</code>,
+     * <code>staleCheck</code> and <code>staleMillis</code>, are read from this mojo, as each module has its own.
+     */
+    private AbstractIDLJMojo settings = this;
+
+    /**
+     * The <code>#include</code> dependencies of the compiled files
+     */
+    private IncludeGraph includeGraph;
+
+    /**
+     * The content hashes of the compiled files, if they are used to find the stale files
+     */
+    private ContentManifest contentManifest;
+
+    /**
+     * The files generated from each compiled file
+     */
+    private OutputManifest outputManifest;
+
+    /**
+     * The declarations of the compiled files, if only the generated files of changed declarations are published
+     */
+    private DeclarationManifest declarationManifest;
+
+    /**
+     * The keys of the compiles of the compiled files
+     */
+    private CompileKeys compileKeys;
+
+    /**
+     * The keys of the compiles of the main goal whose generated files are used instead of compiling the same files
+     */
+    private CompileKeys reusedKeys;
+
+    /**
+     * The keys of the compiles of the main goal, if its generated files are reused
+     */
+    private CompileKeys mainKeys;
+
+    /**
+     * The files generated by the main goal, if they are reused
+     */
+    private OutputManifest mainOutputManifest;
+
+    /**
+     * The files to compile whose own contents are not the only reason to compile them, relative to the source
+     * directory; all of their generated files are published
+     */
+    private Set<String> wholeFileChanges = new HashSet<>();
+
+    /**
+     * The reasons for which the files are stale or fresh, if they are explained
+     */
+    private StalenessReport staleness;
+
+    /**
+     * Moves the generated files from the staging directories to the output directory
+     */
+    private OutputPublisher outputPublisher;
+
+    /**
+     * The sizes and modification times of the compiled files
+     */
+    private BuildIndex buildIndex;
+
+    /**
+     * The cache of generated files, if it is used
+     */
+    private GeneratedSourceCache cache;
+
+    /**
+     * The cache keys of the files to compile which were not found in the cache
+     */
+    private final Map<File, String> cacheKeys = new ConcurrentHashMap<>();
+
+    /**
+     * The interface between this class and the rest of the world - unit tests replace the default implementation.
+     */
+    private DependenciesFacade dependencies;
+
+    /**
+     * The default implementation of the dependencies.
+     */
+    private static final DependenciesFacade DEPENDENCIES_FACADE = new DependenciesFacadeImpl();
+
+    private static final String STALE_CHECK_TIMESTAMP = "timestamp";
+
+    private static final String STALE_CHECK_CONTENT = "content";
+
+
+    /**
+     * Creates the abstract class using a production implementation of the dependencies.
+     */
+    protected AbstractIDLJMojo()
+    {
+        this( DEPENDENCIES_FACADE );
+    }
+
+    AbstractIDLJMojo( DependenciesFacade dependencies )
+    {
+        this.dependencies = dependencies;
+    }
+
+    /**
+     * @return the source directory that contains the IDL files
+     */
+    protected abstract File getSourceDirectory();
+
+    /**
+     * @return the <code>File[]</code> of the directories to use as include directories for the compilation
+     */
+    protected abstract File[] getIncludeDirs();
+
+    /**
+     * @return the path of the directory that will contains the results of the compilation
+     */
+    protected abstract File getOutputDirectory();
+
+    /**
+     * @return the output directory of the main goal, whose generated files are used instead of compiling the same
+     * files again, or <code>null</code> if none are reused
+     */
+    protected File getReusedOutputDirectory()
+    {
+        return null;
+    }
+
+    /**
+     * Configures this mojo to compile the idl files of one module of the reactor: the module's sources and compiler
+     * are used with the other settings of the mojo which aggregates the modules. The build state is kept in the
+     * default location of the module, with the stale check of the aggregating mojo, until
+     * {@link #configureBuildState(File, String, Integer)} applies those configured in the module.
+     *
+     * @param reactor        the mojo which aggregates the modules
+     * @param module         the module
+     * @param moduleSources  the sources configured in the module, or <code>null</code> for the default source
+     * @param moduleCompiler the compiler configured in the module, or <code>null</code> for the default compiler
+     * @param translators    the compilers shared by the modules, keyed by the compiler setting
+     */
+    void configureModule( AbstractIDLJMojo reactor, MavenProject module, List<Source> moduleSources,
+                          String moduleCompiler, Map<String, CompilerTranslator> translators )
+    {
+        project = module;
+        sources = moduleSources;
+        compiler = moduleCompiler;
+        timestampDirectory = new File( module.getBuild().getDirectory(), "idlj-timestamp" );
+        staleCheck = reactor.staleCheck;
+        staleMillis = reactor.staleMillis;
+        sharedTranslators = translators;
+        settings = reactor.settings;
+        dependencies = reactor.dependencies;
+        setLog( reactor.getLog() );
+    }
+
+    /**
+     * Applies the build state location and stale check configured in the module of the reactor which this mojo
+     * compiles, so that the build digest and index it records are those the module's own <code>generate</code> goal
+     * expects.
+     *
+     * @param moduleTimestampDirectory the timestamp directory of the module, or <code>null</code> for the default
+     * @param moduleStaleCheck         the stale check of the module, or <code>null</code> for that of the mojo
+     *                                 which aggregates the modules
+     * @param moduleStaleMillis        the modification time granularity of the module, or <code>null</code> for
+     *                                 that of the mojo which aggregates the modules
+     */
+    void configureBuildState( File moduleTimestampDirectory, String moduleStaleCheck, Integer moduleStaleMillis )
+    {
+        if ( moduleTimestampDirectory != null )
+        {
+            timestampDirectory = moduleTimestampDirectory;
+        }
+        if ( moduleStaleCheck != null )
+        {
+            staleCheck = moduleStaleCheck;
+        }
+        if ( moduleStaleMillis != null )
+        {
+            staleMillis = moduleStaleMillis;
+        }
+    }
+
+    /**
+     * Execute the goal of the MOJO that is: compiling the IDL files
+     *
+     * @throws MojoExecutionException if the compilation fails or the compiler crashes
+     */
+    public void execute() throws MojoExecutionException
+    {
+        CompilationService.executionStarted();
+        try
+        {
+            prepare();
+            generate();
+        }
+        finally
+        {
+            CompilationService.executionFinished();
+        }
+    }
+
+    /**
+     * Starts the compilation service and prepares the output and timestamp directories.
+     *
+     * @throws MojoExecutionException if the output directory cannot be written
+     */
+    void prepare() throws MojoExecutionException
+    {
+        startCompilationService();
+        prepareGeneratedSourceDirectory( getOutputDirectory() );
+    }
+
+    /**
+     * Compiles the idl files which are stale, and records the build state for the next run. If the build digest shows
+     * that no input has changed since the last successful run, and none of the generated files recorded by the output
+     * manifests is missing, returns at once; the compiler is only loaded when some file must actually be compiled.
+     *
+     * @throws MojoExecutionException if the compilation fails
+     */
+    void generate() throws MojoExecutionException
+    {
+        List<Source> sourceList = getConfiguredSources();
+        String digest = computeBuildDigest( sourceList );
+        if ( digest != null && digest.equals( loadBuildDigest() ) && !settings.explain && !isAnyOutputMissing() )
+        {
+            getLog().info( "Nothing to compile - all idl files are up to date" );
+            saveChangedFilesList( Collections.<CompileTask>emptyList() );
+            return;
+        }
+        saveBuildDigest( null );
+        build( sourceList, null );
+        saveBuildDigest( digest );
+    }
+
+    /**
+     * Compiles the stale files among those which have changed, and the files which include them, without walking the
+     * source and include directories. Falls back to {@link #generate()} when a file or directory has been removed, or
+     * when the options of a source have changed, as those may affect files which have not changed themselves. The
+     * files in a new directory are expected to be reported along with it. The build digest is cleared, so that the
+     * next full build checks every file.
+     *
+     * @param changedPaths the files and directories reported changed since the last build
+     * @throws MojoExecutionException if the compilation fails
+     */
+    void generate( Set<File> changedPaths ) throws MojoExecutionException
+    {
+        Set<File> changedFiles = new TreeSet<>();
+        for ( File changedPath : changedPaths )
+        {
+            if ( !dependencies.exists( changedPath ) )
+            {
+                generate();
+                return;
+            }
+            if ( !dependencies.isDirectory( changedPath ) )
+            {
+                changedFiles.add( changedPath );
+            }
+        }
+        saveBuildDigest( null );
+        build( getConfiguredSources(), changedFiles );
+    }
+
+    /**
+     * Compiles the stale files and records the build state.
+     *
+     * @param sourceList   the configured sources
+     * @param changedFiles the files known to have changed, or null to look for the stale files in the whole source tree
+     * @throws MojoExecutionException if the compilation fails
+     */
+    private void build( List<Source> sourceList, Set<File> changedFiles ) throws MojoExecutionException
+    {
+        CompileHistory history = loadCompileHistory();
+        loadBuildState( settings.explain, false );
+        outputPublisher = new OutputPublisher( getBuildStateFile( "staging" ), getOutputDirectory(), dependencies );
+        SourceFingerprints fingerprints = computeFingerprints( sourceList );
+        List<Integer> changedSources = fingerprints.findChanged( sourceList, loadFingerprints() );
+        if ( changedFiles != null && !changedSources.isEmpty() )
+        {
+            changedFiles = null;
+        }
+        List<CompileTask> plannedTasks = changedFiles == null ? planCompilation( sourceList, changedSources )
+                        : planChangedFiles( sourceList, changedFiles );
+        estimateCompileTimes( plannedTasks, history );
+        List<CompileTask> unreusedTasks = reuseMainOutputs( plannedTasks, true );
+        reportStaleness( sourceList, unreusedTasks, history );
+        reportProcessingNeeded( unreusedTasks );
+        startCache();
+        List<CompileTask> tasks = restoreFromCache( unreusedTasks, sourceList, fingerprints );
+        try
+        {
+            if ( !tasks.isEmpty() )
+            {
+                CompilerTranslator translator = getTranslator();
+                tasks = createBatches( tasks, translator );
+                assignWorkerPool( tasks, translator );
+                assignInstancePool( tasks, translator );
+                compile( tasks, translator );
+            }
+            if ( !changedSources.isEmpty() )
+            {
+                saveFingerprints( fingerprints );
+            }
+        }
+        finally
+        {
+            if ( changedFiles == null )
+            {
+                forgetRemovedIdlFiles( history, sourceList );
+            }
+            saveCompileHistory( tasks, history );
+            saveIncludeGraph( plannedTasks );
+            saveContentManifest();
+            if ( changedFiles == null )
+            {
+                forgetRemovedIdlFiles( sourceList );
+            }
+            saveOutputManifest();
+            saveDeclarationManifest();
+            saveCompileKeys();
+            compactBuildIndex();
+            saveChangedFilesList( plannedTasks );
+            finishCache();
+        }
+    }
+
+    /**
+     * Reports why each idl file is stale or fresh, and the estimated cost of compiling it, without compiling anything.
+     * The build state is only read: the build index is neither migrated nor rewritten.
+     *
+     * @throws MojoExecutionException if the configuration is invalid
+     */
+    void explain() throws MojoExecutionException
+    {
+        List<Source> sourceList = getConfiguredSources();
+        String digest = computeBuildDigest( sourceList );
+        if ( digest != null && digest.equals( loadBuildDigest() ) )
+        {
+            getLog().info( "The build digest is unchanged: the next build will not compile anything" );
+        }
+
+        CompileHistory history = loadCompileHistory();
+        loadBuildState( true, true );
+        List<Integer> changedSources = computeFingerprints( sourceList ).findChanged( sourceList, loadFingerprints() );
+        List<CompileTask> plannedTasks = planCompilation( sourceList, changedSources );
+        estimateCompileTimes( plannedTasks, history );
+        reportStaleness( sourceList, reuseMainOutputs( plannedTasks, false ), history );
+    }
+
+    /**
+     * Reads the state recorded by the previous builds.
+     *
+     * @param explaining whether to collect the reasons for which files are stale or fresh
+     * @param readOnly   whether to leave the saved state as it is, rather than preparing it for the compiles
+     * @throws MojoExecutionException if the configured stale check is invalid
+     */
+    private void loadBuildState( boolean explaining, boolean readOnly ) throws MojoExecutionException
+    {
+        buildIndex = loadBuildIndex( readOnly );
+        includeGraph = loadIncludeGraph();
+        contentManifest = loadContentManifest();
+        if ( contentManifest != null )
+        {
+            includeGraph.useContentHashes( contentManifest );
+        }
+        outputManifest = loadOutputManifest( getOutputManifestFile() );
+        declarationManifest = loadDeclarationManifest();
+        compileKeys = loadCompileKeys( getCompileKeysFile() );
+        reusedKeys = loadCompileKeys( getReusedKeysFile() );
+        boolean reusing = getReusedOutputDirectory() != null;
+        mainKeys = reusing ? loadCompileKeys( getMainBuildStateFile( "keys.properties" ) ) : null;
+        mainOutputManifest = reusing ? loadOutputManifest( getMainBuildStateFile( "outputs.properties" ) ) : null;
+        wholeFileChanges = new HashSet<>();
+        staleness = explaining ? new StalenessReport() : null;
+    }
+
+    /**
+     * Logs, if requested, why each file selected by the sources is stale or fresh, and the estimated cost of
+     * compiling it.
+     *
+     * @param sourceList   the configured sources
+     * @param plannedTasks the files planned for compilation
+     * @param history      the recorded compile times
+     * @throws MojoExecutionException if the source directory cannot be scanned
+     */
+    private void reportStaleness( List<Source> sourceList, List<CompileTask> plannedTasks, CompileHistory history )
+            throws MojoExecutionException
+    {
+        if ( staleness == null )
+        {
+            return;
+        }
+
+        Map<String, Long> estimates = new HashMap<>();
+        for ( File idlFile : getStaleSources( createIdlScanner( sourceList, true ), getSourceDirectory() ) )
+        {
+            String path = getRelativePath( idlFile );
+            estimates.put( path, history.estimateMillis( path, dependencies.length( idlFile ) ) );
+        }
+        Set<String> planned = new HashSet<>();
+        for ( CompileTask task : plannedTasks )
+        {
+            String path = getRelativePath( task.getIdlFile() );
+            planned.add( path );
+            estimates.put( path, task.getEstimatedMillis() );
+        }
+
+        getLog().info( "Staleness of the idl files in " + getSourceDirectory() + ":" );
+        for ( String line : staleness.describe( estimates, planned ) )
+        {
+            getLog().info( "  " + line );
+        }
+    }
+
+    /**
+     * Records a reason for which a file is stale, if the reasons are explained.
+     *
+     * @param idlFile the stale file
+     * @param reason  the reason
+     */
+    private void explainStale( File idlFile, String reason )
+    {
+        if ( staleness != null )
+        {
+            staleness.stale( getRelativePath( idlFile ), reason );
+        }
+    }
+
+    private void prepareGeneratedSourceDirectory( File directory ) throws MojoExecutionException
+    {
+        createIfAbsent( directory );
+        failIfNotWriteable( directory );
+        addCompileSourceRoot( directory );
+    }
+
+    private boolean isSourceSpecified()
+    {
+        return sources != null;
+    }
+
+    /**
+     * @return the configured sources, or a single default source if none were configured
+     */
+    private List<Source> getConfiguredSources()
+    {
+        return isSourceSpecified() ? sources : Collections.singletonList( new Source() );
+    }
+
+    /**
+     * @return a prefix which keeps the build state of this goal apart from that of other goals sharing the timestamp
+     * directory
+     */
+    protected String getBuildStatePrefix()
+    {
+        return "";
+    }
+
+    /**
+     * @param suffix distinguishes the file from the other build state files
+     * @return a file next to the timestamp directory in which to keep build state
+     */
+    private File getBuildStateFile( String suffix )
+    {
+        return new File( timestampDirectory.getAbsoluteFile().getParentFile(),
+                         timestampDirectory.getName() + "-" + getBuildStatePrefix() + suffix );
+    }
+
+    /**
+     * @param suffix distinguishes the file from the other build state files
+     * @return a file in which the main goal keeps build state, if it shares the timestamp directory
+     */
+    private File getMainBuildStateFile( String suffix )
+    {
+        return new File( timestampDirectory.getAbsoluteFile().getParentFile(),
+                         timestampDirectory.getName() + "-" + suffix );
+    }
+
+    private File getCompileHistoryFile()
+    {
+        return getBuildStateFile( "durations.properties" );
+    }
+
+    private CompileHistory loadCompileHistory()
+    {
+        File historyFile = getCompileHistoryFile();
+        try
+        {
+            if ( dependencies.exists( historyFile ) )
+            {
+                return CompileHistory.fromBytes( dependencies.readFile( historyFile ) );
+            }
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Unable to read compile history " + historyFile + ": " + e );
+        }
+        return new CompileHistory();
+    }
+
+    private File getBuildIndexFile()
+    {
+        return getBuildStateFile( "index.bin" );
+    }
+
+    /**
+     * Reads the build index, creating it from the timestamp directory of earlier versions if there is none yet. A new
+     * or bloated index, or one which ends with a truncated record, is rewritten at once, so that the records which
+     * compiles append to it can be read back. The index, like every file the build hashes, is read onto the heap
+     * rather than mapped, as a file which is still mapped stays locked on Windows until it is garbage collected.
+     *
+     * @param readOnly whether to leave the saved index and the timestamp directory as they are
+     * @return the index
+     */
+    private BuildIndex loadBuildIndex( boolean readOnly )
+    {
+        File indexFile = getBuildIndexFile();
+        try
+        {
+            if ( dependencies.exists( indexFile ) )
+            {
+                byte[] saved = dependencies.readFile( indexFile );
+                BuildIndex index = BuildIndex.read( ByteBuffer.wrap( saved ) );
+                if ( !readOnly && ( index.needsCompaction() || index.getValidLength() < saved.length ) )
+                {
+                    writeBuildIndex( index );
+                }
+                return index;
+            }
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Unable to read build index " + indexFile + ": " + e );
+        }
+
+        BuildIndex index = indexTimestampDirectory();
+        if ( !readOnly )
+        {
+            writeBuildIndex( index );
+            deleteTimestampDirectory();
+        }
+        return index;
+    }
+
+    /**
+     * Creates a build index from the copies of the compiled files kept in the timestamp directory by earlier versions.
+     * A file is recorded as compiled if its copy is not older than the file.
+     *
+     * @return the index
+     */
+    private BuildIndex indexTimestampDirectory()
+    {
+        BuildIndex index = new BuildIndex();
+        if ( !isExistingDirectory( timestampDirectory ) )
+        {
+            return index;
+        }
+
+        try
+        {
+            for ( Map.Entry<String, Long> copy : dependencies.getModificationTimes( timestampDirectory ).entrySet() )
+            {
+                File idlFile = new File( getSourceDirectory(), copy.getKey() );
+                if ( dependencies.exists( idlFile )
+                        && dependencies.lastModified( idlFile ) <= copy.getValue() + staleMillis )
+                {
+                    index.record( copy.getKey(), dependencies.length( idlFile ), dependencies.lastModified( idlFile ) );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to read the timestamp directory " + timestampDirectory + ": " + e );
+        }
+        return index;
+    }
+
+    /**
+     * Deletes the timestamp directory of earlier versions, once the build index has been created from it.
+     */
+    private void deleteTimestampDirectory()
+    {
+        if ( !isExistingDirectory( timestampDirectory ) )
+        {
+            return;
+        }
+
+        try
+        {
+            dependencies.deleteDirectory( timestampDirectory );
+            getLog().info( "Migrated " + timestampDirectory + " to the build index " + getBuildIndexFile() );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to migrate the timestamp directory " + timestampDirectory + ": " + e );
+        }
+    }
+
+    private void writeBuildIndex( BuildIndex index )
+    {
+        File indexFile = getBuildIndexFile();
+        try
+        {
+            dependencies.writeFile( indexFile, index.toBytes() );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to save build index to " + indexFile + ": " + e );
+        }
+    }
+
+    /**
+     * Appends a record to the saved build index. Compiles running in parallel append their records one at a time.
+     *
+     * @param record the record, or null if there is nothing to record
+     */
+    private synchronized void appendToBuildIndex( byte[] record )
+    {
+        if ( record == null )
+        {
+            return;
+        }
+
+        File indexFile = getBuildIndexFile();
+        try
+        {
+            dependencies.appendToFile( indexFile, record );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to update build index " + indexFile + ": " + e );
+        }
+    }
+
+    private void compactBuildIndex()
+    {
+        if ( buildIndex.needsCompaction() )
+        {
+            writeBuildIndex( buildIndex );
+        }
+    }
+
+    private File getIncludeGraphFile()
+    {
+        return getBuildStateFile( "includes.bin" );
+    }
+
+    private IncludeGraph loadIncludeGraph()
+    {
+        File graphFile = getIncludeGraphFile();
+        try
+        {
+            if ( dependencies.exists( graphFile ) )
+            {
+                return IncludeGraph.fromBytes( dependencies.readFile( graphFile ), getIncludeSearchPath(),
+                                               dependencies );
+            }
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Unable to read include graph " + graphFile + ": " + e );
+        }
+        return new IncludeGraph( getIncludeSearchPath(), dependencies );
+    }
+
+    private List<File> getIncludeSearchPath()
+    {
+        List<File> searchPath = new ArrayList<>();
+        if ( getIncludeDirs() != null )
+        {
+            Collections.addAll( searchPath, getIncludeDirs() );
+        }
+        return searchPath;
+    }
+
+    private void saveIncludeGraph( List<CompileTask> tasks )
+    {
+        if ( tasks.isEmpty() )
+        {
+            return;
+        }
+
+        File graphFile = getIncludeGraphFile();
+        try
+        {
+            dependencies.writeFile( graphFile, includeGraph.toBytes() );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to save include graph to " + graphFile + ": " + e );
+        }
+    }
+
+    private File getBuildDigestFile()
+    {
+        return getBuildStateFile( "digest.txt" );
+    }
+
+    /**
+     * Computes the digest of the configuration and of the listings of the source and include directories, with the
+     * modification time and length of each file. The output directories are left out; {@link #isAnyOutputMissing()}
+     * checks the files recorded in the output manifests instead. The digest saved after a build is the one computed
+     * before it, so that a file edited while the build runs is seen as changed by the next build.
+     *
+     * @param sourceList the configured sources
+     * @return the digest, or <code>null</code> if a directory cannot be listed
+     * @throws MojoExecutionException if the configured compiler is not supported
+     */
+    private String computeBuildDigest( List<Source> sourceList ) throws MojoExecutionException
+    {
+        SourceFingerprints fingerprints = computeFingerprints( sourceList );
+        BuildDigest digest = new BuildDigest();
+        digest.add( "staleCheck", staleCheck ).add( "staleMillis", staleMillis );
+        for ( int i = 0; i < sourceList.size(); i++ )
+        {
+            digest.add( "source", fingerprints.get( i ) );
+        }
+        try
+        {
+            digest.addTree( getSourceDirectory().getAbsolutePath(), dependencies.getFileStamps( getSourceDirectory() ) );
+            if ( getIncludeDirs() != null )
+            {
+                for ( File includeDir : getIncludeDirs() )
+                {
+                    digest.addTree( includeDir.getAbsolutePath(), dependencies.getFileStamps( includeDir ) );
+                }
+            }
+            if ( getReusedOutputDirectory() != null )
+            {
+                File mainKeysFile = getMainBuildStateFile( "keys.properties" );
+                digest.add( "mainKeys", dependencies.exists( mainKeysFile )
+                                ? ContentManifest.hash( ByteBuffer.wrap( dependencies.readFile( mainKeysFile ) ) )
+                                : null );
+            }
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Unable to compute the build digest: " + e );
+            return null;
+        }
+        return digest.compute();
+    }
+
+    /**
+     * Checks that the files generated by the last build are still in place, as the build digest does not cover the
+     * output directories. Only the files recorded in the output manifests are looked at, rather than whole trees.
+     *
+     * @return true if a generated file, or a file generated by the main goal and reused, is missing
+     */
+    private boolean isAnyOutputMissing()
+    {
+        outputManifest = loadOutputManifest( getOutputManifestFile() );
+        for ( String idlPath : outputManifest.getIdlFiles() )
+        {
+            if ( findMissingOutput( idlPath ) != null )
+            {
+                return true;
+            }
+        }
+
+        if ( getReusedOutputDirectory() != null )
+        {
+            mainOutputManifest = loadOutputManifest( getMainBuildStateFile( "outputs.properties" ) );
+            for ( String idlPath : loadCompileKeys( getReusedKeysFile() ).getIdlFiles() )
+            {
+                if ( findMissingMainOutput( idlPath ) != null )
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private String loadBuildDigest()
+    {
+        File digestFile = getBuildDigestFile();
+        try
+        {
+            if ( dependencies.exists( digestFile ) )
+            {
+                return new String( dependencies.readFile( digestFile ), StandardCharsets.UTF_8 );
+            }
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Unable to read build digest " + digestFile + ": " + e );
+        }
+        return null;
+    }
+
+    private void saveBuildDigest( String digest )
+    {
+        File digestFile = getBuildDigestFile();
+        try
+        {
+            if ( digest == null )
+            {
+                dependencies.deleteFile( digestFile );
+            }
+            else
+            {
+                dependencies.writeFile( digestFile, digest.getBytes( StandardCharsets.UTF_8 ) );
+            }
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to save build digest to " + digestFile + ": " + e );
+        }
+    }
+
+    private File getFingerprintsFile()
+    {
+        return getBuildStateFile( "fingerprints.properties" );
+    }
+
+    private SourceFingerprints computeFingerprints( List<Source> sourceList ) throws MojoExecutionException
+    {
+        return SourceFingerprints.compute( sourceList, getCompilerDescription() );
+    }
+
+    /**
+     * @return a description of the configured compiler, which changes with its type and version
+     * @throws MojoExecutionException if the configured compiler is not supported
+     */
+    private String getCompilerDescription() throws MojoExecutionException
+    {
+        TranslatorType type = TranslatorType.selectType( compiler );
+        return type + " " + type.getCompilerVersion();
+    }
+
+    private SourceFingerprints loadFingerprints()
+    {
+        File fingerprintsFile = getFingerprintsFile();
+        try
+        {
+            if ( dependencies.exists( fingerprintsFile ) )
+            {
+                return SourceFingerprints.fromBytes( dependencies.readFile( fingerprintsFile ) );
+            }
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Unable to read source fingerprints " + fingerprintsFile + ": " + e );
+        }
+        return new SourceFingerprints();
+    }
+
+    private void saveFingerprints( SourceFingerprints fingerprints )
+    {
+        File fingerprintsFile = getFingerprintsFile();
+        try
+        {
+            dependencies.writeFile( fingerprintsFile, fingerprints.toBytes() );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to save source fingerprints to " + fingerprintsFile + ": " + e );
+        }
+    }
+
+    private File getOutputManifestFile()
+    {
+        return getBuildStateFile( "outputs.properties" );
+    }
+
+    private OutputManifest loadOutputManifest( File manifestFile )
+    {
+        try
+        {
+            if ( dependencies.exists( manifestFile ) )
+            {
+                return OutputManifest.fromBytes( dependencies.readFile( manifestFile ) );
+            }
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Unable to read output manifest " + manifestFile + ": " + e );
+        }
+        return new OutputManifest();
+    }
+
+    private void saveOutputManifest()
+    {
+        if ( !outputManifest.isModified() )
+        {
+            return;
+        }
+
+        File manifestFile = getOutputManifestFile();
+        try
+        {
+            dependencies.writeFile( manifestFile, outputManifest.toBytes() );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to save output manifest to " + manifestFile + ": " + e );
+        }
+    }
+
+    private File getCompileKeysFile()
+    {
+        return getBuildStateFile( "keys.properties" );
+    }
+
+    private File getReusedKeysFile()
+    {
+        return getBuildStateFile( "reused.properties" );
+    }
+
+    private CompileKeys loadCompileKeys( File keysFile )
+    {
+        try
+        {
+            if ( dependencies.exists( keysFile ) )
+            {
+                return CompileKeys.fromBytes( dependencies.readFile( keysFile ) );
+            }
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Unable to read compile keys " + keysFile + ": " + e );
+        }
+        return new CompileKeys();
+    }
+
+    private void saveCompileKeys()
+    {
+        saveCompileKeys( compileKeys, getCompileKeysFile() );
+        saveCompileKeys( reusedKeys, getReusedKeysFile() );
+    }
+
+    private void saveCompileKeys( CompileKeys keys, File keysFile )
+    {
+        if ( !keys.isModified() )
+        {
+            return;
+        }
+
+        try
+        {
+            dependencies.writeFile( keysFile, keys.toBytes() );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to save compile keys to " + keysFile + ": " + e );
+        }
+    }
+
+    /**
+     * Deletes the generated files of the IDL files which have been deleted or are no longer selected by any source,
+     * unless other IDL files generate them as well.
+     *
+     * @param sourceList the configured sources
+     */
+    private void forgetRemovedIdlFiles( List<Source> sourceList )
+    {
+        for ( String idlFile : buildIndex.getPaths() )
+        {
+            if ( !dependencies.exists( new File( getSourceDirectory(), idlFile ) ) )
+            {
+                appendToBuildIndex( buildIndex.remove( idlFile ) );
+            }
+        }
+        for ( String idlFile : outputManifest.getIdlFiles() )
+        {
+            if ( !dependencies.exists( new File( getSourceDirectory(), idlFile ) )
+                    || selectSource( sourceList, idlFile ) == null )
+            {
+                getLog().debug( "Removing the generated files of " + idlFile );
+                deleteGeneratedFiles( outputManifest.forget( idlFile ) );
+                if ( declarationManifest != null )
+                {
+                    declarationManifest.forget( idlFile );
+                }
+            }
+        }
+        forgetRemovedIdlFiles( compileKeys, sourceList );
+        forgetRemovedIdlFiles( reusedKeys, sourceList );
+    }
+
+    private void forgetRemovedIdlFiles( CompileHistory history, List<Source> sourceList )
+    {
+        for ( String idlFile : history.getIdlFiles() )
+        {
+            if ( !dependencies.exists( new File( getSourceDirectory(), idlFile ) )
+                    || selectSource( sourceList, idlFile ) == null )
+            {
+                history.forget( idlFile );
+            }
+        }
+    }
+
+    private void forgetRemovedIdlFiles( CompileKeys keys, List<Source> sourceList )
+    {
+        for ( String idlFile : keys.getIdlFiles() )
+        {
+            if ( !dependencies.exists( new File( getSourceDirectory(), idlFile ) )
+                    || selectSource( sourceList, idlFile ) == null )
+            {
+                keys.forget( idlFile );
+            }
+        }
+    }
+
+    /**
+     * @return an empty directory for a compile to write the generated files into
+     * @throws MojoExecutionException if the directory cannot be created
+     */
+    private File createStagingDirectory() throws MojoExecutionException
+    {
+        try
+        {
+            return outputPublisher.createStagingDirectory();
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Unable to create a staging directory for the generated files", e );
+        }
+    }
+
+    /**
+     * Publishes the files generated by a compile to the output directory, records them as generated by the compiled
+     * files, and deletes the files those generated before but no longer do.
+     *
+     * @param idlFiles         the compiled files
+     * @param stagingDirectory the directory the compiler wrote the generated files into
+     * @throws MojoExecutionException if the generated files cannot be published
+     */
+    private void publishGeneratedFiles( List<File> idlFiles, File stagingDirectory ) throws MojoExecutionException
+    {
+        Map<String, byte[]> generated;
+        try
+        {
+            generated = outputPublisher.collect( stagingDirectory );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to read the generated files in " + stagingDirectory, e );
+        }
+
+        if ( idlFiles.size() == 1 )
+        {
+            storeInCache( idlFiles.get( 0 ), generated );
+        }
+        publishGeneratedFiles( idlFiles, generated );
+    }
+
+    /**
+     * Publishes generated files to the output directory, records them as generated by the compiled files, and
+     * deletes the files those generated before but no longer do.
+     *
+     * @param idlFiles  the compiled files
+     * @param generated the generated files, keyed by their paths relative to the output directory
+     * @throws MojoExecutionException if the generated files cannot be published
+     */
+    private void publishGeneratedFiles( List<File> idlFiles, Map<String, byte[]> generated )
+            throws MojoExecutionException
+    {
+        Map<String, byte[]> changed = idlFiles.size() == 1 ? selectChangedFiles( idlFiles.get( 0 ), generated )
+                        : generated;
+        try
+        {
+            outputPublisher.publish( changed );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to publish the generated files to " + getOutputDirectory(), e );
+        }
+
+        for ( File idlFile : idlFiles )
+        {
+            deleteGeneratedFiles( outputManifest.record( getRelativePath( idlFile ), generated.keySet() ) );
+        }
+    }
+
+    /**
+     * Selects the generated files to publish for a compiled file: those of the declarations which changed since it
+     * was last compiled, and of the declarations which refer to them, as well as any file missing from the output
+     * directory. Selects all the files unless declarations are compared, or the whole file must be published.
+     *
+     * @param idlFile   the compiled file
+     * @param generated the files generated from it, keyed by their paths relative to the output directory
+     * @return the files to publish
+     */
+    private Map<String, byte[]> selectChangedFiles( File idlFile, Map<String, byte[]> generated )
+    {
+        if ( declarationManifest == null )
+        {
+            return generated;
+        }
+
+        String idlPath = getRelativePath( idlFile );
+        IdlDeclarations declarations;
+        try
+        {
+            declarations = IdlDeclarations.parse(
+                new String( dependencies.readFile( idlFile ), StandardCharsets.ISO_8859_1 ) );
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Unable to read the declarations of " + idlFile + ": " + e );
+            declarationManifest.forget( idlPath );
+            return generated;
+        }
+
+        Set<String> affected = wholeFileChanges.contains( idlPath ) ? null
+                        : declarations.findAffected( declarationManifest.get( idlPath ) );
+        declarationManifest.record( idlPath, declarations.getHashes() );
+        if ( affected == null )
+        {
+            return generated;
+        }
+
+        Map<String, byte[]> selected = new TreeMap<>();
+        for ( Map.Entry<String, byte[]> entry : generated.entrySet() )
+        {
+            if ( declarations.isAffected( entry.getKey(), affected )
+                || !dependencies.exists( new File( getOutputDirectory(), entry.getKey() ) ) )
+            {
+                selected.put( entry.getKey(), entry.getValue() );
+            }
+        }
+        getLog().debug( "Publishing " + selected.size() + " of the " + generated.size() + " files generated from "
+                            + idlFile + " for the changed declarations " + affected );
+        return selected;
+    }
+
+    private void startCache()
+    {
+        cacheKeys.clear();
+        if ( !settings.useCache && settings.remoteCacheUrl == null )
+        {
+            cache = null;
+            return;
+        }
+
+        RemoteCache remote = settings.remoteCacheUrl == null ? null
+                        : new RemoteCache( settings.remoteCacheUrl, settings.remoteCacheTimeout,
+                                           settings.remoteCacheReadOnly, getLog() );
+        cache = new GeneratedSourceCache( settings.cacheDirectory, settings.cacheMaxSize * 1024 * 1024, dependencies,
+                                          remote );
+    }
+
+    /**
+     * Computes the key under which the files generated from a file are cached. It combines the fingerprint of the
+     * source which compiles the file, which covers the options and the compiler, with the path and the contents of
+     * the file and the contents of the files it includes.
+     *
+     * @param task         the compile of a single file
+     * @param sourceList   the configured sources
+     * @param fingerprints the fingerprints of the sources
+     * @return the key, or null if one of the files cannot be read
+     */
+    private String computeCacheKey( CompileTask task, List<Source> sourceList, SourceFingerprints fingerprints )
+    {
+        File idlFile = task.getIdlFile();
+        try
+        {
+            return computeFileKey( idlFile, fingerprints.get( sourceList.indexOf( task.getSource() ) ) );
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Unable to compute the cache key of " + idlFile + ": " + e );
+            return null;
+        }
+    }
+
+    /**
+     * Computes the key of the compile of a file by a source. It combines the fingerprint of the options of the
+     * source and the compiler with the path and the contents of the file and the contents of the files it includes.
+     *
+     * @param idlFile the compiled file
+     * @param source  the source which compiles it
+     * @return the key, or null if one of the files cannot be read
+     * @throws MojoExecutionException if the configured compiler is not supported
+     */
+    private String computeCompileKey( File idlFile, Source source ) throws MojoExecutionException
+    {
+        try
+        {
+            return computeFileKey( idlFile, SourceFingerprints.computeOptionsFingerprint( source,
+                                                                                         getCompilerDescription() ) );
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Unable to compute the compile key of " + idlFile + ": " + e );
+            return null;
+        }
+    }
+
+    private String computeFileKey( File idlFile, String fingerprint ) throws IOException
+    {
+        List<String> includedHashes = new ArrayList<>();
+        for ( File includedFile : includeGraph.getIncludedFiles( idlFile ) )
+        {
+            if ( dependencies.exists( includedFile ) )
+            {
+                includedHashes.add( ContentManifest.hash( ByteBuffer.wrap( dependencies.readFile( includedFile ) ) ) );
+            }
+        }
+        Collections.sort( includedHashes );
+
+        StringBuilder key = new StringBuilder( fingerprint );
+        key.append( '\n' ).append( getRelativePath( idlFile ) );
+        key.append( '\n' ).append( ContentManifest.hash( ByteBuffer.wrap( dependencies.readFile( idlFile ) ) ) );
+        for ( String includedHash : includedHashes )
+        {
+            key.append( '\n' ).append( includedHash );
+        }
+        return ContentManifest.hash( ByteBuffer.wrap( key.toString().getBytes( StandardCharsets.UTF_8 ) ) );
+    }
+
+    /**
+     * Takes the planned files which the main goal has compiled with the same key, and whose generated files are all
+     * in its output directory, out of the compilation: the main goal's output directory is already a compile source
+     * root, so the files it generated are used instead of generating them again.
+     *
+     * @param tasks the planned compiles, each of a single file
+     * @param apply whether to record the files as up to date, or only to explain why they need not be compiled
+     * @return the compiles which must still be run
+     * @throws MojoExecutionException if the configured compiler is not supported
+     */
+    private List<CompileTask> reuseMainOutputs( List<CompileTask> tasks, boolean apply ) throws MojoExecutionException
+    {
+        if ( mainKeys == null )
+        {
+            return tasks;
+        }
+
+        List<CompileTask> remaining = new ArrayList<>();
+        int reused = 0;
+        for ( CompileTask task : tasks )
+        {
+            File idlFile = task.getIdlFile();
+            String idlPath = getRelativePath( idlFile );
+            String mainKey = mainKeys.get( idlPath );
+            if ( mainKey != null && findMissingMainOutput( idlPath ) == null
+                && mainKey.equals( computeCompileKey( idlFile, task.getSource() ) ) )
+            {
+                reused++;
+                if ( staleness != null )
+                {
+                    staleness.fresh( idlPath, "the main goal has generated the same files" );
+                }
+                if ( apply )
+                {
+                    markReused( idlFile, mainKey );
+                }
+            }
+            else
+            {
+                remaining.add( task );
+            }
+        }
+        if ( apply && reused > 0 )
+        {
+            getLog().info( "Using the files generated by the main goal for " + reused + " idl files" );
+        }
+        return remaining;
+    }
+
+    /**
+     * Records that a file uses the files generated by the main goal, and deletes the files this goal generated from
+     * it before.
+     *
+     * @param idlFile the file
+     * @param mainKey the key of the main goal's compile of the file
+     */
+    private void markReused( File idlFile, String mainKey )
+    {
+        String idlPath = getRelativePath( idlFile );
+        appendToBuildIndex( buildIndex.record( idlPath, dependencies.length( idlFile ),
+                                               dependencies.lastModified( idlFile ) ) );
+        recordCompiled( idlFile );
+        compileKeys.forget( idlPath );
+        reusedKeys.record( idlPath, mainKey );
+        deleteGeneratedFiles( outputManifest.forget( idlPath ) );
+        if ( declarationManifest != null )
+        {
+            declarationManifest.forget( idlPath );
+        }
+    }
+
+    /**
+     * @return a file generated by the main goal from an idl file which is missing from its output directory, or
+     * <code>null</code>
+     */
+    private String findMissingMainOutput( String idlPath )
+    {
+        for ( String generatedFile : mainOutputManifest.getOutputs( idlPath ) )
+        {
+            if ( !dependencies.exists( new File( getReusedOutputDirectory(), generatedFile ) ) )
+            {
+                return generatedFile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Restores the generated files of the planned files which are found in the cache.
+     *
+     * @param tasks        the planned compiles, each of a single file
+     * @param sourceList   the configured sources
+     * @param fingerprints the fingerprints of the sources
+     * @return the compiles which must still be run
+     * @throws MojoExecutionException if restored files cannot be published
+     */
+    private List<CompileTask> restoreFromCache( List<CompileTask> tasks, List<Source> sourceList,
+                                                SourceFingerprints fingerprints )
+            throws MojoExecutionException
+    {
+        if ( cache == null )
+        {
+            return tasks;
+        }
+
+        List<CompileTask> remaining = new ArrayList<>();
+        for ( CompileTask task : tasks )
+        {
+            String key = computeCacheKey( task, sourceList, fingerprints );
+            Map<String, byte[]> generated = key == null ? null : cache.fetch( key );
+            if ( generated != null )
+            {
+                getLog().debug( "Restoring the files generated from " + task.getIdlFile() + " from the cache" );
+                publishGeneratedFiles( task.getIdlFiles(), generated );
+                markCompiled( task.getIdlFile(), task.getSource() );
+            }
+            else
+            {
+                if ( key != null )
+                {
+                    cacheKeys.put( task.getIdlFile(), key );
+                }
+                remaining.add( task );
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * Adds the files generated from a file to the cache. Nothing is cached if compile errors do not fail the build,
+     * as the files may then be incomplete.
+     *
+     * @param idlFile   the compiled file
+     * @param generated the generated files
+     */
+    private void storeInCache( File idlFile, Map<String, byte[]> generated )
+    {
+        String key = cacheKeys.get( idlFile );
+        if ( cache == null || key == null || !settings.failOnError )
+        {
+            return;
+        }
+
+        try
+        {
+            cache.store( key, generated );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to add the files generated from " + idlFile + " to the cache: " + e );
+        }
+    }
+
+    /**
+     * Reports the use of the cache, and trims it to its size limit if anything was added.
+     */
+    private void finishCache()
+    {
+        if ( cache == null || cache.getHits() + cache.getMisses() == 0 )
+        {
+            return;
+        }
+
+        getLog().info( "Generated source cache: " + cache.getHits() + " hits"
+                           + ( settings.remoteCacheUrl == null ? "" : " (" + cache.getRemoteHits() + " remote)" ) + ", "
+                           + cache.getMisses() + " misses" );
+        if ( cache.getMisses() > 0 )
+        {
+            try
+            {
+                cache.evict();
+            }
+            catch ( IOException e )
+            {
+                getLog().warn( "Failed to trim the generated source cache " + settings.cacheDirectory + ": " + e );
+            }
+        }
+    }
+
+    private void discardStagingDirectory( File stagingDirectory )
+    {
+        try
+        {
+            outputPublisher.discard( stagingDirectory );
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Unable to delete staging directory " + stagingDirectory + ": " + e );
+        }
+    }
+
+    private File getChangedFilesListFile()
+    {
+        return getBuildStateFile( "changed.txt" );
+    }
+
+    /**
+     * Writes the list of the generated files which this execution has written to the output directory, for use by
+     * incremental tools downstream.
+     *
+     * @param tasks the compiled tasks
+     */
+    private void saveChangedFilesList( List<CompileTask> tasks )
+    {
+        File listFile = getChangedFilesListFile();
+        try
+        {
+            if ( !tasks.isEmpty() )
+            {
+                dependencies.writeFile( listFile, outputPublisher.getChangedFilesList() );
+            }
+            else if ( dependencies.exists( listFile ) )
+            {
+                dependencies.deleteFile( listFile );
+            }
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to save the list of changed files to " + listFile + ": " + e );
+        }
+    }
+
+    private void deleteGeneratedFiles( Set<String> generatedFiles )
+    {
+        for ( String generatedFile : generatedFiles )
+        {
+            File file = new File( getOutputDirectory(), generatedFile );
+            getLog().debug( "Deleting orphaned generated file " + file );
+            try
+            {
+                dependencies.deleteFile( file );
+            }
+            catch ( IOException e )
+            {
+                getLog().warn( "Failed to delete " + file + ": " + e );
+            }
+        }
+    }
+
+    private File getContentManifestFile()
+    {
+        return getBuildStateFile( "hashes.properties" );
+    }
+
+    /**
+     * @return the recorded content hashes, or null if the stale files are found from their timestamps
+     * @throws MojoExecutionException if the configured stale check is invalid
+     */
+    private ContentManifest loadContentManifest() throws MojoExecutionException
+    {
+        if ( STALE_CHECK_TIMESTAMP.equals( staleCheck ) )
+        {
+            return null;
+        }
+        if ( !STALE_CHECK_CONTENT.equals( staleCheck ) )
+        {
+            throw new MojoExecutionException( "Invalid stale check: " + staleCheck );
+        }
+
+        File manifestFile = getContentManifestFile();
+        try
+        {
+            if ( dependencies.exists( manifestFile ) )
+            {
+                return ContentManifest.fromBytes( dependencies.readFile( manifestFile ) );
+            }
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Unable to read content manifest " + manifestFile + ": " + e );
+        }
+        return new ContentManifest();
+    }
+
+    private File getDeclarationManifestFile()
+    {
+        return getBuildStateFile( "declarations.properties" );
+    }
+
+    /**
+     * @return the recorded declarations, or null if all generated files are published
+     */
+    private DeclarationManifest loadDeclarationManifest()
+    {
+        if ( !settings.incrementalDeclarations )
+        {
+            return null;
+        }
+
+        File manifestFile = getDeclarationManifestFile();
+        try
+        {
+            if ( dependencies.exists( manifestFile ) )
+            {
+                return DeclarationManifest.fromBytes( dependencies.readFile( manifestFile ) );
+            }
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Unable to read declaration manifest " + manifestFile + ": " + e );
+        }
+        return new DeclarationManifest();
+    }
+
+    private void saveDeclarationManifest()
+    {
+        if ( declarationManifest == null || !declarationManifest.isModified() )
+        {
+            return;
+        }
+
+        File manifestFile = getDeclarationManifestFile();
+        try
+        {
+            dependencies.writeFile( manifestFile, declarationManifest.toBytes() );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to save declaration manifest to " + manifestFile + ": " + e );
+        }
+    }
+
+    private void saveContentManifest()
+    {
+        if ( contentManifest == null || !contentManifest.isModified() )
+        {
+            return;
+        }
+
+        File manifestFile = getContentManifestFile();
+        try
+        {
+            dependencies.writeFile( manifestFile, contentManifest.toBytes() );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to save content manifest to " + manifestFile + ": " + e );
+        }
+    }
+
+    private void estimateCompileTimes( List<CompileTask> tasks, CompileHistory history )
+    {
+        for ( CompileTask task : tasks )
+        {
+            File idlFile = task.getIdlFile();
+            String key = getRelativePath( idlFile );
+            long size = dependencies.length( idlFile );
+            task.setEstimatedMillis( history.estimateMillis( key, size ) );
+            task.setEstimatedBytes( history.estimateBytes( key, size ) );
+        }
+    }
+
+    private void saveCompileHistory( List<CompileTask> tasks, CompileHistory history )
+    {
+        for ( CompileTask task : tasks )
+        {
+            if ( task.getDurationMillis() >= 0 )
+            {
+                recordDurations( task, history );
+            }
+        }
+        if ( !history.isModified() )
+        {
+            return;
+        }
+
+        File historyFile = getCompileHistoryFile();
+        try
+        {
+            dependencies.writeFile( historyFile, history.toBytes() );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to save compile history to " + historyFile + ": " + e );
+        }
+    }
+
+    /**
+     * Records the compile time and heap needed by each file in the task. Those of a batch are divided among its files
+     * in proportion to their sizes.
+     */
+    private void recordDurations( CompileTask task, CompileHistory history )
+    {
+        long totalSize = 0;
+        for ( File idlFile : task.getIdlFiles() )
+        {
+            totalSize += dependencies.length( idlFile );
+        }
+
+        for ( File idlFile : task.getIdlFiles() )
+        {
+            long size = dependencies.length( idlFile );
+            history.record( getRelativePath( idlFile ), getShare( task.getDurationMillis(), size, task, totalSize ),
+                            size, getShare( task.getHeapBytes(), size, task, totalSize ) );
+        }
+    }
+
+    private static long getShare( long total, long size, CompileTask task, long totalSize )
+    {
+        if ( total < 0 )
+        {
+            return total;
+        }
+        return totalSize == 0 ? total / task.getIdlFiles().size() : total * size / totalSize;
+    }
+
+    /**
+     * Combines the tasks into batches, if requested and supported by the compiler.
+     *
+     * @param tasks      the single-file tasks
+     * @param translator the compiler to use
+     * @return the tasks to compile
+     * @throws MojoExecutionException if the batch size or the thread count is invalid
+     */
+    private List<CompileTask> createBatches( List<CompileTask> tasks, CompilerTranslator translator )
+            throws MojoExecutionException
+    {
+        if ( settings.batchSize < 1 )
+        {
+            throw new MojoExecutionException( "Invalid batch size: " + settings.batchSize );
+        }
+        if ( settings.batchSize == 1 || !( translator instanceof BatchCompilerTranslator ) )
+        {
+            return tasks;
+        }
+
+        List<CompileTask> batches = new CompileBatcher( settings.batchSize, getThreadCount() ).createBatches( tasks );
+        getLog().debug( "Compiling " + tasks.size() + " files in " + batches.size() + " batches" );
+        return batches;
+    }
+
+    /**
+     * Joins the compilation service of the session, and applies the configured limit on concurrent compiles to it.
+     *
+     * @throws MojoExecutionException if the limit is invalid
+     */
+    private void startCompilationService() throws MojoExecutionException
+    {
+        compilationService = CompilationService.forSession( settings.sessionStartTime );
+        if ( settings.maxConcurrentCompiles != null )
+        {
+            compilationService.setConcurrencyLimit(
+                CompileScheduler.parseThreadCount( settings.maxConcurrentCompiles ) );
+        }
+    }
+
+    /**
+     * Assigns the session's pool of compiler worker JVMs to the translator, if requested and supported by the
+     * compiler.
+     *
+     * @param tasks      the tasks to compile
+     * @param translator the compiler to use
+     * @throws MojoExecutionException if the pool configuration is invalid
+     */
+    private void assignWorkerPool( List<CompileTask> tasks, CompilerTranslator translator )
+            throws MojoExecutionException
+    {
+        if ( settings.compilerWorkers < 0 )
+        {
+            throw new MojoExecutionException( "Invalid number of compiler workers: " + settings.compilerWorkers );
+        }
+        if ( settings.compilerWorkers == 0 || tasks.isEmpty() || !AbstractTranslator.isFork()
+                || !( translator instanceof AbstractTranslator ) )
+        {
+            return;
+        }
+
+        ( (AbstractTranslator) translator ).setWorkerPool(
+            compilationService.getWorkerPool( settings.compilerWorkers, settings.compilerWorkerRecycleAfter,
+                                              settings.compilerWorkerTimeout ) );
+    }
+
+    /**
+     * Assigns the session's pool of isolated compiler instances to the translator, if more than one instance is
+     * requested.
+     *
+     * @param tasks      the tasks to compile
+     * @param translator the compiler to use
+     * @throws MojoExecutionException if the number of instances is invalid
+     */
+    private void assignInstancePool( List<CompileTask> tasks, CompilerTranslator translator )
+            throws MojoExecutionException
+    {
+        if ( settings.compilerInstances < 1 )
+        {
+            throw new MojoExecutionException( "Invalid number of compiler instances: " + settings.compilerInstances );
+        }
+        if ( settings.compilerInstances == 1 || tasks.isEmpty() || !( translator instanceof AbstractTranslator ) )
+        {
+            return;
+        }
+
+        ( (AbstractTranslator) translator ).setInstancePool(
+            compilationService.getInstancePool( settings.compilerInstances, settings.compilerRecycleAfter ) );
+    }
+
+    /**
+     * @return the compiler, which is created on first use and then kept for the later runs of this mojo, and shared
+     * with the other modules of the reactor if this mojo compiles one of them
+     * @throws MojoExecutionException if the configured compiler is not supported
+     */
+    private CompilerTranslator getTranslator() throws MojoExecutionException
+    {
+        if ( translator == null )
+        {
+            translator = sharedTranslators == null ? createTranslator() : getSharedTranslator();
+        }
+        return translator;
+    }
+
+    private CompilerTranslator getSharedTranslator() throws MojoExecutionException
+    {
+        synchronized ( sharedTranslators )
+        {
+            CompilerTranslator shared = sharedTranslators.get( String.valueOf( compiler ) );
+            if ( shared == null )
+            {
+                shared = createTranslator();
+                sharedTranslators.put( String.valueOf( compiler ), shared );
+            }
+            return shared;
+        }
+    }
+
+    private CompilerTranslator createTranslator() throws MojoExecutionException
+    {
+        CompilerTranslator translator = TranslatorType.selectTranslator( compiler );
+
+        translator.setDebug( settings.debug );
+        translator.setFailOnError( settings.failOnError );
+        translator.setLog( getLog() );
+        if ( translator instanceof AbstractTranslator )
+        {
+            ( (AbstractTranslator) translator ).setRecycleCompilerAfter( settings.compilerRecycleAfter );
+        }
+        return translator;
+    }
+
+    private void failIfNotWriteable( File directory ) throws MojoExecutionException
+    {
+        if ( !dependencies.isWriteable( directory ) )
+        {
+            throw new MojoExecutionException( "Cannot write in : " + directory );
+        }
+    }
+
+    private void createIfAbsent( File directory )
+    {
+        if ( !dependencies.exists( directory ) )
+        {
+            dependencies.createDirectory( directory );
+        }
+    }
+
+    /**
+     * Compile the planned IDL files.
+     *
+     * @param tasks      the files to compile, each with the <code>Source</code> that selected it
+     * @param translator the <code>CompilerTranslator</code> that raprresents idl compiler backend that will be used
+     * @throws MojoExecutionException if the compilation fails or the compiler crashes
+     */
+    private void compile( List<CompileTask> tasks, final CompilerTranslator translator )
+            throws MojoExecutionException
+    {
+        createScheduler().execute( tasks, new CompileScheduler.TaskHandler()
+        {
+            public void process( CompileTask task ) throws MojoExecutionException
+            {
+                if ( task.isBatch() )
+                {
+                    processBatch( task, (BatchCompilerTranslator) translator );
+                }
+                else
+                {
+                    processIdlFile( task.getSource(), translator, task.getIdlFile() );
+                }
+            }
+        } );
+    }
+
+    private CompileScheduler createScheduler() throws MojoExecutionException
+    {
+        return new CompileScheduler( getThreadCount(), compilationService, getLog() );
+    }
+
+    private int getThreadCount() throws MojoExecutionException
+    {
+        return CompileScheduler.parseThreadCount( settings.threads );
+    }
 
     /**
-     * The default implementation of the dependencies.
+     * Compiles several files in one compiler invocation. If that fails, the files are compiled one at a time,
+     * so that the failure is reported against the files which actually caused it.
+     *
+     * @param batch      the files to compile
+     * @param translator the compiler to use
+     * @throws MojoExecutionException if any of the files fails to compile
      */
-    private static final DependenciesFacade DEPENDENCIES_FACADE = new DependenciesFacadeImpl();
+    private void processBatch( CompileTask batch, BatchCompilerTranslator translator ) throws MojoExecutionException
+    {
+        File stagingDirectory = createStagingDirectory();
+        try
+        {
+            translateIdlFiles( batch.getIdlFiles(), batch.getSource(), translator, stagingDirectory );
+        }
+        catch ( MojoExecutionException e )
+        {
+            discardStagingDirectory( stagingDirectory );
+            getLog().warn( "Compilation of a batch of " + batch.getIdlFiles().size()
+                    + " files failed; compiling them individually to identify the failing files" );
+            processIndividually( batch, translator );
+            return;
+        }
 
+        publishGeneratedFiles( batch.getIdlFiles(), stagingDirectory );
+        for ( File idlFile : batch.getIdlFiles() )
+        {
+            markCompiled( idlFile, batch.getSource() );
+        }
+    }
 
-    /**
-     * Creates the abstract class using a production implementation of the dependencies.
-     */
-    protected AbstractIDLJMojo()
+    private void processIndividually( CompileTask batch, CompilerTranslator translator )
+            throws MojoExecutionException
     {
-        this( DEPENDENCIES_FACADE );
+        StringBuilder failures = new StringBuilder();
+        MojoExecutionException firstFailure = null;
+        for ( File idlFile : batch.getIdlFiles() )
+        {
+            try
+            {
+                processIdlFile( batch.getSource(), translator, idlFile );
+            }
+            catch ( MojoExecutionException e )
+            {
+                failures.append( System.getProperty( "line.separator" ) ).append( "  " ).append( idlFile )
+                        .append( ": " ).append( e.getMessage() );
+                firstFailure = firstFailure != null ? firstFailure : e;
+            }
+        }
+
+        if ( firstFailure != null )
+        {
+            throw new MojoExecutionException( "IDL compilation failed for:" + failures, firstFailure );
+        }
     }
 
-    AbstractIDLJMojo( DependenciesFacade dependencies )
+    private void translateIdlFiles( List<File> idlFiles, Source source, BatchCompilerTranslator translator,
+                                    File targetDirectory )
+            throws MojoExecutionException
     {
-        this.dependencies = dependencies;
+        List<String> fileNames = new ArrayList<>();
+        for ( File idlFile : idlFiles )
+        {
+            getLog().debug( "Processing: " + idlFile.toString() );
+            fileNames.add( idlFile.toString() );
+        }
+        translator.invokeCompiler( getSourceDirectory().getAbsolutePath(),
+                                   getIncludeDirs(),
+                                   targetDirectory.getAbsolutePath(),
+                                   fileNames, source );
     }
 
-    /**
-     * @return the source directory that contains the IDL files
-     */
-    protected abstract File getSourceDirectory();
+    private void processIdlFile( Source source, CompilerTranslator translator, File idlFile )
+            throws MojoExecutionException
+    {
+        File stagingDirectory = createStagingDirectory();
+        try
+        {
+            translateIdlFile( idlFile, source, translator, stagingDirectory );
+        }
+        catch ( MojoExecutionException e )
+        {
+            discardStagingDirectory( stagingDirectory );
+            throw e;
+        }
 
-    /**
-     * @return the <code>File[]</code> of the directories to use as include directories for the compilation
-     */
-    protected abstract File[] getIncludeDirs();
+        publishGeneratedFiles( Collections.singletonList( idlFile ), stagingDirectory );
+        markCompiled( idlFile, source );
+    }
 
     /**
-     * @return the path of the directory that will contains the results of the compilation
+     * Records that a file has been compiled, so that it is not compiled again until it or one of its includes changes,
+     * and the key of its compile, so that other goals may use its generated files.
+     *
+     * @param idlFile the compiled file
+     * @param source  the source which compiled it
+     * @throws MojoExecutionException if the configured compiler is not supported
      */
-    protected abstract File getOutputDirectory();
+    private void markCompiled( File idlFile, Source source ) throws MojoExecutionException
+    {
+        String idlPath = getRelativePath( idlFile );
+        appendToBuildIndex( buildIndex.record( idlPath, dependencies.length( idlFile ),
+                                               dependencies.lastModified( idlFile ) ) );
+        recordCompiled( idlFile );
+        reusedKeys.forget( idlPath );
+        String key = computeCompileKey( idlFile, source );
+        if ( key != null )
+        {
+            compileKeys.record( idlPath, key );
+        }
+        else
+        {
+            compileKeys.forget( idlPath );
+        }
+    }
 
     /**
-     * Execute the goal of the MOJO that is: compiling the IDL files
+     * Records the contents of a compiled file and the files which it includes, so that it is recompiled when any of
+     * them changes.
      *
-     * @throws MojoExecutionException if the compilation fails or the compiler crashes
+     * @param idlFile the compiled file
      */
-    public void execute() throws MojoExecutionException
+    private void recordCompiled( File idlFile )
     {
-        prepareGeneratedSourceDirectory( getOutputDirectory() );
-        createIfAbsent( timestampDirectory );
+        if ( contentManifest != null )
+        {
+            contentManifest.recordCompiled( getRelativePath( idlFile ) );
+        }
+        try
+        {
+            includeGraph.recordCompiled( idlFile );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to record the includes of " + idlFile + ": " + e );
+        }
+    }
+
+    private void translateIdlFile( File idlFile, Source source, CompilerTranslator translator, File targetDirectory )
+            throws MojoExecutionException
+    {
+        getLog().debug( "Processing: " + idlFile.toString() );
+        translator.invokeCompiler( getSourceDirectory().getAbsolutePath(),
+                                   getIncludeDirs(),
+                                   targetDirectory.getAbsolutePath(),
+                                   idlFile.toString(), source );
+    }
 
-        if ( isSourceSpecified() )
+    private void reportProcessingNeeded( List<CompileTask> tasks ) throws MojoExecutionException
+    {
+        if ( tasks.size() > 0 )
         {
-            translateSources( createTranslator(), sources );
+            getLog().info( "Processing " + tasks.size() + " grammar files to " + getOutputDirectory() );
         }
         else
         {
-            translateInferredSource( createTranslator() );
+            getLog().info( "Nothing to compile - all idl files are up to date" );
         }
     }
 
-    private void prepareGeneratedSourceDirectory( File directory ) throws MojoExecutionException
+    /**
+     * Determine which idl files need to be compiled, and with which source configuration. The source directory is
+     * scanned once for all sources; a stale file is then assigned to the first source which selects it, so that no
+     * file is compiled more than once.
+     *
+     * @param sourceList     the <code>Source</code> configurations which select the files to compile
+     * @param changedSources the positions of the sources whose options or compiler have changed since the last
+     *                       compile, all of whose files are compiled
+     * @return the files to compile, each with the source to compile it with
+     * @throws MojoExecutionException if the selection of the files to compile fails
+     */
+    private List<CompileTask> planCompilation( List<Source> sourceList, List<Integer> changedSources )
+            throws MojoExecutionException
     {
-        createIfAbsent( directory );
-        failIfNotWriteable( directory );
-        addCompileSourceRoot( directory );
+        File sourceDir = getSourceDirectory();
+        getLog().debug( "sourceDir : " + sourceDir );
+
+        Set<File> staleFiles = new TreeSet<>( getStaleSources( createIdlScanner( sourceList, contentManifest != null ),
+                                                               sourceDir ) );
+        if ( staleness != null )
+        {
+            for ( File idlFile : staleFiles )
+            {
+                explainStale( idlFile, describeModification( idlFile ) );
+            }
+        }
+        if ( contentManifest != null )
+        {
+            retainChangedFiles( staleFiles );
+        }
+        addFilesWithChangedIncludes( staleFiles );
+        addFilesOfChangedSources( staleFiles, sourceList, changedSources );
+        addFilesWithMissingOutputs( staleFiles );
+        addFilesWithChangedReuse( staleFiles );
+        List<CompileTask> tasks = new ArrayList<>();
+        for ( File idlFile : staleFiles )
+        {
+            Source source = selectSource( sourceList, getRelativePath( idlFile ) );
+            if ( source != null )
+            {
+                tasks.add( new CompileTask( idlFile, source ) );
+            }
+        }
+        return tasks;
     }
 
-    private boolean isSourceSpecified()
+    /**
+     * Plans the compilation of the files known to have changed: those selected by a source which the stale check
+     * finds stale, and the compiled files which include any changed file, directly or indirectly. Only these files
+     * are looked at.
+     *
+     * @param sourceList   the <code>Source</code> configurations which select the files to compile
+     * @param changedFiles the changed files, which all exist
+     * @return the files to compile, each with the source to compile it with
+     * @throws MojoExecutionException if a file cannot be read
+     */
+    private List<CompileTask> planChangedFiles( List<Source> sourceList, Set<File> changedFiles )
+            throws MojoExecutionException
     {
-        return sources != null;
+        Set<File> staleFiles = new TreeSet<>();
+        for ( File changedFile : changedFiles )
+        {
+            URI relativeURI = getSourceDirectory().toURI().relativize( changedFile.toURI() );
+            String idlPath = relativeURI.getPath();
+            if ( !relativeURI.isAbsolute() && selectSource( sourceList, idlPath ) != null
+                && ( contentManifest != null || buildIndex.isStale( idlPath, dependencies.length( changedFile ),
+                                                                   dependencies.lastModified( changedFile ),
+                                                                   staleMillis ) ) )
+            {
+                File idlFile = new File( getSourceDirectory(), idlPath );
+                staleFiles.add( idlFile );
+                explainStale( idlFile, describeModification( idlFile ) );
+            }
+        }
+        if ( contentManifest != null )
+        {
+            retainChangedFiles( staleFiles );
+        }
+        addFilesIncluding( staleFiles, changedFiles );
+
+        List<CompileTask> tasks = new ArrayList<>();
+        for ( File idlFile : staleFiles )
+        {
+            Source source = selectSource( sourceList, getRelativePath( idlFile ) );
+            if ( source != null )
+            {
+                tasks.add( new CompileTask( idlFile, source ) );
+            }
+        }
+        return tasks;
     }
 
-    private void translateInferredSource( CompilerTranslator translator ) throws MojoExecutionException
+    /**
+     * Removes the files whose contents have not changed since they were last compiled.
+     *
+     * @param candidateFiles the files selected by the sources
+     * @throws MojoExecutionException if a file cannot be read
+     */
+    private void retainChangedFiles( Set<File> candidateFiles ) throws MojoExecutionException
     {
-        processSource( new Source(), translator );
+        for ( Iterator<File> iterator = candidateFiles.iterator(); iterator.hasNext(); )
+        {
+            File idlFile = iterator.next();
+            try
+            {
+                if ( !contentManifest.isChanged( getRelativePath( idlFile ), idlFile, dependencies ) )
+                {
+                    iterator.remove();
+                    if ( staleness != null )
+                    {
+                        staleness.fresh( getRelativePath( idlFile ), "contents unchanged since it was last compiled" );
+                    }
+                }
+                else
+                {
+                    explainStale( idlFile, "contents changed" );
+                }
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( "Unable to read " + idlFile, e );
+            }
+        }
     }
 
-    private void translateSources( CompilerTranslator translator, List<Source> sourceList )
-            throws MojoExecutionException
+    /**
+     * Adds the files some of whose generated files have been deleted.
+     *
+     * @param staleFiles the stale files found so far
+     */
+    private void addFilesWithMissingOutputs( Set<File> staleFiles )
     {
-        for ( Source source : sourceList )
+        for ( String idlPath : outputManifest.getIdlFiles() )
         {
-            processSource( source, translator );
+            File idlFile = new File( getSourceDirectory(), idlPath );
+            String missingFile = !staleFiles.contains( idlFile ) && dependencies.exists( idlFile )
+                            ? findMissingOutput( idlPath ) : null;
+            if ( missingFile != null )
+            {
+                getLog().debug( "A file generated from " + idlFile + " is missing" );
+                staleFiles.add( idlFile );
+                explainStale( idlFile, "generated file " + missingFile + " is missing" );
+            }
         }
     }
 
-    private CompilerTranslator createTranslator() throws MojoExecutionException
+    /**
+     * Adds the files which use files generated by the main goal, if the main goal has compiled them again, or any of
+     * those files is missing, or they are no longer reused.
+     *
+     * @param staleFiles the stale files found so far
+     */
+    private void addFilesWithChangedReuse( Set<File> staleFiles )
     {
-        CompilerTranslator translator = TranslatorType.selectTranslator( compiler );
+        for ( String idlPath : reusedKeys.getIdlFiles() )
+        {
+            File idlFile = new File( getSourceDirectory(), idlPath );
+            if ( staleFiles.contains( idlFile ) || !dependencies.exists( idlFile ) )
+            {
+                continue;
+            }
 
-        translator.setDebug( debug );
-        translator.setFailOnError( failOnError );
-        translator.setLog( getLog() );
-        return translator;
+            String reason = describeChangedReuse( idlPath );
+            if ( reason != null )
+            {
+                getLog().debug( "The files generated by the main goal from " + idlFile + " have changed" );
+                staleFiles.add( idlFile );
+                wholeFileChanges.add( idlPath );
+                explainStale( idlFile, reason );
+            }
+        }
     }
 
-    private void failIfNotWriteable( File directory ) throws MojoExecutionException
+    /**
+     * @return why the files generated by the main goal from an idl file can no longer be used, or <code>null</code>
+     */
+    private String describeChangedReuse( String idlPath )
     {
-        if ( !dependencies.isWriteable( directory ) )
+        if ( mainKeys == null )
         {
-            throw new MojoExecutionException( "Cannot write in : " + directory );
+            return "the files generated by the main goal are no longer used";
         }
+        if ( !reusedKeys.get( idlPath ).equals( mainKeys.get( idlPath ) ) )
+        {
+            return "the main goal has compiled it differently";
+        }
+        String missingFile = findMissingMainOutput( idlPath );
+        return missingFile == null ? null : "file " + missingFile + " generated by the main goal is missing";
     }
 
-    private void createIfAbsent( File directory )
+    /**
+     * @return a file generated from an idl file which is missing from the output directory, or <code>null</code>
+     */
+    private String findMissingOutput( String idlPath )
     {
-        if ( !dependencies.exists( directory ) )
+        for ( String generatedFile : outputManifest.getOutputs( idlPath ) )
         {
-            dependencies.createDirectory( directory );
+            if ( !dependencies.exists( new File( getOutputDirectory(), generatedFile ) ) )
+            {
+                return generatedFile;
+            }
         }
+        return null;
     }
 
     /**
-     * Compile the IDL files located in the given source path.
+     * Adds all of the files selected by the sources whose options or compiler have changed.
      *
-     * @param source     the <code>Source</code> that specify which file compile with arguments to use for the source
-     * @param translator the <code>CompilerTranslator</code> that raprresents idl compiler backend that will be used
-     * @throws MojoExecutionException if the compilation fails or the compiler crashes
+     * @param staleFiles     the stale files found so far
+     * @param sourceList     the configured sources
+     * @param changedSources the positions of the changed sources
+     * @throws MojoExecutionException if the source directory cannot be scanned
      */
-    private void processSource( Source source, CompilerTranslator translator )
+    private void addFilesOfChangedSources( Set<File> staleFiles, List<Source> sourceList,
+                                           List<Integer> changedSources )
             throws MojoExecutionException
     {
-        Set<File> staleGrammars = computeStaleGrammars( source );
-        reportProcessingNeeded( staleGrammars );
+        if ( changedSources.isEmpty() )
+        {
+            return;
+        }
 
-        for ( File idlFile : staleGrammars )
+        SourceInclusionScanner scanner = createIdlScanner( sourceList, true );
+        for ( File idlFile : getStaleSources( scanner, getSourceDirectory() ) )
         {
-            processIdlFile( source, translator, idlFile );
+            Source source = selectSource( sourceList, getRelativePath( idlFile ) );
+            if ( source != null && changedSources.contains( sourceList.indexOf( source ) ) )
+            {
+                staleFiles.add( idlFile );
+                wholeFileChanges.add( getRelativePath( idlFile ) );
+                explainStale( idlFile, "the options of its source, or the compiler, changed" );
+            }
         }
     }
 
-    private void processIdlFile( Source source, CompilerTranslator translator, File idlFile )
-            throws MojoExecutionException
+    /**
+     * Adds the files in the source directory which include, directly or indirectly, a file changed since they were
+     * last compiled.
+     *
+     * @param staleFiles the stale files found by the scanner
+     */
+    private void addFilesWithChangedIncludes( Set<File> staleFiles )
     {
-        try
+        addAffectedFiles( staleFiles, includeGraph.findAffectedFiles() );
+    }
+
+    /**
+     * Adds the compiled files which include one of the changed files, directly or indirectly, if the stamp of their
+     * include closure has changed.
+     *
+     * @param staleFiles   the stale files found so far
+     * @param changedFiles the files known to have changed
+     */
+    private void addFilesIncluding( Set<File> staleFiles, Set<File> changedFiles )
+    {
+        addAffectedFiles( staleFiles, includeGraph.findAffectedFiles( changedFiles ) );
+    }
+
+    private void addAffectedFiles( Set<File> staleFiles, Set<File> affectedFiles )
+    {
+        Set<File> staleAbsoluteFiles = new HashSet<>();
+        for ( File staleFile : staleFiles )
         {
-            translateIdlFile( idlFile, source, translator );
-            copyToTimestampDirectory( idlFile );
+            staleAbsoluteFiles.add( staleFile.getAbsoluteFile() );
         }
-        catch ( IOException e )
+
+        for ( File affectedFile : affectedFiles )
         {
-            getLog().warn( "Failed to copy IDL file to timestamp directory: " + e );
+            URI relativeURI = getSourceDirectory().toURI().relativize( affectedFile.toURI() );
+            if ( relativeURI.isAbsolute() )
+            {
+                continue;
+            }
+            File idlFile = new File( getSourceDirectory(), relativeURI.getPath() );
+            wholeFileChanges.add( relativeURI.getPath() );
+            explainStale( idlFile, "an included file changed" );
+            if ( !staleAbsoluteFiles.contains( affectedFile.getAbsoluteFile() ) )
+            {
+                getLog().debug( "An include of " + affectedFile + " has changed" );
+                staleFiles.add( idlFile );
+            }
         }
     }
 
-    private void translateIdlFile( File idlFile, Source source, CompilerTranslator translator )
-            throws MojoExecutionException
+    /**
+     * @return why the scanner found a file stale
+     */
+    private String describeModification( File idlFile )
     {
-        getLog().debug( "Processing: " + idlFile.toString() );
-        translator.invokeCompiler( getSourceDirectory().getAbsolutePath(),
-                                   getIncludeDirs(),
-                                   getOutputDirectory().getAbsolutePath(),
-                                   idlFile.toString(), source );
+        String reason = buildIndex.describeStaleness( getRelativePath( idlFile ), dependencies.length( idlFile ),
+                                                      dependencies.lastModified( idlFile ), staleMillis );
+        return reason != null ? reason : "reported stale by the scanner";
     }
 
-    private void copyToTimestampDirectory( File idlFile ) throws MojoExecutionException, IOException
+    private String getRelativePath( File idlFile )
     {
-        URI relativeURI = getSourceDirectory().toURI().relativize( idlFile.toURI() );
-        File timestampFile = new File( timestampDirectory.toURI().resolve( relativeURI ) );
-        dependencies.copyFile( idlFile, timestampFile );
+        return getSourceDirectory().toURI().relativize( idlFile.toURI() ).getPath();
     }
 
-    private void reportProcessingNeeded( Set<File> staleGrammars ) throws MojoExecutionException
+    /**
+     * Returns the first source whose includes and excludes select the specified file.
+     *
+     * @param sourceList   the candidate sources
+     * @param relativePath the path of the file relative to the source directory, using '/' as separator
+     * @return the selecting source, or <code>null</code> if none selects the file
+     */
+    private Source selectSource( List<Source> sourceList, String relativePath )
     {
-        if ( staleGrammars.size() > 0 )
+        for ( Source source : sourceList )
         {
-            getLog().info( "Processing " + staleGrammars.size() + " grammar files to " + getOutputDirectory() );
+            if ( matchesAny( getIncludes( source ), relativePath ) && !matchesAny( getExcludes( source ),
+                                                                                   relativePath ) )
+            {
+                return source;
+            }
         }
-        else
+        return null;
+    }
+
+    private boolean matchesAny( Set<String> patterns, String relativePath )
+    {
+        for ( String pattern : patterns )
         {
-            getLog().info( "Nothing to compile - all idl files are up to date" );
+            if ( SelectorUtils.matchPath( normalizePattern( pattern ), relativePath, "/", true ) )
+            {
+                return true;
+            }
         }
+        return false;
     }
 
     /**
-     * Determine which idl files need to be compiled.
+     * Converts a pattern in the form accepted by the plexus <code>DirectoryScanner</code> to use '/' as separator.
      *
-     * @param source the <code>Source</code> that represents which files to compile
-     * @return a set of files that need to be compiled
-     * @throws MojoExecutionException if the selection of the files to compile fails
+     * @param pattern an include or exclude pattern
+     * @return the normalized pattern
      */
-    private Set<File> computeStaleGrammars( Source source ) throws MojoExecutionException
+    private static String normalizePattern( String pattern )
     {
-        File sourceDir = getSourceDirectory();
-        getLog().debug( "sourceDir : " + sourceDir );
-
-        return getStaleSources( createIdlScanner( source ), sourceDir );
+        String normalized = pattern.trim().replace( '\\', '/' );
+        return normalized.endsWith( "/" ) ? normalized + "**" : normalized;
     }
 
     private Set<File> getStaleSources( SourceInclusionScanner scanner, File sourceDir ) throws MojoExecutionException
@@ -323,19 +2644,58 @@ public abstract class AbstractIDLJMojo extends AbstractMojo
         return dependencies.exists( sourceDir ) && dependencies.isDirectory( sourceDir );
     }
 
-    private SourceInclusionScanner createIdlScanner( Source source )
+    /**
+     * Creates a single scanner for all of the sources. It includes any file included by one of them, and excludes
+     * only the files which all of them exclude; {@link #selectSource} then applies each source's own patterns. If
+     * all files are requested, the scanner also returns those which are up to date.
+     *
+     * @param sourceList the configured sources
+     * @param allFiles   true to find every selected file rather than only the stale ones
+     * @return the scanner to use
+     */
+    private SourceInclusionScanner createIdlScanner( List<Source> sourceList, boolean allFiles )
     {
-        Set<String> includes = getNonNullSet( "includes", source.getIncludes(), "**/*.idl" );
-        Set<String> excludes = getNonNullSet( "excludes", source.getExcludes() );
+        Set<String> includes = new HashSet<>();
+        Set<String> excludes = null;
+        for ( Source source : sourceList )
+        {
+            getLog().debug( "includes: " + source.getIncludes() + ", excludes: " + source.getExcludes() );
+            includes.addAll( getIncludes( source ) );
+            if ( excludes == null )
+            {
+                excludes = new HashSet<>( getExcludes( source ) );
+            }
+            else
+            {
+                excludes.retainAll( getExcludes( source ) );
+            }
+        }
+
+        if ( excludes == null )
+        {
+            excludes = new HashSet<>();
+        }
 
-        SourceInclusionScanner scanner = dependencies.createSourceInclusionScanner( staleMillis, includes, excludes );
+        SourceInclusionScanner scanner = allFiles
+                ? dependencies.createSimpleSourceInclusionScanner( includes, excludes, settings.scanThreads )
+                : dependencies.createSourceInclusionScanner( staleMillis, includes, excludes,
+                                                             settings.scanThreads, buildIndex );
         scanner.addSourceMapping( new SuffixMapping( ".idl", ".idl" ) );
         return scanner;
     }
 
-    private Set<String> getNonNullSet( String comment, Set<String> set, String... defaultValues )
+    private Set<String> getIncludes( Source source )
+    {
+        return getNonNullSet( source.getIncludes(), "**/*.idl" );
+    }
+
+    private Set<String> getExcludes( Source source )
+    {
+        return getNonNullSet( source.getExcludes() );
+    }
+
+    private Set<String> getNonNullSet( Set<String> set, String... defaultValues )
     {
-        getLog().debug( comment + ": " + set );
         if ( set == null )
         {
             set = new HashSet<String>();
@@ -364,7 +2724,7 @@ public abstract class AbstractIDLJMojo extends AbstractMojo
      */
     protected MavenProjectHelper getProjectHelper()
     {
-        return projectHelper;
+        return settings.projectHelper;
     }
 
     // ----------------------------------------------------------------------------------------------------
@@ -374,9 +2734,24 @@ public abstract class AbstractIDLJMojo extends AbstractMojo
     interface DependenciesFacade
     {
         SourceInclusionScanner createSourceInclusionScanner( int updatedWithinMsecs, Set<String> includes,
-                                                             Set<String> excludes );
+                                                             Set<String> excludes, int threads, BuildIndex index );
+
+        SourceInclusionScanner createSimpleSourceInclusionScanner( Set<String> includes, Set<String> excludes,
+                                                                   int threads );
 
-        void copyFile( File sourceFile, File targetFile ) throws IOException;
+        byte[] readFile( File file ) throws IOException;
+
+        void writeFile( File file, byte[] contents ) throws IOException;
+
+        void appendToFile( File file, byte[] contents ) throws IOException;
+
+        void deleteFile( File file ) throws IOException;
+
+        void deleteDirectory( File directory ) throws IOException;
+
+        Map<String, Long> getModificationTimes( File directory ) throws IOException;
+
+        Map<String, String> getFileStamps( File directory ) throws IOException;
 
         boolean exists( File outputDirectory );
 
@@ -385,6 +2760,12 @@ public abstract class AbstractIDLJMojo extends AbstractMojo
         boolean isWriteable( File directory );
 
         boolean isDirectory( File file );
+
+        long lastModified( File file );
+
+        long length( File file );
+
+        void setLastModified( File file, long time ) throws IOException;
     }
 
     // ----------------------------------------------------------------------------------------------------
@@ -393,15 +2774,115 @@ public abstract class AbstractIDLJMojo extends AbstractMojo
 
     static class DependenciesFacadeImpl implements DependenciesFacade
     {
-        public void copyFile( File sourceFile, File targetFile ) throws IOException
+        public byte[] readFile( File file ) throws IOException
+        {
+            return Files.readAllBytes( file.toPath() );
+        }
+
+        public void writeFile( File file, byte[] contents ) throws IOException
+        {
+            Path target = file.toPath();
+            Files.createDirectories( target.toAbsolutePath().getParent() );
+            Path temp = Files.createTempFile( target.toAbsolutePath().getParent(), file.getName(), ".tmp" );
+            try
+            {
+                Files.write( temp, contents );
+                moveReplacing( temp, target );
+            }
+            finally
+            {
+                Files.deleteIfExists( temp );
+            }
+        }
+
+        public void appendToFile( File file, byte[] contents ) throws IOException
+        {
+            Files.write( file.toPath(), contents, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                         StandardOpenOption.APPEND );
+        }
+
+        public void deleteFile( File file ) throws IOException
+        {
+            Files.deleteIfExists( file.toPath() );
+        }
+
+        public void deleteDirectory( File directory ) throws IOException
+        {
+            FileUtils.deleteDirectory( directory );
+        }
+
+        public Map<String, Long> getModificationTimes( final File directory ) throws IOException
+        {
+            final Map<String, Long> modificationTimes = new HashMap<>();
+            walkFiles( directory, new SimpleFileVisitor<Path>()
+            {
+                @Override
+                public FileVisitResult visitFile( Path file, BasicFileAttributes attributes )
+                {
+                    modificationTimes.put( getRelativePath( directory, file ),
+                                           attributes.lastModifiedTime().toMillis() );
+                    return FileVisitResult.CONTINUE;
+                }
+            } );
+            return modificationTimes;
+        }
+
+        /**
+         * @return the modification time and length of each file in the tree, as <code>time/length</code>, keyed by
+         *         its relative path
+         */
+        public Map<String, String> getFileStamps( final File directory ) throws IOException
+        {
+            final Map<String, String> stamps = new HashMap<>();
+            walkFiles( directory, new SimpleFileVisitor<Path>()
+            {
+                @Override
+                public FileVisitResult visitFile( Path file, BasicFileAttributes attributes )
+                {
+                    stamps.put( getRelativePath( directory, file ),
+                                attributes.lastModifiedTime().toMillis() + "/" + attributes.size() );
+                    return FileVisitResult.CONTINUE;
+                }
+            } );
+            return stamps;
+        }
+
+        private void walkFiles( File directory, SimpleFileVisitor<Path> visitor ) throws IOException
+        {
+            if ( Files.isDirectory( directory.toPath() ) )
+            {
+                Files.walkFileTree( directory.toPath(), visitor );
+            }
+        }
+
+        private String getRelativePath( File directory, Path file )
+        {
+            return directory.toPath().relativize( file ).toString().replace( File.separatorChar, '/' );
+        }
+
+        private void moveReplacing( Path source, Path target ) throws IOException
         {
-            FileUtils.copyFile( sourceFile, targetFile );
+            try
+            {
+                Files.move( source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            }
+            catch ( AtomicMoveNotSupportedException e )
+            {
+                Files.move( source, target, StandardCopyOption.REPLACE_EXISTING );
+            }
         }
 
         public SourceInclusionScanner createSourceInclusionScanner( int updatedWithinMsecs, Set<String> includes,
-                                                                    Set<String> excludes )
+                                                                    Set<String> excludes, int threads,
+                                                                    BuildIndex index )
         {
-            return new StaleSourceScanner( updatedWithinMsecs, includes, excludes );
+            return new NioSourceInclusionScanner( index, updatedWithinMsecs, includes, excludes, threads );
+        }
+
+        public SourceInclusionScanner createSimpleSourceInclusionScanner( Set<String> includes,
+                                                                          Set<String> excludes, int threads )
+        {
+            return new NioSourceInclusionScanner( null, 0, includes, excludes, threads );
         }
 
         public boolean exists( File file )
@@ -423,6 +2904,24 @@ public abstract class AbstractIDLJMojo extends AbstractMojo
         {
             return file.isDirectory();
         }
+
+        public long lastModified( File file )
+        {
+            return file.lastModified();
+        }
+
+        public long length( File file )
+        {
+            return file.length();
+        }
+
+        public void setLastModified( File file, long time ) throws IOException
+        {
+            if ( !file.setLastModified( time ) )
+            {
+                throw new IOException( "Unable to set the modification time of " + file );
+            }
+        }
     }
 
 }
@@ -21,13 +21,18 @@ package org.codehaus.mojo.idlj;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.StringUtils;
 
 import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
+import java.io.File;
 import java.lang.reflect.InvocationTargetException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Shared capabilities for translators.
@@ -54,6 +59,22 @@ abstract class AbstractTranslator
      */
     private Log log;
 
+    /**
+     * The pool of compiler worker JVMs to compile in, or null to use the translator's own way of running the compiler
+     */
+    private ForkedWorkerPool workerPool;
+
+    /**
+     * The pool of isolated compiler instances to compile in-process with, or null to use the shared compiler
+     */
+    private CompilerInstancePool instancePool;
+
+    /**
+     * The number of compiles after which the plugin discards a class loader it created for the compiler, or 0 never
+     * to discard them
+     */
+    private int recycleCompilerAfter;
+
     /* A facade to enable unit testing to control compiler access. */
     private static ClassLoaderFacade classLoaderFacade = new ClassLoaderFacadeImpl();
 
@@ -62,6 +83,22 @@ abstract class AbstractTranslator
      */
     private static boolean fork = true;
 
+    /**
+     * The in-process compilers keep their state in static fields, so only one of them may run at a time.
+     */
+    private static final Object IN_PROCESS_LOCK = new Object();
+
+    /**
+     * Held while logging the output of a single compile, so that the messages for different files do not interleave.
+     */
+    private static final Object LOG_LOCK = new Object();
+
+    /**
+     * The time each thread has spent running the in-process compiler since it last reset it, not counting the time
+     * spent waiting for the compiler lock or for a pooled compiler instance
+     */
+    private static final ThreadLocal<Long> COMPILER_NANOS = new ThreadLocal<>();
+
     /**
      * @return the debug
      */
@@ -110,6 +147,41 @@ abstract class AbstractTranslator
         this.failOnError = failOnError;
     }
 
+    /**
+     * @param workerPool the pool of compiler worker JVMs to compile in, or null to run the compiler in the usual way
+     */
+    void setWorkerPool( ForkedWorkerPool workerPool )
+    {
+        this.workerPool = workerPool;
+    }
+
+    /**
+     * @param instancePool the pool of isolated compiler instances to compile in-process with, or null to share the
+     *                     compiler loaded by the plugin, which allows only one in-process compile at a time
+     */
+    void setInstancePool( CompilerInstancePool instancePool )
+    {
+        this.instancePool = instancePool;
+    }
+
+    /**
+     * @param recycleCompilerAfter the number of compiles after which a class loader the plugin created for the
+     *                             compiler is discarded, or 0 never to discard them
+     */
+    void setRecycleCompilerAfter( int recycleCompilerAfter )
+    {
+        this.recycleCompilerAfter = recycleCompilerAfter;
+    }
+
+    /**
+     * Returns true if the compiler should be run in one of the pooled worker JVMs.
+     * @return true if a worker pool is configured and forking is permitted
+     */
+    boolean isWorkerPoolEnabled()
+    {
+        return workerPool != null && isFork();
+    }
+
     /**
      * Returns true if the translator is allowed to create a new forked process.
      * @return true if forking is permitted
@@ -163,18 +235,101 @@ abstract class AbstractTranslator
         }
     }
 
+    /**
+     * Invokes the configured compiler in one of the pooled worker JVMs and throws an exception if anything goes wrong
+     * @param compilerClass the class representing the compiler to invoke
+     * @param args the arguments to pass to the compiler
+     * @throws MojoExecutionException if any error occurs
+     */
+    void invokeCompilerInWorker( Class<?> compilerClass, List<String> args ) throws MojoExecutionException
+    {
+        String[] arguments = args.toArray( new String[args.size()] );
+
+        getLog().debug( getCommandLine( compilerClass, arguments ) );
+
+        ForkedWorkerPool.Result result =
+            workerPool.compile( getWorkerClassPath( compilerClass ), compilerClass.getName(),
+                                getCompilerMethodName(), arguments );
+        logOutputMessages( result.getErr(), result.getOut() );
+
+        if ( result.getExitCode() == CompilerWorker.COMPILER_CRASHED )
+        {
+            throw new MojoExecutionException( "IDL compilation failed: compiler crashed" );
+        }
+        if ( isFailOnError() && isCompilationFailed( result.getErr(), result.getExitCode() ) )
+        {
+            throw new MojoExecutionException( "IDL compilation failed" );
+        }
+    }
+
+    /**
+     * Builds the class path for a worker JVM from the class path of the compiler.
+     */
+    private String getWorkerClassPath( Class<?> compilerClass ) throws MojoExecutionException
+    {
+        List<String> paths = new ArrayList<>();
+        for ( File entry : getCompilerClassPath( compilerClass ) )
+        {
+            paths.add( entry.getPath() );
+        }
+        return StringUtils.join( paths.iterator(), File.pathSeparator );
+    }
+
+    /**
+     * Collects the class path of the class loaders which loaded the compiler, up to and including the one which
+     * loaded this plugin.
+     *
+     * @param compilerClass the class which implements the compiler
+     * @return the class path entries, in search order
+     * @throws MojoExecutionException if a class path entry is not a file
+     */
+    static List<File> getCompilerClassPath( Class<?> compilerClass ) throws MojoExecutionException
+    {
+        Set<File> entries = new LinkedHashSet<>();
+        ClassLoader pluginLoader = AbstractTranslator.class.getClassLoader();
+        for ( ClassLoader loader = compilerClass.getClassLoader(); loader != null; loader = loader.getParent() )
+        {
+            if ( loader instanceof URLClassLoader )
+            {
+                for ( URL url : ( (URLClassLoader) loader ).getURLs() )
+                {
+                    entries.add( toFile( url ) );
+                }
+            }
+            else if ( loader == ClassLoader.getSystemClassLoader() )
+            {
+                for ( String path : System.getProperty( "java.class.path" ).split( File.pathSeparator ) )
+                {
+                    entries.add( new File( path ) );
+                }
+            }
+            if ( loader == pluginLoader )
+            {
+                break;
+            }
+        }
+        return new ArrayList<>( entries );
+    }
+
+    private static File toFile( URL url ) throws MojoExecutionException
+    {
+        try
+        {
+            return new File( url.toURI() );
+        }
+        catch ( URISyntaxException | IllegalArgumentException e )
+        {
+            throw new MojoExecutionException( "Cannot add " + url + " to the compiler worker class path", e );
+        }
+    }
+
     private int runCompilerAndRecordOutput( Class<?> compilerClass, String[] arguments, ByteArrayOutputStream err,
                                             ByteArrayOutputStream out ) throws MojoExecutionException
     {
-        // Backup std channels
-        PrintStream stdErr = System.err;
-        PrintStream stdOut = System.out;
-
-        System.setErr( new PrintStream( err ) );
-        System.setOut( new PrintStream( out ) );
+        CompilerOutputCapture capture = CompilerOutputCapture.begin( out, err );
         try
         {
-            return runCompiler( compilerClass, arguments );
+            return runCompilerExclusively( compilerClass, arguments );
         }
         catch ( NoSuchMethodException e )
         {
@@ -184,18 +339,96 @@ abstract class AbstractTranslator
         {
             throw new MojoExecutionException( "IDL compilation failed", e.getTargetException() );
         }
+        catch ( MojoExecutionException e )
+        {
+            throw e;
+        }
         catch ( Throwable e )
         {
             throw new MojoExecutionException( "IDL compilation failed", e );
         }
         finally
         {
-            // Restore std channels
-            System.setErr( stdErr );
-            System.setOut( stdOut );
+            capture.end();
         }
     }
 
+    /**
+     * Runs the compiler in a copy of its classes that no other thread is using: either an instance leased from the
+     * instance pool, or else the shared compiler, locked for the duration of the compile.
+     */
+    private int runCompilerExclusively( Class<?> compilerClass, String[] arguments )
+            throws MojoExecutionException, NoSuchMethodException, IllegalAccessException, InvocationTargetException,
+            ClassNotFoundException
+    {
+        if ( instancePool == null )
+        {
+            Class<?> sharedClass = compilerClass;
+            while ( !CompilerClassLoaderCache.acquire( sharedClass.getClassLoader() ) )
+            {
+                sharedClass = getClassLoaderFacade().loadClass( sharedClass.getName() );
+            }
+            try
+            {
+                synchronized ( IN_PROCESS_LOCK )
+                {
+                    long startTime = System.nanoTime();
+                    try
+                    {
+                        return runCompiler( sharedClass, arguments );
+                    }
+                    finally
+                    {
+                        addCompilerTime( System.nanoTime() - startTime );
+                    }
+                }
+            }
+            finally
+            {
+                CompilerClassLoaderCache.release( sharedClass.getClassLoader(), recycleCompilerAfter );
+            }
+        }
+
+        CompilerInstancePool.Instance instance =
+            instancePool.lease( compilerClass.getName(), getCompilerClassPath( compilerClass ) );
+        long startTime = System.nanoTime();
+        try
+        {
+            return runCompiler( instance.getCompilerClass(), arguments );
+        }
+        finally
+        {
+            addCompilerTime( System.nanoTime() - startTime );
+            instancePool.release( instance );
+        }
+    }
+
+    /**
+     * Forgets the in-process compiler time recorded for the current thread.
+     */
+    static void resetCompilerTime()
+    {
+        COMPILER_NANOS.remove();
+    }
+
+    /**
+     * Returns the time the current thread has spent running the in-process compiler since it last reset it. This
+     * excludes any time spent waiting for another thread to finish with the compiler.
+     *
+     * @return the time in nanoseconds, or -1 if the thread has not run the in-process compiler
+     */
+    static long getCompilerTime()
+    {
+        Long nanos = COMPILER_NANOS.get();
+        return nanos == null ? -1 : nanos;
+    }
+
+    private static void addCompilerTime( long nanos )
+    {
+        Long previous = COMPILER_NANOS.get();
+        COMPILER_NANOS.set( previous == null ? nanos : previous + nanos );
+    }
+
     /**
      * Runs the IDL compiler
      * @param compilerClass the class which implements the compiler
@@ -208,6 +441,11 @@ abstract class AbstractTranslator
     protected abstract int runCompiler( Class<?> compilerClass, String... arguments )
             throws NoSuchMethodException, IllegalAccessException, InvocationTargetException;
 
+    /**
+     * @return the name of the static method of the compiler class which runs the compiler
+     */
+    abstract String getCompilerMethodName();
+
     private boolean isCompilationFailed( ByteArrayOutputStream err, int exitCode )
     {
         return exitCode != 0 || hasErrors( err );
@@ -226,15 +464,24 @@ abstract class AbstractTranslator
         return false;
     }
 
-    private void logOutputMessages( ByteArrayOutputStream err, ByteArrayOutputStream out )
+    /**
+     * Logs the output recorded while compiling a file as a single block.
+     *
+     * @param err the recorded error output
+     * @param out the recorded standard output
+     */
+    void logOutputMessages( ByteArrayOutputStream err, ByteArrayOutputStream out )
     {
-        if ( isNotEmpty( out ) )
-        {
-            getLog().info( out.toString() );
-        }
-        if ( isNotEmpty( err ) )
+        synchronized ( LOG_LOCK )
         {
-            getLog().error( err.toString() );
+            if ( isNotEmpty( out ) )
+            {
+                getLog().info( out.toString() );
+            }
+            if ( isNotEmpty( err ) )
+            {
+                getLog().error( err.toString() );
+            }
         }
     }
 
@@ -276,21 +523,60 @@ abstract class AbstractTranslator
     }
 
     /**
-     * The implementation of ClassLoaderFacade used at runtime.
+     * The implementation of ClassLoaderFacade used at runtime. Prepended URLs do not create a new loader each time;
+     * the loader for the resulting class path is taken from the session-wide cache.
      */
     private static class ClassLoaderFacadeImpl implements ClassLoaderFacade
     {
-        ClassLoader classLoader = getClass().getClassLoader();
+        private final ClassLoader pluginClassLoader = getClass().getClassLoader();
+
+        private final List<URL> prependedUrls = new ArrayList<>();
+
+        public synchronized void prependUrls( URL... urls )
+        {
+            List<URL> classPath = new ArrayList<>();
+            for ( URL url : urls )
+            {
+                if ( !containsUrl( classPath, url ) )
+                {
+                    classPath.add( url );
+                }
+            }
+            for ( URL url : prependedUrls )
+            {
+                if ( !containsUrl( classPath, url ) )
+                {
+                    classPath.add( url );
+                }
+            }
+            prependedUrls.clear();
+            prependedUrls.addAll( classPath );
+        }
 
-        public void prependUrls( URL... urls )
+        private boolean containsUrl( List<URL> urls, URL url )
         {
-            classLoader = new URLClassLoader( urls, classLoader );
+            for ( URL candidate : urls )
+            {
+                if ( candidate.toExternalForm().equals( url.toExternalForm() ) )
+                {
+                    return true;
+                }
+            }
+            return false;
         }
 
         public Class<?> loadClass( String idlCompilerClass ) throws ClassNotFoundException
         {
-            return classLoader.loadClass( idlCompilerClass );
+            return getClassLoader().loadClass( idlCompilerClass );
         }
 
+        private synchronized ClassLoader getClassLoader()
+        {
+            if ( prependedUrls.isEmpty() )
+            {
+                return pluginClassLoader;
+            }
+            return CompilerClassLoaderCache.getLoader( prependedUrls, pluginClassLoader );
+        }
     }
 }
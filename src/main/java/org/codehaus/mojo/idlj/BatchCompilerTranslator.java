@@ -0,0 +1,48 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * This is the interface to implement for a compiler backend which can compile several IDL files in a single
+ * invocation, sharing the startup cost and the parsing of common includes.
+ */
+public interface BatchCompilerTranslator
+        extends CompilerTranslator
+{
+
+    /**
+     * This method it's used to invoke the compiler on several files at once
+     *
+     * @param sourceDirectory the path to the sources
+     * @param includeDirs     the <code>File[]</code> of directories where to find the includes
+     * @param targetDirectory the path to the destination of the compilation
+     * @param idlFiles        the paths to the files to compile
+     * @param source          the source set on which to run the compiler
+     * @throws MojoExecutionException the exeception is thrown whenever the compilation fails or crashes
+     */
+    void invokeCompiler( String sourceDirectory, File[] includeDirs,
+                         String targetDirectory, List<String> idlFiles, Source source )
+            throws MojoExecutionException;
+}
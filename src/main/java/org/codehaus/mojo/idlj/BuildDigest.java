@@ -0,0 +1,77 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A single digest of the inputs of a build: the configuration, and the paths, modification times and lengths of the
+ * files in the directories it reads. When the digest equals the one saved after the last successful build, and no generated
+ * file is missing, nothing can be stale, and the build is skipped without loading the rest of the build state or the
+ * compiler.
+ */
+class BuildDigest
+{
+    /**
+     * The description of the build, from which the digest is computed
+     */
+    private final StringBuilder description = new StringBuilder();
+
+    /**
+     * Adds a configuration value to the digest.
+     *
+     * @param name  the name of the value
+     * @param value the value, which may be <code>null</code>
+     * @return this digest
+     */
+    BuildDigest add( String name, Object value )
+    {
+        description.append( name ).append( ':' ).append( value ).append( '\n' );
+        return this;
+    }
+
+    /**
+     * Adds the listing of a directory tree to the digest.
+     *
+     * @param name   the name of the directory
+     * @param stamps the stamps of the files in the tree, keyed by their relative paths
+     * @return this digest
+     */
+    BuildDigest addTree( String name, Map<String, ?> stamps )
+    {
+        description.append( name ).append( '\n' );
+        for ( Map.Entry<String, ?> entry : new TreeMap<>( stamps ).entrySet() )
+        {
+            description.append( ' ' ).append( entry.getKey() ).append( '=' ).append( entry.getValue() ).append( '\n' );
+        }
+        return this;
+    }
+
+    /**
+     * @return the digest of everything added, in hexadecimal
+     */
+    String compute()
+    {
+        return ContentManifest.hash( ByteBuffer.wrap( description.toString().getBytes( StandardCharsets.UTF_8 ) ) );
+    }
+}
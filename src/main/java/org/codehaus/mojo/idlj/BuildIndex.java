@@ -0,0 +1,294 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The size and modification time of each IDL file when it was last compiled, used to find the stale files. The index
+ * is saved as a single binary file: a header followed by one record per compile. Compiles append their records as
+ * they complete, and a later record for a path supersedes an earlier one. A build which is interrupted may leave a
+ * truncated last record, which is ignored when reading; as records appended after it would be lost, the file is then
+ * rewritten before anything is appended to it. When the superseded records outnumber the live ones, the file is
+ * rewritten with only the live ones. Entries are keyed by the path of the IDL file relative to its source directory.
+ * <p>
+ * The index records only what the timestamp stale check needs. The content hashes, generated files and compile
+ * durations of the IDL files are kept by <code>ContentManifest</code>, <code>OutputManifest</code> and
+ * <code>CompileHistory</code>, each of which is read, pruned and rewritten on its own terms.
+ */
+class BuildIndex
+{
+    /**
+     * Identifies the saved form of the index
+     */
+    private static final int MAGIC = 0x49444c58;
+
+    /**
+     * The version of the saved form
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size recorded for a file which has been removed
+     */
+    private static final long REMOVED = -1;
+
+    /**
+     * The number of superseded records which is always tolerated before compacting
+     */
+    private static final int COMPACTION_SLACK = 64;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The number of records in the saved form, including superseded ones
+     */
+    private final AtomicInteger recordCount = new AtomicInteger();
+
+    /**
+     * The number of bytes of the saved form which were read as valid records, including the header
+     */
+    private int validLength;
+
+    /**
+     * Reads an index previously written by {@link #toBytes()} and {@link #record}.
+     *
+     * Reading stops at the first record which is truncated or cannot be decoded; {@link #getValidLength()} then tells
+     * where the valid records end.
+     *
+     * @param buffer the saved index
+     * @return the index
+     * @throws IOException if the buffer does not hold an index
+     */
+    static BuildIndex read( ByteBuffer buffer ) throws IOException
+    {
+        int start = buffer.position();
+        if ( buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION )
+        {
+            throw new IOException( "Not a build index of version " + VERSION );
+        }
+
+        BuildIndex index = new BuildIndex();
+        index.validLength = buffer.position() - start;
+        while ( buffer.remaining() >= 4 )
+        {
+            int length = buffer.getInt();
+            if ( length <= 0 || length > buffer.remaining() )
+            {
+                break;
+            }
+            ByteBuffer record = buffer.slice();
+            record.limit( length );
+            buffer.position( buffer.position() + length );
+            try
+            {
+                index.apply( record );
+            }
+            catch ( BufferUnderflowException e )
+            {
+                break;
+            }
+            index.validLength = buffer.position() - start;
+        }
+        return index;
+    }
+
+    /**
+     * @return the number of bytes, from the start of the saved form, which were read as valid records; if this is
+     *         less than the size of the saved form, records appended to it would not be read back
+     */
+    int getValidLength()
+    {
+        return validLength;
+    }
+
+    private void apply( ByteBuffer record )
+    {
+        byte[] path = new byte[record.getShort() & 0xffff];
+        record.get( path );
+        long size = record.getLong();
+        long modificationTime = record.getLong();
+
+        String key = new String( path, StandardCharsets.UTF_8 );
+        if ( size == REMOVED )
+        {
+            entries.remove( key );
+        }
+        else
+        {
+            entries.put( key, new Entry( size, modificationTime ) );
+        }
+        recordCount.incrementAndGet();
+    }
+
+    /**
+     * @return the index in compacted form, holding only the live records
+     * @throws IOException if the index cannot be written
+     */
+    byte[] toBytes() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bytes );
+        out.writeInt( MAGIC );
+        out.writeInt( VERSION );
+        for ( Map.Entry<String, Entry> entry : entries.entrySet() )
+        {
+            Entry value = entry.getValue();
+            out.write( encode( entry.getKey(), value.size, value.modificationTime ) );
+        }
+        out.close();
+        recordCount.set( entries.size() );
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Records that a file has been compiled.
+     *
+     * @param key              the path of the file relative to its source directory
+     * @param size             the size of the file
+     * @param modificationTime the modification time of the file
+     * @return the record to append to the saved form
+     */
+    byte[] record( String key, long size, long modificationTime )
+    {
+        entries.put( key, new Entry( size, modificationTime ) );
+        recordCount.incrementAndGet();
+        return encode( key, size, modificationTime );
+    }
+
+    /**
+     * Forgets a file which has been removed.
+     *
+     * @param key the path of the file relative to its source directory
+     * @return the record to append to the saved form, or null if the file was not in the index
+     */
+    byte[] remove( String key )
+    {
+        if ( entries.remove( key ) == null )
+        {
+            return null;
+        }
+        recordCount.incrementAndGet();
+        return encode( key, REMOVED, 0 );
+    }
+
+    /**
+     * @param key              the path of the file relative to its source directory
+     * @param size             the current size of the file
+     * @param modificationTime the current modification time of the file
+     * @param granularity      the difference in milliseconds below which modification times are considered equal
+     * @return true if the file has not been compiled, or has changed since
+     */
+    boolean isStale( String key, long size, long modificationTime, long granularity )
+    {
+        Entry entry = entries.get( key );
+        return entry == null || entry.size != size
+                || Math.abs( modificationTime - entry.modificationTime ) > granularity;
+    }
+
+    /**
+     * Describes why a file is stale, for diagnostics.
+     *
+     * @param key              the path of the file relative to its source directory
+     * @param size             the current size of the file
+     * @param modificationTime the current modification time of the file
+     * @param granularity      the difference in milliseconds below which modification times are considered equal
+     * @return the reason the file is stale, or <code>null</code> if it is not
+     */
+    String describeStaleness( String key, long size, long modificationTime, long granularity )
+    {
+        Entry entry = entries.get( key );
+        if ( entry == null )
+        {
+            return "not compiled before";
+        }
+        if ( entry.size != size )
+        {
+            return "size changed from " + entry.size + " to " + size + " bytes";
+        }
+        long skew = modificationTime - entry.modificationTime;
+        if ( Math.abs( skew ) > granularity )
+        {
+            return "modified " + Math.abs( skew ) + " ms " + ( skew > 0 ? "after" : "before" )
+                + " the version last compiled, beyond the granularity of " + granularity + " ms";
+        }
+        return null;
+    }
+
+    /**
+     * @return the paths of the recorded files
+     */
+    Set<String> getPaths()
+    {
+        return entries.keySet();
+    }
+
+    /**
+     * @return true if the saved form holds more superseded records than it is worth keeping
+     */
+    boolean needsCompaction()
+    {
+        return recordCount.get() > 2 * entries.size() + COMPACTION_SLACK;
+    }
+
+    /**
+     * @return the header of an empty saved form, to which records can be appended
+     */
+    static byte[] header()
+    {
+        return ByteBuffer.allocate( 8 ).putInt( MAGIC ).putInt( VERSION ).array();
+    }
+
+    private static byte[] encode( String key, long size, long modificationTime )
+    {
+        byte[] path = key.getBytes( StandardCharsets.UTF_8 );
+        int length = 2 + path.length + 8 + 8;
+        ByteBuffer record = ByteBuffer.allocate( 4 + length );
+        record.putInt( length );
+        record.putShort( (short) path.length ).put( path );
+        record.putLong( size ).putLong( modificationTime );
+        return record.array();
+    }
+
+    /**
+     * A single recorded file.
+     */
+    private static class Entry
+    {
+        private final long size;
+
+        private final long modificationTime;
+
+        Entry( long size, long modificationTime )
+        {
+            this.size = size;
+            this.modificationTime = modificationTime;
+        }
+    }
+}
@@ -24,6 +24,7 @@ import org.apache.maven.plugin.MojoExecutionException;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -115,9 +116,13 @@ class BuiltInTranslator
         getClassLoaderFacade().prependUrls( toolsJarUrl );
 
         // Unfortunately the idlj compiler reads messages using the system class path.
-        // Therefore this really nasty hack is required.
-        System.setProperty( "java.class.path", System.getProperty( "java.class.path" )
-                + System.getProperty( "path.separator" ) + toolsJar.getAbsolutePath() );
+        // Therefore this really nasty hack is required - but only once per JVM.
+        String classPath = System.getProperty( "java.class.path" );
+        if ( !Arrays.asList( classPath.split( File.pathSeparator ) ).contains( toolsJar.getAbsolutePath() ) )
+        {
+            System.setProperty( "java.class.path",
+                                classPath + System.getProperty( "path.separator" ) + toolsJar.getAbsolutePath() );
+        }
         if ( System.getProperty( "java.vm.name" ).contains( "HotSpot" ) )
         {
             getClassLoaderFacade().loadClass( "com.sun.tools.corba.se.idl.som.cff.FileLocator" );
@@ -0,0 +1,335 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The compilation resources shared by every execution of the plugin in a Maven session, including parallel
+ * executions in different modules of a multi-threaded build: the compiler threads, one limit on the number of
+ * compiles running at the same time across the whole reactor, the gate which holds compiles back while memory is
+ * short, the warm isolated compiler instances and the forked compiler workers. The service is shut down, releasing
+ * all of them, when an execution reports a different session, when no execution has been running for
+ * {@link #IDLE_MILLIS}, or when the JVM shuts down.
+ * <p>
+ * The plugin API offers no notice of the end of a session, and an execution cannot tell whether another execution of
+ * the plugin follows it in the session. The idle delay keeps the resources warm from one module to the next, and
+ * releases them soon after the last execution, so that a JVM which outlives the build, such as a build daemon, does
+ * not keep the workers and class loaders until its next build.
+ */
+final class CompilationService
+{
+    /**
+     * The service of the current session, or null if no execution has run yet
+     */
+    private static CompilationService current;
+
+    /**
+     * Identifies the session of the current service
+     */
+    private static Object currentSession;
+
+    /**
+     * Set once the hook which shuts down the service at JVM shutdown is registered
+     */
+    private static boolean shutdownHookRegistered;
+
+    /**
+     * How long the service is kept once no execution is running
+     */
+    static final long IDLE_MILLIS = 30000;
+
+    /**
+     * The number of executions running
+     */
+    private static int activeExecutions;
+
+    /**
+     * Shuts down the service once it has been idle for long enough, or null if no shutdown is pending
+     */
+    private static Timer idleShutdown;
+
+    /**
+     * Runs the compile tasks of all executions
+     */
+    private final ExecutorService executor = Executors.newCachedThreadPool( new CompilerThreadFactory() );
+
+    /**
+     * Limits the number of compiles running at the same time across all executions
+     */
+    private final CompilePermits permits;
+
+    /**
+     * Holds back compiles while the heap is too full for them
+     */
+    private final MemoryGate memoryGate = new MemoryGate();
+
+    /**
+     * The shared pool of isolated compiler instances, or null if none has been requested
+     */
+    private CompilerInstancePool instancePool;
+
+    /**
+     * The shared pool of forked compiler workers, or null if none has been requested
+     */
+    private ForkedWorkerPool workerPool;
+
+    /**
+     * @param concurrencyLimit the maximum number of compiles to run at the same time
+     */
+    CompilationService( int concurrencyLimit )
+    {
+        permits = new CompilePermits( concurrencyLimit );
+    }
+
+    /**
+     * Returns the service for the session of an execution. If the session differs from that of the earlier
+     * executions, their service is shut down and a new one started.
+     *
+     * @param session identifies the Maven session, or null if unknown, in which case the current service is used
+     * @return the service shared by all executions in the session
+     */
+    static synchronized CompilationService forSession( Object session )
+    {
+        cancelIdleShutdown();
+        if ( current != null && session != null && !session.equals( currentSession ) )
+        {
+            current.shutdown();
+            current = null;
+        }
+        if ( current == null )
+        {
+            registerShutdownHook();
+            current = new CompilationService( Runtime.getRuntime().availableProcessors() );
+            currentSession = session;
+        }
+        return current;
+    }
+
+    /**
+     * Signals that an execution starts using the service; a pending idle shutdown is cancelled.
+     */
+    static synchronized void executionStarted()
+    {
+        activeExecutions++;
+        cancelIdleShutdown();
+    }
+
+    /**
+     * Signals that an execution no longer uses the service. Once no execution is running, the service is shut down
+     * after {@link #IDLE_MILLIS}, unless another execution starts before.
+     */
+    static synchronized void executionFinished()
+    {
+        activeExecutions--;
+        if ( activeExecutions == 0 && current != null )
+        {
+            scheduleIdleShutdown( IDLE_MILLIS );
+        }
+    }
+
+    /**
+     * Shuts down the service after a delay, unless an execution starts before.
+     *
+     * @param delayMillis the delay in milliseconds
+     */
+    static synchronized void scheduleIdleShutdown( long delayMillis )
+    {
+        cancelIdleShutdown();
+        final Timer timer = new Timer( "idlj-compiler-idle", true );
+        idleShutdown = timer;
+        timer.schedule( new TimerTask()
+        {
+            public void run()
+            {
+                shutdownIfIdle( timer );
+            }
+        }, delayMillis );
+    }
+
+    /**
+     * Shuts down the service, unless the shutdown has been cancelled or an execution has started since.
+     *
+     * @param timer the timer which scheduled the shutdown
+     */
+    private static synchronized void shutdownIfIdle( Timer timer )
+    {
+        if ( timer != idleShutdown || activeExecutions > 0 )
+        {
+            return;
+        }
+        cancelIdleShutdown();
+        if ( current != null )
+        {
+            current.shutdown();
+            current = null;
+        }
+    }
+
+    private static void cancelIdleShutdown()
+    {
+        if ( idleShutdown != null )
+        {
+            idleShutdown.cancel();
+            idleShutdown = null;
+        }
+    }
+
+    private static void registerShutdownHook()
+    {
+        if ( !shutdownHookRegistered )
+        {
+            Runtime.getRuntime().addShutdownHook( new Thread( "idlj-compiler-cleanup" )
+            {
+                public void run()
+                {
+                    synchronized ( CompilationService.class )
+                    {
+                        if ( current != null )
+                        {
+                            current.shutdown();
+                        }
+                    }
+                }
+            } );
+            shutdownHookRegistered = true;
+        }
+    }
+
+    /**
+     * @return the executor which runs compile tasks
+     */
+    ExecutorService getExecutor()
+    {
+        return executor;
+    }
+
+    /**
+     * @return the limit on the number of compiles running at the same time
+     */
+    CompilePermits getPermits()
+    {
+        return permits;
+    }
+
+    /**
+     * @return the gate which holds back compiles while the heap is too full for them
+     */
+    MemoryGate getMemoryGate()
+    {
+        return memoryGate;
+    }
+
+    /**
+     * Sets the maximum number of compiles to run at the same time across all executions. Executions should agree on
+     * it; the latest setting applies.
+     *
+     * @param concurrencyLimit the maximum number of compiles to run at the same time
+     */
+    void setConcurrencyLimit( int concurrencyLimit )
+    {
+        permits.setLimit( concurrencyLimit );
+    }
+
+    /**
+     * Returns the pool of isolated compiler instances shared by all executions. If the executions ask for different
+     * configurations, the latest replaces the existing pool.
+     *
+     * @param size         the maximum number of compiler instances
+     * @param recycleAfter the number of compiles after which an instance is replaced, or 0 never to replace instances
+     * @return the shared pool
+     */
+    synchronized CompilerInstancePool getInstancePool( int size, int recycleAfter )
+    {
+        if ( instancePool != null && !instancePool.hasConfiguration( size, recycleAfter ) )
+        {
+            instancePool.close();
+            instancePool = null;
+        }
+        if ( instancePool == null )
+        {
+            instancePool = new CompilerInstancePool( size, recycleAfter );
+        }
+        return instancePool;
+    }
+
+    /**
+     * Returns the pool of forked compiler workers shared by all executions. If the executions ask for different
+     * configurations, the latest replaces the existing pool.
+     *
+     * @param size                 the maximum number of worker processes
+     * @param recycleAfter         the number of compiles after which a worker is replaced, or 0 never to replace
+     *                             workers
+     * @param compileTimeoutMillis the time in milliseconds a worker may take to compile, or 0 for no limit
+     * @return the shared pool
+     */
+    synchronized ForkedWorkerPool getWorkerPool( int size, int recycleAfter, long compileTimeoutMillis )
+    {
+        if ( workerPool != null && !workerPool.hasConfiguration( size, recycleAfter, compileTimeoutMillis ) )
+        {
+            workerPool.close();
+            workerPool = null;
+        }
+        if ( workerPool == null )
+        {
+            workerPool = new ForkedWorkerPool( size, recycleAfter, compileTimeoutMillis );
+        }
+        return workerPool;
+    }
+
+    /**
+     * Stops the compiler threads once they are idle, and releases the compiler instances, workers and class loaders.
+     */
+    synchronized void shutdown()
+    {
+        executor.shutdown();
+        if ( instancePool != null )
+        {
+            instancePool.close();
+            instancePool = null;
+        }
+        if ( workerPool != null )
+        {
+            workerPool.close();
+            workerPool = null;
+        }
+        CompilerClassLoaderCache.closeAll();
+    }
+
+    /**
+     * Creates named daemon threads, so that compiler threads are easy to identify in a thread dump.
+     */
+    private static class CompilerThreadFactory implements ThreadFactory
+    {
+        private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+        public Thread newThread( Runnable runnable )
+        {
+            Thread thread = new Thread( runnable, "idlj-compiler-" + THREAD_NUMBER.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+}
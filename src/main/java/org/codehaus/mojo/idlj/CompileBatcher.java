@@ -0,0 +1,170 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Combines single-file compile tasks into batches which a <code>BatchCompilerTranslator</code> compiles in one
+ * invocation.
+ */
+class CompileBatcher
+{
+    /**
+     * The maximum number of files in a batch
+     */
+    private final int batchSize;
+
+    /**
+     * The number of threads which will compile the batches
+     */
+    private final int threads;
+
+    /**
+     * @param batchSize the maximum number of files in a batch
+     * @param threads   the number of threads which will compile the batches
+     */
+    CompileBatcher( int batchSize, int threads )
+    {
+        this.batchSize = batchSize;
+        this.threads = threads;
+    }
+
+    /**
+     * Groups the tasks into batches. Only files with the same source are batched together. Each group is split into
+     * as few batches as the batch size allows, but never fewer than there are threads to run them; files are then
+     * assigned longest first to the batch with the least estimated work, so the batches take similar times.
+     *
+     * @param tasks single-file tasks with their estimated compile times
+     * @return the batches to compile
+     */
+    List<CompileTask> createBatches( List<CompileTask> tasks )
+    {
+        List<CompileTask> batches = new ArrayList<>();
+        for ( Map.Entry<Source, List<CompileTask>> group : groupBySource( tasks ).entrySet() )
+        {
+            batches.addAll( createBatches( group.getKey(), group.getValue() ) );
+        }
+        return batches;
+    }
+
+    private Map<Source, List<CompileTask>> groupBySource( List<CompileTask> tasks )
+    {
+        Map<Source, List<CompileTask>> groups = new LinkedHashMap<>();
+        for ( CompileTask task : tasks )
+        {
+            List<CompileTask> group = groups.get( task.getSource() );
+            if ( group == null )
+            {
+                group = new ArrayList<>();
+                groups.put( task.getSource(), group );
+            }
+            group.add( task );
+        }
+        return groups;
+    }
+
+    private List<CompileTask> createBatches( Source source, List<CompileTask> group )
+    {
+        int numFiles = group.size();
+        int numBatches = Math.max( ceilDiv( numFiles, batchSize ), Math.min( threads, numFiles ) );
+        int capacity = ceilDiv( numFiles, numBatches );
+
+        List<Bin> bins = new ArrayList<>();
+        for ( int i = 0; i < numBatches; i++ )
+        {
+            bins.add( new Bin() );
+        }
+
+        for ( CompileTask task : sortLongestFirst( group ) )
+        {
+            selectBin( bins, capacity ).add( task );
+        }
+
+        List<CompileTask> batches = new ArrayList<>();
+        for ( Bin bin : bins )
+        {
+            if ( !bin.files.isEmpty() )
+            {
+                CompileTask batch = new CompileTask( bin.files, source );
+                batch.setEstimatedMillis( bin.estimatedMillis );
+                batch.setEstimatedBytes( bin.estimatedBytes );
+                batches.add( batch );
+            }
+        }
+        return batches;
+    }
+
+    private List<CompileTask> sortLongestFirst( List<CompileTask> group )
+    {
+        List<CompileTask> sorted = new ArrayList<>( group );
+        Collections.sort( sorted, new Comparator<CompileTask>()
+        {
+            public int compare( CompileTask first, CompileTask second )
+            {
+                return Long.compare( second.getEstimatedMillis(), first.getEstimatedMillis() );
+            }
+        } );
+        return sorted;
+    }
+
+    private Bin selectBin( List<Bin> bins, int capacity )
+    {
+        Bin selected = null;
+        for ( Bin bin : bins )
+        {
+            if ( bin.files.size() < capacity && ( selected == null || bin.estimatedMillis < selected.estimatedMillis ) )
+            {
+                selected = bin;
+            }
+        }
+        return selected;
+    }
+
+    private static int ceilDiv( int dividend, int divisor )
+    {
+        return ( dividend + divisor - 1 ) / divisor;
+    }
+
+    /**
+     * The files assigned to a single batch so far.
+     */
+    private static class Bin
+    {
+        private final List<File> files = new ArrayList<>();
+
+        private long estimatedMillis;
+
+        private long estimatedBytes;
+
+        void add( CompileTask task )
+        {
+            files.addAll( task.getIdlFiles() );
+            estimatedMillis += task.getEstimatedMillis();
+            estimatedBytes += task.getEstimatedBytes();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The time taken and the heap needed to compile each IDL file in previous builds, used to start the most
+ * expensive files first and to hold back compiles while the heap is too full for them. Entries are keyed by the path
+ * of the IDL file relative to its source directory.
+ */
+class CompileHistory
+{
+    /**
+     * The recorded compiles
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The average compile time and heap per byte of source of the recorded compiles, computed when first needed and
+     * kept until the history changes, so that estimating a build's files looks at the recorded compiles only once
+     */
+    private volatile Rates rates;
+
+    /**
+     * Whether compiles were recorded or forgotten since the history was read
+     */
+    private volatile boolean modified;
+
+    /**
+     * Reads a history previously written by {@link #toBytes()}.
+     *
+     * @param bytes the saved history
+     * @return the history
+     * @throws IOException if the history cannot be parsed
+     */
+    static CompileHistory fromBytes( byte[] bytes ) throws IOException
+    {
+        Properties properties = new Properties();
+        properties.load( new ByteArrayInputStream( bytes ) );
+
+        CompileHistory history = new CompileHistory();
+        for ( String key : properties.stringPropertyNames() )
+        {
+            Entry entry = Entry.parse( properties.getProperty( key ) );
+            if ( entry != null )
+            {
+                history.entries.put( key, entry );
+            }
+        }
+        return history;
+    }
+
+    /**
+     * @return the history in the form read by {@link #fromBytes(byte[])}
+     * @throws IOException if the history cannot be written
+     */
+    byte[] toBytes() throws IOException
+    {
+        Properties properties = new Properties();
+        for ( Map.Entry<String, Entry> entry : entries.entrySet() )
+        {
+            properties.setProperty( entry.getKey(), entry.getValue().toString() );
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        properties.store( out, "IDL compile durations in milliseconds, file sizes and peak heap growth in bytes" );
+        return out.toByteArray();
+    }
+
+    /**
+     * Records the time taken to compile a file.
+     *
+     * @param key      the path of the file relative to its source directory
+     * @param millis   the compile time in milliseconds
+     * @param fileSize the size of the file when it was compiled
+     */
+    void record( String key, long millis, long fileSize )
+    {
+        record( key, millis, fileSize, -1 );
+    }
+
+    /**
+     * Records the time taken and the heap needed to compile a file.
+     *
+     * @param key       the path of the file relative to its source directory
+     * @param millis    the compile time in milliseconds
+     * @param fileSize  the size of the file when it was compiled
+     * @param heapBytes the peak heap growth during the compile, or -1 if it was not measured
+     */
+    void record( String key, long millis, long fileSize, long heapBytes )
+    {
+        entries.put( key, new Entry( millis, fileSize, heapBytes ) );
+        rates = null;
+        modified = true;
+    }
+
+    /**
+     * @return the paths of the recorded files, relative to their source directory
+     */
+    Set<String> getIdlFiles()
+    {
+        return new HashSet<>( entries.keySet() );
+    }
+
+    /**
+     * Removes the recorded compile of a file which no longer exists.
+     *
+     * @param key the path of the file relative to its source directory
+     */
+    void forget( String key )
+    {
+        if ( entries.remove( key ) != null )
+        {
+            rates = null;
+            modified = true;
+        }
+    }
+
+    /**
+     * @return true if compiles were recorded or forgotten since the history was read
+     */
+    boolean isModified()
+    {
+        return modified;
+    }
+
+    /**
+     * Estimates the time needed to compile a file. Files compiled before are expected to take as long as they did
+     * the last time; for others, the estimate is derived from the file size, using the average compile rate of the
+     * recorded files if there are any.
+     *
+     * @param key      the path of the file relative to its source directory
+     * @param fileSize the current size of the file
+     * @return the estimated compile time; comparable between files but only approximately in milliseconds
+     */
+    long estimateMillis( String key, long fileSize )
+    {
+        Entry entry = entries.get( key );
+        if ( entry != null )
+        {
+            return entry.millis;
+        }
+        return (long) ( fileSize * getRates().millisPerByte );
+    }
+
+    /**
+     * Estimates the heap a compile of a file will need. Files compiled before are expected to need as much as they
+     * did the last time; for others, the estimate is derived from the file size, using the average heap needed per
+     * byte of source of the recorded files.
+     *
+     * @param key      the path of the file relative to its source directory
+     * @param fileSize the current size of the file
+     * @return the estimated heap, or 0 if nothing is known
+     */
+    long estimateBytes( String key, long fileSize )
+    {
+        Entry entry = entries.get( key );
+        if ( entry != null && entry.heapBytes >= 0 )
+        {
+            return entry.heapBytes;
+        }
+        return (long) ( fileSize * getRates().heapPerByte );
+    }
+
+    private Rates getRates()
+    {
+        Rates current = rates;
+        if ( current == null )
+        {
+            current = new Rates( entries.values() );
+            rates = current;
+        }
+        return current;
+    }
+
+    /**
+     * The average cost per byte of source of the recorded compiles.
+     */
+    private static class Rates
+    {
+        private final double millisPerByte;
+
+        private final double heapPerByte;
+
+        Rates( Iterable<Entry> entries )
+        {
+            long totalMillis = 0;
+            long totalBytes = 0;
+            long totalHeap = 0;
+            long totalMeasuredBytes = 0;
+            for ( Entry entry : entries )
+            {
+                totalMillis += entry.millis;
+                totalBytes += entry.fileSize;
+                if ( entry.heapBytes >= 0 )
+                {
+                    totalHeap += entry.heapBytes;
+                    totalMeasuredBytes += entry.fileSize;
+                }
+            }
+            millisPerByte = totalBytes == 0 ? 1 : (double) totalMillis / totalBytes;
+            heapPerByte = totalMeasuredBytes == 0 ? 0 : (double) totalHeap / totalMeasuredBytes;
+        }
+    }
+
+    /**
+     * A single recorded compile.
+     */
+    private static class Entry
+    {
+        private final long millis;
+
+        private final long fileSize;
+
+        private final long heapBytes;
+
+        Entry( long millis, long fileSize, long heapBytes )
+        {
+            this.millis = millis;
+            this.fileSize = fileSize;
+            this.heapBytes = heapBytes;
+        }
+
+        static Entry parse( String value )
+        {
+            String[] fields = value.split( "," );
+            try
+            {
+                return new Entry( Long.parseLong( fields[0].trim() ),
+                                  fields.length > 1 ? Long.parseLong( fields[1].trim() ) : 0,
+                                  fields.length > 2 ? Long.parseLong( fields[2].trim() ) : -1 );
+            }
+            catch ( NumberFormatException e )
+            {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return millis + "," + fileSize + "," + heapBytes;
+        }
+    }
+}
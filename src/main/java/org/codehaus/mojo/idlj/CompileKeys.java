@@ -0,0 +1,134 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The key of the compile of each IDL file: a hash of the options of the source which compiled it, the compiler, its
+ * path, and its contents and those of the files it includes. Compiles with equal keys generate the same files, which
+ * lets one goal use the files generated by another instead of compiling the same file again. IDL files are keyed by
+ * their paths relative to the source directory.
+ */
+class CompileKeys
+{
+    /**
+     * The keys, keyed by the IDL files
+     */
+    private final Map<String, String> keys = new ConcurrentHashMap<>();
+
+    /**
+     * True if the keys differ from the ones they were read from
+     */
+    private volatile boolean modified;
+
+    /**
+     * Reads keys previously written by {@link #toBytes()}.
+     *
+     * @param bytes the saved keys
+     * @return the keys
+     * @throws IOException if the keys cannot be parsed
+     */
+    static CompileKeys fromBytes( byte[] bytes ) throws IOException
+    {
+        Properties properties = new Properties();
+        properties.load( new ByteArrayInputStream( bytes ) );
+
+        CompileKeys result = new CompileKeys();
+        for ( String key : properties.stringPropertyNames() )
+        {
+            result.keys.put( key, properties.getProperty( key ) );
+        }
+        return result;
+    }
+
+    /**
+     * @return the keys in the form read by {@link #fromBytes(byte[])}
+     * @throws IOException if the keys cannot be written
+     */
+    byte[] toBytes() throws IOException
+    {
+        Properties properties = new Properties();
+        properties.putAll( keys );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        properties.store( out, "Keys of the compile of each IDL file" );
+        return out.toByteArray();
+    }
+
+    /**
+     * @return true if the keys have changed since they were read
+     */
+    boolean isModified()
+    {
+        return modified;
+    }
+
+    /**
+     * @return the IDL files whose keys are recorded
+     */
+    Set<String> getIdlFiles()
+    {
+        return new TreeSet<>( keys.keySet() );
+    }
+
+    /**
+     * @param idlFile the path of an IDL file relative to the source directory
+     * @return the key of its compile, or <code>null</code> if it is unknown
+     */
+    String get( String idlFile )
+    {
+        return keys.get( idlFile );
+    }
+
+    /**
+     * Records the key of the compile of an IDL file, replacing the one recorded before.
+     *
+     * @param idlFile the path of the IDL file relative to the source directory
+     * @param key     the key
+     */
+    void record( String idlFile, String key )
+    {
+        if ( !key.equals( keys.put( idlFile, key ) ) )
+        {
+            modified = true;
+        }
+    }
+
+    /**
+     * Forgets an IDL file which has been deleted, is no longer compiled, or whose key is unknown.
+     *
+     * @param idlFile the path of the IDL file relative to the source directory
+     */
+    void forget( String idlFile )
+    {
+        if ( keys.remove( idlFile ) != null )
+        {
+            modified = true;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Limits the number of compiles running at the same time. Unlike a <code>Semaphore</code>, the limit may be changed
+ * while permits are held; lowering it only delays new compiles until enough of the running ones have finished.
+ */
+class CompilePermits
+{
+    /**
+     * The maximum number of compiles to run at the same time
+     */
+    private int limit;
+
+    /**
+     * The number of permits currently held
+     */
+    private int inUse;
+
+    /**
+     * @param limit the maximum number of compiles to run at the same time
+     */
+    CompilePermits( int limit )
+    {
+        this.limit = limit;
+    }
+
+    /**
+     * Waits until fewer than the limit of compiles are running, and takes a permit to run one more.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    synchronized void acquire() throws InterruptedException
+    {
+        while ( inUse >= limit )
+        {
+            wait();
+        }
+        inUse++;
+    }
+
+    /**
+     * Returns a permit taken by {@link #acquire()}.
+     */
+    synchronized void release()
+    {
+        inUse--;
+        notifyAll();
+    }
+
+    /**
+     * @return the maximum number of compiles to run at the same time
+     */
+    synchronized int getLimit()
+    {
+        return limit;
+    }
+
+    /**
+     * @param limit the maximum number of compiles to run at the same time
+     */
+    synchronized void setLimit( int limit )
+    {
+        this.limit = limit;
+        notifyAll();
+    }
+
+    /**
+     * @return the number of compiles currently running
+     */
+    synchronized int getInUse()
+    {
+        return inUse;
+    }
+}
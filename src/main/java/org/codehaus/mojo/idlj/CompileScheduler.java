@@ -0,0 +1,416 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a set of compile tasks, possibly on several threads, and reports every failure once all tasks have completed.
+ * The threads come from the session's <code>CompilationService</code>, and every compile holds one of its permits,
+ * so that concurrent executions share a single limit on the number of running compiles. Within that limit, its
+ * <code>MemoryGate</code> holds back compiles while the heap is too full for them.
+ */
+class CompileScheduler
+{
+    /**
+     * The maximum number of tasks to run at the same time
+     */
+    private final int threads;
+
+    /**
+     * Provides the threads, and the permits limiting the compiles of all executions
+     */
+    private final CompilationService service;
+
+    /**
+     * the <code>Log</code> that will used for the messages
+     */
+    private final Log log;
+
+    /**
+     * @param threads the maximum number of tasks of this execution to run at the same time
+     * @param service the service which provides the threads and permits
+     * @param log     the <code>Log</code> that will used for the messages
+     */
+    CompileScheduler( int threads, CompilationService service, Log log )
+    {
+        this.threads = threads;
+        this.service = service;
+        this.log = log;
+    }
+
+    /**
+     * Converts a thread count setting to the number of threads to use. The setting is either a positive integer,
+     * or a multiplier of the number of available processors followed by "C", as in "1.5C".
+     *
+     * @param setting the configured value; if <code>null</code> or empty, a single thread is used
+     * @return the number of threads to use, never less than one
+     * @throws MojoExecutionException if the setting is not a valid thread count
+     */
+    static int parseThreadCount( String setting ) throws MojoExecutionException
+    {
+        if ( setting == null || setting.trim().isEmpty() )
+        {
+            return 1;
+        }
+
+        String value = setting.trim();
+        try
+        {
+            if ( value.endsWith( "C" ) || value.endsWith( "c" ) )
+            {
+                float multiplier = Float.parseFloat( value.substring( 0, value.length() - 1 ) );
+                return Math.max( 1, (int) ( multiplier * Runtime.getRuntime().availableProcessors() ) );
+            }
+
+            int count = Integer.parseInt( value );
+            if ( count > 0 )
+            {
+                return count;
+            }
+        }
+        catch ( NumberFormatException e )
+        {
+            // reported below
+        }
+        throw new MojoExecutionException( "Invalid thread count: '" + setting
+                + "'. Use a positive number, or a multiple of the processor count such as '1.5C'" );
+    }
+
+    /**
+     * Processes all of the specified tasks, starting with those with the longest estimated time. A failing task does
+     * not prevent the others from running; once all have completed, the failures are reported together.
+     *
+     * @param tasks   the tasks to process
+     * @param handler the object which processes a single task
+     * @throws MojoExecutionException if any of the tasks failed
+     */
+    void execute( List<CompileTask> tasks, TaskHandler handler ) throws MojoExecutionException
+    {
+        List<CompileTask> schedule = createSchedule( tasks );
+        List<Failure> failures = Collections.synchronizedList( new ArrayList<Failure>() );
+
+        long startTime = System.nanoTime();
+        int poolSize = Math.min( threads, schedule.size() );
+        if ( poolSize <= 1 )
+        {
+            for ( CompileTask task : schedule )
+            {
+                runTask( task, handler, failures );
+            }
+        }
+        else
+        {
+            runConcurrently( schedule, handler, failures, poolSize );
+        }
+
+        reportSchedule( schedule, poolSize, toMillis( System.nanoTime() - startTime ) );
+        reportFailures( schedule.size(), failures );
+    }
+
+    /**
+     * Orders the tasks longest first, which keeps a long task from starting last and extending the total build time.
+     *
+     * @param tasks the tasks to run
+     * @return the tasks in the order in which to start them
+     */
+    private List<CompileTask> createSchedule( List<CompileTask> tasks )
+    {
+        List<CompileTask> schedule = new ArrayList<>( tasks );
+        Collections.sort( schedule, new Comparator<CompileTask>()
+        {
+            public int compare( CompileTask first, CompileTask second )
+            {
+                return Long.compare( second.getEstimatedMillis(), first.getEstimatedMillis() );
+            }
+        } );
+
+        if ( log.isDebugEnabled() )
+        {
+            for ( CompileTask task : schedule )
+            {
+                log.debug( "Scheduled " + task + " (estimated " + task.getEstimatedMillis() + " ms)" );
+            }
+        }
+        return schedule;
+    }
+
+    /**
+     * Reports how the elapsed time compares to the best possible time for the completed tasks: the larger of the
+     * longest single task and the total work spread evenly over all threads.
+     */
+    private void reportSchedule( List<CompileTask> schedule, int poolSize, long elapsedMillis )
+    {
+        long totalMillis = 0;
+        int numFiles = 0;
+        CompileTask longest = null;
+        for ( CompileTask task : schedule )
+        {
+            numFiles += task.getIdlFiles().size();
+            if ( task.getDurationMillis() >= 0 )
+            {
+                totalMillis += task.getDurationMillis();
+                if ( longest == null || task.getDurationMillis() > longest.getDurationMillis() )
+                {
+                    longest = task;
+                }
+            }
+        }
+
+        if ( longest != null )
+        {
+            long bestPossible = Math.max( longest.getDurationMillis(), ( totalMillis + poolSize - 1 ) / poolSize );
+            log.info( "Compiled " + numFiles + " IDL files in " + elapsedMillis + " ms using " + poolSize
+                    + ( poolSize == 1 ? " thread" : " threads" ) + "; longest was " + longest + " ("
+                    + longest.getDurationMillis() + " ms), best possible time " + bestPossible + " ms ("
+                    + getEfficiency( bestPossible, elapsedMillis ) + "% efficiency)" );
+        }
+    }
+
+    private static long getEfficiency( long bestPossible, long elapsedMillis )
+    {
+        return elapsedMillis == 0 ? 100 : Math.min( 100, 100 * bestPossible / elapsedMillis );
+    }
+
+    private static long toMillis( long nanos )
+    {
+        return TimeUnit.NANOSECONDS.toMillis( nanos );
+    }
+
+    /**
+     * Runs the tasks in schedule order on the service's threads. Each of the threads takes the next task from a shared
+     * queue until it is empty, so no more than the pool size of this execution's tasks run at once.
+     */
+    private void runConcurrently( List<CompileTask> tasks, final TaskHandler handler, final List<Failure> failures,
+                                  int poolSize ) throws MojoExecutionException
+    {
+        log.debug( "Compiling " + tasks.size() + " IDL files using " + poolSize + " threads" );
+        final Queue<CompileTask> queue = new ConcurrentLinkedQueue<>( tasks );
+        List<Future<?>> runners = new ArrayList<>();
+        for ( int i = 0; i < poolSize; i++ )
+        {
+            runners.add( service.getExecutor().submit( new Runnable()
+            {
+                public void run()
+                {
+                    CompileTask task;
+                    while ( ( task = queue.poll() ) != null )
+                    {
+                        runTask( task, handler, failures );
+                    }
+                }
+            } ) );
+        }
+
+        try
+        {
+            for ( Future<?> runner : runners )
+            {
+                runner.get();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            queue.clear();
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while waiting for IDL compilation", e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new MojoExecutionException( "IDL compilation failed", e.getCause() );
+        }
+    }
+
+    private void runTask( CompileTask task, TaskHandler handler, List<Failure> failures )
+    {
+        try
+        {
+            service.getPermits().acquire();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            failures.add( new Failure( task, e ) );
+            return;
+        }
+
+        try
+        {
+            runWithinMemory( task, handler );
+        }
+        catch ( Throwable e )
+        {
+            failures.add( new Failure( task, e ) );
+        }
+        finally
+        {
+            service.getPermits().release();
+        }
+    }
+
+    /**
+     * Runs a task once the memory gate admits it. A task which runs out of memory alongside other compiles is retried
+     * on its own, rather than failing the build.
+     */
+    private void runWithinMemory( CompileTask task, TaskHandler handler ) throws Throwable
+    {
+        MemoryGate gate = service.getMemoryGate();
+        if ( gate.acquire( task.getEstimatedBytes() ) )
+        {
+            log.debug( "Held back " + task + " until " + task.getEstimatedBytes() + " bytes of heap were available" );
+        }
+        try
+        {
+            runMeasured( task, handler, gate );
+            return;
+        }
+        catch ( Throwable e )
+        {
+            if ( !isOutOfMemory( e ) )
+            {
+                throw e;
+            }
+            log.warn( "Ran out of memory compiling " + task + "; retrying it once no other files are compiling" );
+        }
+        finally
+        {
+            gate.release( task.getEstimatedBytes() );
+        }
+
+        gate.acquireExclusive();
+        try
+        {
+            runMeasured( task, handler, gate );
+        }
+        finally
+        {
+            gate.releaseExclusive();
+        }
+    }
+
+    /**
+     * Runs a task and records its cost. When the task ran the in-process compiler, its duration is the time spent
+     * holding the compiler, so that waiting for another thread's compile does not inflate later estimates. Its memory
+     * cost is the growth of the heap at its peak, which is what the gate compares with the free heap; it is not
+     * measured while another compile is being measured.
+     */
+    private void runMeasured( CompileTask task, TaskHandler handler, MemoryGate gate ) throws MojoExecutionException
+    {
+        long startBytes = gate.startMeasurement();
+        long heapBytes;
+        try
+        {
+            AbstractTranslator.resetCompilerTime();
+            long startTime = System.nanoTime();
+            handler.process( task );
+            long compilerNanos = AbstractTranslator.getCompilerTime();
+            task.setDurationMillis( toMillis( compilerNanos >= 0 ? compilerNanos : System.nanoTime() - startTime ) );
+        }
+        finally
+        {
+            heapBytes = gate.endMeasurement( startBytes );
+        }
+        task.setHeapBytes( heapBytes );
+    }
+
+    private static boolean isOutOfMemory( Throwable e )
+    {
+        for ( Throwable cause = e; cause != null; cause = cause.getCause() )
+        {
+            if ( cause instanceof OutOfMemoryError )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void reportFailures( int numTasks, List<Failure> failures ) throws MojoExecutionException
+    {
+        if ( failures.isEmpty() )
+        {
+            return;
+        }
+
+        if ( failures.size() == 1 )
+        {
+            throw asMojoException( failures.get( 0 ).exception );
+        }
+
+        StringBuilder sb = new StringBuilder( "IDL compilation failed for " );
+        sb.append( failures.size() ).append( " of " ).append( numTasks ).append( " files:" );
+        for ( Failure failure : failures )
+        {
+            sb.append( System.getProperty( "line.separator" ) ).append( "  " ).append( failure.task )
+              .append( ": " ).append( failure.exception.getMessage() );
+        }
+        throw new MojoExecutionException( sb.toString(), failures.get( 0 ).exception );
+    }
+
+    private MojoExecutionException asMojoException( Throwable e )
+    {
+        if ( e instanceof MojoExecutionException )
+        {
+            return (MojoExecutionException) e;
+        }
+        return new MojoExecutionException( "IDL compilation failed", e );
+    }
+
+    /**
+     * The processing to apply to each task.
+     */
+    interface TaskHandler
+    {
+        /**
+         * Processes a single task. May be called concurrently from several threads.
+         *
+         * @param task the task to process
+         * @throws MojoExecutionException if the task fails
+         */
+        void process( CompileTask task ) throws MojoExecutionException;
+    }
+
+    /**
+     * A task which failed, and the reason.
+     */
+    private static class Failure
+    {
+        private final CompileTask task;
+
+        private final Throwable exception;
+
+        Failure( CompileTask task, Throwable exception )
+        {
+            this.task = task;
+            this.exception = exception;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A single unit of work for the <code>CompileScheduler</code>: one or more IDL files and the source configuration to
+ * compile them with. Tasks with several files are compiled in a single compiler invocation.
+ */
+class CompileTask
+{
+    /**
+     * The IDL files to compile
+     */
+    private final List<File> idlFiles;
+
+    /**
+     * The source configuration which selected the file
+     */
+    private final Source source;
+
+    /**
+     * The expected compile time, used to start the most expensive tasks first
+     */
+    private long estimatedMillis;
+
+    /**
+     * The time actually taken by a successful compile, or -1 if the task has not completed successfully
+     */
+    private volatile long durationMillis = -1;
+
+    /**
+     * The heap the compile is expected to need, used to hold it back while the heap is too full
+     */
+    private long estimatedBytes;
+
+    /**
+     * The peak heap growth during a successful compile, or -1 if it has not completed successfully or was not measured
+     */
+    private volatile long heapBytes = -1;
+
+    /**
+     * @param idlFile the IDL file to compile
+     * @param source  the source configuration which selected the file
+     */
+    CompileTask( File idlFile, Source source )
+    {
+        this( Collections.singletonList( idlFile ), source );
+    }
+
+    /**
+     * @param idlFiles the IDL files to compile together
+     * @param source   the source configuration which selected the files
+     */
+    CompileTask( List<File> idlFiles, Source source )
+    {
+        this.idlFiles = idlFiles;
+        this.source = source;
+    }
+
+    /**
+     * @return the first IDL file to compile; the only one, unless this task is a batch
+     */
+    File getIdlFile()
+    {
+        return idlFiles.get( 0 );
+    }
+
+    /**
+     * @return all of the IDL files to compile
+     */
+    List<File> getIdlFiles()
+    {
+        return idlFiles;
+    }
+
+    /**
+     * @return true if this task compiles more than one file
+     */
+    boolean isBatch()
+    {
+        return idlFiles.size() > 1;
+    }
+
+    /**
+     * @return the source configuration which selected the file
+     */
+    Source getSource()
+    {
+        return source;
+    }
+
+    /**
+     * @return the expected compile time
+     */
+    long getEstimatedMillis()
+    {
+        return estimatedMillis;
+    }
+
+    /**
+     * @param estimatedMillis the expected compile time
+     */
+    void setEstimatedMillis( long estimatedMillis )
+    {
+        this.estimatedMillis = estimatedMillis;
+    }
+
+    /**
+     * @return the time taken by a successful compile, or -1 if the task has not completed successfully
+     */
+    long getDurationMillis()
+    {
+        return durationMillis;
+    }
+
+    /**
+     * @param durationMillis the time taken by a successful compile
+     */
+    void setDurationMillis( long durationMillis )
+    {
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * @return the heap the compile is expected to need
+     */
+    long getEstimatedBytes()
+    {
+        return estimatedBytes;
+    }
+
+    /**
+     * @param estimatedBytes the heap the compile is expected to need
+     */
+    void setEstimatedBytes( long estimatedBytes )
+    {
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    /**
+     * @return the peak heap growth during a successful compile, or -1 if unknown
+     */
+    long getHeapBytes()
+    {
+        return heapBytes;
+    }
+
+    /**
+     * @param heapBytes the peak heap growth during a successful compile, or -1 if it was not measured
+     */
+    void setHeapBytes( long heapBytes )
+    {
+        this.heapBytes = heapBytes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return isBatch() ? idlFiles.toString() : getIdlFile().toString();
+    }
+}
@@ -0,0 +1,237 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * The class loaders which the plugin creates for IDL compilers, shared by all executions in a Maven session. Loading
+ * the compiler classes again in every module costs time and, since the loaders were never closed, metaspace;
+ * instead, loaders are cached by their class path and closed when the <code>CompilationService</code> of the session
+ * shuts down.
+ * <p>
+ * Only the loaders created here are counted and recycled. When the compiler is loaded by the plugin's own class
+ * loader, as the Glassfish compiler is unless another compiler has prepended a class path, there is nothing to
+ * recycle, and the recycle limit has no effect.
+ */
+final class CompilerClassLoaderCache
+{
+    /**
+     * The cached loaders, keyed by their class path and parent
+     */
+    private static final Map<Key, CachedLoader> LOADERS = new HashMap<>();
+
+    /**
+     * The loaders which have been evicted from the cache but are still used by a compile
+     */
+    private static final List<CachedLoader> RETIRED = new ArrayList<>();
+
+    /**
+     * The loaders which have been closed, so that a compile which still holds one of their classes can tell
+     */
+    private static final Set<ClassLoader> CLOSED = Collections.newSetFromMap( new WeakHashMap<ClassLoader, Boolean>() );
+
+    private CompilerClassLoaderCache()
+    {
+    }
+
+    /**
+     * Returns a class loader which searches the specified class path before its parent, creating it if necessary.
+     *
+     * @param urls   the class path of the loader
+     * @param parent the parent of the loader
+     * @return a loader shared by all callers which ask for the same class path and parent
+     */
+    static synchronized ClassLoader getLoader( List<URL> urls, ClassLoader parent )
+    {
+        Key key = new Key( urls, parent );
+        CachedLoader loader = LOADERS.get( key );
+        if ( loader == null )
+        {
+            loader = new CachedLoader( new URLClassLoader( urls.toArray( new URL[urls.size()] ), parent ) );
+            LOADERS.put( key, loader );
+        }
+        return loader.classLoader;
+    }
+
+    /**
+     * Marks a loader as in use by a compile, so that it is not closed until the compile calls {@link #release}.
+     * Loaders which this cache did not create are ignored.
+     *
+     * @param classLoader the loader of the compiler classes
+     * @return false if the loader has already been closed, in which case the compiler class must be loaded again
+     */
+    static synchronized boolean acquire( ClassLoader classLoader )
+    {
+        if ( CLOSED.contains( classLoader ) )
+        {
+            return false;
+        }
+        CachedLoader loader = find( classLoader );
+        if ( loader != null )
+        {
+            loader.numUsers++;
+        }
+        return true;
+    }
+
+    /**
+     * Ends a compile run with classes from a loader acquired by {@link #acquire}. Once a loader has been used for the
+     * specified number of compiles, it is evicted, so that the next compile loads fresh compiler classes rather than
+     * accumulating static state; it is closed as soon as no compile uses it any more.
+     *
+     * @param classLoader  the loader of the compiler classes
+     * @param recycleAfter the number of compiles after which to evict the loader, or 0 never to evict it
+     */
+    static synchronized void release( ClassLoader classLoader, int recycleAfter )
+    {
+        CachedLoader loader = find( classLoader );
+        if ( loader == null )
+        {
+            return;
+        }
+
+        loader.numUsers--;
+        if ( ++loader.numCompiles >= recycleAfter && recycleAfter > 0 && LOADERS.values().remove( loader ) )
+        {
+            RETIRED.add( loader );
+        }
+        if ( loader.numUsers <= 0 && RETIRED.remove( loader ) )
+        {
+            close( loader );
+        }
+    }
+
+    private static CachedLoader find( ClassLoader classLoader )
+    {
+        for ( CachedLoader loader : LOADERS.values() )
+        {
+            if ( loader.classLoader == classLoader )
+            {
+                return loader;
+            }
+        }
+        for ( CachedLoader loader : RETIRED )
+        {
+            if ( loader.classLoader == classLoader )
+            {
+                return loader;
+            }
+        }
+        return null;
+    }
+
+    private static void close( CachedLoader loader )
+    {
+        loader.close();
+        CLOSED.add( loader.classLoader );
+    }
+
+    /**
+     * Closes all cached loaders.
+     */
+    static synchronized void closeAll()
+    {
+        for ( CachedLoader loader : LOADERS.values() )
+        {
+            close( loader );
+        }
+        for ( CachedLoader loader : RETIRED )
+        {
+            close( loader );
+        }
+        LOADERS.clear();
+        RETIRED.clear();
+    }
+
+    /**
+     * Identifies a cached loader. URLs are compared by their text, as <code>URL.equals</code> may resolve host names.
+     */
+    private static class Key
+    {
+        private final List<String> urls = new ArrayList<>();
+
+        private final ClassLoader parent;
+
+        Key( List<URL> urls, ClassLoader parent )
+        {
+            for ( URL url : urls )
+            {
+                this.urls.add( url.toExternalForm() );
+            }
+            this.parent = parent;
+        }
+
+        @Override
+        public boolean equals( Object o )
+        {
+            if ( !( o instanceof Key ) )
+            {
+                return false;
+            }
+            Key other = (Key) o;
+            return urls.equals( other.urls ) && parent == other.parent;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * urls.hashCode() + System.identityHashCode( parent );
+        }
+    }
+
+    /**
+     * A cached loader, the number of compiles run with its classes and the number of compiles still using them.
+     */
+    private static class CachedLoader
+    {
+        private final URLClassLoader classLoader;
+
+        private int numCompiles;
+
+        private int numUsers;
+
+        CachedLoader( URLClassLoader classLoader )
+        {
+            this.classLoader = classLoader;
+        }
+
+        void close()
+        {
+            try
+            {
+                classLoader.close();
+            }
+            catch ( IOException e )
+            {
+                // the session is over; failing to release the jar files early is harmless
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A pool of independent copies of an in-process compiler. The IDL compilers keep their parser and symbol table state
+ * in static fields, so each copy is loaded by its own class loader, which shares nothing with the plugin but the JDK
+ * classes. An instance is leased to one thread for a single compile; instances are created on demand, up to the pool
+ * size, and callers wait for an instance to be returned once that many are in use.
+ */
+class CompilerInstancePool
+{
+    /**
+     * The maximum number of compiler instances
+     */
+    private final int size;
+
+    /**
+     * The number of compiles after which an instance is replaced by a fresh one, or 0 to keep instances until the
+     * pool is closed
+     */
+    private final int recycleAfter;
+
+    /**
+     * The instances which are not currently leased
+     */
+    private final List<Instance> idleInstances = new ArrayList<>();
+
+    /**
+     * The number of instances created and not yet discarded
+     */
+    private int numInstances;
+
+    /**
+     * Set once the pool is closed; no instances are leased after that
+     */
+    private boolean closed;
+
+    /**
+     * @param size the maximum number of compiler instances
+     */
+    CompilerInstancePool( int size )
+    {
+        this( size, 0 );
+    }
+
+    /**
+     * @param size         the maximum number of compiler instances
+     * @param recycleAfter the number of compiles after which an instance is replaced, or 0 never to replace instances
+     */
+    CompilerInstancePool( int size, int recycleAfter )
+    {
+        this.size = size;
+        this.recycleAfter = recycleAfter;
+    }
+
+    /**
+     * @param size         the maximum number of compiler instances
+     * @param recycleAfter the number of compiles after which an instance is replaced
+     * @return true if this pool was created with the specified settings
+     */
+    boolean hasConfiguration( int size, int recycleAfter )
+    {
+        return this.size == size && this.recycleAfter == recycleAfter;
+    }
+
+    /**
+     * Leases a compiler instance, which must be returned by {@link #release(Instance)} once the compile is done.
+     *
+     * @param compilerClass the name of the class that implements the compiler
+     * @param classPath     the class path from which to load the compiler
+     * @return an instance which is not used by any other thread
+     * @throws MojoExecutionException if the compiler cannot be loaded
+     */
+    Instance lease( String compilerClass, List<File> classPath ) throws MojoExecutionException
+    {
+        synchronized ( this )
+        {
+            while ( true )
+            {
+                if ( closed )
+                {
+                    throw new MojoExecutionException( "Compiler instance pool has been closed" );
+                }
+
+                Instance idle = removeIdle( compilerClass, classPath );
+                if ( idle != null )
+                {
+                    return idle;
+                }
+                if ( numInstances < size )
+                {
+                    numInstances++;
+                    break;
+                }
+                if ( !idleInstances.isEmpty() )
+                {
+                    // all of the idle instances are of a different compiler; replace one of them
+                    discard( idleInstances.remove( 0 ) );
+                    continue;
+                }
+                waitForInstance();
+            }
+        }
+
+        try
+        {
+            return new Instance( compilerClass, classPath );
+        }
+        catch ( MalformedURLException | ClassNotFoundException | LinkageError e )
+        {
+            synchronized ( this )
+            {
+                numInstances--;
+                notifyAll();
+            }
+            throw new MojoExecutionException( "Unable to load an isolated instance of " + compilerClass, e );
+        }
+    }
+
+    /**
+     * Returns a leased instance to the pool, after it has been used for a single compile. An instance which has
+     * reached the recycle limit is discarded instead.
+     *
+     * @param instance an instance obtained from {@link #lease(String, List)}
+     */
+    synchronized void release( Instance instance )
+    {
+        instance.numCompiles++;
+        if ( closed || ( recycleAfter > 0 && instance.numCompiles >= recycleAfter ) )
+        {
+            discard( instance );
+        }
+        else
+        {
+            idleInstances.add( instance );
+        }
+        notifyAll();
+    }
+
+    /**
+     * Discards all idle instances, and any leased instance as soon as it is returned.
+     */
+    synchronized void close()
+    {
+        closed = true;
+        for ( Instance instance : idleInstances )
+        {
+            discard( instance );
+        }
+        idleInstances.clear();
+        notifyAll();
+    }
+
+    private Instance removeIdle( String compilerClass, List<File> classPath )
+    {
+        for ( Iterator<Instance> iterator = idleInstances.iterator(); iterator.hasNext(); )
+        {
+            Instance instance = iterator.next();
+            if ( instance.matches( compilerClass, classPath ) )
+            {
+                iterator.remove();
+                return instance;
+            }
+        }
+        return null;
+    }
+
+    private void waitForInstance() throws MojoExecutionException
+    {
+        try
+        {
+            wait();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Thread interrupted unexpectedly", e );
+        }
+    }
+
+    /**
+     * Closes the class loader of an instance which will not be used again. Called with the pool locked.
+     */
+    private void discard( Instance instance )
+    {
+        numInstances--;
+        instance.close();
+    }
+
+    /**
+     * A copy of the compiler classes, loaded by a class loader of its own.
+     */
+    static class Instance
+    {
+        private final List<File> classPath;
+
+        private final URLClassLoader classLoader;
+
+        private final Class<?> compilerClass;
+
+        private int numCompiles;
+
+        Instance( String compilerClass, List<File> classPath ) throws MalformedURLException, ClassNotFoundException
+        {
+            this.classPath = classPath;
+            this.classLoader = new URLClassLoader( toUrls( classPath ), getJdkClassLoader() );
+            this.compilerClass = classLoader.loadClass( compilerClass );
+        }
+
+        /**
+         * @return the compiler class of this instance
+         */
+        Class<?> getCompilerClass()
+        {
+            return compilerClass;
+        }
+
+        boolean matches( String compilerClass, List<File> classPath )
+        {
+            return this.compilerClass.getName().equals( compilerClass ) && this.classPath.equals( classPath );
+        }
+
+        void close()
+        {
+            try
+            {
+                classLoader.close();
+            }
+            catch ( IOException e )
+            {
+                // the classes are no longer used; failing to release the jar files early is harmless
+            }
+        }
+
+        private static URL[] toUrls( List<File> classPath ) throws MalformedURLException
+        {
+            URL[] urls = new URL[classPath.size()];
+            for ( int i = 0; i < urls.length; i++ )
+            {
+                urls[i] = classPath.get( i ).toURI().toURL();
+            }
+            return urls;
+        }
+
+        /**
+         * @return the loader of the JDK classes which are not on the class path, so that only those are shared
+         */
+        private static ClassLoader getJdkClassLoader()
+        {
+            return ClassLoader.getSystemClassLoader().getParent();
+        }
+    }
+}
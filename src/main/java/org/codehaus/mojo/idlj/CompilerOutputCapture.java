@@ -0,0 +1,167 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Captures what in-process compilers write to the standard streams, separately for each thread.
+ * <p>
+ * The first capture replaces <code>System.out</code> and <code>System.err</code> with streams which route each write
+ * either to the buffers registered by the writing thread, or, if it has none, to the original stream. The routing
+ * streams then stay in place, so concurrent compiles never swap the global streams under each other.
+ */
+final class CompilerOutputCapture
+{
+    /**
+     * The buffers registered by each capturing thread
+     */
+    private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<>();
+
+    /**
+     * The routing stream installed as <code>System.out</code>
+     */
+    private static PrintStream routedOut;
+
+    /**
+     * The routing stream installed as <code>System.err</code>
+     */
+    private static PrintStream routedErr;
+
+    /**
+     * The buffers which were active before this capture began, restored when it ends
+     */
+    private final Buffers previous;
+
+    private CompilerOutputCapture( Buffers previous )
+    {
+        this.previous = previous;
+    }
+
+    /**
+     * Directs everything that the current thread writes to the standard streams to the specified buffers,
+     * until {@link #end()} is called.
+     *
+     * @param out receives what the current thread writes to <code>System.out</code>
+     * @param err receives what the current thread writes to <code>System.err</code>
+     * @return the capture, which must be ended by the same thread
+     */
+    static CompilerOutputCapture begin( OutputStream out, OutputStream err )
+    {
+        install();
+        CompilerOutputCapture capture = new CompilerOutputCapture( BUFFERS.get() );
+        BUFFERS.set( new Buffers( out, err ) );
+        return capture;
+    }
+
+    /**
+     * Stops capturing the output of the current thread.
+     */
+    void end()
+    {
+        if ( previous == null )
+        {
+            BUFFERS.remove();
+        }
+        else
+        {
+            BUFFERS.set( previous );
+        }
+    }
+
+    /**
+     * Installs the routing streams, unless they are already the active standard streams.
+     */
+    private static synchronized void install()
+    {
+        if ( System.out != routedOut )
+        {
+            routedOut = new PrintStream( new ThreadRoutingStream( System.out, false ), true );
+            System.setOut( routedOut );
+        }
+        if ( System.err != routedErr )
+        {
+            routedErr = new PrintStream( new ThreadRoutingStream( System.err, true ), true );
+            System.setErr( routedErr );
+        }
+    }
+
+    /**
+     * The buffers to which a single thread's output is directed.
+     */
+    private static class Buffers
+    {
+        private final OutputStream out;
+
+        private final OutputStream err;
+
+        Buffers( OutputStream out, OutputStream err )
+        {
+            this.out = out;
+            this.err = err;
+        }
+    }
+
+    /**
+     * A stream which sends each write to the buffer of the current thread, if any, or else to the original stream.
+     */
+    private static class ThreadRoutingStream extends OutputStream
+    {
+        private final OutputStream original;
+
+        private final boolean isErrorStream;
+
+        ThreadRoutingStream( OutputStream original, boolean isErrorStream )
+        {
+            this.original = original;
+            this.isErrorStream = isErrorStream;
+        }
+
+        private OutputStream getTarget()
+        {
+            Buffers buffers = BUFFERS.get();
+            if ( buffers == null )
+            {
+                return original;
+            }
+            return isErrorStream ? buffers.err : buffers.out;
+        }
+
+        @Override
+        public void write( int b ) throws IOException
+        {
+            getTarget().write( b );
+        }
+
+        @Override
+        public void write( byte[] bytes, int off, int len ) throws IOException
+        {
+            getTarget().write( bytes, off, len );
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            getTarget().flush();
+        }
+    }
+}
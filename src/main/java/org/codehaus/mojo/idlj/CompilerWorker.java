@@ -0,0 +1,136 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * The main class of a forked compiler worker JVM. It reads compile requests from its standard input and answers each
+ * with the compiler's exit code and output on its standard output, until its input is closed.
+ * <p>
+ * A request consists of the compiler class name and the name of its static entry method (both as modified UTF-8),
+ * followed by the number of arguments and the arguments themselves. A response consists of the exit code, then the
+ * length and bytes of the standard output, then the length and bytes of the error output. While a compiler runs,
+ * <code>System.out</code> and <code>System.err</code> are redirected, so that only responses reach the real output.
+ */
+final class CompilerWorker
+{
+    /**
+     * The exit code reported when the compiler could not be run, or threw an exception
+     */
+    static final int COMPILER_CRASHED = -1;
+
+    private CompilerWorker()
+    {
+    }
+
+    /**
+     * Serves compile requests until the standard input is closed.
+     *
+     * @param args ignored
+     * @throws IOException if the connection to the plugin fails
+     */
+    public static void main( String... args ) throws IOException
+    {
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( FileDescriptor.in ) ) );
+        DataOutputStream out =
+            new DataOutputStream( new BufferedOutputStream( new FileOutputStream( FileDescriptor.out ) ) );
+
+        while ( true )
+        {
+            String compilerClass;
+            try
+            {
+                compilerClass = in.readUTF();
+            }
+            catch ( EOFException e )
+            {
+                return;
+            }
+
+            String methodName = in.readUTF();
+            String[] arguments = new String[in.readInt()];
+            for ( int i = 0; i < arguments.length; i++ )
+            {
+                arguments[i] = in.readUTF();
+            }
+
+            ByteArrayOutputStream compilerOut = new ByteArrayOutputStream();
+            ByteArrayOutputStream compilerErr = new ByteArrayOutputStream();
+            int exitCode = runCompiler( compilerClass, methodName, arguments, compilerOut, compilerErr );
+
+            out.writeInt( exitCode );
+            writeBytes( out, compilerOut );
+            writeBytes( out, compilerErr );
+            out.flush();
+        }
+    }
+
+    private static int runCompiler( String compilerClass, String methodName, String[] arguments,
+                                    ByteArrayOutputStream out, ByteArrayOutputStream err )
+    {
+        PrintStream stdOut = System.out;
+        PrintStream stdErr = System.err;
+        PrintStream errStream = new PrintStream( err, true );
+        System.setOut( new PrintStream( out, true ) );
+        System.setErr( errStream );
+        try
+        {
+            Method method = Class.forName( compilerClass ).getMethod( methodName, String[].class );
+            Object result = method.invoke( null, new Object[]{arguments} );
+            return result instanceof Integer ? (Integer) result : 0;
+        }
+        catch ( InvocationTargetException e )
+        {
+            e.getTargetException().printStackTrace( errStream );
+            return COMPILER_CRASHED;
+        }
+        catch ( Throwable e )
+        {
+            e.printStackTrace( errStream );
+            return COMPILER_CRASHED;
+        }
+        finally
+        {
+            System.out.flush();
+            System.err.flush();
+            System.setOut( stdOut );
+            System.setErr( stdErr );
+        }
+    }
+
+    private static void writeBytes( DataOutputStream out, ByteArrayOutputStream bytes ) throws IOException
+    {
+        out.writeInt( bytes.size() );
+        bytes.writeTo( out );
+    }
+}
@@ -0,0 +1,252 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The hashes of the contents of the IDL files when they were last compiled, used to recompile only the files whose
+ * contents have changed, whatever their modification times. The size and modification time of each file are recorded
+ * with its hash, so that a file is only read again when one of them has changed. Entries are keyed by the path of the
+ * IDL file relative to its source directory.
+ */
+class ContentManifest
+{
+    /**
+     * The digest algorithm used to hash the files
+     */
+    private static final String ALGORITHM = "SHA-256";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * The files as they were when last compiled, or when last found unchanged
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The changed files, as they were found when planning the compilation
+     */
+    private final Map<String, Entry> pending = new ConcurrentHashMap<>();
+
+    /**
+     * True if the manifest differs from the one it was read from
+     */
+    private volatile boolean modified;
+
+    /**
+     * Reads a manifest previously written by {@link #toBytes()}.
+     *
+     * @param bytes the saved manifest
+     * @return the manifest
+     * @throws IOException if the manifest cannot be parsed
+     */
+    static ContentManifest fromBytes( byte[] bytes ) throws IOException
+    {
+        Properties properties = new Properties();
+        properties.load( new ByteArrayInputStream( bytes ) );
+
+        ContentManifest manifest = new ContentManifest();
+        for ( String key : properties.stringPropertyNames() )
+        {
+            Entry entry = Entry.parse( properties.getProperty( key ) );
+            if ( entry != null )
+            {
+                manifest.entries.put( key, entry );
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * @return the manifest in the form read by {@link #fromBytes(byte[])}
+     * @throws IOException if the manifest cannot be written
+     */
+    byte[] toBytes() throws IOException
+    {
+        Properties properties = new Properties();
+        for ( Map.Entry<String, Entry> entry : entries.entrySet() )
+        {
+            properties.setProperty( entry.getKey(), entry.getValue().toString() );
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        properties.store( out, "IDL file sizes, modification times and content hashes" );
+        return out.toByteArray();
+    }
+
+    /**
+     * @return true if the manifest has changed since it was read
+     */
+    boolean isModified()
+    {
+        return modified;
+    }
+
+    /**
+     * Determines whether the contents of a file have changed since it was last compiled. The file is only read if its
+     * size or modification time differs from the recorded ones.
+     *
+     * @param key   the path of the file relative to its source directory
+     * @param file  the file
+     * @param files the file system access
+     * @return true if the file must be compiled
+     * @throws IOException if the file cannot be read
+     */
+    boolean isChanged( String key, File file, AbstractIDLJMojo.DependenciesFacade files ) throws IOException
+    {
+        long size = files.length( file );
+        long modificationTime = files.lastModified( file );
+        Entry recorded = entries.get( key );
+        if ( recorded != null && recorded.size == size && recorded.modificationTime == modificationTime )
+        {
+            return false;
+        }
+
+        Entry current = new Entry( size, modificationTime, hash( ByteBuffer.wrap( files.readFile( file ) ) ) );
+        if ( recorded != null && recorded.hash.equals( current.hash ) )
+        {
+            entries.put( key, current );
+            modified = true;
+            return false;
+        }
+
+        pending.put( key, current );
+        return true;
+    }
+
+    /**
+     * Returns the hash of the contents of a file, reading the file only if its size or modification time differs from
+     * the recorded ones.
+     *
+     * @param key   the key under which the file is recorded
+     * @param file  the file
+     * @param files the file system access
+     * @return the hash of the current contents of the file
+     * @throws IOException if the file cannot be read
+     */
+    String getHash( String key, File file, AbstractIDLJMojo.DependenciesFacade files ) throws IOException
+    {
+        long size = files.length( file );
+        long modificationTime = files.lastModified( file );
+        Entry recorded = entries.get( key );
+        if ( recorded != null && recorded.size == size && recorded.modificationTime == modificationTime )
+        {
+            return recorded.hash;
+        }
+
+        Entry current = new Entry( size, modificationTime, hash( ByteBuffer.wrap( files.readFile( file ) ) ) );
+        entries.put( key, current );
+        modified = true;
+        return current.hash;
+    }
+
+    /**
+     * Records that a changed file has been compiled, with the contents it had when it was found to have changed.
+     *
+     * @param key the path of the file relative to its source directory
+     */
+    void recordCompiled( String key )
+    {
+        Entry entry = pending.remove( key );
+        if ( entry != null )
+        {
+            entries.put( key, entry );
+            modified = true;
+        }
+    }
+
+    /**
+     * @param contents the contents of a file
+     * @return the hash of the contents, in hexadecimal
+     */
+    static String hash( ByteBuffer contents )
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( ALGORITHM );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( ALGORITHM + " is not available", e );
+        }
+        digest.update( contents );
+
+        StringBuilder hex = new StringBuilder();
+        for ( byte b : digest.digest() )
+        {
+            hex.append( HEX_DIGITS[( b >> 4 ) & 0xf] ).append( HEX_DIGITS[b & 0xf] );
+        }
+        return hex.toString();
+    }
+
+    /**
+     * A single recorded file.
+     */
+    private static class Entry
+    {
+        private final long size;
+
+        private final long modificationTime;
+
+        private final String hash;
+
+        Entry( long size, long modificationTime, String hash )
+        {
+            this.size = size;
+            this.modificationTime = modificationTime;
+            this.hash = hash;
+        }
+
+        static Entry parse( String value )
+        {
+            String[] fields = value.split( "," );
+            if ( fields.length != 3 )
+            {
+                return null;
+            }
+            try
+            {
+                return new Entry( Long.parseLong( fields[0].trim() ), Long.parseLong( fields[1].trim() ),
+                                  fields[2].trim() );
+            }
+            catch ( NumberFormatException e )
+            {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return size + "," + modificationTime + "," + hash;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The hashes of the declarations of each IDL file when it was last compiled, used to publish only the generated files
+ * of the declarations which changed. IDL files are keyed by their paths relative to the source directory.
+ */
+class DeclarationManifest
+{
+    /**
+     * Separates the declarations in the saved form; it cannot occur in a scoped name or a hash
+     */
+    private static final String SEPARATOR = ",";
+
+    /**
+     * The hashes of the declarations, keyed by the IDL files which declare them
+     */
+    private final Map<String, Map<String, String>> hashes = new ConcurrentHashMap<>();
+
+    /**
+     * True if the manifest differs from the one it was read from
+     */
+    private volatile boolean modified;
+
+    /**
+     * Reads a manifest previously written by {@link #toBytes()}.
+     *
+     * @param bytes the saved manifest
+     * @return the manifest
+     * @throws IOException if the manifest cannot be parsed
+     */
+    static DeclarationManifest fromBytes( byte[] bytes ) throws IOException
+    {
+        Properties properties = new Properties();
+        properties.load( new ByteArrayInputStream( bytes ) );
+
+        DeclarationManifest manifest = new DeclarationManifest();
+        for ( String key : properties.stringPropertyNames() )
+        {
+            Map<String, String> declarations = new TreeMap<>();
+            for ( String declaration : properties.getProperty( key ).split( SEPARATOR ) )
+            {
+                int equals = declaration.lastIndexOf( '=' );
+                if ( equals > 0 )
+                {
+                    declarations.put( declaration.substring( 0, equals ), declaration.substring( equals + 1 ) );
+                }
+            }
+            manifest.hashes.put( key, declarations );
+        }
+        return manifest;
+    }
+
+    /**
+     * @return the manifest in the form read by {@link #fromBytes(byte[])}
+     * @throws IOException if the manifest cannot be written
+     */
+    byte[] toBytes() throws IOException
+    {
+        Properties properties = new Properties();
+        for ( Map.Entry<String, Map<String, String>> entry : hashes.entrySet() )
+        {
+            StringBuilder value = new StringBuilder();
+            for ( Map.Entry<String, String> declaration : entry.getValue().entrySet() )
+            {
+                value.append( value.length() == 0 ? "" : SEPARATOR );
+                value.append( declaration.getKey() ).append( '=' ).append( declaration.getValue() );
+            }
+            properties.setProperty( entry.getKey(), value.toString() );
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        properties.store( out, "Hashes of the declarations of each IDL file" );
+        return out.toByteArray();
+    }
+
+    /**
+     * @return true if the manifest has changed since it was read
+     */
+    boolean isModified()
+    {
+        return modified;
+    }
+
+    /**
+     * @param idlFile the path of an IDL file relative to the source directory
+     * @return the hashes of its declarations when it was last compiled; empty if it is unknown
+     */
+    Map<String, String> get( String idlFile )
+    {
+        Map<String, String> declarations = hashes.get( idlFile );
+        return declarations == null ? Collections.<String, String>emptyMap() : declarations;
+    }
+
+    /**
+     * Records the declarations of a compiled IDL file, replacing those recorded before.
+     *
+     * @param idlFile      the path of the IDL file relative to the source directory
+     * @param declarations the hashes of its declarations
+     */
+    void record( String idlFile, Map<String, String> declarations )
+    {
+        hashes.put( idlFile, new TreeMap<>( declarations ) );
+        modified = true;
+    }
+
+    /**
+     * Forgets an IDL file which has been deleted, or is no longer compiled.
+     *
+     * @param idlFile the path of the IDL file relative to the source directory
+     */
+    void forget( String idlFile )
+    {
+        if ( hashes.remove( idlFile ) != null )
+        {
+            modified = true;
+        }
+    }
+}
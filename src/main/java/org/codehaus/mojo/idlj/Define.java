@@ -41,6 +41,20 @@ public class Define
      */
     private String value;
 
+    /**
+     * Reads a define from the configuration of a goal in a project model.
+     *
+     * @param configuration the <code>define</code> element
+     * @return the define
+     */
+    static Define fromConfiguration( PluginConfiguration configuration )
+    {
+        Define define = new Define();
+        define.symbol = configuration.getValue( "symbol" );
+        define.value = configuration.getValue( "value" );
+        return define;
+    }
+
     /**
      * @return The name of the symbol defined
      */
@@ -0,0 +1,428 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * A pool of long-lived compiler worker JVMs, each running {@link CompilerWorker}. Starting a JVM costs far more than
+ * compiling a typical IDL file, so a worker is reused for every compile with the same class path until it has run
+ * the configured number of compiles. Workers are started on demand, up to the pool size; callers wait for a worker to
+ * become idle once that many are busy. A worker which does not answer within the compile timeout is destroyed and
+ * the compile reported as failed, and a worker which does not exit soon after it is asked to is destroyed, so that a
+ * hung worker neither holds its compile forever nor outlives the build.
+ */
+class ForkedWorkerPool
+{
+    /**
+     * How long a stopped worker may take to exit before it is destroyed
+     */
+    static final long STOP_GRACE_MILLIS = 5000;
+
+    /**
+     * Destroys the workers which take too long to compile or to exit
+     */
+    private static final Timer WATCHDOG = new Timer( "idlj-worker-watchdog", true );
+
+    /**
+     * The maximum number of worker processes
+     */
+    private final int size;
+
+    /**
+     * The number of compiles after which a worker is replaced by a fresh one, or 0 to keep workers until the pool
+     * is closed
+     */
+    private final int recycleAfter;
+
+    /**
+     * The time in milliseconds a worker may take to answer a compile request, or 0 to wait for as long as it takes
+     */
+    private final long compileTimeoutMillis;
+
+    /**
+     * The workers which are not currently compiling
+     */
+    private final List<Worker> idleWorkers = new ArrayList<>();
+
+    /**
+     * The number of workers started and not yet stopped
+     */
+    private int numWorkers;
+
+    /**
+     * Set once the pool is closed; no workers are started after that
+     */
+    private boolean closed;
+
+    /**
+     * @param size                 the maximum number of worker processes
+     * @param recycleAfter         the number of compiles after which a worker is replaced, or 0 never to replace
+     *                             workers
+     * @param compileTimeoutMillis the time in milliseconds a worker may take to compile, or 0 for no limit
+     */
+    ForkedWorkerPool( int size, int recycleAfter, long compileTimeoutMillis )
+    {
+        this.size = size;
+        this.recycleAfter = recycleAfter;
+        this.compileTimeoutMillis = compileTimeoutMillis;
+    }
+
+    /**
+     * @param size                 the maximum number of worker processes
+     * @param recycleAfter         the number of compiles after which a worker is replaced
+     * @param compileTimeoutMillis the time in milliseconds a worker may take to compile
+     * @return true if this pool was created with the specified settings
+     */
+    boolean hasConfiguration( int size, int recycleAfter, long compileTimeoutMillis )
+    {
+        return this.size == size && this.recycleAfter == recycleAfter
+            && this.compileTimeoutMillis == compileTimeoutMillis;
+    }
+
+    /**
+     * Runs a compiler in a worker process.
+     *
+     * @param classPath     the class path the worker must have, which includes the compiler and this plugin
+     * @param compilerClass the name of the class that implements the compiler
+     * @param methodName    the name of the static method which runs the compiler
+     * @param arguments     the arguments to pass to the compiler
+     * @return the compiler's exit code and output
+     * @throws MojoExecutionException if no worker can be started, or the worker fails or times out while compiling
+     */
+    Result compile( String classPath, String compilerClass, String methodName, String... arguments )
+            throws MojoExecutionException
+    {
+        Worker worker = acquire( classPath );
+        boolean reusable = false;
+        try
+        {
+            Result result = worker.compile( compileTimeoutMillis, compilerClass, methodName, arguments );
+            reusable = recycleAfter <= 0 || worker.numCompiles < recycleAfter;
+            return result;
+        }
+        catch ( IOException e )
+        {
+            if ( worker.timedOut )
+            {
+                throw new MojoExecutionException( "IDL compilation failed: compiler worker did not answer within "
+                    + compileTimeoutMillis + " ms and was stopped", e );
+            }
+            throw new MojoExecutionException( "IDL compilation failed: compiler worker terminated unexpectedly", e );
+        }
+        finally
+        {
+            release( worker, reusable );
+        }
+    }
+
+    /**
+     * Stops all idle workers, and any busy worker as soon as it finishes its compile.
+     */
+    synchronized void close()
+    {
+        closed = true;
+        for ( Worker worker : idleWorkers )
+        {
+            stop( worker );
+        }
+        idleWorkers.clear();
+    }
+
+    private Worker acquire( String classPath ) throws MojoExecutionException
+    {
+        synchronized ( this )
+        {
+            while ( true )
+            {
+                if ( closed )
+                {
+                    throw new MojoExecutionException( "Compiler worker pool has been closed" );
+                }
+
+                Worker idle = removeIdle( classPath );
+                if ( idle != null )
+                {
+                    return idle;
+                }
+                if ( numWorkers < size )
+                {
+                    numWorkers++;
+                    break;
+                }
+                if ( !idleWorkers.isEmpty() )
+                {
+                    // all of the idle workers have the wrong class path; replace one of them
+                    stop( idleWorkers.remove( 0 ) );
+                    continue;
+                }
+                waitForWorker();
+            }
+        }
+
+        try
+        {
+            return startWorker( classPath );
+        }
+        catch ( IOException e )
+        {
+            synchronized ( this )
+            {
+                numWorkers--;
+                notifyAll();
+            }
+            throw new MojoExecutionException( "Error forking compiler worker", e );
+        }
+    }
+
+    private Worker removeIdle( String classPath )
+    {
+        for ( Iterator<Worker> iterator = idleWorkers.iterator(); iterator.hasNext(); )
+        {
+            Worker worker = iterator.next();
+            if ( worker.classPath.equals( classPath ) )
+            {
+                iterator.remove();
+                return worker;
+            }
+        }
+        return null;
+    }
+
+    private void waitForWorker() throws MojoExecutionException
+    {
+        try
+        {
+            wait();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Thread interrupted unexpectedly", e );
+        }
+    }
+
+    private synchronized void release( Worker worker, boolean reusable )
+    {
+        if ( reusable && !closed )
+        {
+            idleWorkers.add( worker );
+        }
+        else
+        {
+            stop( worker );
+        }
+        notifyAll();
+    }
+
+    private Worker startWorker( String classPath ) throws IOException
+    {
+        File javaBin = new File( new File( System.getProperty( "java.home" ), "bin" ), "java" );
+        ProcessBuilder builder =
+            new ProcessBuilder( javaBin.getPath(), "-classpath", classPath, CompilerWorker.class.getName() );
+        builder.redirectError( ProcessBuilder.Redirect.INHERIT );
+        return new Worker( builder.start(), classPath );
+    }
+
+    /**
+     * Closes the worker's input, which makes it exit once it has answered all requests, and destroys it if it is
+     * still running after {@link #STOP_GRACE_MILLIS}. Called with the pool locked.
+     */
+    private void stop( Worker worker )
+    {
+        numWorkers--;
+        worker.stop();
+    }
+
+    /**
+     * The outcome of a single compile in a worker.
+     */
+    static class Result
+    {
+        private final int exitCode;
+
+        private final ByteArrayOutputStream out;
+
+        private final ByteArrayOutputStream err;
+
+        Result( int exitCode, ByteArrayOutputStream out, ByteArrayOutputStream err )
+        {
+            this.exitCode = exitCode;
+            this.out = out;
+            this.err = err;
+        }
+
+        /**
+         * @return the value returned by the compiler, or <code>CompilerWorker.COMPILER_CRASHED</code>
+         */
+        int getExitCode()
+        {
+            return exitCode;
+        }
+
+        /**
+         * @return the standard output of the compiler
+         */
+        ByteArrayOutputStream getOut()
+        {
+            return out;
+        }
+
+        /**
+         * @return the error output of the compiler
+         */
+        ByteArrayOutputStream getErr()
+        {
+            return err;
+        }
+    }
+
+    /**
+     * A single worker process and the connection to it.
+     */
+    private static class Worker
+    {
+        private final Process process;
+
+        /**
+         * Set if the worker was destroyed because it took too long to compile
+         */
+        private volatile boolean timedOut;
+
+        private final String classPath;
+
+        private final DataOutputStream requests;
+
+        private final DataInputStream responses;
+
+        private int numCompiles;
+
+        Worker( Process process, String classPath )
+        {
+            this.process = process;
+            this.classPath = classPath;
+            this.requests = new DataOutputStream( new BufferedOutputStream( process.getOutputStream() ) );
+            this.responses = new DataInputStream( new BufferedInputStream( process.getInputStream() ) );
+        }
+
+        /**
+         * @param timeoutMillis the time in milliseconds after which the worker is destroyed, or 0 for no limit
+         */
+        Result compile( long timeoutMillis, String compilerClass, String methodName, String... arguments )
+                throws IOException
+        {
+            TimerTask watchdog = null;
+            if ( timeoutMillis > 0 )
+            {
+                watchdog = new TimerTask()
+                {
+                    public void run()
+                    {
+                        timedOut = true;
+                        process.destroy();
+                    }
+                };
+                WATCHDOG.schedule( watchdog, timeoutMillis );
+            }
+            try
+            {
+                numCompiles++;
+                requests.writeUTF( compilerClass );
+                requests.writeUTF( methodName );
+                requests.writeInt( arguments.length );
+                for ( String argument : arguments )
+                {
+                    requests.writeUTF( argument );
+                }
+                requests.flush();
+
+                int exitCode = responses.readInt();
+                ByteArrayOutputStream out = readBytes();
+                ByteArrayOutputStream err = readBytes();
+                return new Result( exitCode, out, err );
+            }
+            finally
+            {
+                if ( watchdog != null )
+                {
+                    watchdog.cancel();
+                }
+            }
+        }
+
+        private ByteArrayOutputStream readBytes() throws IOException
+        {
+            byte[] bytes = new byte[responses.readInt()];
+            responses.readFully( bytes );
+            ByteArrayOutputStream stream = new ByteArrayOutputStream( bytes.length );
+            stream.write( bytes, 0, bytes.length );
+            return stream;
+        }
+
+        void stop()
+        {
+            try
+            {
+                requests.close();
+            }
+            catch ( IOException e )
+            {
+                process.destroy();
+                return;
+            }
+            WATCHDOG.schedule( new TimerTask()
+            {
+                public void run()
+                {
+                    if ( isRunning() )
+                    {
+                        process.destroy();
+                    }
+                }
+            }, STOP_GRACE_MILLIS );
+        }
+
+        boolean isRunning()
+        {
+            try
+            {
+                process.exitValue();
+                return false;
+            }
+            catch ( IllegalThreadStateException e )
+            {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A cache of the files generated from IDL files, shared by all builds on a machine. Each entry holds the files
+ * generated by one compile as a compressed bundle, and is keyed by a hash of everything which determines them. Entries
+ * are written atomically, so that parallel builds can share the cache; a build which cannot read an entry simply
+ * compiles. When the cache grows beyond its size limit, the least recently used entries are deleted. An optional remote
+ * tier is consulted when an entry is not found locally, and receives the entries added locally.
+ */
+class GeneratedSourceCache
+{
+    /**
+     * The extension of the entry files
+     */
+    private static final String ENTRY_EXTENSION = ".zip";
+
+    /**
+     * The directory holding the entries
+     */
+    private final File directory;
+
+    /**
+     * The size in bytes above which entries are evicted
+     */
+    private final long maxBytes;
+
+    /**
+     * The file system access
+     */
+    private final AbstractIDLJMojo.DependenciesFacade files;
+
+    /**
+     * The remote tier, if any
+     */
+    private final RemoteCache remote;
+
+    private final AtomicInteger hits = new AtomicInteger();
+
+    private final AtomicInteger remoteHits = new AtomicInteger();
+
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * @param directory the directory holding the entries
+     * @param maxBytes  the size in bytes above which entries are evicted
+     * @param files     the file system access
+     * @param remote    the remote tier, or null
+     */
+    GeneratedSourceCache( File directory, long maxBytes, AbstractIDLJMojo.DependenciesFacade files,
+                          RemoteCache remote )
+    {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.files = files;
+        this.remote = remote;
+    }
+
+    /**
+     * Looks up the files generated by a compile, and marks the entry as recently used. An entry found only in the
+     * remote tier is copied to the local one.
+     *
+     * @param key the key of the compile
+     * @return the generated files, keyed by their paths relative to the output directory; null if they are not cached
+     */
+    Map<String, byte[]> fetch( String key )
+    {
+        File entryFile = getEntryFile( key );
+        try
+        {
+            if ( files.exists( entryFile ) )
+            {
+                Map<String, byte[]> generated = fromBundle( files.readFile( entryFile ) );
+                files.setLastModified( entryFile, System.currentTimeMillis() );
+                hits.incrementAndGet();
+                return generated;
+            }
+        }
+        catch ( IOException e )
+        {
+            // deleted or replaced by another build meanwhile; treat as a miss
+        }
+
+        byte[] bundle = remote == null ? null : remote.fetch( key );
+        if ( bundle != null )
+        {
+            try
+            {
+                Map<String, byte[]> generated = fromBundle( bundle );
+                files.writeFile( entryFile, bundle );
+                hits.incrementAndGet();
+                remoteHits.incrementAndGet();
+                return generated;
+            }
+            catch ( IOException e )
+            {
+                // a corrupt download, or a full disk; compile instead
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Adds the files generated by a compile to the cache.
+     *
+     * @param key       the key of the compile
+     * @param generated the generated files, keyed by their paths relative to the output directory
+     * @throws IOException if the entry cannot be written
+     */
+    void store( String key, Map<String, byte[]> generated ) throws IOException
+    {
+        byte[] bundle = toBundle( generated );
+        files.writeFile( getEntryFile( key ), bundle );
+        if ( remote != null )
+        {
+            remote.store( key, bundle );
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache is no larger than its limit.
+     *
+     * @throws IOException if the entries cannot be listed
+     */
+    void evict() throws IOException
+    {
+        final Map<String, Long> lastUsed = files.getModificationTimes( directory );
+        List<String> entries = new ArrayList<>();
+        long totalBytes = 0;
+        for ( String path : lastUsed.keySet() )
+        {
+            if ( path.endsWith( ENTRY_EXTENSION ) )
+            {
+                entries.add( path );
+                totalBytes += files.length( new File( directory, path ) );
+            }
+        }
+
+        Collections.sort( entries, new Comparator<String>()
+        {
+            public int compare( String first, String second )
+            {
+                return Long.compare( lastUsed.get( first ), lastUsed.get( second ) );
+            }
+        } );
+        for ( int i = 0; i < entries.size() && totalBytes > maxBytes; i++ )
+        {
+            File entryFile = new File( directory, entries.get( i ) );
+            totalBytes -= files.length( entryFile );
+            files.deleteFile( entryFile );
+        }
+    }
+
+    int getHits()
+    {
+        return hits.get();
+    }
+
+    int getRemoteHits()
+    {
+        return remoteHits.get();
+    }
+
+    int getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @param generated the generated files, keyed by their relative paths
+     * @return the files as a compressed bundle
+     * @throws IOException if the bundle cannot be written
+     */
+    static byte[] toBundle( Map<String, byte[]> generated ) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try ( ZipOutputStream out = new ZipOutputStream( bytes ) )
+        {
+            for ( Map.Entry<String, byte[]> entry : generated.entrySet() )
+            {
+                out.putNextEntry( new ZipEntry( entry.getKey() ) );
+                out.write( entry.getValue() );
+                out.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param bundle a bundle written by {@link #toBundle(Map)}
+     * @return the files in the bundle, keyed by their relative paths
+     * @throws IOException if the bundle cannot be read
+     */
+    static Map<String, byte[]> fromBundle( byte[] bundle ) throws IOException
+    {
+        Map<String, byte[]> generated = new TreeMap<>();
+        try ( ZipInputStream in = new ZipInputStream( new ByteArrayInputStream( bundle ) ) )
+        {
+            byte[] buffer = new byte[8192];
+            for ( ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry() )
+            {
+                if ( entry.getName().startsWith( "/" ) || entry.getName().contains( ".." ) )
+                {
+                    throw new IOException( "Invalid entry in bundle: " + entry.getName() );
+                }
+                ByteArrayOutputStream contents = new ByteArrayOutputStream();
+                for ( int n = in.read( buffer ); n > 0; n = in.read( buffer ) )
+                {
+                    contents.write( buffer, 0, n );
+                }
+                generated.put( entry.getName(), contents.toByteArray() );
+            }
+        }
+        return generated;
+    }
+
+    /**
+     * Spreads the entries over subdirectories named after the first characters of their keys, to keep directories
+     * small.
+     */
+    private File getEntryFile( String key )
+    {
+        return new File( new File( directory, key.substring( 0, 2 ) ), key + ENTRY_EXTENSION );
+    }
+}
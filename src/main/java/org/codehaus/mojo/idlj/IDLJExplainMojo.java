@@ -0,0 +1,55 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Report, for every CORBA IDL file that the <code>generate</code> goal would process, whether it is stale or fresh,
+ * why, and the estimated cost of compiling it, without compiling anything. Use it to find the causes of unnecessary
+ * rebuilds.
+ *
+ * @goal explain
+ */
+public class IDLJExplainMojo
+        extends IDLJMojo
+{
+    /**
+     * Constructs a Mojo which explains the staleness of the IDL files.
+     */
+    public IDLJExplainMojo()
+    {
+    }
+
+    IDLJExplainMojo( DependenciesFacade dependenciesFacade )
+    {
+        super( dependenciesFacade );
+    }
+
+    /**
+     * Reports the staleness of the IDL files.
+     *
+     * @throws MojoExecutionException if the configuration is invalid
+     */
+    public void execute() throws MojoExecutionException
+    {
+        explain();
+    }
+}
@@ -0,0 +1,279 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Process the CORBA IDL files of every module of the reactor which runs the <code>generate</code> goal, in a single
+ * pass. Each module is compiled with the source directory, include directories, output directory, sources, compiler,
+ * timestamp directory and stale check configured for its <code>generate</code> goal, and the other settings of this
+ * goal. The configuration of a module is read from its effective model rather than by executing its goal: a value
+ * holding an expression the model does not resolve is ignored, and the stale check then falls back to that of this
+ * goal. A module whose own <code>generate</code> goal runs with other settings, or resolves such an expression
+ * differently, finds its build digest changed and compiles its files again. The modules are processed in parallel,
+ * except that a module which depends on another module of the reactor waits until that one has been processed, and is
+ * not processed if that one failed. All their compiles share the session's compiler threads, compile limit and compiler
+ * instances, and each compiler is loaded once for all of them. The output directory of each module is added to its
+ * compile source roots.
+ *
+ * @goal generate-reactor
+ * @aggregator
+ */
+public class IDLJReactorMojo
+        extends AbstractIDLJMojo
+{
+    /**
+     * The projects of the reactor.
+     *
+     * @parameter default-value="${reactorProjects}"
+     * @required
+     * @readonly
+     */
+    private List<MavenProject> reactorProjects;
+
+    /**
+     * The number of modules to process at the same time. Either a plain count, or a multiple of the number of
+     * processors, such as <code>1.5C</code>. The number of compiles running at the same time remains limited by
+     * <code>maxConcurrentCompiles</code>.
+     *
+     * @parameter property="idlj.reactorThreads" default-value="1C"
+     */
+    private String reactorThreads;
+
+    /**
+     * Constructs a Mojo which processes the IDL files of all the modules of the reactor.
+     */
+    public IDLJReactorMojo()
+    {
+    }
+
+    IDLJReactorMojo( DependenciesFacade dependenciesFacade )
+    {
+        super( dependenciesFacade );
+    }
+
+    /**
+     * Compiles the stale IDL files of all the modules.
+     *
+     * @throws MojoExecutionException if the compilation fails in any module
+     */
+    public void execute() throws MojoExecutionException
+    {
+        Map<String, CompilerTranslator> translators = new HashMap<>();
+        List<ReactorModuleMojo> modules = new ArrayList<>();
+        for ( MavenProject project : reactorProjects )
+        {
+            ReactorModuleMojo module = ReactorModuleMojo.forModule( project, this, translators );
+            if ( module != null )
+            {
+                modules.add( module );
+            }
+        }
+        if ( modules.isEmpty() )
+        {
+            getLog().info( "No module of the reactor runs the generate goal" );
+            return;
+        }
+
+        getLog().info( "Processing the idl files of " + modules.size() + " modules" );
+        CompilationService.executionStarted();
+        try
+        {
+            for ( ReactorModuleMojo module : modules )
+            {
+                module.prepare();
+            }
+            generate( modules );
+        }
+        finally
+        {
+            CompilationService.executionFinished();
+        }
+    }
+
+    /**
+     * Compiles the stale files of the modules in parallel, and reports the failures of all the modules at once. The
+     * modules are submitted in reactor order, which puts every module after the modules it depends on; as the threads
+     * take the modules in that order, a module which waits for its dependencies only waits for modules which are
+     * already being processed.
+     */
+    private void generate( List<ReactorModuleMojo> modules ) throws MojoExecutionException
+    {
+        int threadCount = Math.min( CompileScheduler.parseThreadCount( reactorThreads ), modules.size() );
+        ExecutorService executor = Executors.newFixedThreadPool( threadCount );
+        try
+        {
+            Map<MavenProject, Future<Void>> results = new LinkedHashMap<>();
+            Map<String, Future<Void>> submitted = new HashMap<>();
+            for ( final ReactorModuleMojo module : modules )
+            {
+                final List<Future<Void>> prerequisites = getPrerequisites( module.getProject(), submitted );
+                Future<Void> result = executor.submit( new Callable<Void>()
+                {
+                    public Void call() throws MojoExecutionException
+                    {
+                        awaitPrerequisites( prerequisites );
+                        module.generate();
+                        return null;
+                    }
+                } );
+                results.put( module.getProject(), result );
+                submitted.put( getKey( module.getProject().getGroupId(), module.getProject().getArtifactId() ),
+                               result );
+            }
+
+            StringBuilder failures = new StringBuilder();
+            MojoExecutionException firstFailure = null;
+            for ( Map.Entry<MavenProject, Future<Void>> result : results.entrySet() )
+            {
+                MojoExecutionException failure = getFailure( result.getValue() );
+                if ( failure != null )
+                {
+                    failures.append( System.getProperty( "line.separator" ) ).append( "  " )
+                            .append( result.getKey().getId() ).append( ": " ).append( failure.getMessage() );
+                    firstFailure = firstFailure != null ? firstFailure : failure;
+                }
+            }
+            if ( firstFailure != null )
+            {
+                throw new MojoExecutionException( "IDL compilation failed in:" + failures, firstFailure );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param project   a module
+     * @param submitted the processing of the modules submitted so far, keyed by their group and artifact IDs
+     * @return the processing of the submitted modules which the module depends on
+     */
+    private static List<Future<Void>> getPrerequisites( MavenProject project, Map<String, Future<Void>> submitted )
+    {
+        List<Future<Void>> prerequisites = new ArrayList<>();
+        for ( Object projectDependency : project.getDependencies() )
+        {
+            Dependency dependency = (Dependency) projectDependency;
+            Future<Void> prerequisite = submitted.get( getKey( dependency.getGroupId(), dependency.getArtifactId() ) );
+            if ( prerequisite != null )
+            {
+                prerequisites.add( prerequisite );
+            }
+        }
+        return prerequisites;
+    }
+
+    private static String getKey( String groupId, String artifactId )
+    {
+        return groupId + ":" + artifactId;
+    }
+
+    /**
+     * Waits until the modules which a module depends on have been processed.
+     *
+     * @throws MojoExecutionException if the processing of one of them failed
+     */
+    private static void awaitPrerequisites( List<Future<Void>> prerequisites ) throws MojoExecutionException
+    {
+        for ( Future<Void> prerequisite : prerequisites )
+        {
+            if ( getFailure( prerequisite ) != null )
+            {
+                throw new MojoExecutionException( "Not processed, as a module it depends on failed" );
+            }
+        }
+    }
+
+    /**
+     * Waits for the processing of a module to finish.
+     *
+     * @return the failure of the processing, or <code>null</code> if it succeeded
+     * @throws MojoExecutionException if the build is interrupted
+     */
+    private static MojoExecutionException getFailure( Future<Void> result ) throws MojoExecutionException
+    {
+        try
+        {
+            result.get();
+            return null;
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            return cause instanceof MojoExecutionException ? (MojoExecutionException) cause
+                            : new MojoExecutionException( String.valueOf( cause ), cause );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while processing the idl files of the reactor", e );
+        }
+    }
+
+    /**
+     * @return <code>null</code>: each module has its own source directory
+     */
+    protected File getSourceDirectory()
+    {
+        return null;
+    }
+
+    /**
+     * @return <code>null</code>: each module has its own include directories
+     */
+    protected File[] getIncludeDirs()
+    {
+        return null;
+    }
+
+    /**
+     * @return <code>null</code>: each module has its own output directory
+     */
+    protected File getOutputDirectory()
+    {
+        return null;
+    }
+
+    /**
+     * Does nothing: the output directory of each module is added to the compile source roots of the module.
+     *
+     * @param directory unused
+     */
+    protected void addCompileSourceRoot( File directory )
+    {
+    }
+}
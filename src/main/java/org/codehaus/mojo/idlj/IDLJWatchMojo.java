@@ -0,0 +1,149 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Process CORBA IDL files like the <code>generate</code> goal, then keep watching the source and include directories
+ * and regenerate the affected files whenever they change, until the build is interrupted. The compiler stays loaded
+ * between regenerations, and each one applies the same stale checks as a normal build to the changed files and the
+ * files which include them, without walking the whole source tree.
+ *
+ * @goal watch
+ */
+public class IDLJWatchMojo
+        extends IDLJMojo
+{
+    /**
+     * The time in milliseconds for which the watched directories must be quiet before the changes are processed, so
+     * that a burst of changes, such as a checkout, causes a single regeneration.
+     *
+     * @parameter property="idlj.watchDebounce" default-value="100"
+     */
+    private long watchDebounce = 100;
+
+    /**
+     * Constructs an IDL translation Mojo which watches for changes.
+     */
+    public IDLJWatchMojo()
+    {
+    }
+
+    IDLJWatchMojo( DependenciesFacade dependenciesFacade )
+    {
+        super( dependenciesFacade );
+    }
+
+    /**
+     * Generates the sources, then regenerates them on every change until interrupted.
+     *
+     * @throws MojoExecutionException if the initial compilation fails or the directories cannot be watched
+     */
+    public void execute() throws MojoExecutionException
+    {
+        CompilationService.executionStarted();
+        try
+        {
+            prepare();
+            generate();
+            watch();
+        }
+        finally
+        {
+            CompilationService.executionFinished();
+        }
+    }
+
+    /**
+     * Regenerates the sources on every change until interrupted.
+     *
+     * @throws MojoExecutionException if the directories cannot be watched
+     */
+    private void watch() throws MojoExecutionException
+    {
+        try ( SourceWatcher watcher = new SourceWatcher( getWatchedDirectories(), watchDebounce ) )
+        {
+            getLog().info( "Watching " + getWatchedDirectories() + " for changes" );
+            while ( !Thread.currentThread().isInterrupted() )
+            {
+                Set<File> changed = watcher.awaitChanges();
+                getLog().debug( "Changed: " + ( changed == null ? "unknown files, as events were lost" : changed ) );
+                regenerate( changed );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to watch " + getWatchedDirectories(), e );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Regenerates the sources after a change, looking only at the changed files and the files which include them,
+     * unless events were lost. A failure is reported without stopping the watch, as the next change may well fix it.
+     *
+     * @param changed the changed files and directories, or <code>null</code> if any file may have changed
+     */
+    private void regenerate( Set<File> changed )
+    {
+        long start = System.currentTimeMillis();
+        try
+        {
+            if ( changed == null )
+            {
+                generate();
+            }
+            else
+            {
+                generate( changed );
+            }
+            getLog().info( "Regenerated in " + ( System.currentTimeMillis() - start ) + " ms" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            getLog().error( e.getMessage() );
+        }
+    }
+
+    /**
+     * @return the source directory and the include directories
+     */
+    private List<File> getWatchedDirectories()
+    {
+        List<File> directories = new ArrayList<>();
+        directories.add( getSourceDirectory() );
+        if ( getIncludeDirs() != null )
+        {
+            directories.addAll( Arrays.asList( getIncludeDirs() ) );
+        }
+        return directories;
+    }
+}
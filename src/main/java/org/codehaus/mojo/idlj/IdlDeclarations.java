@@ -0,0 +1,511 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The top-level declarations of an IDL file, found by a light parse which does not need the compiler: the
+ * interfaces, value types, structs, unions, enums, exceptions, typedefs and constants declared directly in the file
+ * or in its modules. Each declaration is hashed, ignoring comments and layout, so that the declarations which changed
+ * since the last compile can be found, and the generated files which belong to them told apart from the others.
+ * Anything else, such as preprocessor directives, forms the header of the file; when it changes, every declaration
+ * must be considered changed.
+ */
+class IdlDeclarations
+{
+    /**
+     * The key under which the hash of the header is recorded; it cannot be the name of a declaration
+     */
+    static final String HEADER = "#header";
+
+    /**
+     * The keywords which may precede the keyword of a declaration
+     */
+    private static final Set<String> MODIFIERS =
+        new HashSet<>( Arrays.asList( "abstract", "local", "custom", "truncatable" ) );
+
+    /**
+     * The keywords of declarations named by the identifier which follows them
+     */
+    private static final Set<String> NAMED_BY_NEXT = new HashSet<>(
+        Arrays.asList( "interface", "valuetype", "eventtype", "struct", "union", "enum", "exception", "native" ) );
+
+    /**
+     * The suffixes which the compilers append to the name of a declaration to name its generated classes, longest
+     * first so that, for instance, "POATie" is removed rather than "Tie"
+     */
+    private static final String[] CLASS_SUFFIXES = { "DefaultFactory", "ValueFactory", "Operations", "LocalBase",
+        "LocalTie", "ImplBase", "POATie", "Helper", "Holder", "Stub", "POA", "Tie" };
+
+    /**
+     * The directory suffix of the classes nested in a declaration
+     */
+    private static final String NESTED_SUFFIX = "Package";
+
+    /**
+     * The declarations, keyed by their scoped names
+     */
+    private final Map<String, Declaration> declarations = new LinkedHashMap<>();
+
+    /**
+     * The text of the file outside its declarations
+     */
+    private final StringBuilder header = new StringBuilder();
+
+    /**
+     * Parses the declarations of an IDL file.
+     *
+     * @param text the contents of the file
+     * @return the declarations
+     */
+    static IdlDeclarations parse( String text )
+    {
+        IdlDeclarations result = new IdlDeclarations();
+        result.parse( tokenize( text, result.header ) );
+        return result;
+    }
+
+    /**
+     * @return the hashes of the declarations keyed by their scoped names, and the hash of the header
+     */
+    Map<String, String> getHashes()
+    {
+        Map<String, String> hashes = new TreeMap<>();
+        hashes.put( HEADER, hash( header.toString() ) );
+        for ( Map.Entry<String, Declaration> entry : declarations.entrySet() )
+        {
+            hashes.put( entry.getKey(), entry.getValue().getHash() );
+        }
+        return hashes;
+    }
+
+    /**
+     * Finds the declarations which changed since the file was last compiled, and those which depend on them. A
+     * declaration depends on another when it refers to one of the names the other defines.
+     *
+     * @param recorded the hashes recorded when the file was last compiled
+     * @return the scoped names of the affected declarations, including removed ones, or <code>null</code> if every
+     * declaration must be considered changed
+     */
+    Set<String> findAffected( Map<String, String> recorded )
+    {
+        if ( recorded.isEmpty() || !hash( header.toString() ).equals( recorded.get( HEADER ) ) )
+        {
+            return null;
+        }
+
+        Set<String> affected = new TreeSet<>();
+        for ( Map.Entry<String, Declaration> entry : declarations.entrySet() )
+        {
+            if ( !entry.getValue().getHash().equals( recorded.get( entry.getKey() ) ) )
+            {
+                affected.add( entry.getKey() );
+            }
+        }
+        for ( String name : recorded.keySet() )
+        {
+            if ( !name.equals( HEADER ) && !declarations.containsKey( name ) )
+            {
+                affected.add( name );
+            }
+        }
+
+        Set<String> pending = new TreeSet<>( affected );
+        while ( !pending.isEmpty() )
+        {
+            String changed = pending.iterator().next();
+            pending.remove( changed );
+            for ( Map.Entry<String, Declaration> entry : declarations.entrySet() )
+            {
+                if ( !affected.contains( entry.getKey() ) && entry.getValue().refersTo( simpleName( changed ) ) )
+                {
+                    affected.add( entry.getKey() );
+                    pending.add( entry.getKey() );
+                }
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Determines whether a generated file belongs to one of the affected declarations. A file belongs to a declaration
+     * when its class name, less the suffixes the compilers add, is the name of the declaration, or when it is nested
+     * in the declaration's <code>Package</code> directory; the enclosing directories must end with the declaration's
+     * modules, whatever package prefix precedes them. A file which belongs to no known declaration is considered
+     * affected.
+     *
+     * @param generatedPath the path of the generated file relative to the output directory
+     * @param affected      the scoped names of the affected declarations
+     * @return true if the file must be published
+     */
+    boolean isAffected( String generatedPath, Set<String> affected )
+    {
+        Set<String> known = new TreeSet<>( declarations.keySet() );
+        known.addAll( affected );
+
+        boolean owned = false;
+        for ( String name : known )
+        {
+            if ( belongsTo( generatedPath, name ) )
+            {
+                if ( affected.contains( name ) )
+                {
+                    return true;
+                }
+                owned = true;
+            }
+        }
+        return !owned;
+    }
+
+    private static boolean belongsTo( String generatedPath, String scopedName )
+    {
+        List<String> scopes = new ArrayList<>( Arrays.asList( scopedName.split( "::" ) ) );
+        String name = scopes.remove( scopes.size() - 1 );
+        List<String> directories = new ArrayList<>( Arrays.asList( generatedPath.split( "/" ) ) );
+        String fileName = directories.remove( directories.size() - 1 );
+
+        for ( int i = directories.size() - 1; i >= 0; i-- )
+        {
+            if ( directories.get( i ).equals( name + NESTED_SUFFIX ) && endsWith( directories.subList( 0, i ), scopes ) )
+            {
+                return true;
+            }
+        }
+        return getClassNames( fileName ).contains( name ) && endsWith( directories, scopes );
+    }
+
+    /**
+     * @return the names of the declarations which may have generated a class file
+     */
+    private static Set<String> getClassNames( String fileName )
+    {
+        String className = fileName.endsWith( ".java" ) ? fileName.substring( 0, fileName.length() - 5 ) : fileName;
+        if ( className.startsWith( "_" ) )
+        {
+            className = className.substring( 1 );
+        }
+
+        Set<String> names = new HashSet<>();
+        names.add( className );
+        for ( String suffix : CLASS_SUFFIXES )
+        {
+            if ( className.endsWith( suffix ) && className.length() > suffix.length() )
+            {
+                names.add( className.substring( 0, className.length() - suffix.length() ) );
+            }
+        }
+        return names;
+    }
+
+    private static boolean endsWith( List<String> directories, List<String> scopes )
+    {
+        return directories.size() >= scopes.size()
+            && directories.subList( directories.size() - scopes.size(), directories.size() ).equals( scopes );
+    }
+
+    private static String simpleName( String scopedName )
+    {
+        return scopedName.substring( scopedName.lastIndexOf( ':' ) + 1 );
+    }
+
+    private void parse( List<String> tokens )
+    {
+        List<String> modules = new ArrayList<>();
+        int i = 0;
+        while ( i < tokens.size() )
+        {
+            String token = tokens.get( i );
+            if ( token.equals( "module" ) && i + 2 < tokens.size() && tokens.get( i + 2 ).equals( "{" ) )
+            {
+                modules.add( tokens.get( i + 1 ) );
+                i += 3;
+            }
+            else if ( token.equals( "}" ) && !modules.isEmpty() )
+            {
+                modules.remove( modules.size() - 1 );
+                i++;
+                if ( i < tokens.size() && tokens.get( i ).equals( ";" ) )
+                {
+                    i++;
+                }
+            }
+            else
+            {
+                int end = findEnd( tokens, i );
+                addDeclaration( modules, tokens.subList( i, end ) );
+                i = end;
+            }
+        }
+    }
+
+    /**
+     * @return the position after the semicolon which ends the declaration starting at a position
+     */
+    private static int findEnd( List<String> tokens, int start )
+    {
+        int depth = 0;
+        for ( int i = start; i < tokens.size(); i++ )
+        {
+            String token = tokens.get( i );
+            if ( token.equals( "{" ) )
+            {
+                depth++;
+            }
+            else if ( token.equals( "}" ) )
+            {
+                depth--;
+            }
+            else if ( token.equals( ";" ) && depth <= 0 )
+            {
+                return i + 1;
+            }
+        }
+        return tokens.size();
+    }
+
+    private void addDeclaration( List<String> modules, List<String> tokens )
+    {
+        List<String> names = getDeclaredNames( tokens );
+        if ( names.isEmpty() )
+        {
+            for ( String token : tokens )
+            {
+                header.append( token ).append( ' ' );
+            }
+            header.append( '\n' );
+            return;
+        }
+
+        StringBuilder scope = new StringBuilder();
+        for ( String module : modules )
+        {
+            scope.append( module ).append( "::" );
+        }
+        for ( String name : names )
+        {
+            String scopedName = scope + name;
+            Declaration declaration = declarations.get( scopedName );
+            if ( declaration == null )
+            {
+                declaration = new Declaration();
+                declarations.put( scopedName, declaration );
+            }
+            declaration.add( tokens );
+        }
+    }
+
+    /**
+     * @return the names a declaration declares, or an empty list if the tokens do not form a declaration
+     */
+    private static List<String> getDeclaredNames( List<String> tokens )
+    {
+        int i = 0;
+        while ( i < tokens.size() && MODIFIERS.contains( tokens.get( i ) ) )
+        {
+            i++;
+        }
+        List<String> names = new ArrayList<>();
+        if ( i + 1 >= tokens.size() )
+        {
+            return names;
+        }
+
+        String keyword = tokens.get( i );
+        if ( NAMED_BY_NEXT.contains( keyword ) && isIdentifier( tokens.get( i + 1 ) ) )
+        {
+            names.add( tokens.get( i + 1 ) );
+        }
+        else if ( keyword.equals( "const" ) )
+        {
+            int assignment = tokens.indexOf( "=" );
+            if ( assignment > 0 && isIdentifier( tokens.get( assignment - 1 ) ) )
+            {
+                names.add( tokens.get( assignment - 1 ) );
+            }
+        }
+        else if ( keyword.equals( "typedef" ) )
+        {
+            addDeclarators( tokens, i + 1, names );
+        }
+        return names;
+    }
+
+    /**
+     * Adds the names declared by a typedef: the identifiers followed, outside of braces, brackets and template
+     * arguments, by a comma, a semicolon or an array bound.
+     */
+    private static void addDeclarators( List<String> tokens, int start, List<String> names )
+    {
+        int depth = 0;
+        for ( int i = start; i + 1 < tokens.size(); i++ )
+        {
+            String token = tokens.get( i );
+            if ( token.equals( "{" ) || token.equals( "<" ) || token.equals( "[" ) )
+            {
+                depth++;
+            }
+            else if ( token.equals( "}" ) || token.equals( ">" ) || token.equals( "]" ) )
+            {
+                depth--;
+            }
+            else if ( depth == 0 && isIdentifier( token ) )
+            {
+                String next = tokens.get( i + 1 );
+                if ( next.equals( "," ) || next.equals( ";" ) || next.equals( "[" ) )
+                {
+                    names.add( token );
+                }
+            }
+        }
+    }
+
+    private static boolean isIdentifier( String token )
+    {
+        return Character.isJavaIdentifierStart( token.charAt( 0 ) );
+    }
+
+    /**
+     * Splits IDL text into tokens, dropping comments and whitespace. Preprocessor lines are appended to the header
+     * instead.
+     */
+    private static List<String> tokenize( String text, StringBuilder header )
+    {
+        List<String> tokens = new ArrayList<>();
+        boolean lineStart = true;
+        int i = 0;
+        while ( i < text.length() )
+        {
+            char c = text.charAt( i );
+            if ( c == '\n' )
+            {
+                lineStart = true;
+                i++;
+            }
+            else if ( Character.isWhitespace( c ) )
+            {
+                i++;
+            }
+            else if ( c == '#' && lineStart )
+            {
+                int end = i;
+                while ( end < text.length() && ( text.charAt( end ) != '\n' || text.charAt( end - 1 ) == '\\' ) )
+                {
+                    end++;
+                }
+                header.append( text, i, end ).append( '\n' );
+                i = end;
+            }
+            else if ( text.startsWith( "//", i ) )
+            {
+                int end = text.indexOf( '\n', i );
+                i = end < 0 ? text.length() : end;
+            }
+            else if ( text.startsWith( "/*", i ) )
+            {
+                int end = text.indexOf( "*/", i + 2 );
+                i = end < 0 ? text.length() : end + 2;
+            }
+            else
+            {
+                lineStart = false;
+                int end = findTokenEnd( text, i );
+                tokens.add( text.substring( i, end ) );
+                i = end;
+            }
+        }
+        return tokens;
+    }
+
+    private static int findTokenEnd( String text, int start )
+    {
+        char c = text.charAt( start );
+        int end = start + 1;
+        if ( Character.isJavaIdentifierPart( c ) )
+        {
+            while ( end < text.length() && Character.isJavaIdentifierPart( text.charAt( end ) ) )
+            {
+                end++;
+            }
+        }
+        else if ( c == '"' || c == '\'' )
+        {
+            while ( end < text.length() && text.charAt( end ) != c )
+            {
+                end += text.charAt( end ) == '\\' ? 2 : 1;
+            }
+            end = Math.min( end + 1, text.length() );
+        }
+        else if ( text.startsWith( "::", start ) )
+        {
+            end++;
+        }
+        return end;
+    }
+
+    private static String hash( String text )
+    {
+        return ContentManifest.hash( ByteBuffer.wrap( text.getBytes( StandardCharsets.UTF_8 ) ) );
+    }
+
+    /**
+     * A declaration, which may have been made in several parts, such as a forward declaration and a definition.
+     */
+    private static class Declaration
+    {
+        private final StringBuilder text = new StringBuilder();
+
+        private final Set<String> identifiers = new HashSet<>();
+
+        void add( List<String> tokens )
+        {
+            for ( String token : tokens )
+            {
+                text.append( token ).append( ' ' );
+                if ( isIdentifier( token ) )
+                {
+                    identifiers.add( token );
+                }
+            }
+            text.append( '\n' );
+        }
+
+        String getHash()
+        {
+            return hash( text.toString() );
+        }
+
+        boolean refersTo( String name )
+        {
+            return identifiers.contains( name );
+        }
+    }
+}
@@ -266,14 +266,27 @@ abstract class IdljTranslator extends AbstractTranslator implements CompilerTran
             args.add( 0, "-verbose" );
         }
 
-        invokeCompilerInProcess( compilerClass, args );
+        if ( isWorkerPoolEnabled() )
+        {
+            invokeCompilerInWorker( compilerClass, args );
+        }
+        else
+        {
+            invokeCompilerInProcess( compilerClass, args );
+        }
+    }
+
+    @Override
+    String getCompilerMethodName()
+    {
+        return "main";
     }
 
     @Override
     protected int runCompiler( Class<?> compilerClass, String... arguments )
             throws NoSuchMethodException, IllegalAccessException, InvocationTargetException
     {
-        Method compilerMainMethod = compilerClass.getMethod( "main", String[].class );
+        Method compilerMainMethod = compilerClass.getMethod( getCompilerMethodName(), String[].class );
         Object retVal = compilerMainMethod.invoke( compilerClass, new Object[]{arguments} );
         getLog().debug( "Completed with code " + retVal );
         return ( retVal != null ) && ( retVal instanceof Integer ) ? (Integer) retVal : 0;
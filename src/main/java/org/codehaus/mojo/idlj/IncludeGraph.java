@@ -0,0 +1,663 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The <code>#include</code> dependencies of the compiled IDL files, used to recompile a file when anything it includes,
+ * directly or indirectly, has changed. Each file seen is given an integer ID, and the graph stores only the direct
+ * includes of each file as arrays of IDs, so that it stays small even for very large source trees. For every compiled
+ * file, the graph records a stamp of the modification times in its transitive closure at the time of the compile; the
+ * file is affected by a change if the stamp of its current closure differs. When the stale check compares contents,
+ * the stamp combines the content hashes of the included files instead, so that touching an included file without
+ * changing it does not recompile the files which include it.
+ * <p>
+ * The traversals reuse arrays marked with a generation number rather than allocating arrays the size of the graph for
+ * each file, so that finding the affected files costs in proportion to the sizes of their closures. Only the compiled
+ * files and the files in their closures are saved, so that files which are no longer included are dropped.
+ */
+class IncludeGraph
+{
+    /**
+     * Identifies the saved form of the graph
+     */
+    private static final int MAGIC = 0x49444c47;
+
+    /**
+     * The version of the saved form
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * An <code>#include</code> directive, capturing the delimiter and the included name
+     */
+    private static final Pattern INCLUDE = Pattern.compile( "^\\s*#\\s*include\\s*([<\"])([^>\"]+)[>\"]",
+                                                            Pattern.MULTILINE );
+
+    private static final int[] NO_INCLUDES = new int[0];
+
+    /**
+     * The directories searched for included files, in order
+     */
+    private final List<File> searchPath;
+
+    /**
+     * The file system access
+     */
+    private final AbstractIDLJMojo.DependenciesFacade files;
+
+    /**
+     * The IDs of the files, keyed by their absolute paths
+     */
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    /**
+     * The absolute paths of the files, indexed by ID
+     */
+    private final List<String> paths = new ArrayList<>();
+
+    /**
+     * The direct includes of each file, indexed by ID; null if the file has not been parsed
+     */
+    private final List<int[]> includes = new ArrayList<>();
+
+    /**
+     * The modification time of each file when it was parsed, indexed by ID
+     */
+    private final List<Long> parsedTimes = new ArrayList<>();
+
+    /**
+     * The closure stamps of the compiled files, keyed by ID
+     */
+    private final Map<Integer, Long> compiledStamps = new HashMap<>();
+
+    /**
+     * Records the content hashes of the included files, or null to stamp them by their modification times
+     */
+    private ContentManifest contentManifest;
+
+    /**
+     * The generation in which each file was last visited by a traversal, indexed by ID
+     */
+    private int[] visitMarks = new int[0];
+
+    /**
+     * The generation of the current traversal
+     */
+    private int visitGeneration;
+
+    /**
+     * The files still to visit in the current traversal
+     */
+    private int[] pending = new int[0];
+
+    /**
+     * The stamps of the files, indexed by ID, valid where the stamp mark is the current stamp generation
+     */
+    private long[] fileStamps = new long[0];
+
+    /**
+     * The generation in which the stamp of each file was computed, indexed by ID
+     */
+    private int[] stampMarks = new int[0];
+
+    /**
+     * The generation of the current stamp computation; file stamps are reused within one generation only
+     */
+    private int stampGeneration;
+
+    /**
+     * @param searchPath the directories searched for included files, in order
+     * @param files      the file system access
+     */
+    IncludeGraph( List<File> searchPath, AbstractIDLJMojo.DependenciesFacade files )
+    {
+        this.searchPath = searchPath;
+        this.files = files;
+    }
+
+    /**
+     * Reads a graph previously written by {@link #toBytes()}. If the search path has changed since, the includes may
+     * resolve to different files, so every compiled file is treated as affected.
+     *
+     * @param bytes      the saved graph
+     * @param searchPath the directories searched for included files, in order
+     * @param files      the file system access
+     * @return the graph
+     * @throws IOException if the graph cannot be parsed
+     */
+    static IncludeGraph fromBytes( byte[] bytes, List<File> searchPath, AbstractIDLJMojo.DependenciesFacade files )
+            throws IOException
+    {
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes ) );
+        if ( in.readInt() != MAGIC || in.readInt() != VERSION )
+        {
+            throw new IOException( "Not an include graph" );
+        }
+
+        IncludeGraph graph = new IncludeGraph( searchPath, files );
+        List<String> savedSearchPath = new ArrayList<>();
+        for ( int i = in.readInt(); i > 0; i-- )
+        {
+            savedSearchPath.add( in.readUTF() );
+        }
+        boolean searchPathChanged = !savedSearchPath.equals( graph.getSearchPathNames() );
+
+        int numFiles = in.readInt();
+        for ( int id = 0; id < numFiles; id++ )
+        {
+            graph.getId( in.readUTF() );
+            long parsedTime = in.readLong();
+            int numIncludes = in.readInt();
+            if ( numIncludes >= 0 )
+            {
+                int[] fileIncludes = new int[numIncludes];
+                for ( int i = 0; i < numIncludes; i++ )
+                {
+                    fileIncludes[i] = in.readInt();
+                }
+                graph.includes.set( id, fileIncludes );
+                graph.parsedTimes.set( id, parsedTime );
+            }
+        }
+        for ( int i = in.readInt(); i > 0; i-- )
+        {
+            int id = in.readInt();
+            long stamp = in.readLong();
+            graph.compiledStamps.put( id, searchPathChanged ? stamp + 1 : stamp );
+        }
+        return graph;
+    }
+
+    /**
+     * Saves the compiled files and the files in their closures, renumbered in order; files which no compiled file
+     * includes any longer are left out.
+     *
+     * @return the graph in the form read by {@link #fromBytes(byte[], List, AbstractIDLJMojo.DependenciesFacade)}
+     * @throws IOException if the graph cannot be written
+     */
+    synchronized byte[] toBytes() throws IOException
+    {
+        List<Integer> live = new ArrayList<>();
+        int[] savedIds = new int[paths.size()];
+        Arrays.fill( savedIds, -1 );
+        for ( int compiled : compiledStamps.keySet() )
+        {
+            addLiveClosure( compiled, live, savedIds );
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bytes );
+        out.writeInt( MAGIC );
+        out.writeInt( VERSION );
+        List<String> searchPathNames = getSearchPathNames();
+        out.writeInt( searchPathNames.size() );
+        for ( String name : searchPathNames )
+        {
+            out.writeUTF( name );
+        }
+
+        out.writeInt( live.size() );
+        for ( int id : live )
+        {
+            out.writeUTF( paths.get( id ) );
+            out.writeLong( parsedTimes.get( id ) );
+            int[] fileIncludes = includes.get( id );
+            out.writeInt( fileIncludes == null ? -1 : fileIncludes.length );
+            if ( fileIncludes != null )
+            {
+                for ( int include : fileIncludes )
+                {
+                    out.writeInt( savedIds[include] );
+                }
+            }
+        }
+
+        out.writeInt( compiledStamps.size() );
+        for ( Map.Entry<Integer, Long> entry : compiledStamps.entrySet() )
+        {
+            out.writeInt( savedIds[entry.getKey()] );
+            out.writeLong( entry.getValue() );
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Gives the files in the closure of a file which have not been given one yet their IDs in the saved form.
+     *
+     * @param root     the file whose closure is saved
+     * @param live     the files to save, in the order of their saved IDs
+     * @param savedIds the saved ID of each file, indexed by ID; -1 if it has none yet
+     */
+    private void addLiveClosure( int root, List<Integer> live, int[] savedIds )
+    {
+        if ( savedIds[root] >= 0 )
+        {
+            return;
+        }
+        List<Integer> stack = new ArrayList<>();
+        savedIds[root] = live.size();
+        live.add( root );
+        stack.add( root );
+        while ( !stack.isEmpty() )
+        {
+            int[] fileIncludes = includes.get( stack.remove( stack.size() - 1 ) );
+            if ( fileIncludes != null )
+            {
+                for ( int include : fileIncludes )
+                {
+                    if ( savedIds[include] < 0 )
+                    {
+                        savedIds[include] = live.size();
+                        live.add( include );
+                        stack.add( include );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes the closure stamps combine the content hashes of the included files rather than their modification times.
+     * The hashes are kept in the manifest under the absolute paths of the files, so that a file is only read again
+     * when its size or modification time has changed.
+     *
+     * @param contentManifest records the content hashes of the included files
+     */
+    synchronized void useContentHashes( ContentManifest contentManifest )
+    {
+        this.contentManifest = contentManifest;
+    }
+
+    /**
+     * Finds the compiled files which must be recompiled because a file in their include closure has changed. Files
+     * which no longer exist are forgotten.
+     *
+     * @return the affected files
+     */
+    synchronized Set<File> findAffectedFiles()
+    {
+        startStampGeneration();
+        Set<File> affected = new LinkedHashSet<>();
+        for ( Integer id : new ArrayList<>( compiledStamps.keySet() ) )
+        {
+            File file = new File( paths.get( id ) );
+            if ( !files.exists( file ) )
+            {
+                compiledStamps.remove( id );
+            }
+            else if ( computeStamp( id ) != compiledStamps.get( id ) )
+            {
+                affected.add( file );
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Finds the compiled files which include one of the specified files, directly or indirectly, and must be
+     * recompiled because a file in their include closure has changed. Only the files which include the changed files
+     * are stamped, rather than every compiled file.
+     *
+     * @param changedFiles the files known to have changed
+     * @return the affected files
+     */
+    synchronized Set<File> findAffectedFiles( Collection<File> changedFiles )
+    {
+        List<List<Integer>> includedBy = new ArrayList<>( paths.size() );
+        for ( int id = 0; id < paths.size(); id++ )
+        {
+            includedBy.add( null );
+        }
+        for ( int id = 0; id < paths.size(); id++ )
+        {
+            int[] fileIncludes = includes.get( id );
+            if ( fileIncludes != null )
+            {
+                for ( int include : fileIncludes )
+                {
+                    if ( includedBy.get( include ) == null )
+                    {
+                        includedBy.set( include, new ArrayList<Integer>() );
+                    }
+                    includedBy.get( include ).add( id );
+                }
+            }
+        }
+
+        Set<Integer> including = new LinkedHashSet<>();
+        List<Integer> pending = new ArrayList<>();
+        for ( File changedFile : changedFiles )
+        {
+            Integer id = ids.get( changedFile.getAbsolutePath() );
+            if ( id != null )
+            {
+                pending.add( id );
+            }
+        }
+        while ( !pending.isEmpty() )
+        {
+            List<Integer> parents = includedBy.get( pending.remove( pending.size() - 1 ) );
+            if ( parents != null )
+            {
+                for ( int parent : parents )
+                {
+                    if ( including.add( parent ) )
+                    {
+                        pending.add( parent );
+                    }
+                }
+            }
+        }
+
+        startStampGeneration();
+        Set<File> affected = new LinkedHashSet<>();
+        for ( int id : including )
+        {
+            Long compiledStamp = compiledStamps.get( id );
+            File file = new File( paths.get( id ) );
+            if ( compiledStamp != null && files.exists( file ) && computeStamp( id ) != compiledStamp )
+            {
+                affected.add( file );
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Records that a file has been compiled: parses it and the files it includes where they have changed since they
+     * were last parsed, and saves the stamp of its include closure.
+     *
+     * @param idlFile the compiled file
+     * @throws IOException if a file in the closure cannot be read
+     */
+    synchronized void recordCompiled( File idlFile ) throws IOException
+    {
+        int id = getId( idlFile.getAbsolutePath() );
+        parseClosure( id );
+
+        startStampGeneration();
+        compiledStamps.put( id, computeStamp( id ) );
+    }
+
+    /**
+     * Finds the files which a file includes, directly or indirectly, parsing those which have changed since they were
+     * last parsed.
+     *
+     * @param idlFile the including file
+     * @return the included files, not including the file itself
+     * @throws IOException if a file in the closure cannot be read
+     */
+    synchronized List<File> getIncludedFiles( File idlFile ) throws IOException
+    {
+        int id = getId( idlFile.getAbsolutePath() );
+        List<File> included = new ArrayList<>();
+        for ( int include : parseClosure( id ) )
+        {
+            if ( include != id )
+            {
+                included.add( new File( paths.get( include ) ) );
+            }
+        }
+        return included;
+    }
+
+    /**
+     * @return the number of files in the graph
+     */
+    synchronized int size()
+    {
+        return paths.size();
+    }
+
+    /**
+     * @return the IDs of the files in the transitive closure of a file, including the file itself
+     */
+    private Set<Integer> parseClosure( int id ) throws IOException
+    {
+        List<Integer> pending = new ArrayList<>();
+        Set<Integer> visited = new LinkedHashSet<>();
+        pending.add( id );
+        while ( !pending.isEmpty() )
+        {
+            int current = pending.remove( pending.size() - 1 );
+            if ( visited.add( current ) )
+            {
+                for ( int include : parseIfChanged( current ) )
+                {
+                    pending.add( include );
+                }
+            }
+        }
+        return visited;
+    }
+
+    private int[] parseIfChanged( int id ) throws IOException
+    {
+        File file = new File( paths.get( id ) );
+        if ( !files.exists( file ) )
+        {
+            return NO_INCLUDES;
+        }
+
+        long modificationTime = files.lastModified( file );
+        if ( includes.get( id ) != null && parsedTimes.get( id ) == modificationTime )
+        {
+            return includes.get( id );
+        }
+
+        Set<Integer> fileIncludes = new LinkedHashSet<>();
+        Matcher matcher = INCLUDE.matcher( new String( files.readFile( file ), StandardCharsets.ISO_8859_1 ) );
+        while ( matcher.find() )
+        {
+            File included = resolve( file, matcher.group( 2 ).trim(), "\"".equals( matcher.group( 1 ) ) );
+            if ( included != null )
+            {
+                fileIncludes.add( getId( included.getAbsolutePath() ) );
+            }
+        }
+
+        int[] result = new int[fileIncludes.size()];
+        int i = 0;
+        for ( int include : fileIncludes )
+        {
+            result[i++] = include;
+        }
+        includes.set( id, result );
+        parsedTimes.set( id, modificationTime );
+        return result;
+    }
+
+    /**
+     * Finds an included file the way the IDL preprocessors do: a quoted name is looked up next to the including file
+     * first, then in the search path.
+     */
+    private File resolve( File includingFile, String name, boolean quoted )
+    {
+        if ( quoted )
+        {
+            File candidate = new File( includingFile.getParentFile(), name );
+            if ( files.exists( candidate ) )
+            {
+                return candidate;
+            }
+        }
+        for ( File directory : searchPath )
+        {
+            File candidate = new File( directory, name );
+            if ( files.exists( candidate ) )
+            {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Combines the stamps of the files in the transitive include closure of a file. The combination does not depend on
+     * the order in which the closure is traversed. The file's own stamp is left out: changes to the file itself are
+     * found by the stale check, which may ignore a change of time alone.
+     */
+    private long computeStamp( int root )
+    {
+        if ( visitMarks.length < paths.size() )
+        {
+            visitMarks = Arrays.copyOf( visitMarks, paths.size() );
+            pending = new int[paths.size()];
+        }
+        if ( ++visitGeneration == 0 )
+        {
+            Arrays.fill( visitMarks, 0 );
+            visitGeneration = 1;
+        }
+
+        long stamp = 0;
+        int numPending = 0;
+        pending[numPending++] = root;
+        visitMarks[root] = visitGeneration;
+        while ( numPending > 0 )
+        {
+            int id = pending[--numPending];
+            long fileStamp = id == root ? 0 : getFileStamp( id );
+            stamp += mix( paths.get( id ).hashCode(), fileStamp );
+
+            int[] fileIncludes = includes.get( id );
+            if ( fileIncludes != null )
+            {
+                for ( int include : fileIncludes )
+                {
+                    if ( visitMarks[include] != visitGeneration )
+                    {
+                        visitMarks[include] = visitGeneration;
+                        pending[numPending++] = include;
+                    }
+                }
+            }
+        }
+        return stamp;
+    }
+
+    /**
+     * Starts a new generation of file stamps, so that each file is stamped again when next needed.
+     */
+    private void startStampGeneration()
+    {
+        if ( stampMarks.length < paths.size() )
+        {
+            stampMarks = Arrays.copyOf( stampMarks, paths.size() );
+            fileStamps = Arrays.copyOf( fileStamps, paths.size() );
+        }
+        if ( ++stampGeneration == 0 )
+        {
+            Arrays.fill( stampMarks, 0 );
+            stampGeneration = 1;
+        }
+    }
+
+    /**
+     * @return the content hash of a file if the stale check compares contents, else its modification time; -1 if the
+     *         file does not exist or cannot be read
+     */
+    private long getFileStamp( int id )
+    {
+        if ( stampMarks[id] != stampGeneration )
+        {
+            stampMarks[id] = stampGeneration;
+            File file = new File( paths.get( id ) );
+            if ( !files.exists( file ) )
+            {
+                fileStamps[id] = -1;
+            }
+            else if ( contentManifest == null )
+            {
+                fileStamps[id] = files.lastModified( file );
+            }
+            else
+            {
+                fileStamps[id] = getContentStamp( file );
+            }
+        }
+        return fileStamps[id];
+    }
+
+    private long getContentStamp( File file )
+    {
+        try
+        {
+            String hash = contentManifest.getHash( file.getAbsolutePath(), file, files );
+            return Long.parseLong( hash.substring( 0, 15 ), 16 );
+        }
+        catch ( IOException e )
+        {
+            return -1;
+        }
+    }
+
+    private static long mix( int pathHash, long fileStamp )
+    {
+        long h = ( pathHash * 0x9E3779B97F4A7C15L ) ^ fileStamp;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private int getId( String path )
+    {
+        Integer id = ids.get( path );
+        if ( id == null )
+        {
+            id = paths.size();
+            ids.put( path, id );
+            paths.add( path );
+            includes.add( null );
+            parsedTimes.add( 0L );
+        }
+        return id;
+    }
+
+    private List<String> getSearchPathNames()
+    {
+        List<String> names = new ArrayList<>();
+        for ( File directory : searchPath )
+        {
+            names.add( directory.getAbsolutePath() );
+        }
+        return names;
+    }
+}
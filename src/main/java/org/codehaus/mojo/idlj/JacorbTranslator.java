@@ -23,6 +23,7 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.codehaus.plexus.util.StringUtils;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -35,6 +36,7 @@ import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -45,7 +47,7 @@ import java.util.List;
  */
 class JacorbTranslator
         extends AbstractTranslator
-        implements CompilerTranslator
+        implements BatchCompilerTranslator
 {
 
     /**
@@ -71,6 +73,10 @@ class JacorbTranslator
         {
             invokeCompilerInProcess( compilerClass, args );
         }
+        else if ( isWorkerPoolEnabled() )
+        {
+            invokeCompilerInWorker( compilerClass, args );
+        }
         else
         {
 
@@ -118,10 +124,15 @@ class JacorbTranslator
             try
             {
                 Process p = Runtime.getRuntime().exec( argArray );
-                redirectStream( p.getErrorStream(), System.err );
-                redirectStream( p.getInputStream(), System.out );
+                ByteArrayOutputStream err = new ByteArrayOutputStream();
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                Thread errTransfer = redirectStream( p.getErrorStream(), err );
+                Thread outTransfer = redirectStream( p.getInputStream(), out );
 
                 p.waitFor();
+                errTransfer.join();
+                outTransfer.join();
+                logOutputMessages( err, out );
 
                 if ( isFailOnError() && p.exitValue() != 0 )
                 {
@@ -139,11 +150,17 @@ class JacorbTranslator
         }
     }
 
+    @Override
+    String getCompilerMethodName()
+    {
+        return "compile";
+    }
+
     @Override
     protected int runCompiler( Class<?> compilerClass, String... arguments )
             throws NoSuchMethodException, IllegalAccessException, InvocationTargetException
     {
-        Method compileMethod = compilerClass.getMethod( "compile", String[].class );
+        Method compileMethod = compilerClass.getMethod( getCompilerMethodName(), String[].class );
         compileMethod.invoke( compilerClass, new Object[]{arguments} );
         return 0;
     }
@@ -161,6 +178,24 @@ class JacorbTranslator
     public void invokeCompiler( String sourceDirectory, File[] includeDirs, String targetDirectory, String idlFile,
                                 Source source )
             throws MojoExecutionException
+    {
+        invokeCompiler( sourceDirectory, includeDirs, targetDirectory, Collections.singletonList( idlFile ), source );
+    }
+
+    /**
+     * This method it's used to invoke the compiler on several files at once. The JacORB parser accepts any number of
+     * files, which then share a single compiler run.
+     *
+     * @param sourceDirectory the path to the sources
+     * @param includeDirs     the <code>File[]</code> of directories where to find the includes
+     * @param targetDirectory the path to the destination of the compilation
+     * @param idlFiles        the paths to the files to compile
+     * @param source          the source set on which to run the compiler
+     * @throws MojoExecutionException the exeception is thrown whenever the compilation fails or crashes
+     */
+    public void invokeCompiler( String sourceDirectory, File[] includeDirs, String targetDirectory,
+                                List<String> idlFiles, Source source )
+            throws MojoExecutionException
     {
         List<String> args = new ArrayList<>();
 
@@ -223,7 +258,7 @@ class JacorbTranslator
             }
         }
 
-        args.add( idlFile );
+        args.addAll( idlFiles );
 
         Class<?> compilerClass;
         try
@@ -243,8 +278,9 @@ class JacorbTranslator
      *
      * @param in  the <code>InputStream</code> to read from
      * @param out the <code>OutputStream</code> to write into
+     * @return the thread performing the transfer, which completes when the input is exhausted
      */
-    private static void redirectStream( final InputStream in, final OutputStream out )
+    private static Thread redirectStream( final InputStream in, final OutputStream out )
     {
         Thread stdoutTransferThread = new Thread()
         {
@@ -267,5 +303,6 @@ class JacorbTranslator
             }
         };
         stdoutTransferThread.start();
+        return stdoutTransferThread;
     }
 }
@@ -0,0 +1,291 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Holds back compiles while the heap is too full to run them. Each compile declares how much heap it is expected
+ * to need, based on the peak heap growth measured in earlier builds; it may start only if that, together with the
+ * expectations of the compiles already running, fits into the free heap less a reserve. The free heap is taken from
+ * the usage of the heap pools after their last collection, so that garbage which has not been collected yet does not
+ * hold compiles back. The heap is sampled whenever a compile finishes and periodically while compiles wait, so the
+ * number of compiles in flight rises and falls with the available memory. One compile is always allowed to run, so
+ * that the build makes progress however little memory there is.
+ * <p>
+ * The peak usage of the heap pools, from which the heap needed by a compile is measured, is shared by the whole JVM,
+ * so only one compile is measured at a time; the others keep their earlier estimates.
+ */
+class MemoryGate
+{
+    /**
+     * The fraction of the maximum heap which is never handed out to compiles
+     */
+    static final double DEFAULT_RESERVE = 0.1;
+
+    /**
+     * How often to sample the heap while compiles are held back, as the garbage collector may free memory at any time
+     */
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * Reports the heap usage
+     */
+    private final MemoryMXBean memory;
+
+    /**
+     * The heap memory pools, whose peak usage shows how much heap a compile needed
+     */
+    private final List<MemoryPoolMXBean> heapPools;
+
+    /**
+     * The fraction of the maximum heap which is never handed out to compiles
+     */
+    private final double reserve;
+
+    /**
+     * The number of compiles running
+     */
+    private int inFlight;
+
+    /**
+     * The heap expected to be needed by the running compiles
+     */
+    private long reservedBytes;
+
+    /**
+     * The number of compiles waiting to run alone; while there are any, no other compiles start
+     */
+    private int exclusiveWaiting;
+
+    /**
+     * Set while a compile runs alone
+     */
+    private boolean exclusive;
+
+    /**
+     * Set while the heap needed by a compile is being measured
+     */
+    private boolean measuring;
+
+    /**
+     * Creates a gate for the heap of this JVM.
+     */
+    MemoryGate()
+    {
+        this( ManagementFactory.getMemoryMXBean(), getHeapPools(), DEFAULT_RESERVE );
+    }
+
+    /**
+     * Creates a gate which cannot measure the heap needed by a compile.
+     *
+     * @param memory  reports the heap usage
+     * @param reserve the fraction of the maximum heap which is never handed out to compiles
+     */
+    MemoryGate( MemoryMXBean memory, double reserve )
+    {
+        this( memory, Collections.<MemoryPoolMXBean>emptyList(), reserve );
+    }
+
+    /**
+     * @param memory    reports the heap usage
+     * @param heapPools the heap memory pools, used to measure the heap needed by a compile
+     * @param reserve   the fraction of the maximum heap which is never handed out to compiles
+     */
+    MemoryGate( MemoryMXBean memory, List<MemoryPoolMXBean> heapPools, double reserve )
+    {
+        this.memory = memory;
+        this.heapPools = heapPools;
+        this.reserve = reserve;
+    }
+
+    private static List<MemoryPoolMXBean> getHeapPools()
+    {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+        {
+            if ( pool.getType() == MemoryType.HEAP && pool.isValid() )
+            {
+                pools.add( pool );
+            }
+        }
+        return pools;
+    }
+
+    /**
+     * Waits until a compile expected to need the specified heap can run.
+     *
+     * @param expectedBytes the heap the compile is expected to need, or 0 if unknown
+     * @return true if the compile had to wait
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    synchronized boolean acquire( long expectedBytes ) throws InterruptedException
+    {
+        boolean waited = false;
+        while ( exclusive || exclusiveWaiting > 0 || ( inFlight > 0 && !fits( expectedBytes ) ) )
+        {
+            waited = true;
+            wait( POLL_MILLIS );
+        }
+        inFlight++;
+        reservedBytes += expectedBytes;
+        return waited;
+    }
+
+    /**
+     * Signals the end of a compile started by {@link #acquire(long)}.
+     *
+     * @param expectedBytes the heap the compile was expected to need
+     */
+    synchronized void release( long expectedBytes )
+    {
+        inFlight--;
+        reservedBytes -= expectedBytes;
+        notifyAll();
+    }
+
+    /**
+     * Waits until no other compile is running, and keeps any others from starting until {@link #releaseExclusive()}.
+     * Used to retry a compile which ran out of memory while running alongside others.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    synchronized void acquireExclusive() throws InterruptedException
+    {
+        exclusiveWaiting++;
+        try
+        {
+            while ( exclusive || inFlight > 0 )
+            {
+                wait( POLL_MILLIS );
+            }
+        }
+        finally
+        {
+            exclusiveWaiting--;
+        }
+        exclusive = true;
+        inFlight++;
+    }
+
+    /**
+     * Signals the end of a compile started by {@link #acquireExclusive()}.
+     */
+    synchronized void releaseExclusive()
+    {
+        exclusive = false;
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * @return the number of compiles running
+     */
+    synchronized int getInFlight()
+    {
+        return inFlight;
+    }
+
+    /**
+     * @return the memory which may still be handed out to compiles
+     */
+    long getHeadroom()
+    {
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        long max = heap.getMax() < 0 ? heap.getCommitted() : heap.getMax();
+        return max - getLiveBytes( heap ) - (long) ( max * reserve );
+    }
+
+    /**
+     * @return the heap used after the last collection of each pool, or the heap used now if the pools are unknown
+     */
+    private long getLiveBytes( MemoryUsage heap )
+    {
+        if ( heapPools.isEmpty() )
+        {
+            return heap.getUsed();
+        }
+        long live = 0;
+        for ( MemoryPoolMXBean pool : heapPools )
+        {
+            MemoryUsage collected = pool.getCollectionUsage();
+            live += collected != null ? collected.getUsed() : pool.getUsage().getUsed();
+        }
+        return live;
+    }
+
+    private boolean fits( long expectedBytes )
+    {
+        return reservedBytes + expectedBytes <= getHeadroom();
+    }
+
+    /**
+     * Starts measuring the heap needed by a compile, unless another compile is being measured. The peak usage of the
+     * heap pools is reset, so that {@link #endMeasurement(long)} sees the highest usage since the compile started;
+     * as the peaks belong to the JVM, no other measurement may reset them until this one ends. The growth is the sum
+     * of the growth of each pool up to its own peak, which is at least the growth of the whole heap at its peak. When
+     * compiles overlap, a measurement also counts the heap used by the others. Both err towards holding compiles back.
+     *
+     * @return the heap in use before the compile, or -1 if it is not measured
+     */
+    synchronized long startMeasurement()
+    {
+        if ( heapPools.isEmpty() || measuring )
+        {
+            return -1;
+        }
+        measuring = true;
+        long used = 0;
+        for ( MemoryPoolMXBean pool : heapPools )
+        {
+            pool.resetPeakUsage();
+            used += pool.getUsage().getUsed();
+        }
+        return used;
+    }
+
+    /**
+     * Ends a measurement started by {@link #startMeasurement()}. Must be called whether or not the compile succeeded.
+     *
+     * @param startBytes the heap in use before the compile, as returned by {@link #startMeasurement()}
+     * @return how far the heap grew beyond its usage at the start of the compile, or -1 if it was not measured
+     */
+    synchronized long endMeasurement( long startBytes )
+    {
+        if ( startBytes < 0 )
+        {
+            return -1;
+        }
+        measuring = false;
+        long peak = 0;
+        for ( MemoryPoolMXBean pool : heapPools )
+        {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        return Math.max( 0, peak - startBytes );
+    }
+}
@@ -0,0 +1,363 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.compiler.util.scan.InclusionScanException;
+import org.codehaus.plexus.compiler.util.scan.SourceInclusionScanner;
+import org.codehaus.plexus.compiler.util.scan.mapping.SourceMapping;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the source files selected by Ant-style include and exclude patterns, in a single pass over the tree with
+ * <code>Files.walkFileTree</code>, which reads the attributes of each file along with its directory entry. The
+ * patterns are compiled once, and directories which an exclude pattern excludes entirely are skipped without being
+ * read. Given a build index, a source is returned only if it is not in the index or its size or modification time
+ * differ from the recorded ones; otherwise every selected source is returned. The selection matches that of the
+ * plexus <code>DirectoryScanner</code>.
+ */
+class NioSourceInclusionScanner
+    implements SourceInclusionScanner
+{
+    /**
+     * The files of version control systems and editors, which are never sources
+     */
+    private static final String[] DEFAULT_EXCLUDES = { "**/*~", "**/#*#", "**/.#*", "**/%*%", "**/._*", "**/CVS/**",
+        "**/.cvsignore", "**/.svn/**", "**/.git/**", "**/.gitignore", "**/.gitattributes", "**/.hg/**",
+        "**/.hgignore", "**/.bzr/**", "**/.bzrignore", "**/.DS_Store" };
+
+    private final List<Pattern> includes = new ArrayList<>();
+
+    private final List<Pattern> excludes = new ArrayList<>();
+
+    /**
+     * Match the directories below which every file is excluded
+     */
+    private final List<Pattern> excludedDirectories = new ArrayList<>();
+
+    /**
+     * The index of the compiled sources, or null to return every selected source
+     */
+    private final BuildIndex index;
+
+    /**
+     * The difference in milliseconds below which modification times are considered equal
+     */
+    private final long updatedWithinMsecs;
+
+    /**
+     * The number of threads with which to walk the trees
+     */
+    private final int threads;
+
+    /**
+     * @param index              the index of the compiled sources, or null to return every selected source
+     * @param updatedWithinMsecs the difference in milliseconds below which modification times are considered equal
+     * @param includes           the patterns of the sources to select
+     * @param excludes           the patterns of the sources not to select
+     * @param threads            the number of threads with which to walk the tree
+     */
+    NioSourceInclusionScanner( BuildIndex index, long updatedWithinMsecs, Set<String> includes,
+                               Set<String> excludes, int threads )
+    {
+        this.index = index;
+        this.updatedWithinMsecs = updatedWithinMsecs;
+        this.threads = Math.max( 1, threads );
+        for ( String include : includes )
+        {
+            this.includes.add( compile( normalize( include ) ) );
+        }
+
+        List<String> allExcludes = new ArrayList<>();
+        if ( excludes != null )
+        {
+            allExcludes.addAll( excludes );
+        }
+        Collections.addAll( allExcludes, DEFAULT_EXCLUDES );
+        for ( String exclude : allExcludes )
+        {
+            String pattern = normalize( exclude );
+            this.excludes.add( compile( pattern ) );
+            if ( pattern.endsWith( "/**" ) )
+            {
+                excludedDirectories.add( compile( pattern.substring( 0, pattern.length() - 3 ) ) );
+            }
+        }
+    }
+
+    public void addSourceMapping( SourceMapping sourceMapping )
+    {
+        // the sources are looked up in the build index by their own paths
+    }
+
+    public Set<File> getIncludedSources( File sourceDir, File targetDir ) throws InclusionScanException
+    {
+        Set<File> sources = new HashSet<>();
+        try
+        {
+            for ( Map.Entry<String, BasicFileAttributes> source : walk( sourceDir.toPath() ).entrySet() )
+            {
+                BasicFileAttributes attributes = source.getValue();
+                if ( index == null || index.isStale( source.getKey(), attributes.size(),
+                                                     attributes.lastModifiedTime().toMillis(), updatedWithinMsecs ) )
+                {
+                    sources.add( new File( sourceDir, source.getKey() ) );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new InclusionScanException( "Failed to scan " + sourceDir, e );
+        }
+        return sources;
+    }
+
+    /**
+     * Reads the attributes of the selected files in a tree. If more than one thread is requested, the subdirectories
+     * of the root are walked in parallel.
+     *
+     * @param root the root of the tree
+     * @return the attributes of the files, by their paths relative to the root with '/' separators
+     */
+    private Map<String, BasicFileAttributes> walk( final Path root ) throws IOException
+    {
+        final Map<String, BasicFileAttributes> files = new ConcurrentHashMap<>();
+        if ( !Files.isDirectory( root ) )
+        {
+            return files;
+        }
+        if ( threads == 1 )
+        {
+            walkTree( root, root, files );
+            return files;
+        }
+
+        List<Callable<Void>> walks = new ArrayList<>();
+        try ( DirectoryStream<Path> entries = Files.newDirectoryStream( root ) )
+        {
+            for ( final Path entry : entries )
+            {
+                if ( !Files.isDirectory( entry ) )
+                {
+                    visit( root, entry, Files.readAttributes( entry, BasicFileAttributes.class ), files );
+                }
+                else if ( !isExcludedDirectory( toRelativePath( root, entry ) ) )
+                {
+                    walks.add( new Callable<Void>()
+                    {
+                        public Void call() throws IOException
+                        {
+                            walkTree( root, entry, files );
+                            return null;
+                        }
+                    } );
+                }
+            }
+        }
+        runAll( walks );
+        return files;
+    }
+
+    private void runAll( Collection<Callable<Void>> walks ) throws IOException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            for ( Future<Void> walk : executor.invokeAll( walks ) )
+            {
+                walk.get();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while scanning", e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException( e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private void walkTree( final Path root, Path start, final Map<String, BasicFileAttributes> files )
+            throws IOException
+    {
+        Files.walkFileTree( start, EnumSet.of( FileVisitOption.FOLLOW_LINKS ), Integer.MAX_VALUE,
+                            new SimpleFileVisitor<Path>()
+        {
+            public FileVisitResult preVisitDirectory( Path directory, BasicFileAttributes attributes )
+            {
+                return !directory.equals( root )
+                        && isExcludedDirectory( toRelativePath( root, directory ) )
+                        ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFile( Path file, BasicFileAttributes attributes )
+            {
+                visit( root, file, attributes, files );
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFileFailed( Path file, IOException e )
+            {
+                // a dangling link or a directory loop, as plexus ignores them
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+    }
+
+    private void visit( Path root, Path file, BasicFileAttributes attributes, Map<String, BasicFileAttributes> files )
+    {
+        if ( attributes.isDirectory() )
+        {
+            return;
+        }
+        String path = toRelativePath( root, file );
+        if ( matchesAny( includes, path ) && !matchesAny( excludes, path ) )
+        {
+            files.put( path, attributes );
+        }
+    }
+
+    private boolean isExcludedDirectory( String path )
+    {
+        return matchesAny( excludedDirectories, path );
+    }
+
+    private static boolean matchesAny( List<Pattern> patterns, String path )
+    {
+        for ( Pattern pattern : patterns )
+        {
+            if ( pattern.matcher( path ).matches() )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String toRelativePath( Path root, Path file )
+    {
+        return root.relativize( file ).toString().replace( File.separatorChar, '/' );
+    }
+
+    /**
+     * Uses '/' as the separator, and lets a trailing separator select everything below, as Ant does.
+     */
+    private static String normalize( String pattern )
+    {
+        String normalized = pattern.trim().replace( '\\', '/' );
+        if ( normalized.endsWith( "/" ) )
+        {
+            normalized += "**";
+        }
+        return normalized;
+    }
+
+    /**
+     * Translates an Ant-style pattern into a regular expression: <code>**</code> matches any number of directories,
+     * <code>*</code> any part of a name and <code>?</code> a single character of a name.
+     *
+     * @param pattern the normalized pattern
+     * @return the compiled expression
+     */
+    static Pattern compile( String pattern )
+    {
+        StringBuilder regex = new StringBuilder();
+        String[] segments = pattern.split( "/" );
+        for ( int i = 0; i < segments.length; i++ )
+        {
+            boolean last = i == segments.length - 1;
+            if ( segments[i].equals( "**" ) )
+            {
+                if ( !last )
+                {
+                    regex.append( "(?:[^/]*/)*" );
+                }
+                else if ( regex.length() > 0 && regex.charAt( regex.length() - 1 ) == '/' )
+                {
+                    regex.setLength( regex.length() - 1 );
+                    regex.append( "(?:/.*)?" );
+                }
+                else
+                {
+                    regex.append( ".*" );
+                }
+                continue;
+            }
+
+            StringBuilder literal = new StringBuilder();
+            for ( char c : segments[i].toCharArray() )
+            {
+                if ( c == '*' || c == '?' )
+                {
+                    appendLiteral( regex, literal );
+                    regex.append( c == '*' ? "[^/]*" : "[^/]" );
+                }
+                else
+                {
+                    literal.append( c );
+                }
+            }
+            appendLiteral( regex, literal );
+            if ( !last )
+            {
+                regex.append( '/' );
+            }
+        }
+        return Pattern.compile( regex.toString() );
+    }
+
+    private static void appendLiteral( StringBuilder regex, StringBuilder literal )
+    {
+        if ( literal.length() > 0 )
+        {
+            regex.append( Pattern.quote( literal.toString() ) );
+            literal.setLength( 0 );
+        }
+    }
+}
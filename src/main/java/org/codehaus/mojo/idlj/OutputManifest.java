@@ -0,0 +1,200 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The files generated from each IDL file, used to delete the generated files which no IDL file produces any more, and
+ * to recompile an IDL file when any of its generated files is missing. IDL files are keyed by their paths relative to
+ * the source directory, and generated files are identified by their paths relative to the output directory. Several
+ * IDL files may generate the same file, which then belongs to all of them.
+ */
+class OutputManifest
+{
+    /**
+     * Separates the generated files in the saved form; it cannot occur in the name of a Java source
+     */
+    private static final String SEPARATOR = ",";
+
+    /**
+     * The generated files, keyed by the IDL files which generated them
+     */
+    private final Map<String, Set<String>> outputs = new ConcurrentHashMap<>();
+
+    /**
+     * The number of IDL files which generate each file
+     */
+    private final Map<String, Integer> owners = new HashMap<>();
+
+    /**
+     * True if the manifest differs from the one it was read from
+     */
+    private volatile boolean modified;
+
+    /**
+     * Reads a manifest previously written by {@link #toBytes()}.
+     *
+     * @param bytes the saved manifest
+     * @return the manifest
+     * @throws IOException if the manifest cannot be parsed
+     */
+    static OutputManifest fromBytes( byte[] bytes ) throws IOException
+    {
+        Properties properties = new Properties();
+        properties.load( new ByteArrayInputStream( bytes ) );
+
+        OutputManifest manifest = new OutputManifest();
+        for ( String key : properties.stringPropertyNames() )
+        {
+            String value = properties.getProperty( key );
+            Set<String> generated = new TreeSet<>();
+            if ( value.length() > 0 )
+            {
+                generated.addAll( Arrays.asList( value.split( SEPARATOR ) ) );
+            }
+            manifest.outputs.put( key, generated );
+            manifest.addOwner( generated );
+        }
+        return manifest;
+    }
+
+    /**
+     * @return the manifest in the form read by {@link #fromBytes(byte[])}
+     * @throws IOException if the manifest cannot be written
+     */
+    byte[] toBytes() throws IOException
+    {
+        Properties properties = new Properties();
+        for ( Map.Entry<String, Set<String>> entry : outputs.entrySet() )
+        {
+            StringBuilder value = new StringBuilder();
+            for ( String generated : entry.getValue() )
+            {
+                value.append( value.length() == 0 ? "" : SEPARATOR ).append( generated );
+            }
+            properties.setProperty( entry.getKey(), value.toString() );
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        properties.store( out, "Files generated from each IDL file" );
+        return out.toByteArray();
+    }
+
+    /**
+     * @return true if the manifest has changed since it was read
+     */
+    boolean isModified()
+    {
+        return modified;
+    }
+
+    /**
+     * @return the IDL files whose generated files are recorded
+     */
+    Set<String> getIdlFiles()
+    {
+        return new TreeSet<>( outputs.keySet() );
+    }
+
+    /**
+     * @param idlFile the path of an IDL file relative to the source directory
+     * @return the files it generated when last compiled; empty if it is unknown
+     */
+    Set<String> getOutputs( String idlFile )
+    {
+        Set<String> generated = outputs.get( idlFile );
+        return generated == null ? Collections.<String>emptySet() : Collections.unmodifiableSet( generated );
+    }
+
+    /**
+     * Records the files generated by a compile of an IDL file, replacing those recorded before.
+     *
+     * @param idlFile   the path of the IDL file relative to the source directory
+     * @param generated the generated files, relative to the output directory
+     * @return the files previously generated from the IDL file which it no longer generates, and no other IDL file
+     * generates; they can be deleted
+     */
+    synchronized Set<String> record( String idlFile, Set<String> generated )
+    {
+        Set<String> previous = outputs.put( idlFile, new TreeSet<>( generated ) );
+        addOwner( generated );
+        modified = true;
+        return previous == null ? Collections.<String>emptySet() : removeOwner( previous );
+    }
+
+    /**
+     * Forgets an IDL file which has been deleted, or is no longer compiled.
+     *
+     * @param idlFile the path of the IDL file relative to the source directory
+     * @return the files generated from the IDL file which no other IDL file generates; they can be deleted
+     */
+    synchronized Set<String> forget( String idlFile )
+    {
+        Set<String> removed = outputs.remove( idlFile );
+        if ( removed == null )
+        {
+            return Collections.emptySet();
+        }
+        modified = true;
+        return removeOwner( removed );
+    }
+
+    private void addOwner( Set<String> generated )
+    {
+        for ( String file : generated )
+        {
+            Integer count = owners.get( file );
+            owners.put( file, count == null ? 1 : count + 1 );
+        }
+    }
+
+    /**
+     * @return the files which no longer have an owner
+     */
+    private Set<String> removeOwner( Set<String> generated )
+    {
+        Set<String> orphans = new TreeSet<>();
+        for ( String file : generated )
+        {
+            Integer count = owners.get( file );
+            if ( count == null || count <= 1 )
+            {
+                owners.remove( file );
+                orphans.add( file );
+            }
+            else
+            {
+                owners.put( file, count - 1 );
+            }
+        }
+        return orphans;
+    }
+}
@@ -0,0 +1,178 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves generated files from the staging directories the compilers write into to the output directory. Only files
+ * which are new or whose contents have changed are written, each atomically, so that unchanged files keep their
+ * modification times and downstream compilers do not recompile them.
+ */
+class OutputPublisher
+{
+    /**
+     * The directory below which the staging directories are created
+     */
+    private final File stagingRoot;
+
+    /**
+     * The directory to which the generated files are published
+     */
+    private final File outputDirectory;
+
+    /**
+     * The file system access
+     */
+    private final AbstractIDLJMojo.DependenciesFacade files;
+
+    /**
+     * Numbers the staging directories
+     */
+    private final AtomicInteger stagingCount = new AtomicInteger();
+
+    /**
+     * The files written to the output directory, relative to it
+     */
+    private final Set<String> changedFiles = Collections.synchronizedSet( new TreeSet<String>() );
+
+    /**
+     * @param stagingRoot     the directory below which to create the staging directories
+     * @param outputDirectory the directory to which to publish the generated files
+     * @param files           the file system access
+     */
+    OutputPublisher( File stagingRoot, File outputDirectory, AbstractIDLJMojo.DependenciesFacade files )
+    {
+        this.stagingRoot = stagingRoot;
+        this.outputDirectory = outputDirectory;
+        this.files = files;
+    }
+
+    /**
+     * Creates an empty directory for a single compile to write into.
+     *
+     * @return the staging directory
+     * @throws IOException if a leftover directory of the same name cannot be deleted
+     */
+    File createStagingDirectory() throws IOException
+    {
+        File directory = new File( stagingRoot, String.valueOf( stagingCount.incrementAndGet() ) );
+        files.deleteDirectory( directory );
+        files.createDirectory( directory );
+        return directory;
+    }
+
+    /**
+     * Reads the files in a staging directory, and deletes the staging directory.
+     *
+     * @param stagingDirectory the staging directory
+     * @return the contents of the staged files, keyed by their paths relative to the staging directory
+     * @throws IOException if a file cannot be read
+     */
+    Map<String, byte[]> collect( File stagingDirectory ) throws IOException
+    {
+        try
+        {
+            Map<String, byte[]> staged = new TreeMap<>();
+            for ( String path : files.getModificationTimes( stagingDirectory ).keySet() )
+            {
+                staged.put( path, files.readFile( new File( stagingDirectory, path ) ) );
+            }
+            return staged;
+        }
+        finally
+        {
+            discard( stagingDirectory );
+        }
+    }
+
+    /**
+     * Publishes generated files to the output directory.
+     *
+     * @param generated the contents of the generated files, keyed by their paths relative to the output directory
+     * @return the paths of the generated files
+     * @throws IOException if a file cannot be published
+     */
+    Set<String> publish( Map<String, byte[]> generated ) throws IOException
+    {
+        for ( Map.Entry<String, byte[]> entry : generated.entrySet() )
+        {
+            File target = new File( outputDirectory, entry.getKey() );
+            if ( !hasContents( target, entry.getValue() ) )
+            {
+                files.writeFile( target, entry.getValue() );
+                changedFiles.add( entry.getKey() );
+            }
+        }
+        return new TreeSet<>( generated.keySet() );
+    }
+
+    /**
+     * Deletes a staging directory without publishing its files.
+     *
+     * @param stagingDirectory the staging directory
+     * @throws IOException if the directory cannot be deleted
+     */
+    void discard( File stagingDirectory ) throws IOException
+    {
+        files.deleteDirectory( stagingDirectory );
+    }
+
+    /**
+     * @return the files written to the output directory so far, relative to it
+     */
+    List<String> getChangedFiles()
+    {
+        synchronized ( changedFiles )
+        {
+            return new ArrayList<>( changedFiles );
+        }
+    }
+
+    /**
+     * @return the list of the files written to the output directory, as absolute paths on separate lines
+     */
+    byte[] getChangedFilesList()
+    {
+        StringBuilder list = new StringBuilder();
+        for ( String path : getChangedFiles() )
+        {
+            list.append( new File( outputDirectory, path ).getAbsolutePath() ).append( '\n' );
+        }
+        return list.toString().getBytes( StandardCharsets.UTF_8 );
+    }
+
+    private boolean hasContents( File file, byte[] contents ) throws IOException
+    {
+        return files.exists( file ) && files.length( file ) == contents.length
+                && Arrays.equals( files.readFile( file ), contents );
+    }
+}
@@ -39,6 +39,20 @@ public class PackagePrefix
      */
     private String prefix;
 
+    /**
+     * Reads a package prefix from the configuration of a goal in a project model.
+     *
+     * @param configuration the <code>packagePrefix</code> element
+     * @return the package prefix
+     */
+    static PackagePrefix fromConfiguration( PluginConfiguration configuration )
+    {
+        PackagePrefix packagePrefix = new PackagePrefix();
+        packagePrefix.type = configuration.getValue( "type" );
+        packagePrefix.prefix = configuration.getValue( "prefix" );
+        return packagePrefix;
+    }
+
     /**
      * @return the name of either a top-level module or IDL type to match to use this prefix
      */
@@ -38,6 +38,20 @@ public class PackageTranslation
      */
     private String replacementPackage;
 
+    /**
+     * Reads a package translation from the configuration of a goal in a project model.
+     *
+     * @param configuration the <code>packageTranslation</code> element
+     * @return the package translation
+     */
+    static PackageTranslation fromConfiguration( PluginConfiguration configuration )
+    {
+        PackageTranslation translation = new PackageTranslation();
+        translation.type = configuration.getValue( "type" );
+        translation.replacementPackage = configuration.getValue( "replacementPackage" );
+        return translation;
+    }
+
     /**
      * @return the name of a top-level module
      */
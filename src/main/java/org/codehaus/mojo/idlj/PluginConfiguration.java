@@ -0,0 +1,176 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The configuration of a goal of this plugin in the effective model of a project, read without executing the goal.
+ * The configuration of the execution which runs the goal takes precedence over that of the plugin, which includes
+ * what the effective model inherited from <code>pluginManagement</code>. Unlike the parameters of an executed goal,
+ * values are not converted by the Maven configurator: they are trimmed strings, and a value which still holds a
+ * <code>${...}</code> expression the model did not resolve counts as not set.
+ */
+class PluginConfiguration
+{
+    /**
+     * Identifies this plugin among the plugins of a project
+     */
+    static final String PLUGIN_KEY = "org.codehaus.mojo:idlj-maven-plugin";
+
+    /**
+     * The configuration element
+     */
+    private final Xpp3Dom configuration;
+
+    private PluginConfiguration( Xpp3Dom configuration )
+    {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Finds the configuration of a goal of this plugin in a project.
+     *
+     * @param project the project
+     * @param goal    the goal
+     * @return the configuration, or <code>null</code> if no execution of the plugin in the project runs the goal
+     */
+    static PluginConfiguration forGoal( MavenProject project, String goal )
+    {
+        for ( Object buildPlugin : project.getBuildPlugins() )
+        {
+            Plugin plugin = (Plugin) buildPlugin;
+            if ( !PLUGIN_KEY.equals( plugin.getKey() ) )
+            {
+                continue;
+            }
+            for ( Object pluginExecution : plugin.getExecutions() )
+            {
+                PluginExecution execution = (PluginExecution) pluginExecution;
+                if ( execution.getGoals().contains( goal ) )
+                {
+                    return new PluginConfiguration( merge( (Xpp3Dom) execution.getConfiguration(),
+                                                           (Xpp3Dom) plugin.getConfiguration() ) );
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Xpp3Dom merge( Xpp3Dom dominant, Xpp3Dom recessive )
+    {
+        if ( dominant == null || recessive == null )
+        {
+            return dominant != null ? dominant : recessive;
+        }
+        return Xpp3Dom.mergeXpp3Dom( new Xpp3Dom( dominant ), recessive );
+    }
+
+    /**
+     * @param name the name of a parameter
+     * @return its value, or <code>null</code> if it is not set
+     */
+    String getValue( String name )
+    {
+        Xpp3Dom child = configuration == null ? null : configuration.getChild( name );
+        return child == null ? null : toValue( child.getValue() );
+    }
+
+    private static String toValue( String text )
+    {
+        if ( text == null || text.contains( "${" ) )
+        {
+            return null;
+        }
+        String value = text.trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * @param name         the name of a parameter
+     * @param defaultValue the value to use if the parameter is not set
+     * @return its value as a boolean
+     */
+    Boolean getBoolean( String name, Boolean defaultValue )
+    {
+        String value = getValue( name );
+        return value == null ? defaultValue : Boolean.valueOf( value.trim() );
+    }
+
+    /**
+     * @param name the name of a list parameter
+     * @return the values of its elements, or <code>null</code> if it is not set
+     */
+    List<String> getValues( String name )
+    {
+        List<PluginConfiguration> elements = getElements( name );
+        if ( elements == null )
+        {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        for ( PluginConfiguration element : elements )
+        {
+            String value = toValue( element.configuration.getValue() );
+            if ( value != null )
+            {
+                values.add( value );
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @param name the name of a list parameter
+     * @return the values of its elements, or <code>null</code> if it is not set
+     */
+    Set<String> getValueSet( String name )
+    {
+        List<String> values = getValues( name );
+        return values == null ? null : new LinkedHashSet<>( values );
+    }
+
+    /**
+     * @param name the name of a list parameter
+     * @return the configurations of its elements, or <code>null</code> if it is not set
+     */
+    List<PluginConfiguration> getElements( String name )
+    {
+        Xpp3Dom list = configuration == null ? null : configuration.getChild( name );
+        if ( list == null )
+        {
+            return null;
+        }
+        List<PluginConfiguration> elements = new ArrayList<>();
+        for ( Xpp3Dom element : list.getChildren() )
+        {
+            elements.add( new PluginConfiguration( element ) );
+        }
+        return elements;
+    }
+}
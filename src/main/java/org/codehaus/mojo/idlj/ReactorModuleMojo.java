@@ -0,0 +1,178 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles the idl files of one module of the reactor for the <code>generate-reactor</code> goal, with the
+ * directories, sources, compiler and stale check configured for the <code>generate</code> goal of the module.
+ */
+class ReactorModuleMojo
+        extends AbstractIDLJMojo
+{
+    /**
+     * The goal whose configuration is read from each module
+     */
+    private static final String GOAL = "generate";
+
+    /**
+     * The source directory of the module
+     */
+    private final File sourceDirectory;
+
+    /**
+     * The include directories of the module, or <code>null</code> if none are configured
+     */
+    private final File[] includeDirs;
+
+    /**
+     * The output directory of the module
+     */
+    private final File outputDirectory;
+
+    private ReactorModuleMojo( MavenProject module, PluginConfiguration configuration )
+    {
+        sourceDirectory = resolve( module, configuration.getValue( "sourceDirectory" ), "src/main/idl" );
+        outputDirectory = configuration.getValue( "outputDirectory" ) != null
+                        ? resolve( module, configuration.getValue( "outputDirectory" ), null )
+                        : new File( module.getBuild().getDirectory(), "generated-sources/idl" );
+        List<String> includePaths = configuration.getValues( "includeDirs" );
+        if ( includePaths == null )
+        {
+            includeDirs = null;
+        }
+        else
+        {
+            includeDirs = new File[includePaths.size()];
+            for ( int i = 0; i < includeDirs.length; i++ )
+            {
+                includeDirs[i] = resolve( module, includePaths.get( i ), null );
+            }
+        }
+    }
+
+    /**
+     * Creates the mojo which compiles the idl files of a module.
+     *
+     * @param module      the module
+     * @param reactor     the mojo which aggregates the modules, whose settings apply to all of them
+     * @param translators the compilers shared by the modules, keyed by the compiler setting
+     * @return the mojo, or <code>null</code> if the module does not run the <code>generate</code> goal
+     * @throws MojoExecutionException if the modification time granularity of the module is not a number
+     */
+    static ReactorModuleMojo forModule( MavenProject module, AbstractIDLJMojo reactor,
+                                        Map<String, CompilerTranslator> translators )
+            throws MojoExecutionException
+    {
+        PluginConfiguration configuration = PluginConfiguration.forGoal( module, GOAL );
+        if ( configuration == null )
+        {
+            return null;
+        }
+
+        ReactorModuleMojo mojo = new ReactorModuleMojo( module, configuration );
+        mojo.configureModule( reactor, module, readSources( configuration ), configuration.getValue( "compiler" ),
+                              translators );
+        String timestampPath = configuration.getValue( "timestampDirectory" );
+        mojo.configureBuildState( timestampPath != null ? resolve( module, timestampPath, null ) : null,
+                                  configuration.getValue( "staleCheck" ), readStaleMillis( module, configuration ) );
+        return mojo;
+    }
+
+    private static Integer readStaleMillis( MavenProject module, PluginConfiguration configuration )
+            throws MojoExecutionException
+    {
+        String value = configuration.getValue( "staleMillis" );
+        try
+        {
+            return value == null ? null : Integer.valueOf( value );
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new MojoExecutionException( "Invalid staleMillis in " + module.getId() + ": " + value, e );
+        }
+    }
+
+    private static List<Source> readSources( PluginConfiguration configuration )
+    {
+        List<PluginConfiguration> elements = configuration.getElements( "sources" );
+        if ( elements == null )
+        {
+            return null;
+        }
+        List<Source> sources = new ArrayList<>();
+        for ( PluginConfiguration element : elements )
+        {
+            sources.add( Source.fromConfiguration( element ) );
+        }
+        return sources;
+    }
+
+    /**
+     * @return the configured path, resolved against the base directory of the module, or the default path if none
+     * is configured
+     */
+    private static File resolve( MavenProject module, String path, String defaultPath )
+    {
+        File file = new File( path != null ? path : defaultPath );
+        return file.isAbsolute() ? file : new File( module.getBasedir(), file.getPath() );
+    }
+
+    /**
+     * @return the source directory of the module
+     */
+    protected File getSourceDirectory()
+    {
+        return sourceDirectory;
+    }
+
+    /**
+     * @return the include directories of the module
+     */
+    protected File[] getIncludeDirs()
+    {
+        return includeDirs;
+    }
+
+    /**
+     * @return the output directory of the module
+     */
+    protected File getOutputDirectory()
+    {
+        return outputDirectory;
+    }
+
+    /**
+     * Adds the output directory to the compile source roots of the module.
+     *
+     * @param directory the output directory
+     */
+    protected void addCompileSourceRoot( File directory )
+    {
+        getProject().addCompileSourceRoot( directory.getPath() );
+    }
+}
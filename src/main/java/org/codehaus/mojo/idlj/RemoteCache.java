@@ -0,0 +1,184 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * The remote tier of the generated source cache: a plain HTTP server from which bundles are fetched with
+ * <code>GET &lt;url&gt;/&lt;key&gt;.zip</code> and to which they are uploaded with <code>PUT</code>. The server is only
+ * an accelerator, so any failure to reach it is reported once and the build carries on without it.
+ */
+class RemoteCache
+{
+    /**
+     * The base URL of the entries, ending with a slash
+     */
+    private final String baseUrl;
+
+    /**
+     * The connect and read timeout in milliseconds
+     */
+    private final int timeout;
+
+    /**
+     * Whether to only fetch from the server, without uploading to it
+     */
+    private final boolean readOnly;
+
+    /**
+     * the <code>Log</code> that will used for the messages
+     */
+    private final Log log;
+
+    /**
+     * Cleared when the server fails, so that the rest of the build does not wait for it again
+     */
+    private volatile boolean available = true;
+
+    /**
+     * @param url      the base URL of the entries
+     * @param timeout  the connect and read timeout in milliseconds
+     * @param readOnly whether to only fetch from the server, without uploading to it
+     * @param log      the <code>Log</code> that will used for the messages
+     */
+    RemoteCache( String url, int timeout, boolean readOnly, Log log )
+    {
+        this.baseUrl = url.endsWith( "/" ) ? url : url + "/";
+        this.timeout = timeout;
+        this.readOnly = readOnly;
+        this.log = log;
+    }
+
+    /**
+     * Downloads an entry.
+     *
+     * @param key the key of the entry
+     * @return the bundle of the entry, or null if the server does not have it or cannot be reached
+     */
+    byte[] fetch( String key )
+    {
+        if ( !available )
+        {
+            return null;
+        }
+
+        HttpURLConnection connection = null;
+        try
+        {
+            connection = openConnection( key );
+            if ( connection.getResponseCode() != HttpURLConnection.HTTP_OK )
+            {
+                return null;
+            }
+
+            ByteArrayOutputStream bundle = new ByteArrayOutputStream();
+            try ( InputStream in = connection.getInputStream() )
+            {
+                byte[] buffer = new byte[8192];
+                for ( int n = in.read( buffer ); n > 0; n = in.read( buffer ) )
+                {
+                    bundle.write( buffer, 0, n );
+                }
+            }
+            return bundle.toByteArray();
+        }
+        catch ( IOException e )
+        {
+            disable( e );
+            return null;
+        }
+        finally
+        {
+            if ( connection != null )
+            {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Uploads an entry, unless the cache is read-only.
+     *
+     * @param key    the key of the entry
+     * @param bundle the bundle of the entry
+     */
+    void store( String key, byte[] bundle )
+    {
+        if ( readOnly || !available )
+        {
+            return;
+        }
+
+        HttpURLConnection connection = null;
+        try
+        {
+            connection = openConnection( key );
+            connection.setRequestMethod( "PUT" );
+            connection.setDoOutput( true );
+            connection.setRequestProperty( "Content-Type", "application/zip" );
+            try ( OutputStream out = connection.getOutputStream() )
+            {
+                out.write( bundle );
+            }
+            int status = connection.getResponseCode();
+            if ( status / 100 != 2 )
+            {
+                log.debug( "The remote generated source cache rejected " + key + " with status " + status );
+            }
+        }
+        catch ( IOException e )
+        {
+            disable( e );
+        }
+        finally
+        {
+            if ( connection != null )
+            {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private HttpURLConnection openConnection( String key ) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL( baseUrl + key + ".zip" ).openConnection();
+        connection.setConnectTimeout( timeout );
+        connection.setReadTimeout( timeout );
+        connection.setUseCaches( false );
+        return connection;
+    }
+
+    private synchronized void disable( IOException e )
+    {
+        if ( available )
+        {
+            available = false;
+            log.info( "The remote generated source cache " + baseUrl + " is unavailable, continuing without it: " + e );
+        }
+    }
+}
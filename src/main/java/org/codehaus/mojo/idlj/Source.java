@@ -19,6 +19,7 @@ package org.codehaus.mojo.idlj;
  * under the License.
  */
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -97,6 +98,52 @@ public class Source
      */
     private List<String> additionalArguments;
 
+    /**
+     * Reads a source from the configuration of a goal in a project model.
+     *
+     * @param configuration the <code>source</code> element
+     * @return the source
+     */
+    static Source fromConfiguration( PluginConfiguration configuration )
+    {
+        Source source = new Source();
+        source.compatible = configuration.getBoolean( "compatible", source.compatible );
+        source.emitStubs = configuration.getBoolean( "emitStubs", source.emitStubs );
+        source.emitSkeletons = configuration.getBoolean( "emitSkeletons", source.emitSkeletons );
+        source.packagePrefix = configuration.getValue( "packagePrefix" );
+        source.includes = configuration.getValueSet( "includes" );
+        source.excludes = configuration.getValueSet( "excludes" );
+        source.additionalArguments = configuration.getValues( "additionalArguments" );
+        List<PluginConfiguration> elements = configuration.getElements( "packagePrefixes" );
+        if ( elements != null )
+        {
+            source.packagePrefixes = new ArrayList<>();
+            for ( PluginConfiguration element : elements )
+            {
+                source.packagePrefixes.add( PackagePrefix.fromConfiguration( element ) );
+            }
+        }
+        elements = configuration.getElements( "packageTranslations" );
+        if ( elements != null )
+        {
+            source.packageTranslations = new ArrayList<>();
+            for ( PluginConfiguration element : elements )
+            {
+                source.packageTranslations.add( PackageTranslation.fromConfiguration( element ) );
+            }
+        }
+        elements = configuration.getElements( "defines" );
+        if ( elements != null )
+        {
+            source.defines = new ArrayList<>();
+            for ( PluginConfiguration element : elements )
+            {
+                source.defines.add( Define.fromConfiguration( element ) );
+            }
+        }
+        return source;
+    }
+
     /**
      * @return a <code>List</code> with all the defines with this source
      */
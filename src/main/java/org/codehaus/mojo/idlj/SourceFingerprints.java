@@ -0,0 +1,200 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Fingerprints of the configured sources, each combining the options with which the source compiles its files and
+ * the compiler which compiles them. The files of a source must be recompiled when its fingerprint changes. Sources are
+ * identified by their position in the configuration.
+ */
+class SourceFingerprints
+{
+    /**
+     * The fingerprints, keyed by the positions of the sources
+     */
+    private final Map<String, String> fingerprints = new HashMap<>();
+
+    /**
+     * Computes the fingerprints of the configured sources.
+     *
+     * @param sources  the configured sources
+     * @param compiler a description of the compiler, which changes with its type and version
+     * @return the fingerprints
+     */
+    static SourceFingerprints compute( List<Source> sources, String compiler )
+    {
+        SourceFingerprints result = new SourceFingerprints();
+        for ( int i = 0; i < sources.size(); i++ )
+        {
+            result.fingerprints.put( String.valueOf( i ), computeFingerprint( sources.get( i ), compiler ) );
+        }
+        return result;
+    }
+
+    /**
+     * Reads fingerprints previously written by {@link #toBytes()}.
+     *
+     * @param bytes the saved fingerprints
+     * @return the fingerprints
+     * @throws IOException if the fingerprints cannot be parsed
+     */
+    static SourceFingerprints fromBytes( byte[] bytes ) throws IOException
+    {
+        Properties properties = new Properties();
+        properties.load( new ByteArrayInputStream( bytes ) );
+
+        SourceFingerprints result = new SourceFingerprints();
+        for ( String key : properties.stringPropertyNames() )
+        {
+            result.fingerprints.put( key, properties.getProperty( key ) );
+        }
+        return result;
+    }
+
+    /**
+     * @return the fingerprints in the form read by {@link #fromBytes(byte[])}
+     * @throws IOException if the fingerprints cannot be written
+     */
+    byte[] toBytes() throws IOException
+    {
+        Properties properties = new Properties();
+        properties.putAll( fingerprints );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        properties.store( out, "Fingerprints of the source options and the compiler, by source position" );
+        return out.toByteArray();
+    }
+
+    /**
+     * @param index the position of a source
+     * @return the fingerprint of the source
+     */
+    String get( int index )
+    {
+        return fingerprints.get( String.valueOf( index ) );
+    }
+
+    /**
+     * Finds the sources whose fingerprints differ from the recorded ones.
+     *
+     * @param sources  the configured sources
+     * @param recorded the fingerprints recorded when the files were last compiled
+     * @return the positions of the changed sources
+     */
+    List<Integer> findChanged( List<Source> sources, SourceFingerprints recorded )
+    {
+        List<Integer> changed = new ArrayList<>();
+        for ( int i = 0; i < sources.size(); i++ )
+        {
+            String key = String.valueOf( i );
+            if ( !fingerprints.get( key ).equals( recorded.fingerprints.get( key ) ) )
+            {
+                changed.add( i );
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Computes a fingerprint of the options with which a source compiles its files, leaving out the patterns which
+     * select the files. Files compiled with equal options fingerprints by the same compiler generate the same files,
+     * whichever sources select them.
+     *
+     * @param source   the source
+     * @param compiler a description of the compiler, which changes with its type and version
+     * @return the fingerprint
+     */
+    static String computeOptionsFingerprint( Source source, String compiler )
+    {
+        return computeFingerprint( source, compiler, false );
+    }
+
+    private static String computeFingerprint( Source source, String compiler )
+    {
+        return computeFingerprint( source, compiler, true );
+    }
+
+    private static String computeFingerprint( Source source, String compiler, boolean withSelection )
+    {
+        StringBuilder description = new StringBuilder( compiler );
+        append( description, "compatible", source.compatible() );
+        append( description, "emitStubs", source.emitStubs() );
+        append( description, "emitSkeletons", source.emitSkeletons() );
+        append( description, "packagePrefix", source.getPackagePrefix() );
+        if ( withSelection )
+        {
+            append( description, "includes", sorted( source.getIncludes() ) );
+            append( description, "excludes", sorted( source.getExcludes() ) );
+        }
+        if ( source.getPackagePrefixes() != null )
+        {
+            for ( PackagePrefix prefix : source.getPackagePrefixes() )
+            {
+                append( description, "packagePrefixes", prefix.getType() + "=" + prefix.getPrefix() );
+            }
+        }
+        if ( source.getPackageTranslations() != null )
+        {
+            for ( PackageTranslation translation : source.getPackageTranslations() )
+            {
+                append( description, "packageTranslations",
+                        translation.getType() + "=" + translation.getReplacementPackage() );
+            }
+        }
+        if ( source.getDefines() != null )
+        {
+            for ( Define define : source.getDefines() )
+            {
+                append( description, "defines", define.getSymbol() + "=" + define.getValue() );
+            }
+        }
+        append( description, "additionalArguments", source.getAdditionalArguments() );
+        return ContentManifest.hash( ByteBuffer.wrap( description.toString().getBytes( StandardCharsets.UTF_8 ) ) );
+    }
+
+    private static void append( StringBuilder description, String name, Object value )
+    {
+        description.append( '\n' ).append( name ).append( ':' ).append( value );
+    }
+
+    private static List<String> sorted( Collection<String> values )
+    {
+        if ( values == null )
+        {
+            return null;
+        }
+        List<String> result = new ArrayList<>( values );
+        Collections.sort( result );
+        return result;
+    }
+}
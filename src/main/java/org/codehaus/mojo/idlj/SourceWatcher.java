@@ -0,0 +1,164 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches directory trees for changes. Changes arriving in a burst, as when an editor saves several files or a version
+ * control checkout rewrites a directory, are reported together once the trees have been quiet for the debounce
+ * period. Directories created in a watched tree are watched as well.
+ */
+class SourceWatcher
+    implements Closeable
+{
+    private final WatchService watchService;
+
+    /**
+     * The watched directories, by their watch keys
+     */
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    /**
+     * The time in milliseconds for which the trees must be quiet before changes are reported
+     */
+    private final long debounceMillis;
+
+    /**
+     * @param roots          the roots of the trees to watch; those which do not exist are ignored
+     * @param debounceMillis the time in milliseconds for which the trees must be quiet before changes are reported
+     * @throws IOException if the trees cannot be watched
+     */
+    SourceWatcher( List<File> roots, long debounceMillis ) throws IOException
+    {
+        this.debounceMillis = debounceMillis;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        for ( File root : roots )
+        {
+            if ( root.isDirectory() )
+            {
+                registerTree( root.toPath(), null );
+            }
+        }
+    }
+
+    /**
+     * Waits for changes in the watched trees.
+     *
+     * @return the changed files and directories, or <code>null</code> if events were lost, so that any file may have
+     *         changed
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws IOException          if a new directory cannot be watched
+     */
+    Set<File> awaitChanges() throws InterruptedException, IOException
+    {
+        Set<File> changed = new TreeSet<>();
+        boolean complete = true;
+        for ( WatchKey key = watchService.take(); key != null;
+              key = watchService.poll( debounceMillis, TimeUnit.MILLISECONDS ) )
+        {
+            complete &= collectChanges( key, changed );
+        }
+        return complete ? changed : null;
+    }
+
+    public void close() throws IOException
+    {
+        watchService.close();
+    }
+
+    /**
+     * @return false if some events were lost
+     */
+    private boolean collectChanges( WatchKey key, Set<File> changed ) throws IOException
+    {
+        boolean complete = true;
+        Path directory = directories.get( key );
+        for ( WatchEvent<?> event : key.pollEvents() )
+        {
+            if ( event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null )
+            {
+                complete = false;
+                continue;
+            }
+
+            Path path = directory.resolve( (Path) event.context() );
+            changed.add( path.toFile() );
+            if ( event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory( path ) )
+            {
+                registerTree( path, changed );
+            }
+        }
+        if ( !key.reset() )
+        {
+            directories.remove( key );
+        }
+        return complete;
+    }
+
+    /**
+     * Watches a directory and all directories below it.
+     *
+     * @param root    the directory
+     * @param changed if not null, receives the files already in the tree, which were created before it was watched
+     */
+    private void registerTree( Path root, final Set<File> changed ) throws IOException
+    {
+        Files.walkFileTree( root, new SimpleFileVisitor<Path>()
+        {
+            public FileVisitResult preVisitDirectory( Path directory, BasicFileAttributes attributes )
+                    throws IOException
+            {
+                WatchKey key = directory.register( watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                                   StandardWatchEventKinds.ENTRY_DELETE,
+                                                   StandardWatchEventKinds.ENTRY_MODIFY );
+                directories.put( key, directory );
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFile( Path file, BasicFileAttributes attributes )
+            {
+                if ( changed != null )
+                {
+                    changed.add( file.toFile() );
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+    }
+}
@@ -0,0 +1,127 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The reasons for which the stale check found each IDL file stale or fresh, collected while planning a build so that
+ * unnecessary rebuilds can be traced to their causes. Files are identified by their paths relative to the source
+ * directory.
+ */
+class StalenessReport
+{
+    /**
+     * The reasons for which each stale file must be compiled
+     */
+    private final Map<String, Set<String>> staleReasons = new TreeMap<>();
+
+    /**
+     * The reasons for which files which might look stale are not
+     */
+    private final Map<String, String> freshReasons = new TreeMap<>();
+
+    /**
+     * Records a reason for which a file must be compiled.
+     *
+     * @param path   the path of the file
+     * @param reason the reason
+     */
+    synchronized void stale( String path, String reason )
+    {
+        freshReasons.remove( path );
+        Set<String> reasons = staleReasons.get( path );
+        if ( reasons == null )
+        {
+            reasons = new LinkedHashSet<>();
+            staleReasons.put( path, reasons );
+        }
+        reasons.add( reason );
+    }
+
+    /**
+     * Records that a file found stale need not be compiled after all, and why.
+     *
+     * @param path   the path of the file
+     * @param reason the reason
+     */
+    synchronized void fresh( String path, String reason )
+    {
+        staleReasons.remove( path );
+        freshReasons.put( path, reason );
+    }
+
+    /**
+     * Describes every candidate file: whether it is stale, why, and the estimated cost of compiling it.
+     *
+     * @param estimates the estimated compile times of the candidate files, keyed by their paths
+     * @param planned   the paths of the files planned for compilation
+     * @return the lines of the report, ending with a summary
+     */
+    synchronized List<String> describe( Map<String, Long> estimates, Set<String> planned )
+    {
+        List<String> lines = new ArrayList<>();
+        long staleMillis = 0;
+        for ( Map.Entry<String, Long> entry : new TreeMap<>( estimates ).entrySet() )
+        {
+            String path = entry.getKey();
+            boolean stale = planned.contains( path );
+            if ( stale )
+            {
+                staleMillis += entry.getValue();
+            }
+            lines.add( ( stale ? "stale " : "fresh " ) + path + " (~" + entry.getValue() + " ms): "
+                           + getReason( path, stale ) );
+        }
+        lines.add( planned.size() + " of " + estimates.size() + " files stale, ~" + staleMillis
+                       + " ms of compile time" );
+        return lines;
+    }
+
+    private String getReason( String path, boolean stale )
+    {
+        Set<String> reasons = staleReasons.get( path );
+        if ( stale )
+        {
+            return reasons == null ? "selected for compilation" : join( reasons );
+        }
+        if ( freshReasons.containsKey( path ) )
+        {
+            return freshReasons.get( path );
+        }
+        return reasons == null ? "unchanged since it was last compiled"
+                        : join( reasons ) + ", but no source compiles it";
+    }
+
+    private static String join( Set<String> reasons )
+    {
+        StringBuilder joined = new StringBuilder();
+        for ( String reason : reasons )
+        {
+            joined.append( joined.length() == 0 ? "" : "; " ).append( reason );
+        }
+        return joined.toString();
+    }
+}
@@ -53,6 +53,34 @@ public class TestIDLJMojo
      */
     private File outputDirectory;
 
+    /**
+     * Whether to use the files generated by the <code>generate</code> goal from the idl files which it has compiled
+     * with the same options and contents, instead of compiling them again. Those files are then compiled with the
+     * main sources, and only the idl files which differ, or exist only for the tests, are compiled here.
+     *
+     * @parameter property="idlj.reuseMainOutputs" default-value="false"
+     */
+    private boolean reuseMainOutputs;
+
+    /**
+     * The directory to which the <code>generate</code> goal outputs the generated sources.
+     *
+     * @parameter default-value="${project.build.directory}/generated-sources/idl"
+     */
+    private File mainOutputDirectory;
+
+    /**
+     * Constructs a mojo which processes the IDL test files.
+     */
+    public TestIDLJMojo()
+    {
+    }
+
+    TestIDLJMojo( DependenciesFacade dependenciesFacade )
+    {
+        super( dependenciesFacade );
+    }
+
     /**
      * @return the directory that contains the source
      */
@@ -69,6 +97,14 @@ public class TestIDLJMojo
         return outputDirectory;
     }
 
+    /**
+     * @return the output directory of the <code>generate</code> goal, if its generated files are reused
+     */
+    protected File getReusedOutputDirectory()
+    {
+        return reuseMainOutputs ? mainOutputDirectory : null;
+    }
+
     /**
      * @return a <code>List</code> of directory to use as <i>include</i>
      */
@@ -77,6 +113,14 @@ public class TestIDLJMojo
         return includeDirs;
     }
 
+    /**
+     * @return a prefix which keeps the build state of the test sources apart from that of the main sources
+     */
+    protected String getBuildStatePrefix()
+    {
+        return "test-";
+    }
+
     /**
      * Adds the generated source path to the test source directories list so that maven can find the new sources to
      * compile tests.
@@ -21,6 +21,12 @@ package org.codehaus.mojo.idlj;
 
 import org.apache.maven.plugin.MojoExecutionException;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
 /**
  * A selector for the types of IDL translators supported
  */
@@ -39,6 +45,12 @@ enum TranslatorType
         {
             return isJavaModuleSystemPresent() ?  new GlassfishTranslator() : new BuiltInTranslator();
         }
+
+        @Override
+        String getCompilerVersion()
+        {
+            return isJavaModuleSystemPresent() ? GLASSFISH.getCompilerVersion() : BUILT_IN.getCompilerVersion();
+        }
     },
     BUILT_IN
     {
@@ -53,6 +65,12 @@ enum TranslatorType
         {
             return new BuiltInTranslator();
         }
+
+        @Override
+        String getCompilerVersion()
+        {
+            return "java " + System.getProperty( "java.version" );
+        }
     },
     GLASSFISH
     {
@@ -67,6 +85,12 @@ enum TranslatorType
         {
             return new GlassfishTranslator();
         }
+
+        @Override
+        String getCompilerVersion()
+        {
+            return getLocation( "com/sun/tools/corba/ee/idl/toJavaPortable/Compile.class" );
+        }
     },
     JACORB
     {
@@ -81,6 +105,12 @@ enum TranslatorType
         {
             return new JacorbTranslator();
         }
+
+        @Override
+        String getCompilerVersion()
+        {
+            return getLocation( "org/jacorb/idl/parser.class" );
+        }
     };
 
     private static boolean isJavaModuleSystemPresent()
@@ -88,13 +118,62 @@ enum TranslatorType
         return !System.getProperty( "java.version" ).startsWith( "1." );
     }
 
+    /**
+     * Finds where a class of the compiler is loaded from.
+     */
+    private static String getLocation( String classResource )
+    {
+        URL location = TranslatorType.class.getClassLoader().getResource( classResource );
+        return location == null ? "unknown" : describeLocation( location );
+    }
+
+    /**
+     * Describes a class of the compiler the same way on every machine, as the description goes into the keys of
+     * the shared caches. For a class in a jar this is the name of the jar, which changes with its version; for a
+     * class loaded from a directory it is a hash of the class file, rather than its full path.
+     *
+     * @param location the URL of the class file
+     * @return the description
+     */
+    static String describeLocation( URL location )
+    {
+        String path = location.toExternalForm();
+        int entrySeparator = path.indexOf( "!/" );
+        if ( entrySeparator >= 0 )
+        {
+            String jarPath = path.substring( 0, entrySeparator );
+            return jarPath.substring( jarPath.lastIndexOf( '/' ) + 1 );
+        }
+
+        try ( InputStream in = location.openStream() )
+        {
+            ByteArrayOutputStream contents = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for ( int n = in.read( buffer ); n > 0; n = in.read( buffer ) )
+            {
+                contents.write( buffer, 0, n );
+            }
+            return path.substring( path.lastIndexOf( '/' ) + 1 ) + " "
+                + ContentManifest.hash( ByteBuffer.wrap( contents.toByteArray() ) );
+        }
+        catch ( IOException e )
+        {
+            return "unknown";
+        }
+    }
+
     static CompilerTranslator selectTranslator( String compiler ) throws MojoExecutionException
+    {
+        return selectType( compiler ).createTranslator();
+    }
+
+    static TranslatorType selectType( String compiler ) throws MojoExecutionException
     {
         for ( TranslatorType type : TranslatorType.values() )
         {
             if ( type.select( compiler ) )
             {
-                return type.createTranslator();
+                return type;
             }
         }
 
@@ -104,4 +183,9 @@ enum TranslatorType
     abstract boolean select( String compilerSetting );
 
     abstract CompilerTranslator createTranslator();
+
+    /**
+     * @return a description of the compiler used by this type, which changes with the compiler version
+     */
+    abstract String getCompilerVersion();
 }
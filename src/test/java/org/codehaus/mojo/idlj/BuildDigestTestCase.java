@@ -0,0 +1,202 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the skipping of builds in which nothing has changed.
+ */
+public class BuildDigestTestCase extends IDLJTestBase {
+
+    private static final String DIGEST_FILE = "target/main/timeStamps-digest.txt";
+
+    private static final String IDL_FILE = "src/main/idl/dummy.idl";
+
+    private static final String GENERATED_FILE = "target/main/generatedSources/idl/Dummy.java";
+
+    @Before
+    public void setUpFiles() throws Exception {
+        defineCompiler("glassfish");
+        defineWrittenFile(IDL_FILE, "interface Dummy {};\n".getBytes());
+        defineModificationTime(IDL_FILE, 1000);
+        defineGeneratedFiles("dummy.idl", "Dummy.java");
+        defineGeneratedContents("interface Dummy {}");
+    }
+
+    @Test
+    public void digestIsIndependentOfListingOrder() {
+        Map<String, Long> first = new HashMap<>();
+        first.put("a.idl", 1L);
+        first.put("b/c.idl", 2L);
+        Map<String, Long> second = new HashMap<>();
+        second.put("b/c.idl", 2L);
+        second.put("a.idl", 1L);
+
+        assertThat(new BuildDigest().add("x", 1).addTree("src", first).compute(),
+                   equalTo(new BuildDigest().add("x", 1).addTree("src", second).compute()));
+    }
+
+    @Test
+    public void digestDependsOnModificationTimes() {
+        Map<String, Long> before = new HashMap<>();
+        before.put("a.idl", 1L);
+        Map<String, Long> after = new HashMap<>();
+        after.put("a.idl", 2L);
+
+        assertThat(new BuildDigest().addTree("src", before).compute(),
+                   not(equalTo(new BuildDigest().addTree("src", after).compute())));
+    }
+
+    @Test
+    public void afterCompile_saveDigest() throws Exception {
+        mojo.execute();
+
+        assertThat(getWrittenFile(DIGEST_FILE), notNullValue());
+    }
+
+    @Test
+    public void whenNothingChanged_skipBuild() throws Exception {
+        mojo.execute();
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(1));
+    }
+
+    @Test
+    public void whenFileModified_compile() throws Exception {
+        mojo.execute();
+        defineModificationTime(IDL_FILE, 2000);
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+    }
+
+    @Test
+    public void whenFileRewrittenWithSameModificationTime_compile() throws Exception {
+        mojo.execute();
+        defineWrittenFile(IDL_FILE, "interface Dummy { void run(); };\n".getBytes());
+        defineModificationTime(IDL_FILE, 1000);
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+    }
+
+    @Test
+    public void whenFileModifiedDuringBuild_compileAgain() throws Exception {
+        TestIdlCompiler.defineCompileAction(new Runnable() {
+            public void run() {
+                defineModificationTime(IDL_FILE, 2000);
+            }
+        });
+        mojo.execute();
+        TestIdlCompiler.defineCompileAction(null);
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+    }
+
+    @Test
+    public void whenFileAdded_compile() throws Exception {
+        mojo.execute();
+        defineWrittenFile("src/main/idl/other.idl", "interface Other {};\n".getBytes());
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+    }
+
+    @Test
+    public void whenGeneratedFileDeleted_compile() throws Exception {
+        mojo.execute();
+        deleteWrittenFile(GENERATED_FILE);
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+    }
+
+    @Test
+    public void whenGeneratedFileOnlyTouched_skipBuild() throws Exception {
+        mojo.execute();
+        defineModificationTime(GENERATED_FILE, 5000);
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(1));
+    }
+
+    @Test
+    public void whenOptionChanged_compile() throws Exception {
+        mojo.execute();
+        defineStaleCheck("content");
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+    }
+
+    @Test
+    public void whenNothingStale_dontLoadCompiler() throws Exception {
+        mojo.execute();
+        forgetCompiler();
+        setClassNotFoundFilter(new ClassNotFoundFilter() {
+            public boolean throwException(URL... prependedUrls) {
+                return true;
+            }
+        });
+        defineWrittenFile("src/main/idl/README.txt", new byte[0]);
+        markSourcesUpToDate();
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(1));
+    }
+
+    @Test
+    public void whenCompileFails_dontSaveDigest() throws Exception {
+        setFailOnError();
+        TestIdlCompiler.defineFailingFile("dummy.idl");
+
+        try {
+            mojo.execute();
+            fail("Did not report failure");
+        } catch (MojoExecutionException e) {
+            assertThat(getWrittenFile(DIGEST_FILE), nullValue());
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+
+/**
+ * Tests for the index of the compiled files.
+ */
+public class BuildIndexTestCase extends IDLJTestBase {
+
+    private static final String INDEX_FILE = "target/main/timeStamps-index.bin";
+
+    @Before
+    public void setUpFiles() throws Exception {
+        defineCompiler("glassfish");
+        defineWrittenFile("src/main/idl/dummy.idl", "interface Dummy {};".getBytes());
+    }
+
+    @Test
+    public void whenRecorded_fileIsCurrent() {
+        BuildIndex index = new BuildIndex();
+
+        index.record("a.idl", 10, 1000);
+
+        assertThat(index.isStale("a.idl", 10, 1000, 0), equalTo(false));
+        assertThat(index.isStale("a.idl", 11, 1000, 0), equalTo(true));
+        assertThat(index.isStale("a.idl", 10, 900, 0), equalTo(true));
+        assertThat(index.isStale("a.idl", 10, 900, 100), equalTo(false));
+        assertThat(index.isStale("b.idl", 10, 1000, 0), equalTo(true));
+    }
+
+    @Test
+    public void appendedRecordsSupersedeEarlierOnes() throws Exception {
+        BuildIndex index = new BuildIndex();
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        saved.write(BuildIndex.header());
+        saved.write(index.record("a.idl", 10, 1000));
+        saved.write(index.record("b.idl", 20, 1000));
+        saved.write(index.record("a.idl", 12, 2000));
+        saved.write(index.remove("b.idl"));
+
+        BuildIndex read = BuildIndex.read(ByteBuffer.wrap(saved.toByteArray()));
+
+        assertThat(read.isStale("a.idl", 12, 2000, 0), equalTo(false));
+        assertThat(read.getPaths().contains("b.idl"), equalTo(false));
+    }
+
+    @Test
+    public void ignoreTruncatedRecord() throws Exception {
+        BuildIndex index = new BuildIndex();
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        saved.write(BuildIndex.header());
+        saved.write(index.record("a.idl", 10, 1000));
+        byte[] record = index.record("b.idl", 20, 1000);
+        saved.write(Arrays.copyOf(record, record.length - 3));
+
+        BuildIndex read = BuildIndex.read(ByteBuffer.wrap(saved.toByteArray()));
+
+        assertThat(read.isStale("a.idl", 10, 1000, 0), equalTo(false));
+        assertThat(read.getPaths().contains("b.idl"), equalTo(false));
+        assertThat(read.getValidLength(), equalTo(saved.size() - record.length + 3));
+    }
+
+    @Test
+    public void whenManyRecordsSuperseded_compact() throws Exception {
+        BuildIndex index = new BuildIndex();
+        for (int i = 0; i < 100; i++)
+            index.record("a.idl", 10, i);
+
+        assertThat(index.needsCompaction(), equalTo(true));
+
+        BuildIndex read = BuildIndex.read(ByteBuffer.wrap(index.toBytes()));
+
+        assertThat(read.needsCompaction(), equalTo(false));
+        assertThat(read.isStale("a.idl", 10, 99, 0), equalTo(false));
+    }
+
+    @Test
+    public void afterCompile_appendToIndex() throws Exception {
+        mojo.execute();
+
+        byte[] saved = getWrittenFile(INDEX_FILE);
+        assertThat(saved, notNullValue());
+        assertThat(BuildIndex.read(ByteBuffer.wrap(saved)).getPaths().size(), equalTo(1));
+    }
+
+    @Test
+    public void whenIndexEndsWithTruncatedRecord_keepLaterRecords() throws Exception {
+        BuildIndex index = new BuildIndex();
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        saved.write(BuildIndex.header());
+        saved.write(index.record("other.idl", 10, 1000));
+        byte[] record = index.record("gone.idl", 20, 1000);
+        saved.write(Arrays.copyOf(record, record.length - 3));
+        defineWrittenFile(INDEX_FILE, saved.toByteArray());
+
+        mojo.execute();
+
+        BuildIndex read = BuildIndex.read(ByteBuffer.wrap(getWrittenFile(INDEX_FILE)));
+        assertThat(read.getPaths().contains("dummy.idl"), equalTo(true));
+        assertThat(read.getValidLength(), equalTo(getWrittenFile(INDEX_FILE).length));
+    }
+
+    @Test
+    public void whenTimestampDirectoryExists_migrateIt() throws Exception {
+        defineModificationTime("src/main/idl/dummy.idl", 1000);
+        defineWrittenFile("target/main/timeStamps/dummy.idl", "interface Dummy {};".getBytes());
+        defineModificationTime("target/main/timeStamps/dummy.idl", 2000);
+        defineDirectory("target/main/timeStamps");
+        markSourcesUpToDate();
+
+        mojo.execute();
+
+        BuildIndex index = BuildIndex.read(ByteBuffer.wrap(getWrittenFile(INDEX_FILE)));
+        assertThat(index.isStale("dummy.idl", 19, 1000, 0), equalTo(false));
+        assertThat(getWrittenFile("target/main/timeStamps/dummy.idl"), equalTo(null));
+    }
+}
@@ -0,0 +1,133 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the session-wide compilation service.
+ */
+public class CompilationServiceTestCase {
+
+    private final ClassLoader parent = getClass().getClassLoader();
+
+    @Test
+    public void whenSessionContinues_shareServiceAndResources() throws Exception {
+        Object session = new Object();
+        CompilationService service = CompilationService.forSession(session);
+        ClassLoader loader = CompilerClassLoaderCache.getLoader(classPath("lib/a.jar"), parent);
+        CompilerInstancePool instancePool = service.getInstancePool(2, 0);
+        ForkedWorkerPool workerPool = service.getWorkerPool(2, 0, 0);
+
+        assertThat(CompilationService.forSession(session), sameInstance(service));
+        assertThat(CompilationService.forSession(null), sameInstance(service));
+        assertThat(CompilerClassLoaderCache.getLoader(classPath("lib/a.jar"), parent), sameInstance(loader));
+        assertThat(service.getInstancePool(2, 0), sameInstance(instancePool));
+        assertThat(service.getWorkerPool(2, 0, 0), sameInstance(workerPool));
+    }
+
+    @Test
+    public void whenSessionChanges_shutDownPreviousService() throws Exception {
+        CompilationService service = CompilationService.forSession(new Object());
+        ClassLoader loader = CompilerClassLoaderCache.getLoader(classPath("lib/a.jar"), parent);
+        CompilerInstancePool instancePool = service.getInstancePool(2, 0);
+
+        CompilationService next = CompilationService.forSession(new Object());
+
+        assertThat(next, not(sameInstance(service)));
+        assertThat(service.getExecutor().isShutdown(), equalTo(true));
+        assertThat(CompilerClassLoaderCache.getLoader(classPath("lib/a.jar"), parent), not(sameInstance(loader)));
+        try {
+            instancePool.lease(getClass().getName(), Collections.<File>emptyList());
+            fail("Closed pool leased an instance");
+        } catch (MojoExecutionException e) {
+            assertThat(e.getMessage(), containsString("closed"));
+        }
+    }
+
+    @Test
+    public void whenIdle_shutDownService() throws Exception {
+        CompilationService service = CompilationService.forSession(new Object());
+        CompilerInstancePool instancePool = service.getInstancePool(2, 0);
+
+        CompilationService.scheduleIdleShutdown(50);
+
+        assertThat(service.getExecutor().awaitTermination(10, TimeUnit.SECONDS), equalTo(true));
+        assertThat(CompilationService.forSession(null), not(sameInstance(service)));
+        try {
+            instancePool.lease(getClass().getName(), Collections.<File>emptyList());
+            fail("Closed pool leased an instance");
+        } catch (MojoExecutionException e) {
+            assertThat(e.getMessage(), containsString("closed"));
+        }
+    }
+
+    @Test
+    public void whenExecutionStarts_keepService() throws Exception {
+        CompilationService service = CompilationService.forSession(new Object());
+        CompilationService.scheduleIdleShutdown(50);
+
+        CompilationService.executionStarted();
+        try {
+            Thread.sleep(200);
+            assertThat(service.getExecutor().isShutdown(), equalTo(false));
+        } finally {
+            CompilationService.executionFinished();
+        }
+        assertThat(CompilationService.forSession(null), sameInstance(service));
+    }
+
+    @Test
+    public void whenPoolConfigurationChanges_replacePool() throws Exception {
+        CompilationService service = new CompilationService(1);
+
+        assertThat(service.getInstancePool(4, 0), not(sameInstance(service.getInstancePool(2, 0))));
+        assertThat(service.getWorkerPool(4, 0, 0), not(sameInstance(service.getWorkerPool(2, 0, 0))));
+        service.shutdown();
+    }
+
+    @Test
+    public void whenConcurrencyLimitChanged_applyToPermits() throws Exception {
+        CompilationService service = new CompilationService(1);
+
+        service.setConcurrencyLimit(6);
+
+        assertThat(service.getPermits().getLimit(), equalTo(6));
+        service.shutdown();
+    }
+
+    private List<URL> classPath(String path) throws Exception {
+        return Collections.singletonList(new File(path).toURI().toURL());
+    }
+}
@@ -0,0 +1,124 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for compiling several IDL files in a single compiler invocation.
+ */
+public class CompileBatcherTestCase extends IDLJTestBase {
+
+    @Test
+    public void whenBatchSizeAllowsAllFiles_createSingleBatch() {
+        List<CompileTask> batches = new CompileBatcher(10, 1).createBatches(createTasks(new Source(), 5, 1, 3));
+
+        assertThat(batches, hasSize(1));
+        assertThat(batches.get(0).getIdlFiles(), hasSize(3));
+    }
+
+    @Test
+    public void whenMoreThreadsThanBatches_splitToKeepThreadsBusy() {
+        List<CompileTask> batches = new CompileBatcher(10, 3).createBatches(createTasks(new Source(), 5, 1, 3));
+
+        assertThat(batches, hasSize(3));
+    }
+
+    @Test
+    public void whenBatching_balanceEstimatedTimes() {
+        List<CompileTask> batches = new CompileBatcher(2, 1).createBatches(createTasks(new Source(), 10, 1, 2, 9));
+
+        assertThat(batches, hasSize(2));
+        assertThat(batches.get(0).getEstimatedMillis(), equalTo(11L));
+        assertThat(batches.get(1).getEstimatedMillis(), equalTo(11L));
+    }
+
+    @Test
+    public void whenFilesHaveDifferentSources_dontBatchThemTogether() {
+        List<CompileTask> tasks = createTasks(new Source(), 1, 1);
+        tasks.addAll(createTasks(new Source(), 1, 1));
+
+        List<CompileTask> batches = new CompileBatcher(10, 1).createBatches(tasks);
+
+        assertThat(batches, hasSize(2));
+    }
+
+    @Test
+    public void whenJacorbBatchSizeSpecified_compileFilesTogether() throws Exception {
+        defineCompiler("jacorb");
+        defineBatchSize(10);
+        addIncludedSource("src/main/idl/other.idl");
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(1));
+        assertArgumentsContains("src/main/idl/dummy.idl", "src/main/idl/other.idl");
+    }
+
+    @Test
+    public void whenCompilerDoesNotSupportBatches_compileFilesSeparately() throws Exception {
+        defineCompiler("glassfish");
+        defineBatchSize(10);
+        addIncludedSource("src/main/idl/other.idl");
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+    }
+
+    @Test
+    public void whenBatchFails_reportFailingFileOnly() throws Exception {
+        defineCompiler("jacorb");
+        defineBatchSize(10);
+        setFailOnError();
+        addIncludedSource("src/main/idl/other.idl");
+        TestIdlCompiler.defineFailingFile("other.idl");
+
+        try {
+            mojo.execute();
+            fail("Did not report failure");
+        } catch (MojoExecutionException e) {
+            assertThat(e.getMessage(), containsString("other.idl"));
+            assertThat(e.getMessage(), not(containsString("dummy.idl")));
+        }
+    }
+
+    private List<CompileTask> createTasks(Source source, long... estimates) {
+        List<CompileTask> tasks = new ArrayList<>();
+        for (int i = 0; i < estimates.length; i++) {
+            CompileTask task = new CompileTask(new File("file" + i + ".idl"), source);
+            task.setEstimatedMillis(estimates[i]);
+            tasks.add(task);
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,127 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+
+/**
+ * Tests for the recorded compile durations.
+ */
+public class CompileHistoryTestCase extends IDLJTestBase {
+
+    private static final String HISTORY_FILE = "target/main/timeStamps-durations.properties";
+
+    @Test
+    public void whenFileRecorded_estimateItsLastDuration() {
+        CompileHistory history = new CompileHistory();
+        history.record("a.idl", 1200, 100);
+
+        assertThat(history.estimateMillis("a.idl", 5000), equalTo(1200L));
+    }
+
+    @Test
+    public void whenNoHistory_estimateFromFileSize() {
+        CompileHistory history = new CompileHistory();
+
+        assertThat(history.estimateMillis("a.idl", 300), equalTo(300L));
+    }
+
+    @Test
+    public void whenFileNotRecorded_estimateFromAverageRate() {
+        CompileHistory history = new CompileHistory();
+        history.record("a.idl", 1000, 100);
+        history.record("b.idl", 3000, 100);
+
+        assertThat(history.estimateMillis("c.idl", 50), equalTo(1000L));
+    }
+
+    @Test
+    public void historyCanBeSavedAndRestored() throws Exception {
+        CompileHistory history = new CompileHistory();
+        history.record("sub/a.idl", 1200, 100);
+
+        assertThat(CompileHistory.fromBytes(history.toBytes()).estimateMillis("sub/a.idl", 0), equalTo(1200L));
+    }
+
+    @Test
+    public void whenAllocationRecorded_estimateItsLastAllocation() throws Exception {
+        CompileHistory history = new CompileHistory();
+        history.record("a.idl", 1200, 100, 64000000);
+
+        assertThat(CompileHistory.fromBytes(history.toBytes()).estimateBytes("a.idl", 100), equalTo(64000000L));
+    }
+
+    @Test
+    public void whenAllocationNotRecorded_estimateFromAverageAllocationPerByte() {
+        CompileHistory history = new CompileHistory();
+        history.record("a.idl", 1000, 100, 1000000);
+        history.record("b.idl", 1000, 100);
+
+        assertThat(history.estimateBytes("c.idl", 50), equalTo(500000L));
+    }
+
+    @Test
+    public void whenNoAllocationsRecorded_estimateNoAllocation() {
+        CompileHistory history = new CompileHistory();
+
+        assertThat(history.estimateBytes("a.idl", 300), equalTo(0L));
+    }
+
+    @Test
+    public void afterCompile_saveDurations() throws Exception {
+        mojo.execute();
+
+        assertThat(getWrittenFile(HISTORY_FILE), notNullValue());
+        CompileHistory history = CompileHistory.fromBytes(getWrittenFile(HISTORY_FILE));
+        assertThat(history.estimateMillis("dummy.idl", 1000) < 1000, equalTo(true));
+    }
+
+    @Test
+    public void whenRecordedFilesChange_recomputeAverageRate() {
+        CompileHistory history = new CompileHistory();
+        history.record("a.idl", 1000, 100);
+        assertThat(history.estimateMillis("c.idl", 50), equalTo(500L));
+
+        history.record("b.idl", 3000, 100);
+        assertThat(history.estimateMillis("c.idl", 50), equalTo(1000L));
+
+        history.forget("b.idl");
+        assertThat(history.estimateMillis("c.idl", 50), equalTo(500L));
+    }
+
+    @Test
+    public void whenIdlFileRemoved_forgetItsDuration() throws Exception {
+        CompileHistory saved = new CompileHistory();
+        saved.record("dummy.idl", 1200, 100);
+        saved.record("removed.idl", 1200, 100);
+        defineWrittenFile(HISTORY_FILE, saved.toBytes());
+
+        mojo.execute();
+
+        CompileHistory history = CompileHistory.fromBytes(getWrittenFile(HISTORY_FILE));
+        assertThat(history.getIdlFiles(), equalTo(Collections.singleton("dummy.idl")));
+    }
+}
@@ -0,0 +1,236 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the scheduling of IDL compile tasks.
+ */
+public class CompileSchedulerTestCase {
+
+    private static final int NUM_PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+    private CompilationService service = new CompilationService(8);
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    public void whenThreadCountNotSpecified_useSingleThread() throws Exception {
+        assertThat(CompileScheduler.parseThreadCount(null), equalTo(1));
+    }
+
+    @Test
+    public void whenThreadCountIsNumber_useIt() throws Exception {
+        assertThat(CompileScheduler.parseThreadCount("4"), equalTo(4));
+    }
+
+    @Test
+    public void whenThreadCountIsProcessorMultiple_scaleByProcessors() throws Exception {
+        assertThat(CompileScheduler.parseThreadCount("2C"), equalTo(2 * NUM_PROCESSORS));
+        assertThat(CompileScheduler.parseThreadCount("1.5C"), equalTo(Math.max(1, (int) (1.5 * NUM_PROCESSORS))));
+    }
+
+    @Test(expected = MojoExecutionException.class)
+    public void whenThreadCountInvalid_throwException() throws Exception {
+        CompileScheduler.parseThreadCount("many");
+    }
+
+    @Test(expected = MojoExecutionException.class)
+    public void whenThreadCountNotPositive_throwException() throws Exception {
+        CompileScheduler.parseThreadCount("0");
+    }
+
+    @Test
+    public void whenSeveralThreads_runTasksConcurrently() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(2);
+        List<CompileTask> tasks = createTasks("a.idl", "b.idl");
+
+        new CompileScheduler(2, service, new SystemStreamLog()).execute(tasks, new CompileScheduler.TaskHandler() {
+            public void process(CompileTask task) throws MojoExecutionException {
+                latch.countDown();
+                try {
+                    if (!latch.await(10, TimeUnit.SECONDS))
+                        throw new MojoExecutionException("tasks did not run concurrently");
+                } catch (InterruptedException e) {
+                    throw new MojoExecutionException("interrupted", e);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void whenTasksFail_runRemainingTasksAndReportAllFailures() throws Exception {
+        final List<String> processed = Collections.synchronizedList(new ArrayList<String>());
+        List<CompileTask> tasks = createTasks("a.idl", "b.idl", "c.idl");
+
+        try {
+            new CompileScheduler(2, service, new SystemStreamLog()).execute(tasks, new CompileScheduler.TaskHandler() {
+                public void process(CompileTask task) throws MojoExecutionException {
+                    processed.add(task.getIdlFile().getName());
+                    if (!task.getIdlFile().getName().equals("b.idl"))
+                        throw new MojoExecutionException("oops in " + task.getIdlFile().getName());
+                }
+            });
+            fail("Did not report failures");
+        } catch (MojoExecutionException e) {
+            assertThat(processed, hasSize(3));
+            assertThat(e.getMessage(), containsString("2 of 3 files"));
+            assertThat(e.getMessage(), containsString("oops in a.idl"));
+            assertThat(e.getMessage(), containsString("oops in c.idl"));
+        }
+    }
+
+    @Test
+    public void whenSingleTaskFails_reportOriginalException() throws Exception {
+        final MojoExecutionException failure = new MojoExecutionException("IDL compilation failed");
+
+        try {
+            new CompileScheduler(1, service, new SystemStreamLog()).execute(createTasks("a.idl"), new CompileScheduler.TaskHandler() {
+                public void process(CompileTask task) throws MojoExecutionException {
+                    throw failure;
+                }
+            });
+            fail("Did not report failure");
+        } catch (MojoExecutionException e) {
+            assertThat(e, equalTo(failure));
+        }
+    }
+
+    @Test
+    public void whenTasksHaveEstimates_startLongestFirst() throws Exception {
+        final List<String> processed = new ArrayList<>();
+        List<CompileTask> tasks = createTasks("short.idl", "long.idl", "medium.idl");
+        tasks.get(0).setEstimatedMillis(10);
+        tasks.get(1).setEstimatedMillis(5000);
+        tasks.get(2).setEstimatedMillis(200);
+
+        new CompileScheduler(1, service, new SystemStreamLog()).execute(tasks, new CompileScheduler.TaskHandler() {
+            public void process(CompileTask task) throws MojoExecutionException {
+                processed.add(task.getIdlFile().getName());
+            }
+        });
+
+        assertThat(processed, contains("long.idl", "medium.idl", "short.idl"));
+    }
+
+    @Test
+    public void whenTaskSucceeds_recordDuration() throws Exception {
+        List<CompileTask> tasks = createTasks("a.idl");
+
+        new CompileScheduler(1, service, new SystemStreamLog()).execute(tasks, new CompileScheduler.TaskHandler() {
+            public void process(CompileTask task) throws MojoExecutionException {
+            }
+        });
+
+        assertThat(tasks.get(0).getDurationMillis(), greaterThanOrEqualTo(0L));
+    }
+
+    @Test
+    public void whenConcurrencyLimitReached_waitForRunningCompiles() throws Exception {
+        service.setConcurrencyLimit(2);
+        final ConcurrencyRecorder recorder = new ConcurrencyRecorder();
+
+        Thread otherExecution = new Thread() {
+            public void run() {
+                try {
+                    new CompileScheduler(3, service, new SystemStreamLog()).execute(createTasks("x.idl", "y.idl", "z.idl"), recorder);
+                } catch (MojoExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        otherExecution.start();
+        new CompileScheduler(3, service, new SystemStreamLog()).execute(createTasks("a.idl", "b.idl", "c.idl"), recorder);
+        otherExecution.join();
+
+        assertThat(recorder.maxRunning, equalTo(2));
+        assertThat(recorder.numCompiled, equalTo(6));
+    }
+
+    @Test
+    public void whenCompileRunsOutOfMemory_retryItAlone() throws Exception {
+        final List<String> attempts = Collections.synchronizedList(new ArrayList<String>());
+        List<CompileTask> tasks = createTasks("a.idl", "b.idl");
+
+        new CompileScheduler(2, service, new SystemStreamLog()).execute(tasks, new CompileScheduler.TaskHandler() {
+            public void process(CompileTask task) throws MojoExecutionException {
+                attempts.add(task.getIdlFile().getName());
+                if (task.getIdlFile().getName().equals("b.idl") && Collections.frequency(attempts, "b.idl") == 1)
+                    throw new MojoExecutionException("IDL compilation failed", new OutOfMemoryError());
+            }
+        });
+
+        assertThat(Collections.frequency(attempts, "b.idl"), equalTo(2));
+        assertThat(tasks.get(1).getDurationMillis(), greaterThanOrEqualTo(0L));
+    }
+
+    private List<CompileTask> createTasks(String... names) {
+        List<CompileTask> tasks = new ArrayList<>();
+        for (String name : names)
+            tasks.add(new CompileTask(new File(name), new Source()));
+        return tasks;
+    }
+
+    /**
+     * Records the largest number of tasks processed at the same time.
+     */
+    private static class ConcurrencyRecorder implements CompileScheduler.TaskHandler {
+        private int running;
+        private int maxRunning;
+        private int numCompiled;
+
+        public void process(CompileTask task) throws MojoExecutionException {
+            synchronized (this) {
+                maxRunning = Math.max(maxRunning, ++running);
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                throw new MojoExecutionException("interrupted", e);
+            }
+            synchronized (this) {
+                running--;
+                numCompiled++;
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Tests for the session-wide cache of compiler class loaders.
+ */
+public class CompilerClassLoaderCacheTestCase {
+
+    private final ClassLoader parent = getClass().getClassLoader();
+
+    @After
+    public void tearDown() {
+        CompilerClassLoaderCache.closeAll();
+    }
+
+    @Test
+    public void whenSameClassPathRequested_shareLoader() throws Exception {
+        ClassLoader first = CompilerClassLoaderCache.getLoader(classPath("lib/a.jar"), parent);
+
+        assertThat(CompilerClassLoaderCache.getLoader(classPath("lib/a.jar"), parent), sameInstance(first));
+    }
+
+    @Test
+    public void whenDifferentClassPathRequested_createSeparateLoader() throws Exception {
+        ClassLoader first = CompilerClassLoaderCache.getLoader(classPath("lib/a.jar"), parent);
+
+        assertThat(CompilerClassLoaderCache.getLoader(classPath("lib/b.jar"), parent), not(sameInstance(first)));
+    }
+
+    @Test
+    public void whenRecycleLimitReached_createFreshLoader() throws Exception {
+        ClassLoader first = CompilerClassLoaderCache.getLoader(classPath("lib/a.jar"), parent);
+        compileWith(first, 2);
+        ClassLoader second = CompilerClassLoaderCache.getLoader(classPath("lib/a.jar"), parent);
+        compileWith(second, 2);
+
+        assertThat(second, sameInstance(first));
+        assertThat(CompilerClassLoaderCache.getLoader(classPath("lib/a.jar"), parent), not(sameInstance(first)));
+    }
+
+    @Test
+    public void whenRecycledLoaderNoLongerUsed_closeIt() throws Exception {
+        ClassLoader loader = CompilerClassLoaderCache.getLoader(classPath("lib/a.jar"), parent);
+        compileWith(loader, 1);
+
+        assertThat(CompilerClassLoaderCache.acquire(loader), is(false));
+    }
+
+    @Test
+    public void whenRecycledLoaderStillUsed_keepItOpen() throws Exception {
+        ClassLoader loader = CompilerClassLoaderCache.getLoader(classPath("lib/a.jar"), parent);
+        CompilerClassLoaderCache.acquire(loader);
+        compileWith(loader, 1);
+
+        assertThat(CompilerClassLoaderCache.acquire(loader), is(true));
+    }
+
+    @Test
+    public void whenLastUserOfRecycledLoaderFinishes_closeIt() throws Exception {
+        ClassLoader loader = CompilerClassLoaderCache.getLoader(classPath("lib/a.jar"), parent);
+        CompilerClassLoaderCache.acquire(loader);
+        compileWith(loader, 1);
+        CompilerClassLoaderCache.release(loader, 1);
+
+        assertThat(CompilerClassLoaderCache.acquire(loader), is(false));
+    }
+
+    @Test
+    public void whenLoaderNotCreatedByCache_ignoreIt() throws Exception {
+        compileWith(parent, 1);
+
+        assertThat(CompilerClassLoaderCache.acquire(parent), is(true));
+    }
+
+    private void compileWith(ClassLoader loader, int recycleAfter) {
+        CompilerClassLoaderCache.acquire(loader);
+        CompilerClassLoaderCache.release(loader, recycleAfter);
+    }
+
+    private List<URL> classPath(String path) throws Exception {
+        return Collections.singletonList(new File(path).toURI().toURL());
+    }
+}
@@ -0,0 +1,144 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Tests for the pool of class loader isolated compiler instances.
+ */
+public class CompilerInstancePoolTestCase {
+
+    private static final String COMPILER_CLASS = StatefulCompiler.class.getName();
+
+    private CompilerInstancePool pool;
+
+    @After
+    public void tearDown() {
+        if (pool != null)
+            pool.close();
+    }
+
+    @Test
+    public void whenTwoInstancesLeased_eachHasItsOwnCompilerClasses() throws Exception {
+        pool = new CompilerInstancePool(2);
+
+        CompilerInstancePool.Instance first = lease();
+        CompilerInstancePool.Instance second = lease();
+
+        assertThat(first.getCompilerClass(), not(sameInstance((Object) second.getCompilerClass())));
+        assertThat(first.getCompilerClass(), not(sameInstance((Object) StatefulCompiler.class)));
+    }
+
+    @Test
+    public void whenInstancesCompile_keepStaticStateSeparate() throws Exception {
+        pool = new CompilerInstancePool(2);
+
+        CompilerInstancePool.Instance first = lease();
+        CompilerInstancePool.Instance second = lease();
+        compile(first);
+        compile(first);
+        compile(second);
+
+        assertThat(compile(first), equalTo(3));
+        assertThat(compile(second), equalTo(2));
+    }
+
+    @Test
+    public void whenInstanceReleased_leaseItAgain() throws Exception {
+        pool = new CompilerInstancePool(1);
+
+        CompilerInstancePool.Instance first = lease();
+        pool.release(first);
+
+        assertThat(lease(), sameInstance(first));
+    }
+
+    @Test
+    public void whenRecycleLimitReached_loadFreshInstance() throws Exception {
+        pool = new CompilerInstancePool(1, 2);
+
+        CompilerInstancePool.Instance first = lease();
+        pool.release(first);
+        CompilerInstancePool.Instance second = lease();
+        pool.release(second);
+
+        assertThat(second, sameInstance(first));
+        assertThat(lease(), not(sameInstance(first)));
+    }
+
+    @Test
+    public void whenAllInstancesLeased_waitForRelease() throws Exception {
+        pool = new CompilerInstancePool(1);
+        final CompilerInstancePool.Instance first = lease();
+        final AtomicReference<CompilerInstancePool.Instance> second = new AtomicReference<>();
+        final CountDownLatch leased = new CountDownLatch(1);
+
+        Thread thread = new Thread() {
+            public void run() {
+                try {
+                    second.set(lease());
+                    leased.countDown();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        thread.start();
+
+        assertThat(leased.await(200, TimeUnit.MILLISECONDS), equalTo(false));
+        pool.release(first);
+        assertThat(leased.await(10, TimeUnit.SECONDS), equalTo(true));
+        assertThat(second.get(), sameInstance(first));
+    }
+
+    private CompilerInstancePool.Instance lease() throws Exception {
+        List<File> classPath = AbstractTranslator.getCompilerClassPath(StatefulCompiler.class);
+        return pool.lease(COMPILER_CLASS, classPath);
+    }
+
+    private int compile(CompilerInstancePool.Instance instance) throws Exception {
+        return (Integer) instance.getCompilerClass().getMethod("main", String[].class).invoke(null, new Object[]{new String[0]});
+    }
+
+    /**
+     * A stand-in for an IDL compiler which, like the real ones, keeps state in a static field.
+     */
+    public static class StatefulCompiler {
+
+        private static int numCompiles;
+
+        public static int main(String... args) {
+            return ++numCompiles;
+        }
+    }
+}
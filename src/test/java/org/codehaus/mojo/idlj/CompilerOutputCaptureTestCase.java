@@ -0,0 +1,127 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CyclicBarrier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Tests for the per-thread capture of compiler output.
+ */
+public class CompilerOutputCaptureTestCase {
+
+    private PrintStream savedOut;
+    private PrintStream savedErr;
+    private ByteArrayOutputStream console = new ByteArrayOutputStream();
+
+    @Before
+    public void setUp() {
+        savedOut = System.out;
+        savedErr = System.err;
+        System.setOut(new PrintStream(console, true));
+    }
+
+    @After
+    public void tearDown() {
+        System.setOut(savedOut);
+        System.setErr(savedErr);
+    }
+
+    @Test
+    public void whenCapturing_recordOutputAndErrorSeparately() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        CompilerOutputCapture capture = CompilerOutputCapture.begin(out, err);
+        System.out.print("to out");
+        System.err.print("to err");
+        capture.end();
+
+        assertThat(out.toString(), equalTo("to out"));
+        assertThat(err.toString(), equalTo("to err"));
+    }
+
+    @Test
+    public void whenNotCapturing_writeToOriginalStream() {
+        CompilerOutputCapture.begin(new ByteArrayOutputStream(), new ByteArrayOutputStream()).end();
+
+        System.out.print("visible");
+
+        assertThat(console.toString(), equalTo("visible"));
+    }
+
+    @Test
+    public void whenThreadsCaptureConcurrently_keepOutputsSeparate() throws Exception {
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        CapturingThread first = new CapturingThread("first", barrier);
+        CapturingThread second = new CapturingThread("second", barrier);
+
+        first.start();
+        second.start();
+        first.join();
+        second.join();
+
+        assertThat(first.out.toString(), equalTo(first.expectedOutput()));
+        assertThat(second.out.toString(), equalTo(second.expectedOutput()));
+        assertThat(console.toString(), equalTo(""));
+    }
+
+    private static class CapturingThread extends Thread {
+        private static final int NUM_LINES = 100;
+
+        private final String label;
+        private final CyclicBarrier barrier;
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        CapturingThread(String label, CyclicBarrier barrier) {
+            this.label = label;
+            this.barrier = barrier;
+        }
+
+        String expectedOutput() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < NUM_LINES; i++)
+                sb.append(label).append(i);
+            return sb.toString();
+        }
+
+        @Override
+        public void run() {
+            CompilerOutputCapture capture = CompilerOutputCapture.begin(out, new ByteArrayOutputStream());
+            try {
+                barrier.await();
+                for (int i = 0; i < NUM_LINES; i++)
+                    System.out.print(label + i);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            } finally {
+                capture.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+
+/**
+ * Tests for finding the stale files from their contents.
+ */
+public class ContentManifestTestCase extends IDLJTestBase {
+
+    private static final String MANIFEST_FILE = "target/main/timeStamps-hashes.properties";
+
+    private static final String IDL_FILE = "src/main/idl/dummy.idl";
+
+    @Before
+    public void setUpFiles() throws Exception {
+        defineCompiler("glassfish");
+        defineStaleCheck("content");
+        defineWrittenFile(IDL_FILE, "interface Dummy {};\n".getBytes());
+        defineModificationTime(IDL_FILE, 1000);
+    }
+
+    @Test
+    public void hashDependsOnContents() {
+        assertThat(ContentManifest.hash(ByteBuffer.wrap("a".getBytes())),
+                   equalTo(ContentManifest.hash(ByteBuffer.wrap("a".getBytes()))));
+        assertThat(ContentManifest.hash(ByteBuffer.wrap("a".getBytes())),
+                   not(equalTo(ContentManifest.hash(ByteBuffer.wrap("b".getBytes())))));
+    }
+
+    @Test
+    public void afterCompile_saveManifest() throws Exception {
+        mojo.execute();
+
+        assertThat(getWrittenFile(MANIFEST_FILE), notNullValue());
+    }
+
+    @Test
+    public void whenFileUnchanged_dontRecompile() throws Exception {
+        mojo.execute();
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(1));
+    }
+
+    @Test
+    public void whenFileTouchedWithoutChange_dontRecompile() throws Exception {
+        mojo.execute();
+        defineModificationTime(IDL_FILE, 2000);
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(1));
+    }
+
+    @Test
+    public void whenContentsChanged_recompile() throws Exception {
+        mojo.execute();
+        defineWrittenFile(IDL_FILE, "interface Changed {};\n".getBytes());
+        defineModificationTime(IDL_FILE, 2000);
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+    }
+
+    @Test(expected = MojoExecutionException.class)
+    public void whenStaleCheckInvalid_throwException() throws Exception {
+        defineStaleCheck("size");
+
+        mojo.execute();
+    }
+}
@@ -0,0 +1,153 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for compiling in a pool of forked compiler worker JVMs.
+ */
+public class ForkedWorkerPoolTestCase {
+
+    private static final String CLASS_PATH = System.getProperty("java.class.path");
+
+    private ForkedWorkerPool pool;
+
+    @After
+    public void tearDown() {
+        if (pool != null)
+            pool.close();
+    }
+
+    @Test
+    public void whenCompilerRuns_returnExitCodeAndOutput() throws Exception {
+        pool = new ForkedWorkerPool(1, 0, 0);
+
+        ForkedWorkerPool.Result result = compile("echo", "a.idl", "b.idl");
+
+        assertThat(result.getExitCode(), equalTo(2));
+        assertThat(result.getOut().toString(), containsString("a.idl b.idl"));
+        assertThat(result.getErr().toString(), containsString("(line 1): warning"));
+    }
+
+    @Test
+    public void whenCompilingSeveralFiles_reuseWorker() throws Exception {
+        pool = new ForkedWorkerPool(1, 0, 0);
+
+        String firstWorker = compile("identify").getOut().toString();
+        String secondWorker = compile("identify").getOut().toString();
+
+        assertThat(secondWorker, equalTo(firstWorker));
+        assertThat(firstWorker, not(equalTo(ManagementFactory.getRuntimeMXBean().getName())));
+    }
+
+    @Test
+    public void whenRecycleLimitReached_startNewWorker() throws Exception {
+        pool = new ForkedWorkerPool(1, 1, 0);
+
+        String firstWorker = compile("identify").getOut().toString();
+        String secondWorker = compile("identify").getOut().toString();
+
+        assertThat(secondWorker, not(equalTo(firstWorker)));
+    }
+
+    @Test
+    public void whenCompilerThrowsException_reportCrash() throws Exception {
+        pool = new ForkedWorkerPool(1, 0, 0);
+
+        ForkedWorkerPool.Result result = compile("fail");
+
+        assertThat(result.getExitCode(), equalTo(CompilerWorker.COMPILER_CRASHED));
+        assertThat(result.getErr().toString(), containsString("compiler broke"));
+    }
+
+    @Test
+    public void whenWorkerDies_reportFailureAndStartNewWorker() throws Exception {
+        pool = new ForkedWorkerPool(1, 0, 0);
+
+        try {
+            compile("exit");
+            fail("Did not report worker termination");
+        } catch (MojoExecutionException e) {
+            assertThat(e.getMessage(), containsString("IDL compilation failed"));
+        }
+
+        assertThat(compile("echo", "c.idl").getOut().toString(), containsString("c.idl"));
+    }
+
+    @Test
+    public void whenWorkerHangs_destroyItAndReportTimeout() throws Exception {
+        pool = new ForkedWorkerPool(1, 0, 500);
+
+        try {
+            compile("hang");
+            fail("Did not report worker timeout");
+        } catch (MojoExecutionException e) {
+            assertThat(e.getMessage(), containsString("did not answer within 500 ms"));
+        }
+
+        assertThat(compile("echo", "d.idl").getOut().toString(), containsString("d.idl"));
+    }
+
+    private ForkedWorkerPool.Result compile(String methodName, String... arguments) throws MojoExecutionException {
+        return pool.compile(CLASS_PATH, WorkerTestCompiler.class.getName(), methodName, arguments);
+    }
+
+    /**
+     * A stand-in for an IDL compiler, run inside the worker JVMs.
+     */
+    public static class WorkerTestCompiler {
+
+        public static int echo(String... args) {
+            StringBuilder sb = new StringBuilder();
+            for (String arg : args)
+                sb.append(arg).append(' ');
+            System.out.println(sb.toString().trim());
+            System.err.println("(line 1): warning");
+            return 2;
+        }
+
+        public static void identify(String... args) {
+            System.out.print(ManagementFactory.getRuntimeMXBean().getName());
+        }
+
+        public static void fail(String... args) {
+            throw new IllegalStateException("compiler broke");
+        }
+
+        public static void exit(String... args) {
+            System.exit(3);
+        }
+
+        public static void hang(String... args) throws InterruptedException {
+            Thread.sleep(Long.MAX_VALUE);
+        }
+    }
+}
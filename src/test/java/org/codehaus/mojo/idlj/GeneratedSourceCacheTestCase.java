@@ -0,0 +1,93 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Tests for the restoration of generated files from the local cache.
+ */
+public class GeneratedSourceCacheTestCase extends IDLJTestBase {
+
+    private static final String IDL_FILE = "src/main/idl/dummy.idl";
+
+    private static final String GENERATED_FILE = "target/main/generatedSources/idl/Dummy.java";
+
+    @Before
+    public void setUpFiles() throws Exception {
+        defineCompiler("glassfish");
+        setFailOnError();
+        enableCache("target/idlj-cache");
+        defineWrittenFile(IDL_FILE, "interface Dummy {};\n".getBytes());
+        defineGeneratedFiles("dummy.idl", "Dummy.java");
+        defineGeneratedContents("interface Dummy {}");
+    }
+
+    @Test
+    public void bundleHoldsGeneratedFiles() throws Exception {
+        Map<String, byte[]> generated = new TreeMap<>();
+        generated.put("a/A.java", "class A {}".getBytes());
+
+        Map<String, byte[]> restored = GeneratedSourceCache.fromBundle(GeneratedSourceCache.toBundle(generated));
+
+        assertThat(restored.keySet(), equalTo(generated.keySet()));
+        assertThat(new String(restored.get("a/A.java")), equalTo("class A {}"));
+    }
+
+    @Test
+    public void whenCached_restoreWithoutCompiling() throws Exception {
+        mojo.execute();
+        deleteWrittenFile(GENERATED_FILE);
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(1));
+        assertThat(new String(getWrittenFile(GENERATED_FILE)), equalTo("interface Dummy {}"));
+    }
+
+    @Test
+    public void whenFileChanged_compile() throws Exception {
+        mojo.execute();
+        defineWrittenFile(IDL_FILE, "interface Dummy { void ping(); };\n".getBytes());
+        defineModificationTime(IDL_FILE, 2000);
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+    }
+
+    @Test
+    public void whenCacheTooLarge_evictEntries() throws Exception {
+        defineCacheMaxSize(0);
+        mojo.execute();
+        deleteWrittenFile(GENERATED_FILE);
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+    }
+}
@@ -1,31 +1,43 @@
 package org.codehaus.mojo.idlj;
 
+import org.apache.maven.model.Build;
 import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.compiler.util.scan.InclusionScanException;
 import org.codehaus.plexus.compiler.util.scan.SourceInclusionScanner;
 import org.codehaus.plexus.compiler.util.scan.mapping.SourceMapping;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
 import org.junit.After;
 import org.junit.Before;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.StringReader;
 import java.lang.reflect.Field;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.junit.Assert.fail;
 
 public class IDLJTestBase {
     private static String[] args;
+    private static int numCompilerInvocations;
     private Properties savedProperties;
     private TestClassloaderFacade loaderFacade = new TestClassloaderFacade();
     private TestScanner testScanner = new TestScanner();
+    private TestScanner allSourcesScanner = new TestScanner();
     private TestDependenciesFacade testDependenciesFacade = new TestDependenciesFacade();
     private TestLog log = new TestLog();
     IDLJMojo mojo;
@@ -33,6 +45,10 @@ public class IDLJTestBase {
     @Before
     public void setUp() throws Exception {
         args = null;
+        numCompilerInvocations = 0;
+        TestIdlCompiler.defineErrorMessage(null);
+        TestIdlCompiler.defineFailingFile(null);
+        TestIdlCompiler.defineOutputFacade(testDependenciesFacade);
         savedProperties = (Properties) System.getProperties().clone();
         AbstractTranslator.setClassLoaderFacade(loaderFacade);
 
@@ -43,7 +59,7 @@ public class IDLJTestBase {
         defineOutputDirectory("target/main/generatedSources/idl");
         defineTimestampDirectory("target/main/timeStamps");
         mojo.setLog(log);
-        testScanner.includedSources.add(new File("src/main/idl/dummy.idl"));
+        addIncludedSource("src/main/idl/dummy.idl");
     }
 
     @After
@@ -201,6 +217,24 @@ public class IDLJTestBase {
         setPrivateFieldValue(mojo, "compiler", compiler);
     }
 
+    final void forgetCompiler() throws NoSuchFieldException, IllegalAccessException {
+        setPrivateFieldValue(mojo, "translator", null);
+    }
+
+    final TestIDLJMojo createTestMojo() throws NoSuchFieldException, IllegalAccessException {
+        TestIDLJMojo testMojo = new TestIDLJMojo(testDependenciesFacade);
+        setPrivateFieldValue(testMojo, "project", new MavenProject((Model) null));
+        setPrivateFieldValue(testMojo, "sourceDirectory", new File("src/test/idl"));
+        testDependenciesFacade.readOnlyDirectories.add(new File("src/test/idl"));
+        setPrivateFieldValue(testMojo, "outputDirectory", new File("target/test/generatedSources/idl"));
+        setPrivateFieldValue(testMojo, "timestampDirectory", new File("target/main/timeStamps"));
+        setPrivateFieldValue(testMojo, "mainOutputDirectory", new File("target/main/generatedSources/idl"));
+        setPrivateFieldValue(testMojo, "reuseMainOutputs", true);
+        setPrivateFieldValue(testMojo, "compiler", getPrivateFieldValue(mojo, "compiler"));
+        testMojo.setLog(log);
+        return testMojo;
+    }
+
     final void createDefine(Source source, String aName) throws NoSuchFieldException, IllegalAccessException {
         Define define = createDefine(source);
         setPrivateFieldValue(define, "symbol", aName);
@@ -239,10 +273,52 @@ public class IDLJTestBase {
         return sb.toString().trim();
     }
 
+    final void defineStaleCheck(String staleCheck) throws NoSuchFieldException, IllegalAccessException {
+        defineStaleCheck(mojo, staleCheck);
+    }
+
+    final void defineStaleCheck(AbstractIDLJMojo target, String staleCheck) throws NoSuchFieldException, IllegalAccessException {
+        setPrivateFieldValue(target, "staleCheck", staleCheck);
+    }
+
+    final void enableExplain() throws NoSuchFieldException, IllegalAccessException {
+        setPrivateFieldValue(mojo, "explain", true);
+    }
+
+    final List<String> getInfoMessages() {
+        return log.infoMessages;
+    }
+
+    final void enableIncrementalDeclarations() throws NoSuchFieldException, IllegalAccessException {
+        setPrivateFieldValue(mojo, "incrementalDeclarations", true);
+    }
+
+    final void enableCache(String directory) throws NoSuchFieldException, IllegalAccessException {
+        setPrivateFieldValue(mojo, "useCache", true);
+        setPrivateFieldValue(mojo, "cacheDirectory", new File(directory));
+    }
+
+    final void defineCacheMaxSize(long megabytes) throws NoSuchFieldException, IllegalAccessException {
+        setPrivateFieldValue(mojo, "cacheMaxSize", megabytes);
+    }
+
+    final void defineRemoteCache(String url, boolean readOnly) throws NoSuchFieldException, IllegalAccessException {
+        setPrivateFieldValue(mojo, "remoteCacheUrl", url);
+        setPrivateFieldValue(mojo, "remoteCacheReadOnly", readOnly);
+    }
+
+    final void defineBatchSize(int batchSize) throws NoSuchFieldException, IllegalAccessException {
+        setPrivateFieldValue(mojo, "batchSize", batchSize);
+    }
+
     final void setFailOnError() throws NoSuchFieldException, IllegalAccessException {
         setPrivateFieldValue(mojo, "failOnError", true);
     }
 
+    final void setFailOnError(AbstractIDLJMojo target) throws NoSuchFieldException, IllegalAccessException {
+        setPrivateFieldValue(target, "failOnError", true);
+    }
+
     final void defineIncludePaths(String... paths) throws NoSuchFieldException, IllegalAccessException {
         File[] dirs = new File[ paths.length ];
         for (int i = 0; i < dirs.length; i++)
@@ -256,6 +332,99 @@ public class IDLJTestBase {
         setPrivateFieldValue(source, "additionalArguments", arguments);
     }
 
+    final void defineIncludes(Source source, String... includes) throws NoSuchFieldException, IllegalAccessException {
+        setPrivateFieldValue(source, "includes", new HashSet<>(Arrays.asList(includes)));
+    }
+
+    final void defineExcludes(Source source, String... excludes) throws NoSuchFieldException, IllegalAccessException {
+        setPrivateFieldValue(source, "excludes", new HashSet<>(Arrays.asList(excludes)));
+    }
+
+    final void addIncludedSource(String path) {
+        testScanner.includedSources.add(new File(path));
+        allSourcesScanner.includedSources.add(new File(path));
+    }
+
+    final IDLJReactorMojo createReactorMojo(MavenProject... modules) throws NoSuchFieldException, IllegalAccessException {
+        IDLJReactorMojo reactorMojo = new IDLJReactorMojo(testDependenciesFacade);
+        setPrivateFieldValue(reactorMojo, "reactorProjects", Arrays.asList(modules));
+        reactorMojo.setLog(log);
+        return reactorMojo;
+    }
+
+    final MavenProject createModule(String path, String configuration) throws Exception {
+        Model model = new Model();
+        model.setGroupId("test");
+        model.setArtifactId(path);
+        model.setVersion("1.0");
+        model.setBuild(new Build());
+        model.getBuild().setDirectory(new File(path, "target").getAbsolutePath());
+        if (configuration != null) {
+            Plugin plugin = new Plugin();
+            plugin.setGroupId("org.codehaus.mojo");
+            plugin.setArtifactId("idlj-maven-plugin");
+            PluginExecution execution = new PluginExecution();
+            execution.addGoal("generate");
+            plugin.addExecution(execution);
+            plugin.setConfiguration(Xpp3DomBuilder.build(
+                    new StringReader("<configuration>" + configuration + "</configuration>")));
+            model.getBuild().addPlugin(plugin);
+        }
+        MavenProject module = new MavenProject(model);
+        module.setFile(new File(path, "pom.xml").getAbsoluteFile());
+        testDependenciesFacade.readOnlyDirectories.add(new File(path, "src/main/idl").getAbsoluteFile());
+        return module;
+    }
+
+    final void clearIncludedSources() {
+        testScanner.includedSources.clear();
+        allSourcesScanner.includedSources.clear();
+    }
+
+    final byte[] getWrittenFile(String path) {
+        return testDependenciesFacade.fileContents.get(new File(path).getAbsoluteFile());
+    }
+
+    final void defineWrittenFile(String path, byte[] contents) {
+        testDependenciesFacade.fileContents.put(new File(path).getAbsoluteFile(), contents);
+    }
+
+    final void defineDirectory(String path) {
+        testDependenciesFacade.writeableDirectories.add(new File(path));
+    }
+
+    final void defineModificationTime(String path, long time) {
+        testDependenciesFacade.modificationTimes.put(new File(path).getAbsoluteFile(), time);
+    }
+
+    final void deleteWrittenFile(String path) {
+        testDependenciesFacade.fileContents.remove(new File(path).getAbsoluteFile());
+    }
+
+    final void defineGeneratedFiles(String idlFileName, String... generatedPaths) {
+        TestIdlCompiler.generatedFiles.put(idlFileName, generatedPaths);
+    }
+
+    final void defineGeneratedContents(String contents) {
+        TestIdlCompiler.generatedContents = contents;
+    }
+
+    final long getModificationTime(String path) {
+        return testDependenciesFacade.lastModified(new File(path));
+    }
+
+    final void markSourcesUpToDate() {
+        testScanner.includedSources.clear();
+    }
+
+    final int getNumCompilerInvocations() {
+        return numCompilerInvocations;
+    }
+
+    final String getCompiledFile() {
+        return args == null ? null : args[args.length - 1];
+    }
+
     String getIdlCompilerClass() {
         return loaderFacade.getIdlCompilerClass();
     }
@@ -325,14 +494,38 @@ public class IDLJTestBase {
 
     static class TestIdlCompiler {
         private static String errorMessage;
+        private static String failingFile;
+        private static TestDependenciesFacade outputFacade;
+        private static Map<String, String[]> generatedFiles = new HashMap<>();
+        private static String generatedContents;
+        private static Runnable compileAction;
 
         public static void main(String... args) {
+            numCompilerInvocations++;
             IDLJTestBase.args = new String[ args.length];
             for (int i = 0; i < args.length; i++)
                 IDLJTestBase.args[i] = args[i].replace('\\','/');
 
             if ( errorMessage != null )
                 System.err.println( errorMessage );
+            for (String arg : args)
+                if (failingFile != null && arg.endsWith(failingFile))
+                    System.err.println( "(line 1): error in " + failingFile );
+            writeGeneratedFiles(args);
+            if (compileAction != null)
+                compileAction.run();
+        }
+
+        private static void writeGeneratedFiles(String... args) {
+            String targetDirectory = null;
+            for (int i = 0; i < args.length - 1; i++)
+                if (args[i].equals("-td") || (args[i].equals("-d") && targetDirectory == null))
+                    targetDirectory = args[i + 1];
+            for (String arg : args)
+                for (Map.Entry<String, String[]> entry : generatedFiles.entrySet())
+                    if (targetDirectory != null && arg.endsWith(entry.getKey()))
+                        for (String path : entry.getValue())
+                            outputFacade.writeGeneratedFile(new File(targetDirectory, path), generatedContents.getBytes());
         }
 
         @SuppressWarnings("unused")  // used via reflection
@@ -343,6 +536,21 @@ public class IDLJTestBase {
         static void defineErrorMessage(String message) {
             errorMessage = message;
         }
+
+        static void defineFailingFile(String fileName) {
+            failingFile = fileName;
+        }
+
+        static void defineCompileAction(Runnable action) {
+            compileAction = action;
+        }
+
+        static void defineOutputFacade(TestDependenciesFacade facade) {
+            outputFacade = facade;
+            generatedFiles.clear();
+            generatedContents = "";
+            compileAction = null;
+        }
     }
 
     private static class TestScanner implements SourceInclusionScanner {
@@ -353,11 +561,17 @@ public class IDLJTestBase {
         }
 
         public Set getIncludedSources(File sourceDir, File targetDir) throws InclusionScanException {
-            return includedSources;
+            Set<File> sources = new HashSet<>();
+            for (File source : includedSources)
+                if (source.getAbsolutePath().startsWith(sourceDir.getAbsolutePath() + File.separator))
+                    sources.add(source);
+            return sources;
         }
     }
 
     private static class TestLog implements org.apache.maven.plugin.logging.Log {
+        private List<String> infoMessages = new ArrayList<>();
+
         public boolean isDebugEnabled() {
             return false;
         }
@@ -376,6 +590,7 @@ public class IDLJTestBase {
         }
 
         public void info(CharSequence charSequence) {
+            infoMessages.add(charSequence.toString());
         }
 
         public void info(CharSequence charSequence, Throwable throwable) {
@@ -412,22 +627,76 @@ public class IDLJTestBase {
     }
 
     private class TestDependenciesFacade implements AbstractIDLJMojo.DependenciesFacade {
-        List<File> sourceFiles = new ArrayList<>();
-        List<File> targetFiles = new ArrayList<>();
-        List<File> writeableDirectories = new ArrayList<>();
+        List<File> writeableDirectories = Collections.synchronizedList(new ArrayList<File>());
         List<File> readOnlyDirectories = new ArrayList<>();
+        Map<File, byte[]> fileContents = new ConcurrentHashMap<>();
+        Map<File, Long> modificationTimes = new ConcurrentHashMap<>();
 
-        public SourceInclusionScanner createSourceInclusionScanner(int updatedWithinMsecs, Set includes, Set excludes) {
+        public SourceInclusionScanner createSourceInclusionScanner(int updatedWithinMsecs, Set includes, Set excludes,
+                                                                   int threads, BuildIndex index) {
             return testScanner;
         }
 
-        public void copyFile(File sourceFile, File targetFile) throws IOException {
-            sourceFiles.add(sourceFile);
-            targetFiles.add(targetFile);
+        public SourceInclusionScanner createSimpleSourceInclusionScanner(Set includes, Set excludes, int threads) {
+            return allSourcesScanner;
         }
 
-        public boolean exists(File directory) {
-            return isDirectory(directory);
+        public byte[] readFile(File file) throws IOException {
+            byte[] contents = fileContents.get(file.getAbsoluteFile());
+            if (contents == null)
+                throw new FileNotFoundException(file.toString());
+            return contents;
+        }
+
+        public void writeFile(File file, byte[] contents) throws IOException {
+            fileContents.put(file.getAbsoluteFile(), contents);
+            modificationTimes.put(file.getAbsoluteFile(), System.currentTimeMillis());
+        }
+
+        public void appendToFile(File file, byte[] contents) throws IOException {
+            byte[] existing = fileContents.get(file.getAbsoluteFile());
+            if (existing == null)
+                existing = new byte[0];
+            byte[] appended = Arrays.copyOf(existing, existing.length + contents.length);
+            System.arraycopy(contents, 0, appended, existing.length, contents.length);
+            fileContents.put(file.getAbsoluteFile(), appended);
+        }
+
+        void writeGeneratedFile(File file, byte[] contents) {
+            fileContents.put(file.getAbsoluteFile(), contents);
+            modificationTimes.put(file.getAbsoluteFile(), System.currentTimeMillis());
+        }
+
+        public void deleteFile(File file) throws IOException {
+            fileContents.remove(file.getAbsoluteFile());
+        }
+
+        public void deleteDirectory(File directory) throws IOException {
+            String prefix = directory.getAbsolutePath() + File.separator;
+            for (File file : fileContents.keySet())
+                if (file.getPath().startsWith(prefix))
+                    fileContents.remove(file);
+        }
+
+        public Map<String, Long> getModificationTimes(File directory) throws IOException {
+            String prefix = directory.getAbsolutePath() + File.separator;
+            Map<String, Long> times = new HashMap<>();
+            for (File file : fileContents.keySet())
+                if (file.getPath().startsWith(prefix))
+                    times.put(file.getPath().substring(prefix.length()).replace(File.separatorChar, '/'),
+                              lastModified(file));
+            return times;
+        }
+
+        public Map<String, String> getFileStamps(File directory) throws IOException {
+            Map<String, String> stamps = new HashMap<>();
+            for (Map.Entry<String, Long> entry : getModificationTimes(directory).entrySet())
+                stamps.put(entry.getKey(), entry.getValue() + "/" + length(new File(directory, entry.getKey())));
+            return stamps;
+        }
+
+        public boolean exists(File file) {
+            return isDirectory(file) || fileContents.containsKey(file.getAbsoluteFile());
         }
 
         public void createDirectory(File directory) {
@@ -441,5 +710,19 @@ public class IDLJTestBase {
         public boolean isDirectory(File file) {
             return writeableDirectories.contains(file) || readOnlyDirectories.contains(file);
         }
+
+        public long lastModified(File file) {
+            Long time = modificationTimes.get(file.getAbsoluteFile());
+            return time == null ? 0 : time;
+        }
+
+        public void setLastModified(File file, long time) {
+            modificationTimes.put(file.getAbsoluteFile(), time);
+        }
+
+        public long length(File file) {
+            byte[] contents = fileContents.get(file.getAbsoluteFile());
+            return contents == null ? 0 : contents.length;
+        }
     }
 }
@@ -0,0 +1,152 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for the publication of the generated files of changed declarations only.
+ */
+public class IdlDeclarationsTestCase extends IDLJTestBase {
+
+    private static final String IDL_FILE = "src/main/idl/dummy.idl";
+
+    private static final String OUTPUT_DIR = "target/main/generatedSources/idl/";
+
+    private static final String ORIGINAL =
+            "#pragma prefix \"acme.com\"\n" +
+            "module shop {\n" +
+            "  struct Item { long id; };\n" +
+            "  interface Cart { void add(in Item item); };\n" +
+            "  interface Clock { long now(); };\n" +
+            "};\n";
+
+    @Before
+    public void setUpFiles() throws Exception {
+        defineCompiler("glassfish");
+        enableIncrementalDeclarations();
+        defineWrittenFile(IDL_FILE, ORIGINAL.getBytes());
+        defineModificationTime(IDL_FILE, 1000);
+        defineGeneratedFiles("dummy.idl", "shop/Item.java", "shop/ItemHelper.java", "shop/Cart.java",
+                             "shop/_CartStub.java", "shop/Clock.java", "shop/ClockPOA.java");
+        defineGeneratedContents("generated 1");
+    }
+
+    @Test
+    public void declarationsIgnoreCommentsAndLayout() {
+        Map<String, String> hashes = IdlDeclarations.parse(ORIGINAL).getHashes();
+
+        String reformatted = ORIGINAL.replace("long now();", "long   now(); // the time\n");
+        assertThat(IdlDeclarations.parse(reformatted).getHashes(), equalTo(hashes));
+        assertThat(hashes.keySet(), hasItems("shop::Item", "shop::Cart", "shop::Clock"));
+    }
+
+    @Test
+    public void typedefsAndConstantsAreDeclarations() {
+        IdlDeclarations declarations =
+                IdlDeclarations.parse("typedef sequence<long, 4> Longs, Others;\nconst long MAX = 10;\n");
+
+        Set<String> expected = new TreeSet<>(Arrays.asList(IdlDeclarations.HEADER, "Longs", "Others", "MAX"));
+        assertThat(declarations.getHashes().keySet(), equalTo(expected));
+    }
+
+    @Test
+    public void changedDeclarationAffectsItsDependents() {
+        Map<String, String> recorded = IdlDeclarations.parse(ORIGINAL).getHashes();
+
+        IdlDeclarations changed = IdlDeclarations.parse(ORIGINAL.replace("long id;", "string id;"));
+
+        Set<String> expected = new TreeSet<>(Arrays.asList("shop::Item", "shop::Cart"));
+        assertThat(changed.findAffected(recorded), equalTo(expected));
+    }
+
+    @Test
+    public void changedHeaderAffectsAllDeclarations() {
+        Map<String, String> recorded = IdlDeclarations.parse(ORIGINAL).getHashes();
+
+        IdlDeclarations changed = IdlDeclarations.parse(ORIGINAL.replace("acme.com", "example.com"));
+
+        assertThat(changed.findAffected(recorded), nullValue());
+    }
+
+    @Test
+    public void generatedClassesBelongToTheirDeclarations() {
+        IdlDeclarations declarations = IdlDeclarations.parse(ORIGINAL);
+
+        assertThat(declarations.isAffected("com/acme/shop/_ClockStub.java", Collections.singleton("shop::Clock")),
+                   equalTo(true));
+        assertThat(declarations.isAffected("shop/ItemHelper.java", Collections.singleton("shop::Clock")),
+                   equalTo(false));
+        assertThat(declarations.isAffected("shop/CartPackage/Full.java", Collections.singleton("shop::Cart")),
+                   equalTo(true));
+        assertThat(declarations.isAffected("shop/Unknown.java", Collections.<String>emptySet()), equalTo(true));
+    }
+
+    @Test
+    public void whenDeclarationChanged_publishOnlyItsFiles() throws Exception {
+        mojo.execute();
+        defineWrittenFile(IDL_FILE, ORIGINAL.replace("long now();", "long now(); void reset();").getBytes());
+        defineModificationTime(IDL_FILE, 2000);
+        defineGeneratedContents("generated 2");
+
+        mojo.execute();
+
+        assertThat(new String(getWrittenFile(OUTPUT_DIR + "shop/Clock.java")), equalTo("generated 2"));
+        assertThat(new String(getWrittenFile(OUTPUT_DIR + "shop/ClockPOA.java")), equalTo("generated 2"));
+        assertThat(new String(getWrittenFile(OUTPUT_DIR + "shop/Cart.java")), equalTo("generated 1"));
+        assertThat(new String(getWrittenFile(OUTPUT_DIR + "shop/ItemHelper.java")), equalTo("generated 1"));
+    }
+
+    @Test
+    public void whenGeneratedFileMissing_publishIt() throws Exception {
+        mojo.execute();
+        deleteWrittenFile(OUTPUT_DIR + "shop/Cart.java");
+        defineGeneratedContents("generated 2");
+
+        mojo.execute();
+
+        assertThat(new String(getWrittenFile(OUTPUT_DIR + "shop/Cart.java")), equalTo("generated 2"));
+        assertThat(new String(getWrittenFile(OUTPUT_DIR + "shop/_CartStub.java")), equalTo("generated 1"));
+    }
+
+    @Test
+    public void whenOptionChanged_publishAllFiles() throws Exception {
+        mojo.execute();
+        defineGeneratedContents("generated 2");
+        createDefine(createSource(), "SYMBOL");
+
+        mojo.execute();
+
+        assertThat(new String(getWrittenFile(OUTPUT_DIR + "shop/Cart.java")), equalTo("generated 2"));
+        assertThat(new String(getWrittenFile(OUTPUT_DIR + "shop/Clock.java")), equalTo("generated 2"));
+    }
+}
@@ -0,0 +1,170 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+
+/**
+ * Tests for the recompilation of files whose includes have changed.
+ */
+public class IncludeGraphTestCase extends IDLJTestBase {
+
+    private static final String GRAPH_FILE = "target/main/timeStamps-includes.bin";
+
+    @Before
+    public void setUpFiles() throws Exception {
+        defineCompiler("glassfish");
+        defineIncludePaths("src/main/include");
+        defineWrittenFile("src/main/idl/dummy.idl", "#include <shared.idl>\ninterface Dummy {};\n".getBytes());
+        defineWrittenFile("src/main/include/shared.idl", "#include \"base.idl\"\n".getBytes());
+        defineWrittenFile("src/main/include/base.idl", "typedef long Id;\n".getBytes());
+        defineModificationTime("src/main/include/base.idl", 1000);
+    }
+
+    @Test
+    public void afterCompile_saveIncludeGraph() throws Exception {
+        mojo.execute();
+
+        assertThat(getWrittenFile(GRAPH_FILE), notNullValue());
+    }
+
+    @Test
+    public void whenIncludesUnchanged_dontRecompile() throws Exception {
+        mojo.execute();
+        markSourcesUpToDate();
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(1));
+    }
+
+    @Test
+    public void whenTransitiveIncludeChanged_recompileIncludingFile() throws Exception {
+        mojo.execute();
+        markSourcesUpToDate();
+        defineModificationTime("src/main/include/base.idl", 2000);
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+        assertThat(getCompiledFile(), endsWith("src/main/idl/dummy.idl"));
+    }
+
+    @Test
+    public void whenFileAlsoStale_compileItOnce() throws Exception {
+        mojo.execute();
+        defineModificationTime("src/main/include/base.idl", 2000);
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+    }
+
+    @Test
+    public void whenIncludeDirectoriesChanged_recompile() throws Exception {
+        mojo.execute();
+        markSourcesUpToDate();
+        defineIncludePaths("src/main/include", "src/main/other");
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+    }
+
+    @Test
+    public void whenContentCheckedAndIncludeOnlyTouched_dontRecompile() throws Exception {
+        defineStaleCheck("content");
+        mojo.execute();
+        markSourcesUpToDate();
+        defineModificationTime("src/main/include/base.idl", 2000);
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(1));
+    }
+
+    @Test
+    public void whenContentCheckedAndIncludeEdited_recompileIncludingFile() throws Exception {
+        defineStaleCheck("content");
+        mojo.execute();
+        markSourcesUpToDate();
+        defineWrittenFile("src/main/include/base.idl", "typedef long long Id;\n".getBytes());
+        defineModificationTime("src/main/include/base.idl", 2000);
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+        assertThat(getCompiledFile(), endsWith("src/main/idl/dummy.idl"));
+    }
+
+    @Test
+    public void whenFileNoLongerIncluded_dropItFromGraph() throws Exception {
+        mojo.execute();
+        defineWrittenFile("src/main/idl/dummy.idl", "interface Dummy {};\n".getBytes());
+        defineModificationTime("src/main/idl/dummy.idl", 2000);
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+        IncludeGraph graph = IncludeGraph.fromBytes(getWrittenFile(GRAPH_FILE), Collections.<File>emptyList(), null);
+        assertThat(graph.size(), equalTo(1));
+    }
+
+    @Test
+    public void whenIncludeReportedChanged_recompileIncludingFile() throws Exception {
+        mojo.execute();
+        defineModificationTime("src/main/include/base.idl", 2000);
+
+        mojo.generate(Collections.singleton(new File("src/main/include/base.idl").getAbsoluteFile()));
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+        assertThat(getCompiledFile(), endsWith("src/main/idl/dummy.idl"));
+    }
+
+    @Test
+    public void whenSourceReportedChanged_recompileIt() throws Exception {
+        mojo.execute();
+        defineModificationTime("src/main/idl/dummy.idl", 5000);
+
+        mojo.generate(Collections.singleton(new File("src/main/idl/dummy.idl").getAbsoluteFile()));
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+    }
+
+    @Test
+    public void whenChangeNotReported_dontLookForIt() throws Exception {
+        mojo.execute();
+        defineModificationTime("src/main/include/base.idl", 2000);
+        defineWrittenFile("src/main/include/other.idl", "typedef long Other;\n".getBytes());
+
+        mojo.generate(Collections.singleton(new File("src/main/include/other.idl").getAbsoluteFile()));
+
+        assertThat(getNumCompilerInvocations(), equalTo(1));
+    }
+}
@@ -0,0 +1,140 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for the use by the test goal of the files generated by the main goal.
+ */
+public class MainOutputReuseTestCase extends IDLJTestBase {
+
+    private static final String MAIN_IDL_FILE = "src/main/idl/dummy.idl";
+
+    private static final String TEST_IDL_FILE = "src/test/idl/dummy.idl";
+
+    private static final String MAIN_GENERATED_FILE = "target/main/generatedSources/idl/Dummy.java";
+
+    private static final String TEST_GENERATED_FILE = "target/test/generatedSources/idl/Dummy.java";
+
+    private TestIDLJMojo testMojo;
+
+    @Before
+    public void setUpFiles() throws Exception {
+        defineCompiler("glassfish");
+        defineWrittenFile(MAIN_IDL_FILE, "interface Dummy {};\n".getBytes());
+        defineGeneratedFiles("dummy.idl", "Dummy.java");
+        defineGeneratedContents("interface Dummy {}");
+        mojo.execute();
+
+        testMojo = createTestMojo();
+        useTestSources();
+    }
+
+    private void useTestSources() {
+        clearIncludedSources();
+        addIncludedSource(TEST_IDL_FILE);
+    }
+
+    private void useMainSources() {
+        clearIncludedSources();
+        addIncludedSource(MAIN_IDL_FILE);
+    }
+
+    @Test
+    public void whenMainGoalCompiledSameFile_dontCompile() throws Exception {
+        defineWrittenFile(TEST_IDL_FILE, "interface Dummy {};\n".getBytes());
+
+        testMojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(1));
+        assertThat(getWrittenFile(TEST_GENERATED_FILE), nullValue());
+    }
+
+    @Test
+    public void whenContentsDiffer_compile() throws Exception {
+        defineWrittenFile(TEST_IDL_FILE, "interface Dummy { void ping(); };\n".getBytes());
+
+        testMojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+        assertThat(getWrittenFile(TEST_GENERATED_FILE), notNullValue());
+    }
+
+    @Test
+    public void whenFileOnlyUsedByTests_compile() throws Exception {
+        defineWrittenFile(TEST_IDL_FILE, "interface Dummy {};\n".getBytes());
+        defineWrittenFile("src/test/idl/extra.idl", "interface Extra {};\n".getBytes());
+        addIncludedSource("src/test/idl/extra.idl");
+
+        testMojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+        assertThat(getCompiledFile(), equalTo("src/test/idl/extra.idl"));
+    }
+
+    @Test
+    public void whenMainGoalRecompilesDifferently_compile() throws Exception {
+        defineWrittenFile(TEST_IDL_FILE, "interface Dummy {};\n".getBytes());
+        testMojo.execute();
+        defineWrittenFile(MAIN_IDL_FILE, "interface Dummy { void ping(); };\n".getBytes());
+        defineModificationTime(MAIN_IDL_FILE, 2000);
+        useMainSources();
+        mojo.execute();
+        useTestSources();
+        markSourcesUpToDate();
+
+        testMojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(3));
+        assertThat(getWrittenFile(TEST_GENERATED_FILE), notNullValue());
+    }
+
+    @Test
+    public void whenMainOutputMissing_compile() throws Exception {
+        defineWrittenFile(TEST_IDL_FILE, "interface Dummy {};\n".getBytes());
+        testMojo.execute();
+        deleteWrittenFile(MAIN_GENERATED_FILE);
+        markSourcesUpToDate();
+
+        testMojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+    }
+
+    @Test
+    public void whenFileBecomesReusable_deleteFilesGeneratedBefore() throws Exception {
+        defineWrittenFile(TEST_IDL_FILE, "interface Dummy { void ping(); };\n".getBytes());
+        testMojo.execute();
+        defineWrittenFile(TEST_IDL_FILE, "interface Dummy {};\n".getBytes());
+        defineModificationTime(TEST_IDL_FILE, 2000);
+
+        testMojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+        assertThat(getWrittenFile(TEST_GENERATED_FILE), nullValue());
+    }
+}
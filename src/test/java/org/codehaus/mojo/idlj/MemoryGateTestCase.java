@@ -0,0 +1,301 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+/**
+ * Tests for holding back compiles while the heap is short.
+ */
+public class MemoryGateTestCase {
+
+    private static final long MB = 1024 * 1024;
+
+    private TestMemoryBean memory = new TestMemoryBean(1000 * MB);
+
+    private MemoryGate gate = new MemoryGate(memory, 0.1);
+
+    @Test
+    public void headroomExcludesUsedMemoryAndReserve() throws Exception {
+        memory.used = 400 * MB;
+
+        assertThat(gate.getHeadroom(), equalTo(500 * MB));
+    }
+
+    @Test
+    public void headroomExcludesOnlyHeapLeftAfterCollection() throws Exception {
+        TestPoolBean pool = new TestPoolBean();
+        pool.used = 900 * MB;
+        pool.usedAfterCollection = 300 * MB;
+        MemoryGate pooledGate = new MemoryGate(memory, Collections.<MemoryPoolMXBean>singletonList(pool), 0.1);
+
+        assertThat(pooledGate.getHeadroom(), equalTo(600 * MB));
+    }
+
+    @Test
+    public void whenAllocationsFit_admitConcurrently() throws Exception {
+        gate.acquire(300 * MB);
+
+        assertThat(gate.acquire(300 * MB), equalTo(false));
+        assertThat(gate.getInFlight(), equalTo(2));
+    }
+
+    @Test
+    public void whenNothingInFlight_admitEvenIfHeapIsFull() throws Exception {
+        memory.used = 950 * MB;
+
+        gate.acquire(300 * MB);
+
+        assertThat(gate.getInFlight(), equalTo(1));
+    }
+
+    @Test
+    public void whenAllocationDoesNotFit_holdBackUntilMemoryIsReleased() throws Exception {
+        gate.acquire(600 * MB);
+        CountDownLatch admitted = acquireInBackground(600 * MB);
+
+        assertThat(admitted.await(300, TimeUnit.MILLISECONDS), equalTo(false));
+        gate.release(600 * MB);
+        assertThat(admitted.await(10, TimeUnit.SECONDS), equalTo(true));
+    }
+
+    @Test
+    public void whenGarbageCollected_admitWaitingCompile() throws Exception {
+        memory.used = 500 * MB;
+        gate.acquire(100 * MB);
+        CountDownLatch admitted = acquireInBackground(350 * MB);
+
+        assertThat(admitted.await(300, TimeUnit.MILLISECONDS), equalTo(false));
+        memory.used = 100 * MB;
+        assertThat(admitted.await(10, TimeUnit.SECONDS), equalTo(true));
+    }
+
+    @Test
+    public void whenExclusiveRequested_holdBackOtherCompiles() throws Exception {
+        gate.acquire(0);
+        final CountDownLatch exclusive = new CountDownLatch(1);
+        new Thread() {
+            public void run() {
+                try {
+                    gate.acquireExclusive();
+                    exclusive.countDown();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        }.start();
+
+        assertThat(exclusive.await(300, TimeUnit.MILLISECONDS), equalTo(false));
+        CountDownLatch admitted = acquireInBackground(0);
+        gate.release(0);
+        assertThat(exclusive.await(10, TimeUnit.SECONDS), equalTo(true));
+        assertThat(admitted.await(300, TimeUnit.MILLISECONDS), equalTo(false));
+        gate.releaseExclusive();
+        assertThat(admitted.await(10, TimeUnit.SECONDS), equalTo(true));
+    }
+
+    @Test
+    public void whenCompileHoldsMemory_measurePeakHeapGrowth() throws Exception {
+        MemoryGate heapGate = new MemoryGate();
+        long before = heapGate.startMeasurement();
+        if (before < 0)
+            return;
+
+        byte[][] retained = new byte[100][];
+        for (int i = 0; i < retained.length; i++)
+            retained[i] = new byte[100000];
+
+        assertThat(heapGate.endMeasurement(before), greaterThan(5000000L));
+        assertThat(retained.length, equalTo(100));
+    }
+
+    @Test
+    public void whenCompilesOverlap_measureOnlyOneAtATime() throws Exception {
+        TestPoolBean pool = new TestPoolBean();
+        pool.used = 100 * MB;
+        MemoryGate pooledGate = new MemoryGate(memory, Collections.<MemoryPoolMXBean>singletonList(pool), 0.1);
+
+        long first = pooledGate.startMeasurement();
+        long second = pooledGate.startMeasurement();
+        pool.peak = 250 * MB;
+
+        assertThat(second, equalTo(-1L));
+        assertThat(pool.numResets, equalTo(1));
+        assertThat(pooledGate.endMeasurement(second), equalTo(-1L));
+        assertThat(pooledGate.endMeasurement(first), equalTo(150 * MB));
+        assertThat(pooledGate.startMeasurement(), equalTo(100 * MB));
+    }
+
+    @Test
+    public void whenHeapPoolsUnknown_reportNoMeasurement() throws Exception {
+        assertThat(gate.endMeasurement(gate.startMeasurement()), equalTo(-1L));
+    }
+
+    private CountDownLatch acquireInBackground(final long bytes) {
+        final CountDownLatch admitted = new CountDownLatch(1);
+        new Thread() {
+            public void run() {
+                try {
+                    gate.acquire(bytes);
+                    admitted.countDown();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        }.start();
+        return admitted;
+    }
+
+    /**
+     * A heap pool with settable usage, which counts the resets of its peak.
+     */
+    private static class TestPoolBean implements MemoryPoolMXBean {
+        private volatile long used;
+        private volatile long usedAfterCollection;
+        private volatile long peak;
+        private int numResets;
+
+        public String getName() {
+            return "test";
+        }
+
+        public MemoryType getType() {
+            return MemoryType.HEAP;
+        }
+
+        public MemoryUsage getUsage() {
+            return new MemoryUsage(0, used, used, -1);
+        }
+
+        public MemoryUsage getPeakUsage() {
+            return new MemoryUsage(0, peak, peak, -1);
+        }
+
+        public void resetPeakUsage() {
+            numResets++;
+            peak = used;
+        }
+
+        public boolean isValid() {
+            return true;
+        }
+
+        public String[] getMemoryManagerNames() {
+            return new String[0];
+        }
+
+        public long getUsageThreshold() {
+            return 0;
+        }
+
+        public void setUsageThreshold(long threshold) {
+        }
+
+        public boolean isUsageThresholdExceeded() {
+            return false;
+        }
+
+        public long getUsageThresholdCount() {
+            return 0;
+        }
+
+        public boolean isUsageThresholdSupported() {
+            return false;
+        }
+
+        public long getCollectionUsageThreshold() {
+            return 0;
+        }
+
+        public void setCollectionUsageThreshold(long threshold) {
+        }
+
+        public boolean isCollectionUsageThresholdExceeded() {
+            return false;
+        }
+
+        public long getCollectionUsageThresholdCount() {
+            return 0;
+        }
+
+        public MemoryUsage getCollectionUsage() {
+            return new MemoryUsage(0, usedAfterCollection, usedAfterCollection, -1);
+        }
+
+        public boolean isCollectionUsageThresholdSupported() {
+            return true;
+        }
+
+        public ObjectName getObjectName() {
+            return null;
+        }
+    }
+
+    /**
+     * Reports a heap of fixed size with a settable usage.
+     */
+    private static class TestMemoryBean implements MemoryMXBean {
+        private final long max;
+        private volatile long used;
+
+        TestMemoryBean(long max) {
+            this.max = max;
+        }
+
+        public MemoryUsage getHeapMemoryUsage() {
+            return new MemoryUsage(0, used, max, max);
+        }
+
+        public int getObjectPendingFinalizationCount() {
+            return 0;
+        }
+
+        public MemoryUsage getNonHeapMemoryUsage() {
+            return new MemoryUsage(0, 0, 0, -1);
+        }
+
+        public boolean isVerbose() {
+            return false;
+        }
+
+        public void setVerbose(boolean value) {
+        }
+
+        public void gc() {
+        }
+
+        public ObjectName getObjectName() {
+            return null;
+        }
+    }
+}
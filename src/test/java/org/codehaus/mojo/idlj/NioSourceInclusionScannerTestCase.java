@@ -0,0 +1,145 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Tests for the scanning of the source directory for stale files, on a real file system.
+ */
+public class NioSourceInclusionScannerTestCase {
+
+    private Path root;
+
+    private Path sourceDir;
+
+    private BuildIndex index = new BuildIndex();
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("idlj-scan");
+        sourceDir = root.resolve("idl");
+        Files.createDirectories(sourceDir);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+                Files.delete(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Test
+    public void patternsMatchLikeAnt() {
+        assertThat(NioSourceInclusionScanner.compile("**/*.idl").matcher("a.idl").matches(), equalTo(true));
+        assertThat(NioSourceInclusionScanner.compile("**/*.idl").matcher("a/b/c.idl").matches(), equalTo(true));
+        assertThat(NioSourceInclusionScanner.compile("*.idl").matcher("a/c.idl").matches(), equalTo(false));
+        assertThat(NioSourceInclusionScanner.compile("a/**").matcher("a").matches(), equalTo(true));
+        assertThat(NioSourceInclusionScanner.compile("a/**").matcher("ab/c.idl").matches(), equalTo(false));
+        assertThat(NioSourceInclusionScanner.compile("?.idl").matcher("ab.idl").matches(), equalTo(false));
+    }
+
+    @Test
+    public void whenNotIndexedOrChanged_fileIsStale() throws Exception {
+        createFile("new.idl", 2000);
+        createFile("modified.idl", 2000);
+        index.record("modified.idl", 15, 1000);
+        createFile("reverted.idl", 1000);
+        index.record("reverted.idl", 15, 2000);
+        createFile("a/current.idl", 2000);
+        index.record("a/current.idl", 15, 2000);
+
+        assertThat(scan(true, 1, "**/*.idl"), equalTo(relativePaths("new.idl", "modified.idl", "reverted.idl")));
+    }
+
+    @Test
+    public void whenNotStaleOnly_returnAllSelectedFiles() throws Exception {
+        createFile("a.idl", 2000);
+        index.record("a.idl", 15, 2000);
+        createFile("b.txt", 2000);
+
+        assertThat(scan(false, 1, "**/*.idl"), equalTo(relativePaths("a.idl")));
+    }
+
+    @Test
+    public void skipExcludedAndVersionControlDirectories() throws Exception {
+        createFile("a.idl", 2000);
+        createFile("generated/b.idl", 2000);
+        createFile(".git/c.idl", 2000);
+
+        assertThat(scan(true, 1, "**/*.idl", "generated/"), equalTo(relativePaths("a.idl")));
+    }
+
+    @Test
+    public void whenParallel_findSameFiles() throws Exception {
+        createFile("a.idl", 2000);
+        createFile("x/b.idl", 2000);
+        createFile("y/z/c.idl", 2000);
+        index.record("y/z/c.idl", 15, 2000);
+
+        assertThat(scan(true, 4, "**/*.idl"), equalTo(relativePaths("a.idl", "x/b.idl")));
+    }
+
+    private void createFile(String path, long modificationTime) throws IOException {
+        Path file = sourceDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, "interface A {};".getBytes());
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modificationTime));
+    }
+
+    private Set<File> scan(boolean staleOnly, int threads, String include, String... excludes) throws Exception {
+        NioSourceInclusionScanner scanner = new NioSourceInclusionScanner(staleOnly ? index : null, 0,
+                new HashSet<>(Arrays.asList(include)), new HashSet<>(Arrays.asList(excludes)), threads);
+        return new TreeSet<>(scanner.getIncludedSources(sourceDir.toFile(), null));
+    }
+
+    private Set<File> relativePaths(String... paths) {
+        Set<File> files = new TreeSet<>();
+        for (String path : paths)
+            files.add(new File(sourceDir.toFile(), path));
+        return files;
+    }
+}
@@ -0,0 +1,103 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for the recorded generated files of each IDL file.
+ */
+public class OutputManifestTestCase extends IDLJTestBase {
+
+    private static final String MANIFEST_FILE = "target/main/timeStamps-outputs.properties";
+
+    private static final String OUTPUT_DIR = "target/main/generatedSources/idl/";
+
+    @Before
+    public void setUpFiles() throws Exception {
+        defineCompiler("glassfish");
+        defineWrittenFile("src/main/idl/dummy.idl", new byte[0]);
+        defineGeneratedFiles("dummy.idl", "Dummy.java", "DummyHelper.java");
+    }
+
+    @Test
+    public void afterCompile_recordGeneratedFiles() throws Exception {
+        mojo.execute();
+
+        OutputManifest manifest = OutputManifest.fromBytes(getWrittenFile(MANIFEST_FILE));
+        assertThat(manifest.getOutputs("dummy.idl"), contains("Dummy.java", "DummyHelper.java"));
+    }
+
+    @Test
+    public void whenIdlFileDeleted_deleteItsGeneratedFiles() throws Exception {
+        mojo.execute();
+        markSourcesUpToDate();
+        deleteWrittenFile("src/main/idl/dummy.idl");
+
+        mojo.execute();
+
+        assertThat(getWrittenFile(OUTPUT_DIR + "Dummy.java"), nullValue());
+        assertThat(OutputManifest.fromBytes(getWrittenFile(MANIFEST_FILE)).getIdlFiles(), empty());
+    }
+
+    @Test
+    public void whenGeneratedFileDeleted_recompile() throws Exception {
+        mojo.execute();
+        markSourcesUpToDate();
+        deleteWrittenFile(OUTPUT_DIR + "DummyHelper.java");
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+        assertThat(getWrittenFile(OUTPUT_DIR + "DummyHelper.java"), notNullValue());
+    }
+
+    @Test
+    public void whenFileNoLongerGenerated_deleteIt() throws Exception {
+        mojo.execute();
+        defineModificationTime("src/main/idl/dummy.idl", 5000);
+        defineGeneratedFiles("dummy.idl", "Dummy.java");
+
+        mojo.execute();
+
+        assertThat(getWrittenFile(OUTPUT_DIR + "Dummy.java"), notNullValue());
+        assertThat(getWrittenFile(OUTPUT_DIR + "DummyHelper.java"), nullValue());
+    }
+
+    @Test
+    public void whenOtherIdlFileGeneratesSameFile_keepIt() {
+        OutputManifest manifest = new OutputManifest();
+        manifest.record("a.idl", new HashSet<>(Arrays.asList("A.java", "Shared.java")));
+        manifest.record("b.idl", new HashSet<>(Arrays.asList("B.java", "Shared.java")));
+
+        assertThat(manifest.forget("a.idl"), contains("A.java"));
+    }
+}
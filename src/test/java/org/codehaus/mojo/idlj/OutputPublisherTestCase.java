@@ -0,0 +1,97 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for the publication of generated files from the staging directories.
+ */
+public class OutputPublisherTestCase extends IDLJTestBase {
+
+    private static final String GENERATED_FILE = "target/main/generatedSources/idl/Dummy.java";
+
+    private static final String CHANGED_FILES_LIST = "target/main/timeStamps-changed.txt";
+
+    @Before
+    public void setUpFiles() throws Exception {
+        defineCompiler("glassfish");
+        defineWrittenFile("src/main/idl/dummy.idl", new byte[0]);
+        defineGeneratedFiles("dummy.idl", "Dummy.java");
+        defineGeneratedContents("interface Dummy {}");
+    }
+
+    @Test
+    public void afterCompile_publishGeneratedFiles() throws Exception {
+        mojo.execute();
+
+        assertThat(new String(getWrittenFile(GENERATED_FILE)), equalTo("interface Dummy {}"));
+        assertThat(getWrittenFile("target/main/timeStamps-staging/1/Dummy.java"), nullValue());
+    }
+
+    @Test
+    public void whenContentsUnchanged_dontRewriteFile() throws Exception {
+        mojo.execute();
+        defineModificationTime(GENERATED_FILE, 1000);
+        defineModificationTime("src/main/idl/dummy.idl", 5000);
+
+        mojo.execute();
+
+        assertThat(getModificationTime(GENERATED_FILE), equalTo(1000L));
+    }
+
+    @Test
+    public void whenContentsChanged_rewriteFile() throws Exception {
+        mojo.execute();
+        defineModificationTime(GENERATED_FILE, 1000);
+        defineModificationTime("src/main/idl/dummy.idl", 5000);
+        defineGeneratedContents("interface Dummy { void ping(); }");
+
+        mojo.execute();
+
+        assertThat(getModificationTime(GENERATED_FILE), not(equalTo(1000L)));
+        assertThat(new String(getWrittenFile(GENERATED_FILE)), equalTo("interface Dummy { void ping(); }"));
+    }
+
+    @Test
+    public void afterCompile_listChangedFiles() throws Exception {
+        mojo.execute();
+
+        assertThat(new String(getWrittenFile(CHANGED_FILES_LIST)),
+                   equalTo(new File(GENERATED_FILE).getAbsolutePath() + "\n"));
+    }
+
+    @Test
+    public void whenNothingChanged_listNoFiles() throws Exception {
+        mojo.execute();
+
+        mojo.execute();
+
+        assertThat(getWrittenFile(CHANGED_FILES_LIST), nullValue());
+    }
+}
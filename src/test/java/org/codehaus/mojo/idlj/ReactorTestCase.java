@@ -0,0 +1,231 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the compilation of the idl files of all the modules of a reactor in a single pass.
+ */
+public class ReactorTestCase extends IDLJTestBase {
+
+    private MavenProject first;
+
+    private MavenProject second;
+
+    @Before
+    public void setUpModules() throws Exception {
+        clearIncludedSources();
+        defineGeneratedFiles("first.idl", "First.java");
+        defineGeneratedFiles("second.idl", "Second.java");
+        defineGeneratedContents("interface Generated {}");
+        first = createModule("modules/first", "<compiler>glassfish</compiler>");
+        second = createModule("modules/second", "<compiler>glassfish</compiler>");
+        defineModuleFile("modules/first/src/main/idl/first.idl");
+        defineModuleFile("modules/second/src/main/idl/second.idl");
+    }
+
+    private void defineModuleFile(String path) {
+        defineWrittenFile(path, "interface Generated {};\n".getBytes());
+        addIncludedSource(path);
+    }
+
+    @Test
+    public void compileEachModuleIntoItsOutputDirectory() throws Exception {
+        createReactorMojo(first, second).execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+        assertThat(getWrittenFile("modules/first/target/generated-sources/idl/First.java"), notNullValue());
+        assertThat(getWrittenFile("modules/second/target/generated-sources/idl/Second.java"), notNullValue());
+        assertThat(getWrittenFile("modules/first/target/generated-sources/idl/Second.java"), nullValue());
+    }
+
+    @Test
+    public void registerCompileSourceRootOfEachModule() throws Exception {
+        createReactorMojo(first, second).execute();
+
+        assertThat(getCompileSourceRoots(first),
+                   hasItem(new File("modules/first/target/generated-sources/idl").getAbsolutePath()));
+        assertThat(getCompileSourceRoots(second),
+                   hasItem(new File("modules/second/target/generated-sources/idl").getAbsolutePath()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> getCompileSourceRoots(MavenProject module) {
+        return (List<String>) module.getCompileSourceRoots();
+    }
+
+    @Test
+    public void keepBuildStateOfEachModule() throws Exception {
+        createReactorMojo(first, second).execute();
+
+        assertThat(getWrittenFile("modules/first/target/idlj-timestamp-digest.txt"), notNullValue());
+        assertThat(getWrittenFile("modules/second/target/idlj-timestamp-digest.txt"), notNullValue());
+    }
+
+    @Test
+    public void applyReactorSettingsToEachModule() throws Exception {
+        IDLJReactorMojo reactorMojo = createReactorMojo(first, second);
+        defineStaleCheck(reactorMojo, "content");
+
+        reactorMojo.execute();
+
+        assertThat(getWrittenFile("modules/first/target/idlj-timestamp-hashes.properties"), notNullValue());
+        assertThat(getWrittenFile("modules/second/target/idlj-timestamp-hashes.properties"), notNullValue());
+    }
+
+    @Test
+    public void whenModuleConfiguresStaleCheck_useIt() throws Exception {
+        MavenProject third = createModule("modules/third",
+                "<compiler>glassfish</compiler><staleCheck>content</staleCheck>");
+        defineGeneratedFiles("third.idl", "Third.java");
+        defineModuleFile("modules/third/src/main/idl/third.idl");
+
+        createReactorMojo(first, third).execute();
+
+        assertThat(getWrittenFile("modules/third/target/idlj-timestamp-hashes.properties"), notNullValue());
+        assertThat(getWrittenFile("modules/first/target/idlj-timestamp-hashes.properties"), nullValue());
+    }
+
+    @Test
+    public void whenModuleConfiguresTimestampDirectory_keepBuildStateThere() throws Exception {
+        MavenProject third = createModule("modules/third",
+                "<compiler>glassfish</compiler><timestampDirectory>target/state/idl</timestampDirectory>");
+        defineGeneratedFiles("third.idl", "Third.java");
+        defineModuleFile("modules/third/src/main/idl/third.idl");
+
+        createReactorMojo(third).execute();
+
+        assertThat(getWrittenFile("modules/third/target/state/idl-digest.txt"), notNullValue());
+        assertThat(getWrittenFile("modules/third/target/idlj-timestamp-digest.txt"), nullValue());
+    }
+
+    @Test
+    public void whenModuleSettingHoldsUnresolvedExpression_useReactorSetting() throws Exception {
+        MavenProject third = createModule("modules/third",
+                "<compiler>glassfish</compiler><staleCheck>${idlj.staleCheck}</staleCheck>");
+        defineGeneratedFiles("third.idl", "Third.java");
+        defineModuleFile("modules/third/src/main/idl/third.idl");
+
+        createReactorMojo(third).execute();
+
+        assertThat(getWrittenFile("modules/third/target/idlj-timestamp-digest.txt"), notNullValue());
+        assertThat(getWrittenFile("modules/third/target/idlj-timestamp-hashes.properties"), nullValue());
+    }
+
+    @Test
+    public void whenModuleConfiguresDirectories_useThem() throws Exception {
+        MavenProject third = createModule("modules/third",
+                "<compiler>glassfish</compiler><sourceDirectory>idl</sourceDirectory>"
+                        + "<outputDirectory>target/idl-java</outputDirectory>");
+        defineDirectory(new File("modules/third/idl").getAbsolutePath());
+        defineGeneratedFiles("third.idl", "Third.java");
+        defineModuleFile("modules/third/idl/third.idl");
+
+        createReactorMojo(third).execute();
+
+        assertThat(getWrittenFile("modules/third/target/idl-java/Third.java"), notNullValue());
+    }
+
+    @Test
+    public void whenModuleConfiguresSources_useThem() throws Exception {
+        MavenProject third = createModule("modules/third",
+                "<compiler>glassfish</compiler><sources><source><includes><include>kept.idl</include></includes>"
+                        + "</source></sources>");
+        defineModuleFile("modules/third/src/main/idl/kept.idl");
+        defineModuleFile("modules/third/src/main/idl/ignored.idl");
+
+        createReactorMojo(third).execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(1));
+        assertThat(getCompiledFile(), containsString("kept.idl"));
+    }
+
+    @Test
+    public void whenModuleDoesNotRunGenerateGoal_skipIt() throws Exception {
+        MavenProject other = createModule("modules/other", null);
+        defineModuleFile("modules/other/src/main/idl/other.idl");
+
+        createReactorMojo(first, other).execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(1));
+        assertThat(other.getCompileSourceRoots().size(), equalTo(0));
+    }
+
+    @Test
+    public void whenNothingChanged_skipModules() throws Exception {
+        createReactorMojo(first, second).execute();
+
+        createReactorMojo(first, second).execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+    }
+
+    @Test
+    public void whenModuleFails_reportIt() throws Exception {
+        TestIdlCompiler.defineFailingFile("second.idl");
+        IDLJReactorMojo reactorMojo = createReactorMojo(first, second);
+        setFailOnError(reactorMojo);
+
+        try {
+            reactorMojo.execute();
+            fail("Did not report failure");
+        } catch (MojoExecutionException e) {
+            assertThat(e.getMessage(), containsString("test:modules/second"));
+            assertThat(getWrittenFile("modules/first/target/generated-sources/idl/First.java"), notNullValue());
+        }
+    }
+
+    @Test
+    public void whenModuleDependencyFails_skipDependentModule() throws Exception {
+        TestIdlCompiler.defineFailingFile("first.idl");
+        Dependency dependency = new Dependency();
+        dependency.setGroupId("test");
+        dependency.setArtifactId("modules/first");
+        dependency.setVersion("1.0");
+        second.getModel().addDependency(dependency);
+        IDLJReactorMojo reactorMojo = createReactorMojo(first, second);
+        setFailOnError(reactorMojo);
+
+        try {
+            reactorMojo.execute();
+            fail("Did not report failure");
+        } catch (MojoExecutionException e) {
+            assertThat(e.getMessage(), containsString("test:modules/first"));
+            assertThat(e.getMessage(), containsString("test:modules/second"));
+            assertThat(getWrittenFile("modules/second/target/generated-sources/idl/Second.java"), nullValue());
+        }
+    }
+}
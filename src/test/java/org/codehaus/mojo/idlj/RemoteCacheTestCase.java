@@ -0,0 +1,163 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for the remote tier of the generated source cache, served by an in-memory HTTP server.
+ */
+public class RemoteCacheTestCase extends IDLJTestBase {
+
+    private static final String IDL_FILE = "src/main/idl/dummy.idl";
+
+    private static final String GENERATED_FILE = "target/main/generatedSources/idl/Dummy.java";
+
+    private final Map<String, byte[]> entries = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+
+    private String serverUrl;
+
+    @Before
+    public void setUpServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/cache/", new EntryHandler());
+        server.start();
+        serverUrl = "http://localhost:" + server.getAddress().getPort() + "/cache";
+
+        defineCompiler("glassfish");
+        setFailOnError();
+        enableCache("target/idlj-cache");
+        defineWrittenFile(IDL_FILE, "interface Dummy {};\n".getBytes());
+        defineGeneratedFiles("dummy.idl", "Dummy.java");
+        defineGeneratedContents("interface Dummy {}");
+    }
+
+    @After
+    public void stopServer() {
+        if (server != null)
+            server.stop(0);
+    }
+
+    @Test
+    public void whenEntryMissing_returnNull() throws Exception {
+        RemoteCache remote = new RemoteCache(serverUrl, 2000, false, mojo.getLog());
+
+        assertThat(remote.fetch("0123"), nullValue());
+    }
+
+    @Test
+    public void whenStored_fetchEntry() throws Exception {
+        RemoteCache remote = new RemoteCache(serverUrl, 2000, false, mojo.getLog());
+
+        remote.store("0123", "bundle".getBytes());
+
+        assertThat(new String(remote.fetch("0123")), equalTo("bundle"));
+    }
+
+    @Test
+    public void afterCompile_uploadEntry() throws Exception {
+        defineRemoteCache(serverUrl, false);
+
+        mojo.execute();
+
+        assertThat(entries.size(), equalTo(1));
+    }
+
+    @Test
+    public void whenReadOnly_dontUploadEntry() throws Exception {
+        defineRemoteCache(serverUrl, true);
+
+        mojo.execute();
+
+        assertThat(entries.size(), equalTo(0));
+    }
+
+    @Test
+    public void whenUploadedByOtherBuild_restoreWithoutCompiling() throws Exception {
+        defineRemoteCache(serverUrl, false);
+        mojo.execute();
+        deleteWrittenFile(GENERATED_FILE);
+        enableCache("target/other-idlj-cache");
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(1));
+        assertThat(new String(getWrittenFile(GENERATED_FILE)), equalTo("interface Dummy {}"));
+    }
+
+    @Test
+    public void whenServerUnreachable_compile() throws Exception {
+        server.stop(0);
+        server = null;
+        defineRemoteCache(serverUrl, false);
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(1));
+        assertThat(new String(getWrittenFile(GENERATED_FILE)), equalTo("interface Dummy {}"));
+    }
+
+    private class EntryHandler implements HttpHandler {
+
+        public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            if (exchange.getRequestMethod().equals("PUT")) {
+                entries.put(path, readAll(exchange.getRequestBody()));
+                exchange.sendResponseHeaders(201, -1);
+            } else if (entries.containsKey(path)) {
+                byte[] entry = entries.get(path);
+                exchange.sendResponseHeaders(200, entry.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(entry);
+                }
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+            }
+            exchange.close();
+        }
+
+        private byte[] readAll(InputStream in) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int n = in.read(buffer); n > 0; n = in.read(buffer))
+                bytes.write(buffer, 0, n);
+            return bytes.toByteArray();
+        }
+    }
+}
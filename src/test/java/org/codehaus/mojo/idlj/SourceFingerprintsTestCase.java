@@ -0,0 +1,113 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+
+/**
+ * Tests for the recompilation of sources whose options or compiler have changed.
+ */
+public class SourceFingerprintsTestCase extends IDLJTestBase {
+
+    private static final String FINGERPRINTS_FILE = "target/main/timeStamps-fingerprints.properties";
+
+    private Source first;
+    private Source second;
+
+    @Before
+    public void setUpSources() throws Exception {
+        defineCompiler("glassfish");
+        first = createSource();
+        defineIncludes(first, "first/*.idl");
+        second = createSource();
+        defineIncludes(second, "second/*.idl");
+        addIncludedSource("src/main/idl/first/a.idl");
+        addIncludedSource("src/main/idl/second/b.idl");
+    }
+
+    @Test
+    public void afterCompile_saveFingerprints() throws Exception {
+        mojo.execute();
+
+        assertThat(getWrittenFile(FINGERPRINTS_FILE), notNullValue());
+    }
+
+    @Test
+    public void whenNothingChanged_dontRecompile() throws Exception {
+        mojo.execute();
+        markSourcesUpToDate();
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(2));
+    }
+
+    @Test
+    public void whenSourceOptionChanged_recompileOnlyItsFiles() throws Exception {
+        mojo.execute();
+        markSourcesUpToDate();
+        createDefine(second, "SYMBOL");
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(3));
+        assertThat(getCompiledFile(), endsWith("second/b.idl"));
+    }
+
+    @Test
+    public void whenCompilerChanged_recompileAllFiles() throws Exception {
+        mojo.execute();
+        markSourcesUpToDate();
+        defineCompiler("idlj");
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(4));
+    }
+
+    @Test
+    public void whenCompilerVersionChanged_fingerprintChanges() {
+        List<Source> sources = Collections.singletonList(first);
+        SourceFingerprints oldVersion = SourceFingerprints.compute(sources, "GLASSFISH 4.0.1");
+
+        assertThat(SourceFingerprints.compute(sources, "GLASSFISH 4.0.2").findChanged(sources, oldVersion),
+                   equalTo(Collections.singletonList(0)));
+    }
+
+    @Test
+    public void fingerprintsCanBeSavedAndRestored() throws Exception {
+        List<Source> sources = Arrays.asList(first, second);
+        SourceFingerprints fingerprints = SourceFingerprints.compute(sources, "JACORB");
+
+        SourceFingerprints restored = SourceFingerprints.fromBytes(fingerprints.toBytes());
+
+        assertThat(fingerprints.findChanged(sources, restored).isEmpty(), equalTo(true));
+    }
+}
@@ -0,0 +1,95 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Tests for the assignment of stale files to the configured sources.
+ */
+public class SourcePlanningTestCase extends IDLJTestBase {
+
+    @Before
+    public void setUpCompiler() throws NoSuchFieldException, IllegalAccessException {
+        defineCompiler("glassfish");
+    }
+
+    @Test
+    public void whenTwoSourcesSelectSameFile_compileItOnce() throws Exception {
+        createSource();
+        createSource();
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(1));
+    }
+
+    @Test
+    public void whenFileSelectedBySeveralSources_useFirstSource() throws Exception {
+        Source first = createSource();
+        setGenerateStubs(first, true);
+        setGenerateSkeletons(first, false);
+        createSource();
+
+        mojo.execute();
+
+        assertArgumentsContains("-fclient");
+    }
+
+    @Test
+    public void whenFirstSourceExcludesFile_useNextSource() throws Exception {
+        Source first = createSource();
+        defineExcludes(first, "dummy.idl");
+        Source second = createSource();
+        setGenerateStubs(second, true);
+        setGenerateSkeletons(second, false);
+
+        mojo.execute();
+
+        assertArgumentsContains("-fclient");
+    }
+
+    @Test
+    public void whenNoSourceSelectsFile_dontCompileIt() throws Exception {
+        Source source = createSource();
+        defineIncludes(source, "other/**/*.idl");
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(0));
+    }
+
+    @Test
+    public void whenSourcesSelectDifferentFiles_compileEachFile() throws Exception {
+        addIncludedSource("src/main/idl/sub/other.idl");
+        Source source = createSource();
+        defineIncludes(source, "sub/");
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(1));
+        assertThat(getCompiledFile(), endsWith("sub/other.idl"));
+    }
+}
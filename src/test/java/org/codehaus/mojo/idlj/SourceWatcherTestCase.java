@@ -0,0 +1,97 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasItems;
+
+/**
+ * Tests for the watching of the source directories, on a real file system.
+ */
+public class SourceWatcherTestCase {
+
+    private Path root;
+
+    private SourceWatcher watcher;
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("idlj-watch");
+        watcher = new SourceWatcher(Collections.singletonList(root.toFile()), 100);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        watcher.close();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+                Files.delete(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Test
+    public void whenFileCreated_reportIt() throws Exception {
+        Files.write(root.resolve("a.idl"), "interface A {};".getBytes());
+
+        assertThat(watcher.awaitChanges(), hasItem(root.resolve("a.idl").toFile()));
+    }
+
+    @Test
+    public void whenSeveralFilesChangedTogether_reportThemAtOnce() throws Exception {
+        Files.write(root.resolve("a.idl"), "interface A {};".getBytes());
+        Files.write(root.resolve("b.idl"), "interface B {};".getBytes());
+
+        Set<File> changed = watcher.awaitChanges();
+
+        assertThat(changed, hasItems(root.resolve("a.idl").toFile(), root.resolve("b.idl").toFile()));
+    }
+
+    @Test
+    public void whenDirectoryCreated_watchIt() throws Exception {
+        Files.createDirectory(root.resolve("sub"));
+        watcher.awaitChanges();
+
+        Files.write(root.resolve("sub/c.idl"), "interface C {};".getBytes());
+
+        assertThat(watcher.awaitChanges(), hasItem(root.resolve("sub/c.idl").toFile()));
+    }
+}
@@ -0,0 +1,145 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+
+/**
+ * Tests for the explanation of why IDL files are stale or fresh.
+ */
+public class StalenessReportTestCase extends IDLJTestBase {
+
+    private static final String IDL_FILE = "src/main/idl/dummy.idl";
+
+    @Before
+    public void setUpFiles() throws Exception {
+        defineCompiler("glassfish");
+        defineWrittenFile(IDL_FILE, "interface Dummy {};\n".getBytes());
+        defineModificationTime(IDL_FILE, 1000);
+        defineGeneratedFiles("dummy.idl", "Dummy.java");
+    }
+
+    @Test
+    public void indexDescribesChanges() {
+        BuildIndex index = new BuildIndex();
+        index.record("a.idl", 10, 1000);
+
+        assertThat(index.describeStaleness("b.idl", 10, 1000, 0), equalTo("not compiled before"));
+        assertThat(index.describeStaleness("a.idl", 12, 1000, 0), equalTo("size changed from 10 to 12 bytes"));
+        assertThat(index.describeStaleness("a.idl", 10, 1500, 0), startsWith("modified 500 ms after"));
+        assertThat(index.describeStaleness("a.idl", 10, 1500, 1000), nullValue());
+    }
+
+    @Test
+    public void whenExplaining_dontCompile() throws Exception {
+        mojo.explain();
+
+        assertThat(getNumCompilerInvocations(), equalTo(0));
+        assertThat(getInfoMessages(), hasItem(startsWith("  stale dummy.idl")));
+    }
+
+    @Test
+    public void whenFileModified_explainTimeSkew() throws Exception {
+        mojo.execute();
+        defineModificationTime(IDL_FILE, 5000);
+
+        mojo.explain();
+
+        assertThat(getInfoMessages(), hasItem(containsString("modified 4000 ms after the version last compiled")));
+    }
+
+    @Test
+    public void whenNothingChanged_explainFreshFile() throws Exception {
+        mojo.execute();
+        markSourcesUpToDate();
+
+        mojo.explain();
+
+        assertThat(getInfoMessages(), hasItem(startsWith("  fresh dummy.idl")));
+        assertThat(getInfoMessages(), hasItem("  0 of 1 files stale, ~0 ms of compile time"));
+    }
+
+    @Test
+    public void whenOptionChanged_explainOptions() throws Exception {
+        mojo.execute();
+        markSourcesUpToDate();
+        createDefine(createSource(), "SYMBOL");
+
+        mojo.explain();
+
+        assertThat(getInfoMessages(), hasItem(containsString("the options of its source, or the compiler, changed")));
+    }
+
+    @Test
+    public void whenGeneratedFileDeleted_explainMissingFile() throws Exception {
+        mojo.execute();
+        markSourcesUpToDate();
+        deleteWrittenFile("target/main/generatedSources/idl/Dummy.java");
+
+        mojo.explain();
+
+        assertThat(getInfoMessages(), hasItem(containsString("generated file Dummy.java is missing")));
+    }
+
+    @Test
+    public void whenContentsUnchanged_explainFreshFile() throws Exception {
+        defineStaleCheck("content");
+        mojo.execute();
+        defineModificationTime(IDL_FILE, 2000);
+
+        mojo.explain();
+
+        assertThat(getInfoMessages(), hasItem(containsString("contents unchanged since it was last compiled")));
+    }
+
+    @Test
+    public void whenTimestampDirectoryExists_explainWithoutMigratingIt() throws Exception {
+        defineWrittenFile("target/main/timeStamps/dummy.idl", "interface Dummy {};\n".getBytes());
+        defineModificationTime("target/main/timeStamps/dummy.idl", 2000);
+        defineDirectory("target/main/timeStamps");
+        markSourcesUpToDate();
+
+        mojo.explain();
+
+        assertThat(getWrittenFile("target/main/timeStamps/dummy.idl"), notNullValue());
+        assertThat(getWrittenFile("target/main/timeStamps-index.bin"), nullValue());
+    }
+
+    @Test
+    public void whenExplainEnabled_reportDuringBuild() throws Exception {
+        enableExplain();
+        mojo.execute();
+        markSourcesUpToDate();
+
+        mojo.execute();
+
+        assertThat(getNumCompilerInvocations(), equalTo(1));
+        assertThat(getInfoMessages(), hasItem(startsWith("  fresh dummy.idl")));
+    }
+}
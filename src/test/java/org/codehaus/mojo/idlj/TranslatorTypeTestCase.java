@@ -0,0 +1,61 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Test;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Tests for the descriptions of the compiler versions used in the cache keys.
+ */
+public class TranslatorTypeTestCase {
+
+    @Test
+    public void whenClassInJar_describeByJarName() throws Exception {
+        URL location = new URL("jar:file:/home/someone/.m2/idl-compiler-3.8.jar!/org/jacorb/idl/parser.class");
+
+        assertThat(TranslatorType.describeLocation(location), equalTo("idl-compiler-3.8.jar"));
+    }
+
+    @Test
+    public void whenClassInDirectory_describeByContentRatherThanPath() throws Exception {
+        URL first = createClassFile("first", "compiler");
+        URL second = createClassFile("second", "compiler");
+        URL changed = createClassFile("changed", "changed compiler");
+
+        assertThat(TranslatorType.describeLocation(first), equalTo(TranslatorType.describeLocation(second)));
+        assertThat(TranslatorType.describeLocation(changed), not(equalTo(TranslatorType.describeLocation(first))));
+    }
+
+    private static URL createClassFile(String directory, String contents) throws Exception {
+        Path classFile = Files.createTempDirectory(directory).resolve("parser.class");
+        Files.write(classFile, contents.getBytes());
+        classFile.toFile().deleteOnExit();
+        classFile.getParent().toFile().deleteOnExit();
+        return classFile.toUri().toURL();
+    }
+}